@@ -0,0 +1,222 @@
+package com.querino.ai.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.cache.RecommendationCache;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.catalog.ProductTable;
+import com.querino.ai.engine.CollaborativeFilteringEngine;
+import com.querino.ai.engine.EmbeddingEngine;
+import com.querino.ai.engine.HeuristicEngine;
+import com.querino.ai.integration.RecommendationServiceBuilder;
+import com.querino.ai.integration.StubChatModel;
+import com.querino.ai.model.Product;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.prompt.PromptPipeline;
+import com.querino.ai.retrieval.CandidateRetriever;
+import com.querino.ai.retrieval.QuantizedEmbeddingIndex;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.vector.ProductVectorIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process cost of a recommendation request, without the language model: request JSON parsing, prompt
+ * rendering, response parsing, the whole model path against a chat model answering instantly with a canned
+ * response, and the local engines. The prompt and the model path are measured both ungrounded and grounded in a
+ * shortlist of catalog candidates, which is what the service does by default. Run with {@code -prof gc} (the profile's default) to also get the bytes
+ * allocated per operation ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Profiles: {@code small} (a few interests and purchases), {@code large} (many interests and categories) and
+ * {@code long-history} (a thousand purchases, compacted by the prompt pipeline).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RecommendationPathBenchmark {
+
+    @Param({"small", "large", "long-history"})
+    public String profile;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private RecommendationRequest request;
+    private String requestJson;
+    private String responseJson;
+    private Recommendation recommendation;
+    private PromptPipeline promptPipeline;
+    private RecommendationService recommendationService;
+    private RecommendationService groundedService;
+    private CandidateRetriever candidateRetriever;
+    private HeuristicEngine heuristicEngine;
+    private CollaborativeFilteringEngine collaborativeEngine;
+    private EmbeddingEngine embeddingEngine;
+    private ProductVectorIndex productVectorIndex;
+    private QuantizedEmbeddingIndex quantizedEmbeddingIndex;
+
+    @Setup
+    public void setUp() throws JsonProcessingException, InterruptedException {
+        ProductCatalog catalog = new ProductCatalog(true);
+        request = request(catalog.current().getTable());
+        requestJson = objectMapper.writeValueAsString(request);
+        recommendation = cannedRecommendation(catalog.current().getTable());
+        responseJson = objectMapper.writeValueAsString(recommendation);
+
+        promptPipeline = new PromptPipeline(600);
+        // Entries expire as soon as they are written, so every call goes through the model path
+        recommendationService = RecommendationServiceBuilder.forModel(new StubChatModel((Prompt prompt) -> responseJson))
+            .promptPipeline(promptPipeline)
+            .cache(new RecommendationCache(1, Duration.ZERO))
+            .build();
+
+        heuristicEngine = new HeuristicEngine(catalog, 5);
+        collaborativeEngine = new CollaborativeFilteringEngine(catalog, 5, 50, 200, 100_000, false, true, Duration.ZERO);
+        productVectorIndex = new ProductVectorIndex(catalog, 256, 16, 100, 64, "");
+        // Keep the background index build out of the measurements
+        while (!productVectorIndex.isReady()) {
+            Thread.sleep(1);
+        }
+        quantizedEmbeddingIndex = new QuantizedEmbeddingIndex(catalog, productVectorIndex, UserProfileStore.inMemory(), 4);
+        embeddingEngine = new EmbeddingEngine(productVectorIndex, quantizedEmbeddingIndex, 5);
+        // The first recommendation starts quantizing the catalog; measure the scan over the codes, not the fallback
+        embeddingEngine.recommend(request);
+        while (!quantizedEmbeddingIndex.isReady()) {
+            Thread.sleep(1);
+        }
+        candidateRetriever = new CandidateRetriever(catalog, productVectorIndex, true, 20, 0.25);
+        groundedService = RecommendationServiceBuilder.forModel(new StubChatModel((Prompt prompt) -> responseJson))
+            .promptPipeline(promptPipeline)
+            .cache(new RecommendationCache(1, Duration.ZERO))
+            .candidateRetriever(candidateRetriever)
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        quantizedEmbeddingIndex.close();
+        productVectorIndex.close();
+    }
+
+    @Benchmark
+    public RecommendationRequest readRequest() throws JsonProcessingException {
+        return objectMapper.readValue(requestJson, RecommendationRequest.class);
+    }
+
+    @Benchmark
+    public Prompt renderPrompt() {
+        return promptPipeline.recommendationPrompt(request);
+    }
+
+    @Benchmark
+    public Prompt renderGroundedPrompt() {
+        return promptPipeline.groundedPrompt(request, candidateRetriever.shortlist(request).getProducts());
+    }
+
+    @Benchmark
+    public Recommendation parseResponse() throws JsonProcessingException {
+        return objectMapper.readValue(responseJson, Recommendation.class);
+    }
+
+    @Benchmark
+    public String writeRecommendation() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(recommendation);
+    }
+
+    @Benchmark
+    public Recommendation modelPath() {
+        return recommendationService.generateRecommendations(request);
+    }
+
+    @Benchmark
+    public Recommendation groundedModelPath() {
+        return groundedService.generateRecommendations(request);
+    }
+
+    @Benchmark
+    public Recommendation heuristicEngine() {
+        return heuristicEngine.recommend(request);
+    }
+
+    @Benchmark
+    public Recommendation collaborativeEngine() {
+        return collaborativeEngine.recommend(request);
+    }
+
+    @Benchmark
+    public Recommendation embeddingEngine() {
+        return embeddingEngine.recommend(request);
+    }
+
+    private RecommendationRequest request(ProductTable table) {
+        int interests;
+        int categories;
+        int purchases;
+        switch (profile) {
+            case "small" -> {
+                interests = 3;
+                categories = 1;
+                purchases = 5;
+            }
+            case "large" -> {
+                interests = 20;
+                categories = 8;
+                purchases = 50;
+            }
+            case "long-history" -> {
+                interests = 3;
+                categories = 2;
+                purchases = 1000;
+            }
+            default -> throw new IllegalArgumentException("Unknown profile: " + profile);
+        }
+        List<String> interestList = new ArrayList<>();
+        List<String> categoryList = new ArrayList<>();
+        for (int i = 0; i < interests; i++) {
+            interestList.add(table.getProduct(i % table.size()).getName().toLowerCase());
+        }
+        for (int i = 0; i < categories; i++) {
+            String category = table.getProduct((i * 7) % table.size()).getCategory();
+            if (!categoryList.contains(category)) {
+                categoryList.add(category);
+            }
+        }
+        List<PurchaseHistory> history = new ArrayList<>();
+        for (int i = 0; i < purchases; i++) {
+            Product product = table.getProduct((i * 13) % table.size());
+            history.add(new PurchaseHistory(product.getId(), product.getName(), product.getCategory(),
+                product.getPrice(), String.format("2024-%02d-%02d", 1 + i / 28 % 12, 1 + i % 28)));
+        }
+        return new RecommendationRequest("bench-user", interestList, history, 250.0, categoryList);
+    }
+
+    private static Recommendation cannedRecommendation(ProductTable table) {
+        List<Recommendation.RecommendedProduct> products = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Product product = table.getProduct(i * 3 % table.size());
+            products.add(new Recommendation.RecommendedProduct(product.getId(), product.getName(),
+                product.getCategory(), product.getPrice(), "Matches your interest in " + product.getCategory()));
+        }
+        return new Recommendation("bench-user", products, "Based on your recent purchases and interests");
+    }
+}
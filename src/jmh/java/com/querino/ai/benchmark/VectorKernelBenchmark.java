@@ -0,0 +1,93 @@
+package com.querino.ai.benchmark;
+
+import com.querino.ai.vector.VectorKernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar against Vector API kernels: a float and an int8 dot product, and a blocked int8 scan over a catalog-sized
+ * code matrix, as the quantized product search runs it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorKernelBenchmark {
+
+    @Param({"scalar", "simd"})
+    public String kernels;
+
+    @Param({"64", "256", "768"})
+    public int dimensions;
+
+    @Param({"10000"})
+    public int rows;
+
+    private VectorKernels implementation;
+    private float[] a;
+    private float[] b;
+    private byte[] codesA;
+    private byte[] codesB;
+    private byte[] matrix;
+    private final int[] block = new int[256];
+
+    @Setup
+    public void setUp() {
+        implementation = "scalar".equals(kernels) ? VectorKernels.scalar() : VectorKernels.get();
+        Random random = new Random(42);
+        a = randomFloats(random, dimensions);
+        b = randomFloats(random, dimensions);
+        codesA = new byte[dimensions];
+        codesB = new byte[dimensions];
+        random.nextBytes(codesA);
+        random.nextBytes(codesB);
+        matrix = new byte[rows * dimensions];
+        random.nextBytes(matrix);
+    }
+
+    @Benchmark
+    public float floatDot() {
+        return implementation.dot(a, 0, b, 0, dimensions);
+    }
+
+    @Benchmark
+    public int int8Dot() {
+        return implementation.dot(codesA, 0, codesB, 0, dimensions);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int int8Scan() {
+        int best = Integer.MIN_VALUE;
+        for (int first = 0; first < rows; first += block.length) {
+            int blockRows = Math.min(block.length, rows - first);
+            implementation.dotRows(codesA, matrix, first, blockRows, block);
+            for (int i = 0; i < blockRows; i++) {
+                best = Math.max(best, block[i]);
+            }
+        }
+        return best;
+    }
+
+    private static float[] randomFloats(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+}
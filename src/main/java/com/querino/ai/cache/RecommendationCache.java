@@ -0,0 +1,130 @@
+package com.querino.ai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.querino.ai.model.Recommendation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded in-process cache of generated recommendations, keyed on the canonical form of the request.
+ * Eviction is size based (W-TinyLFU) with a time-to-live on every entry.
+ */
+@Component
+public class RecommendationCache {
+
+    private final Cache<RecommendationKey, Recommendation> cache;
+
+    @Autowired
+    public RecommendationCache(@Value("${recommendation.cache.max-size:10000}") long maximumSize,
+                               @Value("${recommendation.cache.ttl:10m}") Duration timeToLive) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Looks up a cached recommendation.
+     *
+     * @param key The canonical request key
+     * @return The cached recommendation, or null if absent or expired
+     */
+    public Recommendation get(RecommendationKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Stores a recommendation for the given key.
+     *
+     * @param key The canonical request key
+     * @param recommendation The recommendation to cache
+     */
+    public void put(RecommendationKey key, Recommendation recommendation) {
+        cache.put(key, recommendation);
+    }
+
+    /**
+     * Removes every cached recommendation belonging to a user.
+     *
+     * @param userId The user whose entries should be dropped
+     * @return The number of entries removed
+     */
+    public int invalidateUser(String userId) {
+        String normalized = userId == null ? "" : userId;
+        int removed = 0;
+        for (RecommendationKey key : cache.asMap().keySet()) {
+            if (key.getUserId().equals(normalized) && cache.asMap().remove(key) != null) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all cached recommendations.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns a snapshot of the hit, miss and eviction counters.
+     *
+     * @return The current cache statistics
+     */
+    public CacheStatistics stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(
+            cache.estimatedSize(),
+            stats.hitCount(),
+            stats.missCount(),
+            stats.evictionCount(),
+            stats.hitRate()
+        );
+    }
+
+    /**
+     * Point-in-time view of the cache counters.
+     */
+    public static class CacheStatistics {
+        private final long size;
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final double hitRate;
+
+        public CacheStatistics(long size, long hitCount, long missCount, long evictionCount, double hitRate) {
+            this.size = size;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.hitRate = hitRate;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public double getHitRate() {
+            return hitRate;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.querino.ai.cache;
+
+import com.querino.ai.model.RecommendationRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Canonical, immutable form of a {@link RecommendationRequest} used as a cache and coalescing key.
+ * Two requests that only differ in the order or casing of their interests and categories,
+ * or in the order of their purchase history, map to the same key.
+ */
+public final class RecommendationKey {
+    private final String userId;
+    private final List<String> interests;
+    private final List<String> preferredCategories;
+    private final Long budgetCents;
+    private final List<String> purchasedProductIds;
+    private final int hash;
+
+    private RecommendationKey(String userId, List<String> interests, List<String> preferredCategories,
+                              Long budgetCents, List<String> purchasedProductIds) {
+        this.userId = userId;
+        this.interests = interests;
+        this.preferredCategories = preferredCategories;
+        this.budgetCents = budgetCents;
+        this.purchasedProductIds = purchasedProductIds;
+        this.hash = Objects.hash(userId, interests, preferredCategories, budgetCents, purchasedProductIds);
+    }
+
+    /**
+     * Builds the canonical key for a request.
+     *
+     * @param request The recommendation request
+     * @return The canonical key
+     */
+    public static RecommendationKey of(RecommendationRequest request) {
+        List<String> productIds = new ArrayList<>();
+        if (request.getPurchaseHistory() != null) {
+            for (RecommendationRequest.PurchaseHistory purchase : request.getPurchaseHistory()) {
+                if (purchase != null && purchase.getProductId() != null) {
+                    productIds.add(purchase.getProductId());
+                }
+            }
+        }
+        return new RecommendationKey(
+            request.getUserId() == null ? "" : request.getUserId(),
+            normalize(request.getInterests()),
+            normalize(request.getPreferredCategories()),
+            request.getBudget() == null ? null : Math.round(request.getBudget() * 100),
+            sortedDistinct(productIds)
+        );
+    }
+
+    private static List<String> normalize(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> normalized = new ArrayList<>(values.size());
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                normalized.add(value.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return sortedDistinct(normalized);
+    }
+
+    private static List<String> sortedDistinct(List<String> values) {
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return List.copyOf(new TreeSet<>(values));
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public List<String> getInterests() {
+        return interests;
+    }
+
+    public List<String> getPreferredCategories() {
+        return preferredCategories;
+    }
+
+    public Long getBudgetCents() {
+        return budgetCents;
+    }
+
+    public List<String> getPurchasedProductIds() {
+        return purchasedProductIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RecommendationKey other)) {
+            return false;
+        }
+        return hash == other.hash
+            && userId.equals(other.userId)
+            && Objects.equals(budgetCents, other.budgetCents)
+            && interests.equals(other.interests)
+            && preferredCategories.equals(other.preferredCategories)
+            && purchasedProductIds.equals(other.purchasedProductIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "RecommendationKey{userId='" + userId + "', interests=" + interests
+            + ", preferredCategories=" + preferredCategories + ", budgetCents=" + budgetCents
+            + ", purchasedProductIds=" + purchasedProductIds + '}';
+    }
+}
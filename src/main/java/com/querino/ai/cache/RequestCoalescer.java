@@ -0,0 +1,156 @@
+package com.querino.ai.cache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into a single upstream call ("single flight").
+ * The first caller for a key runs the loader; callers arriving while it is in flight wait for
+ * and share its result or its failure.
+ *
+ * @param <K> The key type
+ * @param <V> The result type
+ */
+public class RequestCoalescer<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaderCalls = new LongAdder();
+    private final LongAdder collapsedCalls = new LongAdder();
+    private final LongAdder waiterTimeouts = new LongAdder();
+
+    /**
+     * Runs the loader for the key unless an identical call is already in flight, in which case the
+     * caller waits up to the given timeout for that call's outcome.
+     *
+     * @param key The coalescing key
+     * @param loader The upstream call, run on the caller's thread when this caller leads
+     * @param waitTimeout How long a follower waits for the leader before giving up
+     * @return The loaded value
+     * @throws TimeoutException If this caller was a follower and the leader did not finish in time
+     * @throws Exception The exception thrown by the loader, shared with all waiters
+     */
+    public V call(K key, Callable<V> loader, Duration waitTimeout) throws Exception {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing == null) {
+            leaderCalls.increment();
+            try {
+                V value = loader.call();
+                promise.complete(value);
+                return value;
+            } catch (Throwable t) {
+                promise.completeExceptionally(t);
+                throw t;
+            } finally {
+                inFlight.remove(key, promise);
+            }
+        }
+
+        collapsedCalls.increment();
+        try {
+            return existing.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            waiterTimeouts.increment();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #call}: starts the loader for the key unless an identical call is
+     * already in flight, in which case the returned future follows that call. No thread is blocked while waiting.
+     *
+     * @param key The coalescing key
+     * @param loader Starts the upstream call when this caller leads
+     * @param waitTimeout How long a follower waits for the leader before its future fails with a {@link TimeoutException}
+     * @return A future completed with the loaded value or the shared failure
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader, Duration waitTimeout) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing == null) {
+            leaderCalls.increment();
+            CompletableFuture<V> started;
+            try {
+                started = loader.get();
+            } catch (Throwable t) {
+                started = CompletableFuture.failedFuture(t);
+            }
+            started.whenComplete((value, error) -> {
+                // Leave the map first: a caller woken by the result must start a new call, not join a finished one
+                inFlight.remove(key, promise);
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(value);
+                }
+            });
+            // Callers get a copy so that cancelling one of them does not affect the shared call
+            return promise.copy();
+        }
+
+        collapsedCalls.increment();
+        return existing.copy()
+            .orTimeout(waitTimeout.toMillis(), TimeUnit.MILLISECONDS)
+            .whenComplete((value, error) -> {
+                if (error instanceof TimeoutException) {
+                    waiterTimeouts.increment();
+                }
+            });
+    }
+
+    /**
+     * Returns a snapshot of the coalescing counters.
+     *
+     * @return The current coalescing statistics
+     */
+    public CoalescingStatistics stats() {
+        return new CoalescingStatistics(leaderCalls.sum(), collapsedCalls.sum(), waiterTimeouts.sum(), inFlight.size());
+    }
+
+    /**
+     * Point-in-time view of the coalescing counters.
+     */
+    public static class CoalescingStatistics {
+        private final long upstreamCalls;
+        private final long collapsedCalls;
+        private final long waiterTimeouts;
+        private final int inFlight;
+
+        public CoalescingStatistics(long upstreamCalls, long collapsedCalls, long waiterTimeouts, int inFlight) {
+            this.upstreamCalls = upstreamCalls;
+            this.collapsedCalls = collapsedCalls;
+            this.waiterTimeouts = waiterTimeouts;
+            this.inFlight = inFlight;
+        }
+
+        public long getUpstreamCalls() {
+            return upstreamCalls;
+        }
+
+        public long getCollapsedCalls() {
+            return collapsedCalls;
+        }
+
+        public long getWaiterTimeouts() {
+            return waiterTimeouts;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+    }
+}
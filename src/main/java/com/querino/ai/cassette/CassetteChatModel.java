@@ -0,0 +1,252 @@
+package com.querino.ai.cassette;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A chat model that records the answers of another model to a {@link ChatCassette}, or replays them from one
+ * without calling any model. Replay can keep the recorded timing: a blocking call then takes as long as it did,
+ * and a stream sends its first chunk after the recorded delay and spreads the rest over the recorded duration.
+ * <p>
+ * Replayed answers carry the recorded text and token usage (on the last chunk of a stream, where providers report
+ * it), but no other provider metadata. A prompt missing from the cassette fails with an
+ * {@link IllegalStateException} rather than reaching the network.
+ */
+public class CassetteChatModel implements ChatModel, AutoCloseable {
+
+    public enum Mode {
+        OFF, RECORD, REPLAY;
+
+        public static Mode parse(String mode) {
+            return mode == null || mode.isBlank() ? OFF : valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final ChatModel delegate;
+    private final ChatCassette cassette;
+    private final Mode mode;
+    private final boolean replayTiming;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param delegate The model to record; unused when replaying
+     * @param cassette The cassette, opened for recording or replay to match the mode
+     * @param mode {@link Mode#RECORD} or {@link Mode#REPLAY}
+     * @param replayTiming Whether replayed answers take as long as the recorded ones
+     */
+    public CassetteChatModel(ChatModel delegate, ChatCassette cassette, Mode mode, boolean replayTiming) {
+        if (mode == Mode.OFF) {
+            throw new IllegalArgumentException("A cassette model records or replays");
+        }
+        this.delegate = delegate;
+        this.cassette = cassette;
+        this.mode = mode;
+        this.replayTiming = replayTiming;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        long promptHash = ChatCassette.hash(prompt);
+        if (mode == Mode.REPLAY) {
+            ChatCassette.Recording recording = replay(promptHash);
+            if (replayTiming) {
+                sleep(recording.totalMillis());
+            }
+            return response(recording.text(), recording);
+        }
+        long start = System.nanoTime();
+        ChatResponse response = delegate.call(prompt);
+        int millis = elapsedMillis(start);
+        String text = textOf(response);
+        Usage usage = usageOf(response);
+        cassette.append(new ChatCassette.Recording(promptHash, false, millis, millis,
+            text == null ? List.of() : List.of(text), promptTokens(usage), completionTokens(usage)));
+        recorded.increment();
+        return response;
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        long promptHash = ChatCassette.hash(prompt);
+        if (mode == Mode.REPLAY) {
+            return Flux.defer(() -> {
+                ChatCassette.Recording recording = replay(promptHash);
+                List<String> chunks = recording.chunks();
+                int last = chunks.size() - 1;
+                if (!replayTiming) {
+                    return Flux.range(0, chunks.size())
+                        .map(i -> response(chunks.get(i), i == last ? recording : null));
+                }
+                long gap = chunks.size() > 1
+                    ? Math.max(0, recording.totalMillis() - recording.firstChunkMillis()) / (chunks.size() - 1)
+                    : 0;
+                return Flux.range(0, chunks.size())
+                    .concatMap(i -> Mono.just(response(chunks.get(i), i == last ? recording : null))
+                        .delayElement(Duration.ofMillis(i == 0 ? recording.firstChunkMillis() : gap)));
+            });
+        }
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            List<String> chunks = Collections.synchronizedList(new ArrayList<>());
+            int[] firstChunkMillis = {-1};
+            AtomicReference<Usage> usage = new AtomicReference<>();
+            return delegate.stream(prompt)
+                .doOnNext(response -> {
+                    Usage reported = usageOf(response);
+                    if (promptTokens(reported) > 0 || completionTokens(reported) > 0) {
+                        usage.set(reported);
+                    }
+                    String text = textOf(response);
+                    if (text != null) {
+                        if (firstChunkMillis[0] < 0) {
+                            firstChunkMillis[0] = elapsedMillis(start);
+                        }
+                        chunks.add(text);
+                    }
+                })
+                .doOnComplete(() -> {
+                    int totalMillis = elapsedMillis(start);
+                    cassette.append(new ChatCassette.Recording(promptHash, true,
+                        firstChunkMillis[0] < 0 ? totalMillis : firstChunkMillis[0], totalMillis, List.copyOf(chunks),
+                        promptTokens(usage.get()), completionTokens(usage.get())));
+                    recorded.increment();
+                });
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate != null ? delegate.getDefaultOptions() : ChatModel.super.getDefaultOptions();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public CassetteStatistics stats() {
+        return new CassetteStatistics(mode.name().toLowerCase(Locale.ROOT), cassette.size(), recorded.sum(),
+            replayed.sum(), misses.sum());
+    }
+
+    @Override
+    public void close() throws IOException {
+        cassette.close();
+    }
+
+    private ChatCassette.Recording replay(long promptHash) {
+        ChatCassette.Recording recording = cassette.next(promptHash);
+        if (recording == null) {
+            misses.increment();
+            throw new IllegalStateException(String.format("No recorded answer for prompt %016x in %s",
+                promptHash, cassette.getFile()));
+        }
+        replayed.increment();
+        return recording;
+    }
+
+    private static String textOf(ChatResponse response) {
+        return response == null || response.getResult() == null || response.getResult().getOutput() == null
+            ? null
+            : response.getResult().getOutput().getText();
+    }
+
+    private static Usage usageOf(ChatResponse response) {
+        return response == null || response.getMetadata() == null ? null : response.getMetadata().getUsage();
+    }
+
+    private static int promptTokens(Usage usage) {
+        return usage == null || usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+    }
+
+    private static int completionTokens(Usage usage) {
+        return usage == null || usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens();
+    }
+
+    /**
+     * @param usageFrom The recording whose token usage the response reports, or null for none
+     */
+    private static ChatResponse response(String text, ChatCassette.Recording usageFrom) {
+        List<Generation> generations = List.of(new Generation(new AssistantMessage(text)));
+        if (usageFrom == null || !usageFrom.hasUsage()) {
+            return new ChatResponse(generations);
+        }
+        return new ChatResponse(generations, ChatResponseMetadata.builder()
+            .usage(new DefaultUsage(usageFrom.promptTokens(), usageFrom.completionTokens()))
+            .build());
+    }
+
+    private static int elapsedMillis(long start) {
+        return (int) ((System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Statistics of a cassette: recordings in it, and answers recorded, replayed and missing since startup.
+     */
+    public static class CassetteStatistics {
+        private final String mode;
+        private final int recordings;
+        private final long recorded;
+        private final long replayed;
+        private final long misses;
+
+        public CassetteStatistics(String mode, int recordings, long recorded, long replayed, long misses) {
+            this.mode = mode;
+            this.recordings = recordings;
+            this.recorded = recorded;
+            this.replayed = replayed;
+            this.misses = misses;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public int getRecordings() {
+            return recordings;
+        }
+
+        public long getRecorded() {
+            return recorded;
+        }
+
+        public long getReplayed() {
+            return replayed;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+    }
+}
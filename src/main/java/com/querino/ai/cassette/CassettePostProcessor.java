@@ -0,0 +1,66 @@
+package com.querino.ai.cassette;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Wraps the application's chat model in a {@link CassetteChatModel} when {@code recommendation.cassette.mode} is
+ * {@code record} or {@code replay}. The chat clients are built on the chat model bean, so every model call of
+ * the application, including the startup demo, goes through the cassette.
+ */
+@Component
+public class CassettePostProcessor implements BeanPostProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(CassettePostProcessor.class);
+
+    private final CassetteChatModel.Mode mode;
+    private final Path file;
+    private final boolean replayTiming;
+    private volatile CassetteChatModel cassetteModel;
+
+    public CassettePostProcessor(@Value("${recommendation.cassette.mode:off}") String mode,
+                                 @Value("${recommendation.cassette.file:data/cassettes/chat.cassette}") String file,
+                                 @Value("${recommendation.cassette.replay-timing:false}") boolean replayTiming) {
+        this.mode = CassetteChatModel.Mode.parse(mode);
+        this.file = Path.of(file);
+        this.replayTiming = replayTiming;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (mode == CassetteChatModel.Mode.OFF || !(bean instanceof ChatModel chatModel)
+            || bean instanceof CassetteChatModel) {
+            return bean;
+        }
+        if (cassetteModel != null) {
+            throw new IllegalStateException("Only one chat model can use the cassette; found another: " + beanName);
+        }
+        try {
+            ChatCassette cassette = mode == CassetteChatModel.Mode.RECORD
+                ? ChatCassette.forRecording(file)
+                : ChatCassette.forReplay(file);
+            logger.info("Chat model '{}' {} cassette {} ({} recordings)", beanName,
+                mode == CassetteChatModel.Mode.RECORD ? "recording to" : "replaying from", file, cassette.size());
+            cassetteModel = new CassetteChatModel(chatModel, cassette, mode, replayTiming);
+            return cassetteModel;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open cassette " + file, e);
+        }
+    }
+
+    /**
+     * @return The wrapped chat model, or null when the cassette is off
+     */
+    public CassetteChatModel getCassetteModel() {
+        return cassetteModel;
+    }
+}
@@ -0,0 +1,268 @@
+package com.querino.ai.cassette;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of model answers keyed by a hash of the prompt, with the latencies observed when they were
+ * recorded. Records are {@code [payload length][CRC32][payload]} like the profile log; loading stops at the first
+ * torn or corrupt record, which can only be the tail of a log written when the process died.
+ * <p>
+ * A payload holds the prompt hash, whether the answer was streamed, the milliseconds to the first chunk and to
+ * the end, the answer's chunks as length-prefixed UTF-8 (a single chunk for blocking calls) and the prompt and
+ * completion tokens the provider reported. Records written before token counts were kept end after the chunks
+ * and load with no usage. Only the hash of the prompt is kept, so a cassette is about as large as the answers
+ * it holds.
+ */
+public final class ChatCassette implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatCassette.class);
+
+    private final Map<Long, List<Recording>> recordings = new HashMap<>();
+    private final Map<Long, Integer> replayPositions = new HashMap<>();
+    private final Path file;
+    private FileChannel log;
+    private int size;
+
+    private ChatCassette(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens a cassette for recording, appending to the file if it exists.
+     *
+     * @param file The cassette file
+     * @return The cassette
+     */
+    public static ChatCassette forRecording(Path file) throws IOException {
+        ChatCassette cassette = new ChatCassette(file);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        cassette.log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        return cassette;
+    }
+
+    /**
+     * Loads a cassette for replaying.
+     *
+     * @param file The cassette file
+     * @return The cassette with every intact recording of the file
+     */
+    public static ChatCassette forReplay(Path file) throws IOException {
+        ChatCassette cassette = new ChatCassette(file);
+        cassette.load();
+        return cassette;
+    }
+
+    /**
+     * Hashes the messages of a prompt (their types and texts); the chat options are left out, so a cassette
+     * recorded with one model or temperature can be replayed with another.
+     *
+     * @param prompt The prompt
+     * @return The first 64 bits of the SHA-256 of the messages
+     */
+    public static long hash(Prompt prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Message message : prompt.getInstructions()) {
+                digest.update(message.getMessageType().name().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                if (message.getText() != null) {
+                    digest.update(message.getText().getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return The number of recordings loaded or appended
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Appends a recording to the file.
+     *
+     * @param recording The answer to record
+     */
+    public synchronized void append(Recording recording) {
+        if (log == null) {
+            throw new IllegalStateException("Cassette opened for replay: " + file);
+        }
+        ByteBuffer record = ByteBuffer.wrap(encode(recording));
+        try {
+            while (record.hasRemaining()) {
+                log.write(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to cassette " + file, e);
+        }
+        add(recording);
+    }
+
+    /**
+     * Returns the next recording of a prompt. A prompt recorded several times gets its answers in recording
+     * order, starting over after the last.
+     *
+     * @param promptHash The prompt's {@link #hash(Prompt)}
+     * @return The recording, or null if the prompt was never recorded
+     */
+    public synchronized Recording next(long promptHash) {
+        List<Recording> answers = recordings.get(promptHash);
+        if (answers == null) {
+            return null;
+        }
+        int position = replayPositions.getOrDefault(promptHash, 0);
+        replayPositions.put(promptHash, (position + 1) % answers.size());
+        return answers.get(position);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private void add(Recording recording) {
+        recordings.computeIfAbsent(recording.promptHash(), hash -> new ArrayList<>()).add(recording);
+        size++;
+    }
+
+    private void load() throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Cassette exceeds 2 GB: " + file);
+            }
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CRC32 crc = new CRC32();
+        while (in.remaining() >= 8) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                logger.warn("Ignoring torn record at the end of {}", file);
+                return;
+            }
+            ByteBuffer payload = in.slice(in.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                logger.warn("Ignoring corrupt record at the end of {}", file);
+                return;
+            }
+            in.position(in.position() + length);
+            try {
+                add(decode(payload));
+            } catch (BufferUnderflowException e) {
+                logger.warn("Ignoring malformed record in {}", file);
+                return;
+            }
+        }
+    }
+
+    private static byte[] encode(Recording recording) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(recording.promptHash());
+            out.writeBoolean(recording.streamed());
+            out.writeInt(recording.firstChunkMillis());
+            out.writeInt(recording.totalMillis());
+            out.writeInt(recording.chunks().size());
+            for (String chunk : recording.chunks()) {
+                byte[] text = chunk.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(text.length);
+                out.write(text);
+            }
+            out.writeInt(recording.promptTokens());
+            out.writeInt(recording.completionTokens());
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+            record.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            return record.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode cassette record", e);
+        }
+    }
+
+    private static Recording decode(ByteBuffer payload) {
+        long promptHash = payload.getLong();
+        boolean streamed = payload.get() != 0;
+        int firstChunkMillis = payload.getInt();
+        int totalMillis = payload.getInt();
+        int count = payload.getInt();
+        List<String> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] text = new byte[payload.getInt()];
+            payload.get(text);
+            chunks.add(new String(text, StandardCharsets.UTF_8));
+        }
+        int promptTokens = 0;
+        int completionTokens = 0;
+        if (payload.remaining() >= 8) {
+            promptTokens = payload.getInt();
+            completionTokens = payload.getInt();
+        }
+        return new Recording(promptHash, streamed, firstChunkMillis, totalMillis, chunks, promptTokens, completionTokens);
+    }
+
+    /**
+     * One recorded answer.
+     *
+     * @param promptHash The prompt's {@link #hash(Prompt)}
+     * @param streamed Whether the answer was streamed
+     * @param firstChunkMillis Milliseconds from the call to the first chunk (the whole answer when not streamed)
+     * @param totalMillis Milliseconds from the call to the end of the answer
+     * @param chunks The answer's text, in the chunks it arrived in
+     * @param promptTokens The prompt tokens the provider reported, 0 if it reported none
+     * @param completionTokens The completion tokens the provider reported, 0 if it reported none
+     */
+    public record Recording(long promptHash, boolean streamed, int firstChunkMillis, int totalMillis,
+                            List<String> chunks, int promptTokens, int completionTokens) {
+
+        public boolean hasUsage() {
+            return promptTokens > 0 || completionTokens > 0;
+        }
+
+        public String text() {
+            return String.join("", chunks);
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.querino.ai.catalog;
+
+import com.querino.ai.model.Product;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Immutable, indexed version of the product catalog.
+ * For every category the rows are kept sorted by price next to a parallel array of prices, so the products of a
+ * category under a budget are a prefix of that array and are located with one binary search.
+ * <p>
+ * A catalog file written by {@link ColumnarCatalogWriter} already holds these indexes and the ID hash table, so a
+ * snapshot of a mapped table is built without touching any row; other tables are indexed in one pass.
+ */
+public final class CatalogSnapshot {
+
+    private final long version;
+    private final ProductTable table;
+    private final Map<String, CategoryIndex> categories;
+    private final RowIndex rowsById;
+
+    private CatalogSnapshot(long version, ProductTable table, Map<String, CategoryIndex> categories, RowIndex rowsById) {
+        this.version = version;
+        this.table = table;
+        this.categories = categories;
+        this.rowsById = rowsById;
+    }
+
+    /**
+     * Builds the indexes for a product table.
+     *
+     * @param version The catalog version
+     * @param table The products
+     * @return The indexed snapshot
+     */
+    public static CatalogSnapshot build(long version, ProductTable table) {
+        if (table instanceof MappedProductTable mapped && mapped.isIndexed()) {
+            return new CatalogSnapshot(version, table, mapped.getCategoryIndexes(), mapped.getIdIndex());
+        }
+        IdIndex rowsById = new IdIndex(table);
+        for (int row = 0; row < table.size(); row++) {
+            rowsById.add(row);
+        }
+        return new CatalogSnapshot(version, table, CategoryIndex.build(table), rowsById);
+    }
+
+    /**
+     * Normalizes a category name for lookups.
+     *
+     * @param category The category as given by a product or request
+     * @return The lower-case, trimmed category, or an empty string for null
+     */
+    public static String normalize(String category) {
+        return category == null ? "" : category.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public ProductTable getTable() {
+        return table;
+    }
+
+    public Set<String> getCategories() {
+        return Collections.unmodifiableSet(categories.keySet());
+    }
+
+    /**
+     * Looks up a product by ID.
+     *
+     * @param productId The product ID
+     * @return The product, or null if the catalog does not contain it
+     */
+    public Product findById(String productId) {
+        int row = rowsById.find(productId);
+        return row < 0 ? null : table.getProduct(row);
+    }
+
+    /**
+     * Looks up the row of a product.
+     *
+     * @param productId The product ID
+     * @return The row number, or -1 if the catalog does not contain the product
+     */
+    public int rowOf(String productId) {
+        return rowsById.find(productId);
+    }
+
+    /**
+     * Returns, per category, the slice of rows priced at or below the budget. No product is materialized.
+     *
+     * @param categories The categories to search; null or empty means all categories. Names that normalize to the
+     *                   same category ("Books", "books ") are searched once
+     * @param budget The maximum price, or null for no limit
+     * @return One slice per matching, non-empty category
+     */
+    public List<CategorySlice> slices(Collection<String> categories, Double budget) {
+        double maxPrice = budget == null ? Double.POSITIVE_INFINITY : budget;
+        Collection<String> names = categories == null || categories.isEmpty() ? this.categories.keySet() : categories;
+        List<CategorySlice> slices = new ArrayList<>(names.size());
+        Set<String> seen = new HashSet<>(names.size() * 4 / 3 + 1);
+        for (String name : names) {
+            String category = normalize(name);
+            if (!seen.add(category)) {
+                continue;
+            }
+            CategoryIndex index = this.categories.get(category);
+            if (index == null) {
+                continue;
+            }
+            int end = index.upperBound(maxPrice);
+            if (end > 0) {
+                slices.add(new CategorySlice(index, end));
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * Counts the products in the given categories priced at or below the budget, in logarithmic time per category.
+     *
+     * @param categories The categories to search; null or empty means all categories
+     * @param budget The maximum price, or null for no limit
+     * @return The number of matching products
+     */
+    public int count(Collection<String> categories, Double budget) {
+        int count = 0;
+        for (CategorySlice slice : slices(categories, budget)) {
+            count += slice.size();
+        }
+        return count;
+    }
+
+    /**
+     * Finds the products in the given categories priced at or below the budget, cheapest first.
+     *
+     * @param categories The categories to search; null or empty means all categories
+     * @param budget The maximum price, or null for no limit
+     * @param limit The maximum number of products to return
+     * @return The matching products in ascending price order
+     */
+    public List<Product> find(Collection<String> categories, Double budget, int limit) {
+        List<CategorySlice> slices = slices(categories, budget);
+        // k-way merge of the per-category price-sorted slices
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, slices.size()),
+            (a, b) -> Double.compare(slices.get(a[0]).price(a[1]), slices.get(b[0]).price(b[1])));
+        for (int i = 0; i < slices.size(); i++) {
+            heads.add(new int[]{i, 0});
+        }
+        List<Product> products = new ArrayList<>(Math.min(limit, count(categories, budget)));
+        while (!heads.isEmpty() && products.size() < limit) {
+            int[] head = heads.poll();
+            CategorySlice slice = slices.get(head[0]);
+            products.add(table.getProduct(slice.row(head[1])));
+            if (++head[1] < slice.size()) {
+                heads.add(head);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Lookup of the row holding a product ID.
+     */
+    interface RowIndex {
+
+        /**
+         * @return The row of the product, or -1 if the catalog does not contain it
+         */
+        int find(String productId);
+    }
+
+    /**
+     * Open-addressing hash index from product ID to row, for tables without a stored index. Only row numbers and
+     * ID hashes are stored; the IDs themselves stay in the table, so the index costs eight bytes per slot.
+     */
+    static final class IdIndex implements RowIndex {
+        private final ProductTable table;
+        private final int[] rows;
+        private final int[] hashes;
+        private final int mask;
+
+        IdIndex(ProductTable table) {
+            this.table = table;
+            int capacity = ColumnarCatalogWriter.idIndexCapacity(table.size());
+            this.rows = new int[capacity];
+            this.hashes = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(rows, -1);
+        }
+
+        void add(int row) {
+            String id = table.getId(row);
+            if (id == null) {
+                return;
+            }
+            int hash = spread(id);
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                if (rows[slot] < 0) {
+                    rows[slot] = row;
+                    hashes[slot] = hash;
+                    return;
+                }
+                if (hashes[slot] == hash && table.getId(rows[slot]).equals(id)) {
+                    // Duplicate IDs: the last row wins, as with a map
+                    rows[slot] = row;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public int find(String id) {
+            if (id == null) {
+                return -1;
+            }
+            int hash = spread(id);
+            for (int slot = hash & mask; rows[slot] >= 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && table.getId(rows[slot]).equals(id)) {
+                    return rows[slot];
+                }
+            }
+            return -1;
+        }
+
+        private static int spread(String id) {
+            int h = id.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Rows of one category sorted by ascending price, on the heap or in a mapped catalog file.
+     */
+    static final class CategoryIndex {
+        private final IntBuffer rows;
+        private final DoubleBuffer prices;
+
+        CategoryIndex(IntBuffer rows, DoubleBuffer prices) {
+            this.rows = rows;
+            this.prices = prices;
+        }
+
+        /**
+         * Groups the rows of a table by normalized category and sorts each group by price, without boxing rows.
+         *
+         * @param table The products
+         * @return The index of every category
+         */
+        static Map<String, CategoryIndex> build(ProductTable table) {
+            int size = table.size();
+            // Raw category names repeat across rows, so each is normalized once
+            Map<String, Integer> codesByName = new HashMap<>();
+            Map<String, Integer> codesByCategory = new HashMap<>();
+            List<String> categories = new ArrayList<>();
+            int[] codes = new int[size];
+            int[] counts = new int[16];
+            for (int row = 0; row < size; row++) {
+                String name = table.getCategory(row);
+                Integer code = codesByName.get(name);
+                if (code == null) {
+                    String category = normalize(name);
+                    code = codesByCategory.get(category);
+                    if (code == null) {
+                        code = categories.size();
+                        categories.add(category);
+                        codesByCategory.put(category, code);
+                    }
+                    codesByName.put(name, code);
+                }
+                codes[row] = code;
+                if (code == counts.length) {
+                    counts = Arrays.copyOf(counts, counts.length * 2);
+                }
+                counts[code]++;
+            }
+
+            int[][] rowsByCode = new int[categories.size()][];
+            for (int code = 0; code < rowsByCode.length; code++) {
+                rowsByCode[code] = new int[counts[code]];
+                counts[code] = 0;
+            }
+            for (int row = 0; row < size; row++) {
+                rowsByCode[codes[row]][counts[codes[row]]++] = row;
+            }
+            Map<String, CategoryIndex> indexes = new HashMap<>(categories.size() * 4 / 3 + 1);
+            for (int code = 0; code < rowsByCode.length; code++) {
+                int[] rows = rowsByCode[code];
+                double[] prices = new double[rows.length];
+                for (int i = 0; i < rows.length; i++) {
+                    prices[i] = table.getPrice(rows[i]);
+                }
+                sortByPrice(rows, prices);
+                indexes.put(categories.get(code), new CategoryIndex(IntBuffer.wrap(rows), DoubleBuffer.wrap(prices)));
+            }
+            return indexes;
+        }
+
+        /**
+         * Stable bottom-up merge sort of rows by their prices, keeping rows of equal price in row order.
+         */
+        private static void sortByPrice(int[] rows, double[] prices) {
+            int n = rows.length;
+            int[] rowBuffer = new int[n];
+            double[] priceBuffer = new double[n];
+            int[] fromRows = rows;
+            double[] fromPrices = prices;
+            int[] toRows = rowBuffer;
+            double[] toPrices = priceBuffer;
+            for (int width = 1; width < n; width *= 2) {
+                for (int low = 0; low < n; low += 2 * width) {
+                    int mid = Math.min(low + width, n);
+                    int high = Math.min(low + 2 * width, n);
+                    int left = low;
+                    int right = mid;
+                    for (int i = low; i < high; i++) {
+                        boolean takeLeft = right >= high || (left < mid && fromPrices[left] <= fromPrices[right]);
+                        int from = takeLeft ? left++ : right++;
+                        toRows[i] = fromRows[from];
+                        toPrices[i] = fromPrices[from];
+                    }
+                }
+                int[] swapRows = fromRows;
+                fromRows = toRows;
+                toRows = swapRows;
+                double[] swapPrices = fromPrices;
+                fromPrices = toPrices;
+                toPrices = swapPrices;
+            }
+            if (fromRows != rows) {
+                System.arraycopy(fromRows, 0, rows, 0, n);
+                System.arraycopy(fromPrices, 0, prices, 0, n);
+            }
+        }
+
+        int size() {
+            return rows.limit();
+        }
+
+        int row(int i) {
+            return rows.get(i);
+        }
+
+        double price(int i) {
+            return prices.get(i);
+        }
+
+        /**
+         * @return The number of leading entries priced at or below maxPrice
+         */
+        int upperBound(double maxPrice) {
+            int low = 0;
+            int high = prices.limit();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices.get(mid) <= maxPrice) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The price-sorted prefix of a category that fits a budget.
+     */
+    public static final class CategorySlice {
+        private final CategoryIndex index;
+        private final int size;
+
+        private CategorySlice(CategoryIndex index, int size) {
+            this.index = index;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int row(int i) {
+            return index.row(i);
+        }
+
+        public double price(int i) {
+            return index.price(i);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.querino.ai.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.model.Product;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Converts a CSV or JSONL product export into the columnar catalog format read by {@link MappedProductTable}.
+ * <p>
+ * Lines are parsed in parallel. CSV files need a header naming the {@code id}, {@code name}, {@code category},
+ * {@code description} and {@code price} columns (in any order); fields may be quoted, but a record must fit on one
+ * line. JSONL files hold one product object per line.
+ * <p>
+ * File layout (big-endian): magic, format version, row count, category count; the category dictionary as
+ * length-prefixed UTF-8 strings; one {@code int} category code per row; one {@code double} price per row;
+ * {@code 3 * rows + 1} {@code int} offsets of the id, name and description of each row into the blob; the UTF-8 blob.
+ * Then the indexes {@link CatalogSnapshot} would otherwise build at every startup: the normalized category count
+ * and, per category, its length-prefixed UTF-8 name, row count, rows sorted by price and their prices; the ID
+ * hash table's capacity, then its slots' rows ({@code -1} when empty) and the {@link #idHash(byte[]) hashes} of
+ * their IDs.
+ */
+public final class ColumnarCatalogWriter {
+
+    static final int MAGIC = 0x51434154;
+    static final int FORMAT_VERSION = 2;
+    /**
+     * Version without stored indexes; still readable, the indexes are then built when the file is loaded.
+     */
+    static final int UNINDEXED_FORMAT_VERSION = 1;
+    static final int STRINGS_PER_ROW = 3;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private ColumnarCatalogWriter() {
+    }
+
+    /**
+     * Converts a CSV ({@code .csv}) or JSONL (any other extension) export into a columnar catalog file.
+     * The target is written next to its final location and moved into place atomically, so a running service
+     * that maps the old file is not disturbed.
+     *
+     * @param source The CSV or JSONL export
+     * @param target The catalog file to write
+     * @return The number of products written
+     * @throws IOException If the source cannot be read or the target cannot be written
+     */
+    public static int convert(Path source, Path target) throws IOException {
+        boolean csv = source.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+        List<Product> products = csv ? parseCsv(source) : parseJsonLines(source);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            write(products, out);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return products.size();
+    }
+
+    /**
+     * Writes products in the columnar catalog format.
+     *
+     * @param products The products to write
+     * @param output The stream to write to; it is not closed
+     * @throws IOException If writing fails
+     */
+    public static void write(List<Product> products, OutputStream output) throws IOException {
+        int rows = products.size();
+        Map<String, Integer> codes = new HashMap<>();
+        List<byte[]> dictionary = new ArrayList<>();
+        int[] categoryCodes = new int[rows];
+        int[] offsets = new int[STRINGS_PER_ROW * rows + 1];
+        byte[][] strings = new byte[STRINGS_PER_ROW * rows][];
+        long blobSize = 0;
+        for (int row = 0; row < rows; row++) {
+            Product product = products.get(row);
+            String category = product.getCategory() == null ? "" : product.getCategory();
+            categoryCodes[row] = codes.computeIfAbsent(category, name -> {
+                dictionary.add(name.getBytes(StandardCharsets.UTF_8));
+                return dictionary.size() - 1;
+            });
+            strings[STRINGS_PER_ROW * row] = utf8(product.getId());
+            strings[STRINGS_PER_ROW * row + 1] = utf8(product.getName());
+            strings[STRINGS_PER_ROW * row + 2] = utf8(product.getDescription());
+        }
+        for (int i = 0; i < strings.length; i++) {
+            offsets[i] = (int) blobSize;
+            blobSize += strings[i].length;
+            if (blobSize > Integer.MAX_VALUE) {
+                throw new IOException("Catalog text exceeds 2 GB; split the catalog into several files");
+            }
+        }
+        offsets[strings.length] = (int) blobSize;
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(rows);
+        out.writeInt(dictionary.size());
+        for (byte[] category : dictionary) {
+            out.writeInt(category.length);
+            out.write(category);
+        }
+        for (int code : categoryCodes) {
+            out.writeInt(code);
+        }
+        for (Product product : products) {
+            out.writeDouble(product.getPrice());
+        }
+        for (int offset : offsets) {
+            out.writeInt(offset);
+        }
+        for (byte[] string : strings) {
+            out.write(string);
+        }
+        writeCategoryIndexes(CatalogSnapshot.CategoryIndex.build(new ListProductTable(products)), out);
+        writeIdIndex(strings, rows, out);
+        out.flush();
+    }
+
+    private static void writeCategoryIndexes(Map<String, CatalogSnapshot.CategoryIndex> categories,
+                                             DataOutputStream out) throws IOException {
+        out.writeInt(categories.size());
+        for (Map.Entry<String, CatalogSnapshot.CategoryIndex> category : new TreeMap<>(categories).entrySet()) {
+            byte[] name = utf8(category.getKey());
+            CatalogSnapshot.CategoryIndex index = category.getValue();
+            out.writeInt(name.length);
+            out.write(name);
+            out.writeInt(index.size());
+            for (int i = 0; i < index.size(); i++) {
+                out.writeInt(index.row(i));
+            }
+            for (int i = 0; i < index.size(); i++) {
+                out.writeDouble(index.price(i));
+            }
+        }
+    }
+
+    private static void writeIdIndex(byte[][] strings, int rows, DataOutputStream out) throws IOException {
+        int capacity = idIndexCapacity(rows);
+        int mask = capacity - 1;
+        int[] slots = new int[capacity];
+        int[] hashes = new int[capacity];
+        Arrays.fill(slots, -1);
+        for (int row = 0; row < rows; row++) {
+            byte[] id = strings[STRINGS_PER_ROW * row];
+            if (id.length == 0) {
+                continue;
+            }
+            int hash = idHash(id);
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                if (slots[slot] < 0) {
+                    slots[slot] = row;
+                    hashes[slot] = hash;
+                    break;
+                }
+                if (hashes[slot] == hash && Arrays.equals(strings[STRINGS_PER_ROW * slots[slot]], id)) {
+                    // Duplicate IDs: the last row wins, as with a map
+                    slots[slot] = row;
+                    break;
+                }
+            }
+        }
+        out.writeInt(capacity);
+        for (int slot : slots) {
+            out.writeInt(slot);
+        }
+        for (int hash : hashes) {
+            out.writeInt(hash);
+        }
+    }
+
+    /**
+     * @return A power of two at least twice the row count, so probes stay short
+     */
+    static int idIndexCapacity(int rows) {
+        return Integer.highestOneBit(Math.max(2, rows) * 2 - 1) << 1;
+    }
+
+    /**
+     * Hashes the UTF-8 bytes of a product ID (FNV-1a, then mixed), so lookups in a mapped file compare bytes and
+     * never decode the stored IDs.
+     *
+     * @param id The UTF-8 bytes of the ID
+     * @return The hash
+     */
+    static int idHash(byte[] id) {
+        int hash = 0x811c9dc5;
+        for (byte b : id) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<Product> parseJsonLines(Path source) throws IOException {
+        try (Stream<String> lines = Files.lines(source, StandardCharsets.UTF_8)) {
+            return lines.parallel()
+                .filter(line -> !line.isBlank())
+                .map(ColumnarCatalogWriter::parseJsonLine)
+                .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Product parseJsonLine(String line) {
+        try {
+            return OBJECT_MAPPER.readValue(line, Product.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid product line: " + line, e);
+        }
+    }
+
+    private static List<Product> parseCsv(Path source) throws IOException {
+        String header;
+        try (Stream<String> lines = Files.lines(source, StandardCharsets.UTF_8)) {
+            header = lines.findFirst().orElseThrow(() -> new IOException("Empty catalog file: " + source));
+        }
+        int[] columns = csvColumns(splitCsv(header));
+        try (Stream<String> lines = Files.lines(source, StandardCharsets.UTF_8)) {
+            // Files.lines splits UTF-8 files by byte ranges, so parsing runs on all cores
+            return lines.parallel()
+                .skip(1)
+                .filter(line -> !line.isBlank())
+                .map(line -> parseCsvLine(line, columns))
+                .toList();
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static int[] csvColumns(List<String> header) throws IOException {
+        String[] names = {"id", "name", "category", "description", "price"};
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            columns[i] = -1;
+            for (int column = 0; column < header.size(); column++) {
+                if (header.get(column).trim().equalsIgnoreCase(names[i])) {
+                    columns[i] = column;
+                }
+            }
+            if (columns[i] < 0 && i != 3) {
+                throw new IOException("CSV header is missing the '" + names[i] + "' column");
+            }
+        }
+        return columns;
+    }
+
+    private static Product parseCsvLine(String line, int[] columns) {
+        List<String> fields = splitCsv(line);
+        try {
+            return new Product(
+                field(fields, columns[0]),
+                field(fields, columns[1]),
+                field(fields, columns[2]),
+                field(fields, columns[3]),
+                Double.parseDouble(field(fields, columns[4]).trim()));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid product line: " + line, e);
+        }
+    }
+
+    private static String field(List<String> fields, int column) {
+        return column < 0 || column >= fields.size() ? null : fields.get(column);
+    }
+
+    /**
+     * Splits one CSV record, honouring double-quoted fields and doubled quotes inside them.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Converts an export from the command line: {@code ColumnarCatalogWriter <source.csv|source.jsonl> <target>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ColumnarCatalogWriter <source.csv|source.jsonl> <target>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        int rows = convert(Path.of(args[0]), Path.of(args[1]));
+        System.out.printf("Wrote %d products to %s in %d ms%n", rows, args[1], (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,42 @@
+package com.querino.ai.catalog;
+
+import com.querino.ai.model.Product;
+
+import java.util.List;
+
+/**
+ * Product table backed by a list of already materialized products.
+ */
+public class ListProductTable implements ProductTable {
+
+    private final Product[] products;
+
+    public ListProductTable(List<Product> products) {
+        this.products = products.toArray(new Product[0]);
+    }
+
+    @Override
+    public int size() {
+        return products.length;
+    }
+
+    @Override
+    public String getId(int row) {
+        return products[row].getId();
+    }
+
+    @Override
+    public String getCategory(int row) {
+        return products[row].getCategory();
+    }
+
+    @Override
+    public double getPrice(int row) {
+        return products[row].getPrice();
+    }
+
+    @Override
+    public Product getProduct(int row) {
+        return products[row];
+    }
+}
@@ -0,0 +1,229 @@
+package com.querino.ai.catalog;
+
+import com.querino.ai.model.Product;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Product table reading a columnar catalog file written by {@link ColumnarCatalogWriter} through a memory mapping.
+ * Opening the table maps the file and decodes only the category dictionary and the names of the stored category
+ * indexes; prices, IDs, names and descriptions are read from the mapping when asked for, and a {@link Product} is
+ * only built by {@link #getProduct(int)}. The page cache holds the data and the indexes, so neither the heap cost
+ * nor the startup time grows with the number of products.
+ */
+public class MappedProductTable implements ProductTable {
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int rows;
+    private final String[] categories;
+    private final int categoryCodesOffset;
+    private final int pricesOffset;
+    private final int offsetsOffset;
+    private final int blobOffset;
+    private final Map<String, CatalogSnapshot.CategoryIndex> categoryIndexes;
+    private final CatalogSnapshot.RowIndex idIndex;
+
+    private MappedProductTable(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.limit() < 16 || buffer.getInt(0) != ColumnarCatalogWriter.MAGIC) {
+            throw new IOException("Not a columnar catalog file: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != ColumnarCatalogWriter.FORMAT_VERSION && version != ColumnarCatalogWriter.UNINDEXED_FORMAT_VERSION) {
+            throw new IOException("Unsupported catalog format version " + version + ": " + file);
+        }
+        this.rows = buffer.getInt(8);
+        this.categories = new String[buffer.getInt(12)];
+        int position = 16;
+        for (int i = 0; i < categories.length; i++) {
+            int length = buffer.getInt(position);
+            categories[i] = readUtf8(position + 4, length);
+            position += 4 + length;
+        }
+        this.categoryCodesOffset = position;
+        this.pricesOffset = categoryCodesOffset + 4 * rows;
+        this.offsetsOffset = pricesOffset + 8 * rows;
+        this.blobOffset = offsetsOffset + 4 * (ColumnarCatalogWriter.STRINGS_PER_ROW * rows + 1);
+        if (blobOffset > buffer.limit() || blobOffset + (long) offset(ColumnarCatalogWriter.STRINGS_PER_ROW * rows) > buffer.limit()) {
+            throw new IOException("Truncated catalog file: " + file);
+        }
+        if (version == ColumnarCatalogWriter.UNINDEXED_FORMAT_VERSION) {
+            this.categoryIndexes = null;
+            this.idIndex = null;
+        } else {
+            Map<String, CatalogSnapshot.CategoryIndex> indexes = new HashMap<>();
+            try {
+                int idIndexOffset = readCategoryIndexes(
+                    blobOffset + offset(ColumnarCatalogWriter.STRINGS_PER_ROW * rows), indexes);
+                this.idIndex = new MappedIdIndex(idIndexOffset);
+            } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+                throw new IOException("Truncated catalog indexes: " + file, e);
+            }
+            this.categoryIndexes = indexes;
+        }
+    }
+
+    /**
+     * Maps the per-category views of the stored category indexes; only the names are decoded.
+     *
+     * @return The offset just past the category indexes
+     */
+    private int readCategoryIndexes(int position, Map<String, CatalogSnapshot.CategoryIndex> indexes) {
+        int count = buffer.getInt(position);
+        position += 4;
+        for (int i = 0; i < count; i++) {
+            int nameLength = buffer.getInt(position);
+            String name = readUtf8(position + 4, nameLength);
+            position += 4 + nameLength;
+            int size = buffer.getInt(position);
+            position += 4;
+            IntBuffer categoryRows = buffer.slice(position, 4 * size).asIntBuffer();
+            position += 4 * size;
+            DoubleBuffer prices = buffer.slice(position, 8 * size).asDoubleBuffer();
+            position += 8 * size;
+            indexes.put(name, new CatalogSnapshot.CategoryIndex(categoryRows, prices));
+        }
+        return position;
+    }
+
+    /**
+     * Maps a columnar catalog file.
+     *
+     * @param file The catalog file
+     * @return The mapped table
+     * @throws IOException If the file cannot be mapped or is not a valid catalog
+     */
+    public static MappedProductTable open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Catalog file exceeds 2 GB: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedProductTable(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Whether the file holds the category and ID indexes, so a snapshot needs no pass over the rows
+     */
+    boolean isIndexed() {
+        return idIndex != null;
+    }
+
+    Map<String, CatalogSnapshot.CategoryIndex> getCategoryIndexes() {
+        return categoryIndexes;
+    }
+
+    CatalogSnapshot.RowIndex getIdIndex() {
+        return idIndex;
+    }
+
+    @Override
+    public int size() {
+        return rows;
+    }
+
+    @Override
+    public String getId(int row) {
+        return string(row, 0);
+    }
+
+    @Override
+    public String getCategory(int row) {
+        return categories[buffer.getInt(categoryCodesOffset + 4 * row)];
+    }
+
+    @Override
+    public double getPrice(int row) {
+        return buffer.getDouble(pricesOffset + 8 * row);
+    }
+
+    @Override
+    public Product getProduct(int row) {
+        return new Product(getId(row), string(row, 1), getCategory(row), string(row, 2), getPrice(row));
+    }
+
+    private String string(int row, int column) {
+        int index = ColumnarCatalogWriter.STRINGS_PER_ROW * row + column;
+        int start = offset(index);
+        return readUtf8(blobOffset + start, offset(index + 1) - start);
+    }
+
+    private int offset(int index) {
+        return buffer.getInt(offsetsOffset + 4 * index);
+    }
+
+    /**
+     * The stored ID hash table. A lookup encodes the wanted ID once and compares it with the stored bytes, so no
+     * stored ID is ever decoded.
+     */
+    private final class MappedIdIndex implements CatalogSnapshot.RowIndex {
+        private final IntBuffer slots;
+        private final IntBuffer hashes;
+        private final int mask;
+
+        MappedIdIndex(int position) {
+            int capacity = buffer.getInt(position);
+            if (Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("ID index capacity is not a power of two: " + capacity);
+            }
+            this.slots = buffer.slice(position + 4, 4 * capacity).asIntBuffer();
+            this.hashes = buffer.slice(position + 4 + 4 * capacity, 4 * capacity).asIntBuffer();
+            this.mask = capacity - 1;
+        }
+
+        @Override
+        public int find(String productId) {
+            if (productId == null) {
+                return -1;
+            }
+            byte[] id = productId.getBytes(StandardCharsets.UTF_8);
+            int hash = ColumnarCatalogWriter.idHash(id);
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int row = slots.get(slot);
+                if (row < 0) {
+                    return -1;
+                }
+                if (hashes.get(slot) == hash && idEquals(row, id)) {
+                    return row;
+                }
+            }
+        }
+
+        private boolean idEquals(int row, byte[] id) {
+            int index = ColumnarCatalogWriter.STRINGS_PER_ROW * row;
+            int start = offset(index);
+            if (offset(index + 1) - start != id.length) {
+                return false;
+            }
+            int position = blobOffset + start;
+            for (int i = 0; i < id.length; i++) {
+                if (buffer.get(position + i) != id[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private String readUtf8(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
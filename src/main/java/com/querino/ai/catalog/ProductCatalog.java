@@ -0,0 +1,119 @@
+package com.querino.ai.catalog;
+
+import com.querino.ai.model.Product;
+import com.querino.ai.util.SampleDataProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory product catalog answering "categories X, Y under budget B" queries from precomputed indexes.
+ * Readers always work against one immutable {@link CatalogSnapshot}; a reload builds the next snapshot off to the
+ * side and publishes it with a single atomic swap, so queries are never paused or see a half-built index.
+ * <p>
+ * Large catalogs are loaded from a columnar file (see {@link ColumnarCatalogWriter}) that is memory-mapped at
+ * startup instead of parsed.
+ */
+@Component
+public class ProductCatalog {
+
+    private final AtomicReference<CatalogSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Path catalogFile;
+
+    @Autowired
+    public ProductCatalog(@Value("${recommendation.catalog.file:}") String catalogFile,
+                          @Value("${recommendation.catalog.load-sample-data:true}") boolean loadSampleData) {
+        this.catalogFile = catalogFile == null || catalogFile.isBlank() ? null : Path.of(catalogFile);
+        if (this.catalogFile != null) {
+            try {
+                reload();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map catalog file " + catalogFile, e);
+            }
+        } else {
+            swap(new ListProductTable(loadSampleData ? SampleDataProvider.createSampleCatalog() : List.of()));
+        }
+    }
+
+    public ProductCatalog(boolean loadSampleData) {
+        this(null, loadSampleData);
+    }
+
+    /**
+     * Indexes a new product table and atomically replaces the current catalog with it.
+     *
+     * @param table The products of the new catalog
+     * @return The published snapshot
+     */
+    public CatalogSnapshot swap(ProductTable table) {
+        CatalogSnapshot next = CatalogSnapshot.build(versions.incrementAndGet(), table);
+        snapshot.set(next);
+        return next;
+    }
+
+    /**
+     * Replaces the catalog with a list of products.
+     *
+     * @param products The products of the new catalog
+     * @return The published snapshot
+     */
+    public CatalogSnapshot replace(List<Product> products) {
+        return swap(new ListProductTable(products));
+    }
+
+    /**
+     * Maps a columnar catalog file and swaps it in.
+     *
+     * @param file The catalog file
+     * @return The published snapshot
+     * @throws IOException If the file cannot be mapped or is not a valid catalog
+     */
+    public CatalogSnapshot load(Path file) throws IOException {
+        return swap(MappedProductTable.open(file));
+    }
+
+    /**
+     * Maps the configured catalog file again, picking up a file replaced by {@link ColumnarCatalogWriter}.
+     *
+     * @return The published snapshot
+     * @throws IOException If the file cannot be mapped or is not a valid catalog
+     * @throws IllegalStateException If no catalog file is configured
+     */
+    public CatalogSnapshot reload() throws IOException {
+        if (catalogFile == null) {
+            throw new IllegalStateException("No catalog file configured (recommendation.catalog.file)");
+        }
+        return load(catalogFile);
+    }
+
+    /**
+     * Returns the current snapshot. Callers running several queries should hold on to it so that all of them see
+     * the same catalog version.
+     *
+     * @return The current catalog snapshot
+     */
+    public CatalogSnapshot current() {
+        return snapshot.get();
+    }
+
+    public Product findById(String productId) {
+        return current().findById(productId);
+    }
+
+    public int count(Collection<String> categories, Double budget) {
+        return current().count(categories, budget);
+    }
+
+    public List<Product> findProducts(Collection<String> categories, Double budget, int limit) {
+        return current().find(categories, budget, limit);
+    }
+}
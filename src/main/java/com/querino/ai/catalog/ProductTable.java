@@ -0,0 +1,41 @@
+package com.querino.ai.catalog;
+
+import com.querino.ai.model.Product;
+
+/**
+ * Row-oriented read access to a set of products. Rows are numbered from 0 to {@code size() - 1};
+ * implementations may store columns in any layout and only materialize a {@link Product} on request.
+ */
+public interface ProductTable {
+
+    /**
+     * @return The number of products in the table
+     */
+    int size();
+
+    /**
+     * @param row The row number
+     * @return The product ID of the row
+     */
+    String getId(int row);
+
+    /**
+     * @param row The row number
+     * @return The category of the row
+     */
+    String getCategory(int row);
+
+    /**
+     * @param row The row number
+     * @return The price of the row
+     */
+    double getPrice(int row);
+
+    /**
+     * Returns the product stored in a row, materializing it if the table does not hold Product instances.
+     *
+     * @param row The row number
+     * @return The product of the row
+     */
+    Product getProduct(int row);
+}
@@ -0,0 +1,49 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.model.BatchRecommendationResponse;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.service.BatchRecommendationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * REST controller for generating recommendations for many users in one call.
+ */
+@RestController
+@RequestMapping("/api/recommendations/batch")
+public class BatchRecommendationController {
+
+    private final BatchRecommendationService batchRecommendationService;
+
+    @Autowired
+    public BatchRecommendationController(BatchRecommendationService batchRecommendationService) {
+        this.batchRecommendationService = batchRecommendationService;
+    }
+
+    /**
+     * Endpoint for generating recommendations for a list of users. Results are returned in input order
+     * with per-item status and timing; a failed item does not fail the batch.
+     *
+     * @param requests The recommendation requests
+     * @param deadlineMillis Optional time budget for the whole batch in milliseconds
+     * @return The per-item results
+     */
+    @PostMapping
+    public CompletableFuture<ResponseEntity<BatchRecommendationResponse>> getBatchRecommendations(
+            @RequestBody List<RecommendationRequest> requests,
+            @RequestParam(required = false) Long deadlineMillis) {
+        Duration deadline = deadlineMillis == null ? null : Duration.ofMillis(deadlineMillis);
+        return batchRecommendationService.generateBatchRecommendations(requests, deadline)
+            .thenApply(ResponseEntity::ok);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidBatch(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
@@ -0,0 +1,36 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.cassette.CassetteChatModel;
+import com.querino.ai.cassette.CassettePostProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for the record/replay cassette of model answers.
+ */
+@RestController
+@RequestMapping("/api/cassette")
+public class CassetteController {
+
+    private final CassettePostProcessor cassettePostProcessor;
+
+    @Autowired
+    public CassetteController(CassettePostProcessor cassettePostProcessor) {
+        this.cassettePostProcessor = cassettePostProcessor;
+    }
+
+    /**
+     * Endpoint for the cassette's statistics.
+     *
+     * @return The recordings in the cassette and the answers recorded, replayed and missing, or 404 when the
+     *         cassette is off
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<CassetteChatModel.CassetteStatistics> stats() {
+        CassetteChatModel cassetteModel = cassettePostProcessor.getCassetteModel();
+        return cassetteModel == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(cassetteModel.stats());
+    }
+}
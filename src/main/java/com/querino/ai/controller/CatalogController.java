@@ -0,0 +1,100 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * REST controller for querying and reloading the product catalog.
+ */
+@RestController
+@RequestMapping("/api/catalog")
+public class CatalogController {
+
+    private final ProductCatalog productCatalog;
+
+    @Autowired
+    public CatalogController(ProductCatalog productCatalog) {
+        this.productCatalog = productCatalog;
+    }
+
+    /**
+     * Endpoint for finding products by category and budget, cheapest first.
+     *
+     * @param categories The categories to search; all categories if omitted
+     * @param maxPrice The maximum price; no limit if omitted
+     * @param limit The maximum number of products to return
+     * @return The matching products
+     */
+    @GetMapping("/products")
+    public ResponseEntity<List<Product>> findProducts(
+            @RequestParam(required = false) List<String> categories,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(productCatalog.findProducts(categories, maxPrice, Math.max(0, limit)));
+    }
+
+    /**
+     * Endpoint for looking up a single product.
+     *
+     * @param productId The product ID
+     * @return The product, or 404 if it is not in the catalog
+     */
+    @GetMapping("/products/{productId}")
+    public ResponseEntity<Product> getProduct(@PathVariable String productId) {
+        Product product = productCatalog.findById(productId);
+        return product == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(product);
+    }
+
+    /**
+     * Endpoint for replacing the whole catalog. In-flight queries finish against the previous version.
+     *
+     * @param products The products of the new catalog
+     * @return The version and size of the published catalog
+     */
+    @PutMapping("/products")
+    public ResponseEntity<Map<String, Object>> replaceProducts(@RequestBody List<Product> products) {
+        CatalogSnapshot snapshot = productCatalog.replace(products);
+        return ResponseEntity.ok(Map.of("version", snapshot.getVersion(), "size", snapshot.size()));
+    }
+
+    /**
+     * Endpoint for re-mapping the configured columnar catalog file after it has been rebuilt.
+     *
+     * @return The version and size of the published catalog, or 409 if no catalog file is configured
+     * @throws IOException If the file cannot be mapped
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<Map<String, Object>> reload() throws IOException {
+        CatalogSnapshot snapshot;
+        try {
+            snapshot = productCatalog.reload();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(Map.of("version", snapshot.getVersion(), "size", snapshot.size()));
+    }
+
+    /**
+     * Endpoint describing the current catalog version.
+     *
+     * @return The version, size and categories of the catalog
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        CatalogSnapshot snapshot = productCatalog.current();
+        return ResponseEntity.ok(Map.of(
+            "version", snapshot.getVersion(),
+            "size", snapshot.size(),
+            "categories", new TreeSet<>(snapshot.getCategories())));
+    }
+}
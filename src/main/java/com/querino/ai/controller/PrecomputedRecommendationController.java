@@ -0,0 +1,65 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.precompute.RecommendationPrecomputer;
+import com.querino.ai.precompute.RecommendationStore.StoredRecommendation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * REST controller serving precomputed recommendations.
+ */
+@RestController
+@RequestMapping("/api/recommendations")
+public class PrecomputedRecommendationController {
+
+    private final RecommendationPrecomputer precomputer;
+
+    @Autowired
+    public PrecomputedRecommendationController(RecommendationPrecomputer precomputer) {
+        this.precomputer = precomputer;
+    }
+
+    /**
+     * Endpoint returning the stored recommendation of a user without calling the model. The {@code Age} header
+     * tells how many seconds ago it was computed.
+     *
+     * @param userId The user ID
+     * @return The precomputed recommendation, or 404 if none has been computed yet
+     */
+    @GetMapping("/{userId}")
+    public ResponseEntity<Recommendation> getPrecomputed(@PathVariable String userId) {
+        StoredRecommendation stored = precomputer.lookup(userId);
+        if (stored == null) {
+            return ResponseEntity.notFound().build();
+        }
+        long ageSeconds = Math.max(0, (System.currentTimeMillis() - stored.computedAt()) / 1000);
+        return ResponseEntity.ok()
+            .header(HttpHeaders.AGE, Long.toString(ageSeconds))
+            .body(stored.recommendation());
+    }
+
+    /**
+     * Endpoint re-ranking the stale users now instead of waiting for the plan interval.
+     *
+     * @return The number of users planned for a refresh
+     */
+    @PostMapping("/precompute/plan")
+    public ResponseEntity<Map<String, Object>> plan() {
+        return ResponseEntity.ok(Map.of("planned", precomputer.plan()));
+    }
+
+    /**
+     * Endpoint reporting the store size, refresh progress and how often reads found a stored recommendation.
+     *
+     * @return The current precompute statistics
+     */
+    @GetMapping("/precompute/stats")
+    public ResponseEntity<RecommendationPrecomputer.PrecomputeStatistics> stats() {
+        return ResponseEntity.ok(precomputer.stats());
+    }
+}
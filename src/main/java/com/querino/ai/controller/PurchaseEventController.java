@@ -0,0 +1,91 @@
+package com.querino.ai.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.querino.ai.ingest.PurchaseEventIngestor;
+import com.querino.ai.model.PurchaseEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * REST controller for streaming live purchase events into the service.
+ */
+@RestController
+@RequestMapping("/api/events")
+public class PurchaseEventController {
+
+    private static final ObjectReader EVENT_READER = new ObjectMapper().readerFor(PurchaseEvent.class);
+
+    private final PurchaseEventIngestor ingestor;
+
+    @Autowired
+    public PurchaseEventController(PurchaseEventIngestor ingestor) {
+        this.ingestor = ingestor;
+    }
+
+    /**
+     * Endpoint accepting a stream of purchase events, one JSON object per line. Events are read and queued one
+     * at a time, so a full queue slows down reading the request body. If the queue stays full, the remaining
+     * events are refused with 429; {@code accepted + skipped} tells the client where to resume.
+     *
+     * @param body The NDJSON request body
+     * @return The number of accepted events and of events skipped for lacking a userId or productId
+     */
+    @PostMapping(value = "/purchases", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Map<String, Object>> ingestPurchases(InputStream body) throws IOException {
+        long accepted = 0;
+        long skipped = 0;
+        try (MappingIterator<PurchaseEvent> events = EVENT_READER.readValues(body)) {
+            while (events.hasNextValue()) {
+                PurchaseEvent event = events.nextValue();
+                boolean queued;
+                try {
+                    queued = ingestor.offer(event);
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                    continue;
+                }
+                if (!queued) {
+                    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(result(accepted, skipped, "ingestion queue is full"));
+                }
+                accepted++;
+            }
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().body(result(accepted, skipped, e.getOriginalMessage()));
+        }
+        return ResponseEntity.ok(result(accepted, skipped, null));
+    }
+
+    /**
+     * Endpoint reporting ingestion throughput, rejections and how far applying the events lags behind.
+     *
+     * @return The current ingestion statistics
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<PurchaseEventIngestor.IngestStatistics> stats() {
+        return ResponseEntity.ok(ingestor.stats());
+    }
+
+    private static Map<String, Object> result(long accepted, long skipped, String error) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("accepted", accepted);
+        result.put("skipped", skipped);
+        if (error != null) {
+            result.put("error", error);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.retrieval.QuantizedEmbeddingIndex;
+import com.querino.ai.vector.ProductVectorIndex.SimilarProduct;
+import com.querino.ai.vector.QuantizedVectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for matching users to products and to each other over the quantized embeddings.
+ */
+@RestController
+@RequestMapping("/api/vectors")
+public class QuantizedSearchController {
+
+    private final QuantizedEmbeddingIndex quantizedEmbeddingIndex;
+
+    @Autowired
+    public QuantizedSearchController(QuantizedEmbeddingIndex quantizedEmbeddingIndex) {
+        this.quantizedEmbeddingIndex = quantizedEmbeddingIndex;
+    }
+
+    /**
+     * Endpoint for finding the catalog products closest to a user's taste.
+     *
+     * @param userId The user ID
+     * @param limit The maximum number of products to return
+     * @return The products with their scores, or 404 if the user has no profile
+     */
+    @GetMapping("/users/{userId}/products")
+    public ResponseEntity<List<SimilarProduct>> productsForUser(@PathVariable String userId,
+                                                                @RequestParam(defaultValue = "10") int limit) {
+        List<SimilarProduct> products = quantizedEmbeddingIndex.productsForUser(userId, Math.max(0, limit));
+        return products == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(products);
+    }
+
+    /**
+     * Endpoint for finding the users with the most similar taste.
+     *
+     * @param userId The user ID
+     * @param limit The maximum number of users to return
+     * @return The user IDs with their scores, or 404 if the user has no profile
+     */
+    @GetMapping("/users/{userId}/similar")
+    public ResponseEntity<List<QuantizedVectors.Match>> similarUsers(@PathVariable String userId,
+                                                                     @RequestParam(defaultValue = "10") int limit) {
+        List<QuantizedVectors.Match> users = quantizedEmbeddingIndex.similarUsers(userId, Math.max(0, limit));
+        return users == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(users);
+    }
+
+    /**
+     * Endpoint measuring the memory saved by quantization and the recall lost, against exact float search.
+     *
+     * @param queries The maximum number of queries to evaluate
+     * @param k The number of neighbours per query
+     * @return The memory footprint, compression ratio and recall with and without re-ranking
+     */
+    @GetMapping("/quantization/report")
+    public ResponseEntity<QuantizedVectors.QuantizationReport> report(@RequestParam(defaultValue = "100") int queries,
+                                                                      @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(quantizedEmbeddingIndex.report(Math.max(1, queries), Math.max(1, k)));
+    }
+}
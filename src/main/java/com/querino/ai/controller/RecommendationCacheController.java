@@ -0,0 +1,56 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.cache.RecommendationCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * REST controller for inspecting and invalidating the recommendation cache.
+ */
+@RestController
+@RequestMapping("/api/recommendations/cache")
+public class RecommendationCacheController {
+
+    private final RecommendationCache recommendationCache;
+
+    @Autowired
+    public RecommendationCacheController(RecommendationCache recommendationCache) {
+        this.recommendationCache = recommendationCache;
+    }
+
+    /**
+     * Endpoint exposing hit, miss and eviction counters used to size the cache.
+     *
+     * @return The current cache statistics
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<RecommendationCache.CacheStatistics> stats() {
+        return ResponseEntity.ok(recommendationCache.stats());
+    }
+
+    /**
+     * Endpoint for dropping all cached recommendations of a user.
+     *
+     * @param userId The user whose cached recommendations should be removed
+     * @return The number of removed entries
+     */
+    @DeleteMapping("/{userId}")
+    public ResponseEntity<Map<String, Object>> invalidateUser(@PathVariable String userId) {
+        int removed = recommendationCache.invalidateUser(userId);
+        return ResponseEntity.ok(Map.of("userId", userId, "removed", removed));
+    }
+
+    /**
+     * Endpoint for clearing the whole cache.
+     *
+     * @return An empty response
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> invalidateAll() {
+        recommendationCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,11 +1,24 @@
 package com.querino.ai.controller;
 
+import com.querino.ai.cache.RequestCoalescer;
+import com.querino.ai.engine.UnknownEngineException;
 import com.querino.ai.model.Recommendation;
 import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.prompt.PromptPipeline;
+import com.querino.ai.retrieval.CandidateRetriever;
+import com.querino.ai.service.HybridRecommender;
+import com.querino.ai.service.PromptPacker;
 import com.querino.ai.service.RecommendationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST controller for handling shopping recommendation requests.
@@ -33,6 +46,93 @@ public class RecommendationController {
         return ResponseEntity.ok(recommendation);
     }
 
+    /**
+     * Asynchronous variant of {@link #getRecommendations}: the servlet thread is released while the model call
+     * is in flight. Responds with 503 when the node already has too many model calls queued.
+     *
+     * @param request The recommendation request containing user preferences and purchase history
+     * @return A future completed with the recommendation response
+     */
+    @PostMapping("/async")
+    public CompletableFuture<ResponseEntity<Recommendation>> getRecommendationsAsync(@RequestBody RecommendationRequest request) {
+        return recommendationService.generateRecommendationsAsync(request)
+            .thenApply(ResponseEntity::ok)
+            .exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof RejectedExecutionException) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                }
+                throw error instanceof CompletionException completion ? completion : new CompletionException(cause);
+            });
+    }
+
+    /**
+     * Streaming endpoint that emits each recommended product as soon as the model has generated it,
+     * as newline-delimited JSON or server-sent events depending on the Accept header.
+     *
+     * @param request The recommendation request containing user preferences and purchase history
+     * @return A stream of recommended products
+     */
+    @PostMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Recommendation.RecommendedProduct> streamRecommendations(@RequestBody RecommendationRequest request) {
+        return recommendationService.streamRecommendations(request);
+    }
+
+    /**
+     * Endpoint reporting how many concurrent identical requests were collapsed onto a single model call.
+     *
+     * @return The current coalescing statistics
+     */
+    @GetMapping("/coalescing/stats")
+    public ResponseEntity<RequestCoalescer.CoalescingStatistics> coalescingStats() {
+        return ResponseEntity.ok(recommendationService.getCoalescingStatistics());
+    }
+
+    /**
+     * Endpoint reporting how many users were packed into shared prompts and how many fell back to single calls.
+     *
+     * @return The current packing statistics, or 404 when prompt packing is disabled
+     */
+    @GetMapping("/packing/stats")
+    public ResponseEntity<PromptPacker.PackingStatistics> packingStats() {
+        PromptPacker.PackingStatistics stats = recommendationService.getPackingStatistics();
+        return stats == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Endpoint reporting the estimated token size of the user profiles sent to the model and how many purchases
+     * were rolled up into category summaries to stay within the budget.
+     *
+     * @return The current prompt statistics
+     */
+    @GetMapping("/prompt/stats")
+    public ResponseEntity<PromptPipeline.PromptStatistics> promptStats() {
+        return ResponseEntity.ok(recommendationService.getPromptStatistics());
+    }
+
+    /**
+     * Endpoint reporting how many catalog candidates were sent to the model and how many of its picks were not
+     * among them.
+     *
+     * @return The current retrieval statistics, or 404 when retrieval is disabled
+     */
+    @GetMapping("/retrieval/stats")
+    public ResponseEntity<CandidateRetriever.RetrievalStatistics> retrievalStats() {
+        CandidateRetriever.RetrievalStatistics stats = recommendationService.getRetrievalStatistics();
+        return stats == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Endpoint reporting how often the hybrid engine answered from the model and how often it fell back.
+     *
+     * @return The current hybrid statistics, or 404 when no fallback engine is available
+     */
+    @GetMapping("/hybrid/stats")
+    public ResponseEntity<HybridRecommender.HybridStatistics> hybridStats() {
+        HybridRecommender.HybridStatistics stats = recommendationService.getHybridStatistics();
+        return stats == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(stats);
+    }
+
     /**
      * Simple health check endpoint.
      *
@@ -42,4 +142,9 @@ public class RecommendationController {
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Shopping Recommendation Service is running!");
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(UnknownEngineException.class)
+    public ResponseEntity<String> handleUnknownEngine(UnknownEngineException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
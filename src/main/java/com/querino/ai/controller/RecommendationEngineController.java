@@ -0,0 +1,74 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.engine.CollaborativeFilteringEngine;
+import com.querino.ai.engine.ItemSimilarityModel;
+import com.querino.ai.engine.PopularityEngine;
+import com.querino.ai.engine.RecommendationEngines;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * REST controller for listing the recommendation engines and maintaining their models.
+ */
+@RestController
+@RequestMapping("/api/recommendations/engines")
+public class RecommendationEngineController {
+
+    private final RecommendationEngines recommendationEngines;
+    private final CollaborativeFilteringEngine collaborativeFilteringEngine;
+    private final PopularityEngine popularityEngine;
+
+    @Autowired
+    public RecommendationEngineController(RecommendationEngines recommendationEngines,
+                                          CollaborativeFilteringEngine collaborativeFilteringEngine,
+                                          PopularityEngine popularityEngine) {
+        this.recommendationEngines = recommendationEngines;
+        this.collaborativeFilteringEngine = collaborativeFilteringEngine;
+        this.popularityEngine = popularityEngine;
+    }
+
+    /**
+     * Endpoint listing the engines a request can select through its {@code engine} field.
+     *
+     * @return The engine names and the default engine
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> engines() {
+        return ResponseEntity.ok(Map.of(
+            "default", recommendationEngines.getDefaultEngine(),
+            "engines", recommendationEngines.getNames()));
+    }
+
+    /**
+     * Endpoint for rebuilding the collaborative-filtering model from all purchases recorded so far.
+     *
+     * @return The size of the rebuilt model
+     */
+    @PostMapping("/collaborative/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildCollaborativeModel() {
+        ItemSimilarityModel model = collaborativeFilteringEngine.rebuild();
+        return ResponseEntity.ok(Map.of("items", model.getItemCount(), "baskets", model.getBasketCount()));
+    }
+
+    /**
+     * Endpoint listing the most bought products of some categories under a budget, with their decayed number
+     * of recent purchases.
+     *
+     * @param categories The categories; all categories when omitted
+     * @param maxPrice The maximum price; any price when omitted
+     * @param limit The maximum number of products
+     * @return The most popular products, most bought first
+     */
+    @GetMapping("/popularity/top")
+    public ResponseEntity<List<PopularityEngine.PopularProduct>> topProducts(
+            @RequestParam(required = false) List<String> categories,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(popularityEngine.top(categories, maxPrice, limit, Set.of()));
+    }
+}
@@ -0,0 +1,57 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.vector.ProductVectorIndex;
+import com.querino.ai.vector.ProductVectorIndex.SimilarProduct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * REST controller for finding similar products through the vector index.
+ */
+@RestController
+@RequestMapping("/api/catalog")
+public class SimilarProductController {
+
+    private final ProductVectorIndex productVectorIndex;
+
+    @Autowired
+    public SimilarProductController(ProductVectorIndex productVectorIndex) {
+        this.productVectorIndex = productVectorIndex;
+    }
+
+    /**
+     * Endpoint for finding the products closest to a free-text description.
+     *
+     * @param query The description to search for
+     * @param limit The maximum number of products to return
+     * @param ef The search breadth; the configured default if omitted
+     * @return The most similar products with their scores
+     */
+    @GetMapping("/products/similar")
+    public ResponseEntity<List<SimilarProduct>> search(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "0") int ef) {
+        return ResponseEntity.ok(productVectorIndex.search(query, Math.max(0, limit), ef));
+    }
+
+    /**
+     * Endpoint for finding the products closest to a catalog product.
+     *
+     * @param productId The product ID
+     * @param limit The maximum number of products to return
+     * @param ef The search breadth; the configured default if omitted
+     * @return The most similar other products, or 404 if the product is not in the catalog
+     */
+    @GetMapping("/products/{productId}/similar")
+    public ResponseEntity<List<SimilarProduct>> similarTo(
+            @PathVariable String productId,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "0") int ef) {
+        List<SimilarProduct> similar = productVectorIndex.similarTo(productId, Math.max(0, limit), ef);
+        return similar == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(similar);
+    }
+}
@@ -0,0 +1,88 @@
+package com.querino.ai.controller;
+
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.profile.UserProfile;
+import com.querino.ai.profile.UserProfileStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST controller for reading and updating the server-side user profiles.
+ */
+@RestController
+@RequestMapping("/api/profiles")
+public class UserProfileController {
+
+    private final UserProfileStore userProfileStore;
+
+    @Autowired
+    public UserProfileController(UserProfileStore userProfileStore) {
+        this.userProfileStore = userProfileStore;
+    }
+
+    /**
+     * Endpoint returning the stored profile of a user.
+     *
+     * @param userId The user ID
+     * @return The profile, or 404 when the user is unknown
+     */
+    @GetMapping("/{userId}")
+    public ResponseEntity<UserProfile> getProfile(@PathVariable String userId) {
+        UserProfile profile = userProfileStore.get(userId);
+        return profile == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(profile);
+    }
+
+    /**
+     * Endpoint appending purchases to a user's profile.
+     *
+     * @param userId The user ID
+     * @param purchases The new purchases
+     * @return The updated profile
+     */
+    @PostMapping("/{userId}/purchases")
+    public ResponseEntity<UserProfile> addPurchases(@PathVariable String userId,
+                                                    @RequestBody List<PurchaseHistory> purchases) {
+        return ResponseEntity.ok(userProfileStore.recordPurchases(userId, purchases));
+    }
+
+    /**
+     * Endpoint replacing a user's interests, preferred categories and budget. Fields missing from the body are
+     * left unchanged; the purchase history of the body is ignored.
+     *
+     * @param userId The user ID
+     * @param preferences A request body carrying the new preferences
+     * @return The updated profile
+     */
+    @PutMapping("/{userId}")
+    public ResponseEntity<UserProfile> updatePreferences(@PathVariable String userId,
+                                                         @RequestBody RecommendationRequest preferences) {
+        return ResponseEntity.ok(userProfileStore.updatePreferences(userId, preferences.getInterests(),
+            preferences.getPreferredCategories(), preferences.getBudget()));
+    }
+
+    /**
+     * Endpoint writing a compacted snapshot now instead of waiting for the snapshot interval.
+     *
+     * @return The number of profiles written, or 409 when the store is not persistent
+     */
+    @PostMapping("/snapshot")
+    public ResponseEntity<Map<String, Object>> snapshot() throws IOException {
+        try {
+            return ResponseEntity.ok(Map.of("profiles", userProfileStore.snapshot()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidUser(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
@@ -0,0 +1,340 @@
+package com.querino.ai.engine;
+
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.util.SampleDataProvider;
+import com.querino.ai.util.StringIdMap;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item-to-item collaborative filtering: recommends products that were often bought together with the products in
+ * the request's purchase history. Serving only walks the precomputed neighbour lists of the purchased items, so a
+ * request is answered in well under a millisecond.
+ * <p>
+ * Purchase baskets are collected from purchase events (and, with {@code recommendation.cf.load-sample-data}, from
+ * the sample data at startup); learning from the unverified purchase histories of incoming requests is off unless
+ * {@code recommendation.cf.learn-from-requests} is set. Baskets are kept for the most recently active
+ * {@code recommendation.cf.max-users} users, each holding the latest {@code recommendation.cf.max-basket-size}
+ * items. The similarity model is rebuilt in the background when new
+ * purchases have been recorded and swapped in atomically.
+ */
+@Component
+public class CollaborativeFilteringEngine implements RecommendationEngine {
+
+    public static final String NAME = "collaborative";
+
+    private final ProductCatalog productCatalog;
+    private final int maxResults;
+    private final int maxNeighbours;
+    private final int maxBasketSize;
+    private final int maxUsers;
+    private final boolean learnFromRequests;
+    private final ScheduledExecutorService rebuildScheduler;
+
+    private final Object lock = new Object();
+    private final StringIdMap itemIds = new StringIdMap();
+    private final List<ItemInfo> items = new ArrayList<>();
+    private final Map<String, Basket> basketsByUser;
+    private boolean dirty;
+
+    private volatile Snapshot snapshot = new Snapshot(ItemSimilarityModel.build(List.of(), 0, 0, 0), new StringIdMap(), List.of());
+
+    @Autowired
+    public CollaborativeFilteringEngine(ProductCatalog productCatalog,
+                                        @Value("${recommendation.cf.max-results:5}") int maxResults,
+                                        @Value("${recommendation.cf.max-neighbours:50}") int maxNeighbours,
+                                        @Value("${recommendation.cf.max-basket-size:200}") int maxBasketSize,
+                                        @Value("${recommendation.cf.max-users:100000}") int maxUsers,
+                                        @Value("${recommendation.cf.learn-from-requests:false}") boolean learnFromRequests,
+                                        @Value("${recommendation.cf.load-sample-data:false}") boolean loadSampleData,
+                                        @Value("${recommendation.cf.rebuild-interval:1m}") Duration rebuildInterval) {
+        this.productCatalog = productCatalog;
+        this.maxResults = maxResults;
+        this.maxNeighbours = maxNeighbours;
+        this.maxBasketSize = maxBasketSize;
+        this.maxUsers = maxUsers;
+        this.basketsByUser = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Basket> eldest) {
+                if (size() > CollaborativeFilteringEngine.this.maxUsers) {
+                    dirty = true;
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.learnFromRequests = learnFromRequests;
+        if (loadSampleData) {
+            for (RecommendationRequest request : SampleDataProvider.createSamplePurchaseHistories()) {
+                recordPurchases(request.getUserId(), request.getPurchaseHistory());
+            }
+        }
+        rebuild();
+        if (rebuildInterval.isZero()) {
+            this.rebuildScheduler = null;
+        } else {
+            this.rebuildScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cf-model-rebuild");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = rebuildInterval.toMillis();
+            rebuildScheduler.scheduleWithFixedDelay(this::rebuildIfDirty, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (rebuildScheduler != null) {
+            rebuildScheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void observe(RecommendationRequest request) {
+        if (learnFromRequests && request.getUserId() != null && !request.getUserId().isBlank()) {
+            recordPurchases(request.getUserId(), request.getPurchaseHistory());
+        }
+    }
+
+    /**
+     * Adds purchases to a user's basket. They are picked up by the next model rebuild. A full basket drops its
+     * oldest items to make room, and the least recently active user's basket is dropped when there are too many
+     * users.
+     *
+     * @param userId The user who made the purchases
+     * @param purchases The purchased products, oldest first
+     */
+    @Override
+    public void recordPurchases(String userId, List<PurchaseHistory> purchases) {
+        if (purchases == null || purchases.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            Basket basket = basketsByUser.computeIfAbsent(userId, id -> new Basket());
+            for (PurchaseHistory purchase : purchases) {
+                if (purchase.getProductId() == null) {
+                    continue;
+                }
+                int item = itemIds.get(purchase.getProductId());
+                if (item < 0) {
+                    item = itemIds.add(purchase.getProductId());
+                    items.add(new ItemInfo(purchase.getProductId(), purchase.getProductName(), purchase.getCategory(),
+                        purchase.getPrice()));
+                }
+                if (basket.add(item, maxBasketSize)) {
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the similarity model if purchases were recorded since the last build.
+     */
+    public void rebuildIfDirty() {
+        boolean rebuild;
+        synchronized (lock) {
+            rebuild = dirty;
+        }
+        if (rebuild) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the similarity model from all recorded baskets and swaps it in.
+     *
+     * @return The new model
+     */
+    public ItemSimilarityModel rebuild() {
+        List<int[]> baskets;
+        StringIdMap ids;
+        List<ItemInfo> info;
+        synchronized (lock) {
+            baskets = new ArrayList<>(basketsByUser.size());
+            for (Basket basket : basketsByUser.values()) {
+                baskets.add(basket.items());
+            }
+            ids = itemIds.copy();
+            info = new ArrayList<>(items);
+            dirty = false;
+        }
+        ItemSimilarityModel model = ItemSimilarityModel.build(baskets, info.size(), maxNeighbours, maxBasketSize);
+        snapshot = new Snapshot(model, ids, info);
+        return model;
+    }
+
+    /**
+     * @return The number of users whose baskets are kept
+     */
+    public int getUserCount() {
+        synchronized (lock) {
+            return basketsByUser.size();
+        }
+    }
+
+    /**
+     * @return The similarity model currently used for serving
+     */
+    public ItemSimilarityModel getModel() {
+        return snapshot.model;
+    }
+
+    @Override
+    public Recommendation recommend(RecommendationRequest request) {
+        Snapshot current = snapshot;
+        ItemSimilarityModel model = current.model;
+        CatalogSnapshot catalog = productCatalog.current();
+
+        IntFloatMap purchased = new IntFloatMap();
+        if (request.getPurchaseHistory() != null) {
+            for (PurchaseHistory purchase : request.getPurchaseHistory()) {
+                int item = current.itemIds.get(purchase.getProductId());
+                if (item >= 0) {
+                    purchased.put(item, 1f);
+                }
+            }
+        }
+        int[] sources = purchased.keys();
+
+        // Score every neighbour of every purchased item
+        IntFloatMap scores = new IntFloatMap(64);
+        for (int source : sources) {
+            int[] neighbours = model.neighbours(source);
+            float[] weights = model.weights(source);
+            for (int i = 0; i < neighbours.length; i++) {
+                if (!purchased.containsKey(neighbours[i])) {
+                    scores.addTo(neighbours[i], weights[i]);
+                }
+            }
+        }
+
+        Set<String> preferred = new HashSet<>();
+        if (request.getPreferredCategories() != null) {
+            request.getPreferredCategories().forEach(category -> preferred.add(CatalogSnapshot.normalize(category)));
+        }
+        Double budget = request.getBudget();
+        ItemSimilarityModel.TopK top = new ItemSimilarityModel.TopK(maxResults);
+        scores.forEach((item, score) -> {
+            ItemInfo info = current.items.get(item);
+            int row = catalog.rowOf(info.id);
+            double price = row < 0 ? info.price : catalog.getTable().getPrice(row);
+            if (budget != null && price > budget) {
+                return;
+            }
+            String category = row < 0 ? info.category : catalog.getTable().getCategory(row);
+            top.offer(item, preferred.contains(CatalogSnapshot.normalize(category)) ? score * 1.5f : score);
+        });
+
+        List<Recommendation.RecommendedProduct> products = new ArrayList<>();
+        for (int item : top.keys()) {
+            ItemInfo info = describe(catalog, current.items.get(item));
+            String source = current.items.get(strongestSource(model, sources, item)).name;
+            products.add(new Recommendation.RecommendedProduct(info.id, info.name, info.category, info.price,
+                "Often bought together with " + (source == null ? "your previous purchases" : source)));
+        }
+        String reason = products.isEmpty()
+            ? "Not enough purchase history to find related products"
+            : "Based on what customers with similar purchases bought";
+        Recommendation recommendation = new Recommendation(request.getUserId(), products, reason);
+        recommendation.setEngine(NAME);
+        return recommendation;
+    }
+
+    /**
+     * Finds the purchased item most similar to a recommended item, to explain the recommendation.
+     */
+    private static int strongestSource(ItemSimilarityModel model, int[] sources, int item) {
+        int best = sources[0];
+        float bestWeight = -1f;
+        for (int source : sources) {
+            int[] neighbours = model.neighbours(source);
+            for (int i = 0; i < neighbours.length; i++) {
+                if (neighbours[i] == item && model.weights(source)[i] > bestWeight) {
+                    best = source;
+                    bestWeight = model.weights(source)[i];
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Prefers the catalog's current name and price over what was seen in purchase histories.
+     */
+    private static ItemInfo describe(CatalogSnapshot catalog, ItemInfo item) {
+        Product product = catalog.findById(item.id);
+        return product == null ? item : new ItemInfo(item.id, product.getName(), product.getCategory(), product.getPrice());
+    }
+
+    private record ItemInfo(String id, String name, String category, double price) {
+    }
+
+    /**
+     * A user's distinct items, least recently bought first. Not thread-safe.
+     */
+    private static final class Basket {
+        private final IntFloatMap members = new IntFloatMap();
+        private int[] order = new int[8];
+        private int size;
+
+        /**
+         * Makes an item the most recently bought one, dropping the least recently bought item when full.
+         *
+         * @return Whether the basket's contents changed, rather than only their order
+         */
+        boolean add(int item, int capacity) {
+            if (members.containsKey(item)) {
+                int position = 0;
+                while (order[position] != item) {
+                    position++;
+                }
+                System.arraycopy(order, position + 1, order, position, size - position - 1);
+                order[size - 1] = item;
+                return false;
+            }
+            if (size >= capacity) {
+                members.remove(order[0]);
+                System.arraycopy(order, 1, order, 0, --size);
+            }
+            if (size == order.length) {
+                order = Arrays.copyOf(order, Math.max(1, Math.min(capacity, size * 2)));
+            }
+            order[size++] = item;
+            members.put(item, 1f);
+            return true;
+        }
+
+        int[] items() {
+            return Arrays.copyOf(order, size);
+        }
+    }
+
+    private record Snapshot(ItemSimilarityModel model, StringIdMap itemIds, List<ItemInfo> items) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.querino.ai.engine;
+
+/**
+ * Count-min sketch: approximate weighted counts of string keys in fixed memory ({@code depth x width} doubles),
+ * however many distinct keys are added. An estimate never undercounts and overcounts by at most
+ * {@code e / width} of the total weight with probability {@code 1 - e^-depth}. Uses conservative update, which
+ * only raises the counters that are below the new estimate and so keeps overcounting low for skewed data.
+ * Not thread-safe.
+ */
+public final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final int mask;
+    private final double[] counts;
+    private double totalWeight;
+
+    /**
+     * @param width Counters per row; rounded up to a power of two
+     * @param depth Number of rows, each with its own hash function
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || width > 1 << 24 || depth < 1 || depth > 16) {
+            throw new IllegalArgumentException("Sketch width must be in [1, 2^24] and depth in [1, 16]");
+        }
+        int size = Integer.highestOneBit(width);
+        this.width = size < width ? size << 1 : size;
+        this.depth = depth;
+        this.mask = this.width - 1;
+        this.counts = new double[this.width * depth];
+    }
+
+    /**
+     * Adds weight to a key.
+     *
+     * @param key The key
+     * @param weight The weight to add, positive
+     * @return The key's new estimate
+     */
+    public double add(String key, double weight) {
+        long hash = hash(key);
+        double estimate = estimate(hash);
+        double updated = estimate + weight;
+        for (int row = 0; row < depth; row++) {
+            int index = index(hash, row);
+            if (counts[index] < updated) {
+                counts[index] = updated;
+            }
+        }
+        totalWeight += weight;
+        return updated;
+    }
+
+    /**
+     * @param key The key
+     * @return An upper bound of the weight added for the key
+     */
+    public double estimate(String key) {
+        return estimate(hash(key));
+    }
+
+    /**
+     * Multiplies every counter by a factor, e.g. to renormalize decayed weights.
+     *
+     * @param factor The factor
+     */
+    public void scale(double factor) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] *= factor;
+        }
+        totalWeight *= factor;
+    }
+
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    private double estimate(long hash) {
+        double min = Double.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[index(hash, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * Row {@code i} uses {@code h1 + i * h2}, which is as good as independent hash functions for a sketch.
+     */
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & mask);
+    }
+
+    private static long hash(String key) {
+        // MurmurHash3 finalizer, spreading the 32-bit string hash over 64 bits
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,89 @@
+package com.querino.ai.engine;
+
+import com.querino.ai.model.Product;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.retrieval.QuantizedEmbeddingIndex;
+import com.querino.ai.vector.ProductVectorIndex;
+import com.querino.ai.vector.ProductVectorIndex.SimilarProduct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recommends the catalog products whose embeddings are closest to the user's taste (interests, preferred
+ * categories and latest purchases, embedded by the {@link ProductVectorIndex}).
+ * <p>
+ * A request is a single brute-force scan over the 8-bit product embeddings of the {@link QuantizedEmbeddingIndex},
+ * which the SIMD kernels run at memory speed, followed by an exact re-rank of the shortlist. The engine keeps no
+ * vectors of its own. A few extra products are fetched to make up for products the user cannot afford.
+ */
+@Component
+public class EmbeddingEngine implements RecommendationEngine {
+
+    public static final String NAME = "embedding";
+
+    /**
+     * Products fetched per requested product, to leave room for over-budget products.
+     */
+    private static final int OVERFETCH = 4;
+
+    private final ProductVectorIndex productVectorIndex;
+    private final QuantizedEmbeddingIndex quantizedEmbeddingIndex;
+    private final int maxResults;
+
+    @Autowired
+    public EmbeddingEngine(ProductVectorIndex productVectorIndex,
+                           QuantizedEmbeddingIndex quantizedEmbeddingIndex,
+                           @Value("${recommendation.embedding.max-results:5}") int maxResults) {
+        this.productVectorIndex = productVectorIndex;
+        this.quantizedEmbeddingIndex = quantizedEmbeddingIndex;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Recommendation recommend(RecommendationRequest request) {
+        float[] query = productVectorIndex.embedTaste(request.getInterests(), request.getPreferredCategories(),
+            request.getPurchaseHistory());
+        if (query == null) {
+            Recommendation recommendation = new Recommendation(request.getUserId(), List.of(),
+                "Not enough known about your taste to find similar products");
+            recommendation.setEngine(NAME);
+            return recommendation;
+        }
+        Set<String> purchased = new HashSet<>();
+        if (request.getPurchaseHistory() != null) {
+            request.getPurchaseHistory().forEach(purchase -> purchased.add(purchase.getProductId()));
+        }
+
+        List<SimilarProduct> similar = quantizedEmbeddingIndex.productsLike(query,
+            request.getBudget() == null ? maxResults : maxResults * OVERFETCH, purchased);
+        List<Recommendation.RecommendedProduct> products = new ArrayList<>(maxResults);
+        for (SimilarProduct match : similar) {
+            Product product = match.product();
+            if (products.size() == maxResults) {
+                break;
+            }
+            if (request.getBudget() != null && product.getPrice() > request.getBudget()) {
+                continue;
+            }
+            products.add(new Recommendation.RecommendedProduct(product.getId(), product.getName(),
+                product.getCategory(), product.getPrice(), "Closest match to your interests and recent purchases"));
+        }
+        Recommendation recommendation = new Recommendation(request.getUserId(), products, products.isEmpty()
+            ? "No similar products within your budget"
+            : "Products most similar to what you like and bought");
+        recommendation.setEngine(NAME);
+        return recommendation;
+    }
+}
@@ -0,0 +1,137 @@
+package com.querino.ai.engine;
+
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rule-based recommender over the product catalog, cheap enough to answer within any page budget.
+ * Candidate categories are the categories of the user's most recent purchases, weighted by recency, plus the
+ * preferred categories; within them, products under the budget are ranked by category weight and by how close
+ * their price is to what the user usually spends. It serves as the fast path of the hybrid engine.
+ */
+@Component
+public class HeuristicEngine implements RecommendationEngine {
+
+    public static final String NAME = "heuristic";
+
+    private static final int RECENT_PURCHASES = 10;
+
+    private final ProductCatalog productCatalog;
+    private final int maxResults;
+
+    @Autowired
+    public HeuristicEngine(ProductCatalog productCatalog,
+                           @Value("${recommendation.heuristic.max-results:5}") int maxResults) {
+        this.productCatalog = productCatalog;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Recommendation recommend(RecommendationRequest request) {
+        CatalogSnapshot catalog = productCatalog.current();
+        List<PurchaseHistory> recent = recentPurchases(request);
+
+        Set<String> purchased = new HashSet<>();
+        Map<String, Double> categoryWeights = new LinkedHashMap<>();
+        Map<String, String> lastPurchaseByCategory = new LinkedHashMap<>();
+        double spent = 0;
+        for (int rank = 0; rank < recent.size(); rank++) {
+            PurchaseHistory purchase = recent.get(rank);
+            purchased.add(purchase.getProductId());
+            String category = CatalogSnapshot.normalize(purchase.getCategory());
+            categoryWeights.merge(category, 1.0 / (rank + 1), Double::sum);
+            lastPurchaseByCategory.putIfAbsent(category, purchase.getProductName());
+            spent += purchase.getPrice();
+        }
+        if (request.getPurchaseHistory() != null) {
+            request.getPurchaseHistory().forEach(purchase -> purchased.add(purchase.getProductId()));
+        }
+        if (request.getPreferredCategories() != null) {
+            for (String category : request.getPreferredCategories()) {
+                categoryWeights.merge(CatalogSnapshot.normalize(category), 1.0, Double::sum);
+            }
+        }
+        double typicalPrice = recent.isEmpty() ? 0 : spent / recent.size();
+
+        List<Scored> candidates = new ArrayList<>();
+        if (categoryWeights.isEmpty()) {
+            for (Product product : catalog.find(null, request.getBudget(), maxResults + purchased.size())) {
+                candidates.add(new Scored(product, 1.0, "Popular pick within your budget"));
+            }
+        }
+        categoryWeights.forEach((category, weight) -> {
+            String lastPurchase = lastPurchaseByCategory.get(category);
+            String reason = lastPurchase != null
+                ? "Goes well with your recent purchase of " + lastPurchase
+                : "Matches your interest in " + category;
+            for (Product product : catalog.find(List.of(category), request.getBudget(), maxResults * 4)) {
+                candidates.add(new Scored(product, weight * priceAffinity(product.getPrice(), typicalPrice), reason));
+            }
+        });
+
+        candidates.sort(Comparator.comparingDouble(Scored::score).reversed());
+        List<Recommendation.RecommendedProduct> products = new ArrayList<>(maxResults);
+        Set<String> seen = new HashSet<>();
+        for (Scored candidate : candidates) {
+            if (products.size() == maxResults) {
+                break;
+            }
+            Product product = candidate.product;
+            if (!purchased.contains(product.getId()) && seen.add(product.getId())) {
+                products.add(new Recommendation.RecommendedProduct(product.getId(), product.getName(),
+                    product.getCategory(), product.getPrice(), candidate.reason));
+            }
+        }
+        String reason = products.isEmpty()
+            ? "No catalog products match your categories and budget"
+            : "Based on your preferred categories and recent purchases";
+        Recommendation recommendation = new Recommendation(request.getUserId(), products, reason);
+        recommendation.setEngine(NAME);
+        return recommendation;
+    }
+
+    private static List<PurchaseHistory> recentPurchases(RecommendationRequest request) {
+        if (request.getPurchaseHistory() == null) {
+            return List.of();
+        }
+        // ISO dates sort lexicographically; purchases without a date count as oldest
+        return request.getPurchaseHistory().stream()
+            .sorted(Comparator.comparing((PurchaseHistory purchase) -> purchase.getPurchaseDate() == null ? "" : purchase.getPurchaseDate())
+                .reversed())
+            .limit(RECENT_PURCHASES)
+            .toList();
+    }
+
+    /**
+     * @return 1 for a price equal to what the user typically spends, falling towards 0.5 as it moves away
+     */
+    private static double priceAffinity(double price, double typicalPrice) {
+        if (typicalPrice <= 0) {
+            return 1.0;
+        }
+        return 0.5 + 0.5 / (1.0 + Math.abs(price - typicalPrice) / typicalPrice);
+    }
+
+    private record Scored(Product product, double score, String reason) {
+    }
+}
@@ -0,0 +1,195 @@
+package com.querino.ai.engine;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative {@code int} keys to {@code float} values, without boxing.
+ * Not thread-safe.
+ */
+public final class IntFloatMap {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private float[] values;
+    private int size;
+    private int mask;
+
+    public IntFloatMap() {
+        this(8);
+    }
+
+    /**
+     * @param expectedSize Number of entries the map should hold without resizing
+     */
+    public IntFloatMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(4, expectedSize * 4 / 3 + 1) * 2 - 1));
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new float[capacity];
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @param key A non-negative key
+     * @return The value mapped to the key, or 0 if there is none
+     */
+    public float get(int key) {
+        int slot = find(key);
+        return slot < 0 ? 0f : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Adds to the value of a key, inserting the key with the delta if it is absent.
+     *
+     * @param key A non-negative key
+     * @param delta The amount to add
+     * @return The new value
+     */
+    public float addTo(int key, float delta) {
+        int slot = slotFor(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = delta;
+            if (++size > (mask + 1) * 3 / 4) {
+                rehash();
+            }
+            return delta;
+        }
+        return values[slot] += delta;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key A non-negative key
+     * @param value The value
+     */
+    public void put(int key, float value) {
+        int slot = slotFor(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size > (mask + 1) * 3 / 4) {
+                rehash();
+            }
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key A non-negative key
+     * @return Whether the key was present
+     */
+    public boolean remove(int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        // Backward-shift deletion keeps probe sequences intact without tombstones
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Calls the consumer for every entry, in no particular order.
+     *
+     * @param consumer Receives each key and value
+     */
+    public void forEach(IntFloatConsumer consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return The keys, in no particular order
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int i = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (keys[slot] != EMPTY) {
+                result[i++] = keys[slot];
+            }
+        }
+        return result;
+    }
+
+    private int find(int key) {
+        int slot = slotFor(key);
+        return keys[slot] == EMPTY ? -1 : slot;
+    }
+
+    private int slotFor(int key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Keys must be non-negative: " + key);
+        }
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        float[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                int target = slotFor(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Receives the entries of an {@link IntFloatMap}.
+     */
+    @FunctionalInterface
+    public interface IntFloatConsumer {
+        void accept(int key, float value);
+    }
+}
@@ -0,0 +1,199 @@
+package com.querino.ai.engine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable item-item similarity model. Items are dense {@code int} IDs; each item keeps its most similar
+ * neighbours in parallel {@code int[]}/{@code float[]} arrays sorted by descending similarity.
+ * Similarity is the cosine of the items' purchase vectors: {@code co(a, b) / sqrt(n(a) * n(b))}.
+ */
+public final class ItemSimilarityModel {
+
+    private static final int[] NO_NEIGHBOURS = new int[0];
+    private static final float[] NO_WEIGHTS = new float[0];
+
+    private final int[][] neighbours;
+    private final float[][] weights;
+    private final int baskets;
+
+    private ItemSimilarityModel(int[][] neighbours, float[][] weights, int baskets) {
+        this.neighbours = neighbours;
+        this.weights = weights;
+        this.baskets = baskets;
+    }
+
+    /**
+     * Builds the model from purchase baskets.
+     *
+     * @param baskets The distinct items bought by each user
+     * @param itemCount The number of item IDs; every item in a basket must be below it
+     * @param maxNeighbours How many neighbours to keep per item
+     * @param maxBasketSize Baskets are truncated to this many items, which bounds the quadratic pair count
+     * @return The model
+     */
+    public static ItemSimilarityModel build(List<int[]> baskets, int itemCount, int maxNeighbours, int maxBasketSize) {
+        int[] purchases = new int[itemCount];
+        IntFloatMap[] cooccurrences = new IntFloatMap[itemCount];
+        for (int[] basket : baskets) {
+            int n = Math.min(basket.length, maxBasketSize);
+            for (int i = 0; i < n; i++) {
+                int a = basket[i];
+                purchases[a]++;
+                for (int j = i + 1; j < n; j++) {
+                    int b = basket[j];
+                    cooccurrences(cooccurrences, a).addTo(b, 1f);
+                    cooccurrences(cooccurrences, b).addTo(a, 1f);
+                }
+            }
+        }
+
+        int[][] neighbours = new int[itemCount][];
+        float[][] weights = new float[itemCount][];
+        for (int item = 0; item < itemCount; item++) {
+            IntFloatMap counts = cooccurrences[item];
+            if (counts == null) {
+                neighbours[item] = NO_NEIGHBOURS;
+                weights[item] = NO_WEIGHTS;
+                continue;
+            }
+            TopK top = new TopK(maxNeighbours);
+            int a = item;
+            counts.forEach((b, count) -> top.offer(b, (float) (count / Math.sqrt((double) purchases[a] * purchases[b]))));
+            neighbours[item] = top.keys();
+            weights[item] = top.scores();
+        }
+        return new ItemSimilarityModel(neighbours, weights, baskets.size());
+    }
+
+    private static IntFloatMap cooccurrences(IntFloatMap[] cooccurrences, int item) {
+        IntFloatMap counts = cooccurrences[item];
+        if (counts == null) {
+            counts = new IntFloatMap();
+            cooccurrences[item] = counts;
+        }
+        return counts;
+    }
+
+    /**
+     * @return The number of items the model knows
+     */
+    public int getItemCount() {
+        return neighbours.length;
+    }
+
+    /**
+     * @return The number of baskets the model was built from
+     */
+    public int getBasketCount() {
+        return baskets;
+    }
+
+    /**
+     * @param item An item ID
+     * @return The item's neighbours, most similar first; empty for unknown items
+     */
+    public int[] neighbours(int item) {
+        return item >= 0 && item < neighbours.length ? neighbours[item] : NO_NEIGHBOURS;
+    }
+
+    /**
+     * @param item An item ID
+     * @return The similarities matching {@link #neighbours(int)}
+     */
+    public float[] weights(int item) {
+        return item >= 0 && item < weights.length ? weights[item] : NO_WEIGHTS;
+    }
+
+    /**
+     * Keeps the K highest-scoring keys using a min-heap of primitive arrays.
+     */
+    static final class TopK {
+        private final int[] heapKeys;
+        private final float[] heapScores;
+        private int size;
+        private boolean sorted;
+
+        TopK(int k) {
+            this.heapKeys = new int[Math.max(0, k)];
+            this.heapScores = new float[Math.max(0, k)];
+        }
+
+        void offer(int key, float score) {
+            if (size < heapKeys.length) {
+                heapKeys[size] = key;
+                heapScores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && score > heapScores[0]) {
+                heapKeys[0] = key;
+                heapScores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * @return The kept keys, highest score first; empties the heap
+         */
+        int[] keys() {
+            sortDescending();
+            return Arrays.copyOf(heapKeys, size);
+        }
+
+        /**
+         * @return The scores matching {@link #keys()}
+         */
+        float[] scores() {
+            return Arrays.copyOf(heapScores, size);
+        }
+
+        private void sortDescending() {
+            if (sorted) {
+                return;
+            }
+            // Heap sort in place: repeatedly move the minimum to the end
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                int saved = size;
+                size = end;
+                siftDown(0);
+                size = saved;
+            }
+            sorted = true;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapScores[parent] <= heapScores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) {
+                    return;
+                }
+                int smallest = left + 1 < size && heapScores[left + 1] < heapScores[left] ? left + 1 : left;
+                if (heapScores[i] <= heapScores[smallest]) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int key = heapKeys[a];
+            heapKeys[a] = heapKeys[b];
+            heapKeys[b] = key;
+            float score = heapScores[a];
+            heapScores[a] = heapScores[b];
+            heapScores[b] = score;
+        }
+    }
+}
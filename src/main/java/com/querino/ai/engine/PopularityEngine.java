@@ -0,0 +1,280 @@
+package com.querino.ai.engine;
+
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.util.SampleDataProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recommends what other shoppers bought most recently, for users the other engines know too little about.
+ * <p>
+ * Purchases reported through {@link #recordPurchases} are counted in fixed memory: count-min sketches estimate
+ * the purchase frequency of every product and category, and Space-Saving lists keep the top products overall
+ * and per category (up to a maximum number of categories). Counts decay exponentially with the configured
+ * half-life, so recent purchases dominate; this is done by giving each purchase a weight that doubles every
+ * half-life and dividing by the current weight when reading, with an occasional rescale to keep the numbers
+ * small. Requests themselves are not counted, because they repeat the user's whole history every time.
+ */
+@Component
+public class PopularityEngine implements RecommendationEngine {
+
+    public static final String NAME = "popularity";
+
+    /**
+     * Rescale once weights reach 2^32, far from double overflow but still exact enough.
+     */
+    private static final double RESCALE_THRESHOLD = 0x1p32;
+
+    private final ProductCatalog productCatalog;
+    private final int maxResults;
+    private final int topK;
+    private final int maxCategories;
+    private final double halfLifeMillis;
+    private final Clock clock;
+
+    private final Object lock = new Object();
+    private final CountMinSketch productCounts;
+    private final CountMinSketch categoryCounts;
+    private final SpaceSavingTopK<PurchaseHistory> trending;
+    private final Map<String, SpaceSavingTopK<PurchaseHistory>> trendingByCategory = new HashMap<>();
+    private long landmarkMillis;
+
+    @Autowired
+    public PopularityEngine(ProductCatalog productCatalog,
+                            @Value("${recommendation.popularity.max-results:5}") int maxResults,
+                            @Value("${recommendation.popularity.top-k:64}") int topK,
+                            @Value("${recommendation.popularity.max-categories:256}") int maxCategories,
+                            @Value("${recommendation.popularity.sketch-width:4096}") int sketchWidth,
+                            @Value("${recommendation.popularity.sketch-depth:4}") int sketchDepth,
+                            @Value("${recommendation.popularity.half-life:7d}") Duration halfLife,
+                            @Value("${recommendation.popularity.load-sample-data:false}") boolean loadSampleData) {
+        this(productCatalog, maxResults, topK, maxCategories, sketchWidth, sketchDepth, halfLife, loadSampleData,
+            Clock.systemUTC());
+    }
+
+    public PopularityEngine(ProductCatalog productCatalog, int maxResults, int topK, int maxCategories,
+                            int sketchWidth, int sketchDepth, Duration halfLife, boolean loadSampleData, Clock clock) {
+        this.productCatalog = productCatalog;
+        this.maxResults = maxResults;
+        this.topK = topK;
+        this.maxCategories = maxCategories;
+        this.halfLifeMillis = halfLife.toMillis();
+        this.clock = clock;
+        this.productCounts = new CountMinSketch(sketchWidth, sketchDepth);
+        this.categoryCounts = new CountMinSketch(sketchWidth, sketchDepth);
+        // The overall list holds the top products of several categories
+        this.trending = new SpaceSavingTopK<>(topK * 4);
+        this.landmarkMillis = clock.millis();
+        if (loadSampleData) {
+            for (RecommendationRequest request : SampleDataProvider.createSamplePurchaseHistories()) {
+                recordPurchases(request.getUserId(), request.getPurchaseHistory());
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Counts purchases as happening now.
+     *
+     * @param userId The user who made the purchases
+     * @param purchases The purchased products
+     */
+    @Override
+    public void recordPurchases(String userId, List<PurchaseHistory> purchases) {
+        if (purchases == null || purchases.isEmpty()) {
+            return;
+        }
+        synchronized (lock) {
+            double weight = currentWeight();
+            for (PurchaseHistory purchase : purchases) {
+                String productId = purchase.getProductId();
+                if (productId == null) {
+                    continue;
+                }
+                String category = CatalogSnapshot.normalize(purchase.getCategory());
+                productCounts.add(productId, weight);
+                trending.add(productId, purchase, weight);
+                if (!category.isEmpty()) {
+                    categoryCounts.add(category, weight);
+                    SpaceSavingTopK<PurchaseHistory> topInCategory = trendingByCategory.get(category);
+                    if (topInCategory == null && trendingByCategory.size() < maxCategories) {
+                        topInCategory = new SpaceSavingTopK<>(topK);
+                        trendingByCategory.put(category, topInCategory);
+                    }
+                    if (topInCategory != null) {
+                        topInCategory.add(productId, purchase, weight);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the most bought products of the given categories (or of all categories) under a budget.
+     *
+     * @param categories The categories, or null or empty for all
+     * @param budget The maximum price, or null for any price
+     * @param limit The maximum number of products
+     * @param excluded Product IDs to leave out
+     * @return The products with their decayed purchase counts, most bought first
+     */
+    public List<PopularProduct> top(Collection<String> categories, Double budget, int limit, Set<String> excluded) {
+        List<SpaceSavingTopK.Entry<PurchaseHistory>> candidates = new ArrayList<>();
+        Map<String, Double> estimates = new HashMap<>();
+        double weight;
+        synchronized (lock) {
+            weight = currentWeight();
+            if (categories == null || categories.isEmpty()) {
+                candidates.addAll(trending.top(Integer.MAX_VALUE));
+            } else {
+                for (String category : categories) {
+                    SpaceSavingTopK<PurchaseHistory> topInCategory = trendingByCategory.get(CatalogSnapshot.normalize(category));
+                    if (topInCategory != null) {
+                        candidates.addAll(topInCategory.top(Integer.MAX_VALUE));
+                    }
+                }
+            }
+            for (SpaceSavingTopK.Entry<PurchaseHistory> candidate : candidates) {
+                // Both structures overcount; the smaller estimate is the tighter one
+                estimates.put(candidate.key(), Math.min(candidate.count(), productCounts.estimate(candidate.key())));
+            }
+        }
+
+        List<PopularProduct> products = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (SpaceSavingTopK.Entry<PurchaseHistory> candidate : candidates) {
+            if ((excluded != null && excluded.contains(candidate.key())) || !seen.add(candidate.key())) {
+                continue;
+            }
+            PurchaseHistory lastPurchase = candidate.value();
+            Product product = productCatalog.findById(candidate.key());
+            PopularProduct popular = product != null
+                ? new PopularProduct(product.getId(), product.getName(), product.getCategory(), product.getPrice(), 0)
+                : new PopularProduct(lastPurchase.getProductId(), lastPurchase.getProductName(),
+                    lastPurchase.getCategory(), lastPurchase.getPrice(), 0);
+            if (budget != null && popular.price() > budget) {
+                continue;
+            }
+            products.add(popular.withRecentPurchases(estimates.get(candidate.key()) / weight));
+        }
+        products.sort(Comparator.comparingDouble(PopularProduct::recentPurchases).reversed());
+        return products.size() > limit ? new ArrayList<>(products.subList(0, limit)) : products;
+    }
+
+    /**
+     * @param category A category
+     * @return The decayed number of recent purchases in the category
+     */
+    public double categoryPurchases(String category) {
+        synchronized (lock) {
+            return categoryCounts.estimate(CatalogSnapshot.normalize(category)) / currentWeight();
+        }
+    }
+
+    @Override
+    public Recommendation recommend(RecommendationRequest request) {
+        Set<String> categories = categoriesOf(request);
+        Set<String> purchased = new HashSet<>();
+        if (request.getPurchaseHistory() != null) {
+            request.getPurchaseHistory().forEach(purchase -> purchased.add(purchase.getProductId()));
+        }
+        List<PopularProduct> popular = top(categories, request.getBudget(), maxResults, purchased);
+        if (popular.isEmpty() && !categories.isEmpty()) {
+            // Nothing bought recently in the user's categories: fall back to what is popular overall
+            categories = Set.of();
+            popular = top(null, request.getBudget(), maxResults, purchased);
+        }
+
+        List<Recommendation.RecommendedProduct> products = new ArrayList<>(popular.size());
+        for (PopularProduct product : popular) {
+            products.add(new Recommendation.RecommendedProduct(product.productId(), product.productName(),
+                product.category(), product.price(),
+                "One of the most bought " + CatalogSnapshot.normalize(product.category()) + " products right now"));
+        }
+        String reason = products.isEmpty()
+            ? "No recently popular products within your budget"
+            : categories.isEmpty()
+                ? "Popular with other shoppers right now"
+                : "Popular with other shoppers in your favourite categories";
+        Recommendation recommendation = new Recommendation(request.getUserId(), products, reason);
+        recommendation.setEngine(NAME);
+        return recommendation;
+    }
+
+    /**
+     * The preferred categories, plus the tracked categories the user's interests mention.
+     */
+    private Set<String> categoriesOf(RecommendationRequest request) {
+        Set<String> categories = new LinkedHashSet<>();
+        if (request.getPreferredCategories() != null) {
+            request.getPreferredCategories().forEach(category -> categories.add(CatalogSnapshot.normalize(category)));
+        }
+        if (request.getInterests() != null && !request.getInterests().isEmpty()) {
+            synchronized (lock) {
+                for (String interest : request.getInterests()) {
+                    String normalized = CatalogSnapshot.normalize(interest);
+                    if (normalized.isEmpty()) {
+                        continue;
+                    }
+                    for (String category : trendingByCategory.keySet()) {
+                        if (category.contains(normalized) || normalized.contains(category)) {
+                            categories.add(category);
+                        }
+                    }
+                }
+            }
+        }
+        return categories;
+    }
+
+    /**
+     * Weight of a purchase made now, relative to the landmark. Must be called while holding the lock.
+     */
+    private double currentWeight() {
+        long now = clock.millis();
+        double weight = Math.pow(2, (now - landmarkMillis) / halfLifeMillis);
+        if (weight >= RESCALE_THRESHOLD) {
+            double factor = 1 / weight;
+            productCounts.scale(factor);
+            categoryCounts.scale(factor);
+            trending.scale(factor);
+            trendingByCategory.values().forEach(topInCategory -> topInCategory.scale(factor));
+            landmarkMillis = now;
+            weight = 1;
+        }
+        return weight;
+    }
+
+    /**
+     * A popular product with its estimated number of recent purchases (decayed by the half-life).
+     */
+    public record PopularProduct(String productId, String productName, String category, double price,
+                                 double recentPurchases) {
+
+        PopularProduct withRecentPurchases(double recentPurchases) {
+            return new PopularProduct(productId, productName, category, price, recentPurchases);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.querino.ai.engine;
+
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+
+import java.util.List;
+
+/**
+ * A recommender that answers without calling the language model. Engines are selected by name, per request through
+ * {@link RecommendationRequest#getEngine()} or as the configured default (see {@link RecommendationEngines}).
+ */
+public interface RecommendationEngine {
+
+    /**
+     * @return The name used to select this engine
+     */
+    String getName();
+
+    /**
+     * Recommends products for a request.
+     *
+     * @param request The recommendation request containing user preferences and purchase history
+     * @return A recommendation in the same shape as the language model's
+     */
+    Recommendation recommend(RecommendationRequest request);
+
+    /**
+     * Lets the engine learn from a request, whichever engine ends up answering it.
+     *
+     * @param request A recommendation request received by the service
+     */
+    default void observe(RecommendationRequest request) {
+    }
+
+    /**
+     * Lets the engine learn from purchases reported outside of recommendation requests.
+     *
+     * @param userId The user who made the purchases
+     * @param purchases The purchased products
+     */
+    default void recordPurchases(String userId, List<PurchaseHistory> purchases) {
+    }
+}
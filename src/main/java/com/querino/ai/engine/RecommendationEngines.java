@@ -0,0 +1,156 @@
+package com.querino.ai.engine;
+
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Registry of the available recommendation engines. The language model is the built-in engine named
+ * {@value #LLM}; it is served by {@link com.querino.ai.service.RecommendationService} itself and therefore has no
+ * {@link RecommendationEngine} instance here. The same holds for {@value #HYBRID}, which races the language model
+ * against a fallback engine under a latency budget.
+ */
+@Component
+public class RecommendationEngines {
+
+    public static final String LLM = "llm";
+    public static final String HYBRID = "hybrid";
+
+    private final Map<String, RecommendationEngine> engines = new LinkedHashMap<>();
+    private final String defaultEngine;
+    private final String coldStartEngine;
+
+    public RecommendationEngines(List<RecommendationEngine> engines, String defaultEngine) {
+        this(engines, defaultEngine, "");
+    }
+
+    @Autowired
+    public RecommendationEngines(List<RecommendationEngine> engines,
+                                 @Value("${recommendation.engine.default:llm}") String defaultEngine,
+                                 @Value("${recommendation.engine.cold-start:}") String coldStartEngine) {
+        for (RecommendationEngine engine : engines) {
+            this.engines.put(engine.getName().toLowerCase(Locale.ROOT), engine);
+        }
+        this.defaultEngine = defaultEngine.trim().toLowerCase(Locale.ROOT);
+        if (!isKnown(this.defaultEngine)) {
+            throw new IllegalStateException("Unknown default recommendation engine: " + defaultEngine);
+        }
+        this.coldStartEngine = coldStartEngine == null || coldStartEngine.isBlank()
+            ? null : coldStartEngine.trim().toLowerCase(Locale.ROOT);
+        if (this.coldStartEngine != null && !isKnown(this.coldStartEngine)) {
+            throw new IllegalStateException("Unknown cold-start recommendation engine: " + coldStartEngine);
+        }
+    }
+
+    /**
+     * Registry with the language model as the only engine.
+     *
+     * @return A registry without any additional engine
+     */
+    public static RecommendationEngines llmOnly() {
+        return new RecommendationEngines(List.of(), LLM);
+    }
+
+    /**
+     * Resolves the name of the engine that should answer a request: the engine the request names, else the
+     * cold-start engine (if configured) for requests without any signal (no purchases, interests or preferred
+     * categories), else the default engine.
+     *
+     * @param request The recommendation request
+     * @return The lower-case engine name: {@value #LLM}, {@value #HYBRID} or the name of a registered engine
+     * @throws UnknownEngineException If the request names an unknown engine
+     */
+    public String resolve(RecommendationRequest request) {
+        if (request.getEngine() == null || request.getEngine().isBlank()) {
+            return coldStartEngine != null && isColdStart(request) ? coldStartEngine : defaultEngine;
+        }
+        String name = request.getEngine().trim().toLowerCase(Locale.ROOT);
+        if (!isKnown(name)) {
+            throw new UnknownEngineException("Unknown recommendation engine: " + request.getEngine());
+        }
+        return name;
+    }
+
+    private static boolean isColdStart(RecommendationRequest request) {
+        return isEmpty(request.getPurchaseHistory()) && isEmpty(request.getInterests())
+            && isEmpty(request.getPreferredCategories());
+    }
+
+    private static boolean isEmpty(List<?> values) {
+        return values == null || values.isEmpty();
+    }
+
+    private boolean isKnown(String name) {
+        return LLM.equals(name) || HYBRID.equals(name) || engines.containsKey(name);
+    }
+
+    /**
+     * Passes a request to every engine so that they can learn from it.
+     *
+     * @param request A recommendation request received by the service
+     */
+    public void observe(RecommendationRequest request) {
+        for (RecommendationEngine engine : engines.values()) {
+            engine.observe(request);
+        }
+    }
+
+    /**
+     * Passes purchases reported outside of recommendation requests to every engine. An engine that fails does not
+     * keep the purchases from the engines after it.
+     *
+     * @param userId The user who made the purchases
+     * @param purchases The purchased products
+     * @throws RuntimeException The first engine failure, with any later ones suppressed, once every engine was called
+     */
+    public void recordPurchases(String userId, List<PurchaseHistory> purchases) {
+        RuntimeException failure = null;
+        for (RecommendationEngine engine : engines.values()) {
+            try {
+                engine.recordPurchases(userId, purchases);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public String getDefaultEngine() {
+        return defaultEngine;
+    }
+
+    /**
+     * @return The names of all selectable engines, the language model first
+     */
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>(engines.size() + 2);
+        names.add(LLM);
+        names.add(HYBRID);
+        names.addAll(engines.keySet());
+        return names;
+    }
+
+    /**
+     * Looks up an engine by name.
+     *
+     * @param name The engine name
+     * @return The engine, or null if there is no such engine (or it is the language model or the hybrid)
+     */
+    public RecommendationEngine get(String name) {
+        return name == null ? null : engines.get(name.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,106 @@
+package com.querino.ai.engine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Heavy hitters with the Space-Saving algorithm: tracks at most {@code capacity} keys; a new key replaces the
+ * one with the smallest count and inherits that count as its possible overcount ({@code error}). Every key whose
+ * true weight exceeds {@code total / capacity} is guaranteed to be tracked. Each key carries the latest value
+ * added with it. Not thread-safe.
+ *
+ * @param <V> The value kept with each key
+ */
+public final class SpaceSavingTopK<V> {
+
+    private final int capacity;
+    private final Map<String, Counter<V>> counters;
+
+    public SpaceSavingTopK(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Adds weight to a key.
+     *
+     * @param key The key
+     * @param value The value to keep with the key
+     * @param weight The weight to add, positive
+     */
+    public void add(String key, V value, double weight) {
+        Counter<V> counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() < capacity) {
+                counter = new Counter<>(key, 0, 0);
+            } else {
+                // A linear scan is cheaper than maintaining an ordered structure for the small capacities used here
+                Counter<V> min = null;
+                for (Counter<V> candidate : counters.values()) {
+                    if (min == null || candidate.count < min.count) {
+                        min = candidate;
+                    }
+                }
+                counters.remove(min.key);
+                counter = new Counter<>(key, min.count, min.count);
+            }
+            counters.put(key, counter);
+        }
+        counter.count += weight;
+        counter.value = value;
+    }
+
+    /**
+     * @param limit The maximum number of entries
+     * @return The tracked keys with the largest counts, largest first
+     */
+    public List<Entry<V>> top(int limit) {
+        List<Entry<V>> entries = new ArrayList<>(counters.size());
+        for (Counter<V> counter : counters.values()) {
+            entries.add(new Entry<>(counter.key, counter.value, counter.count, counter.error));
+        }
+        entries.sort(Comparator.comparingDouble((Entry<V> entry) -> entry.count).reversed());
+        return entries.size() > limit ? entries.subList(0, limit) : entries;
+    }
+
+    /**
+     * Multiplies every count by a factor, e.g. to renormalize decayed weights.
+     *
+     * @param factor The factor
+     */
+    public void scale(double factor) {
+        for (Counter<V> counter : counters.values()) {
+            counter.count *= factor;
+            counter.error *= factor;
+        }
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    /**
+     * A tracked key. Its true weight lies between {@code count - error} and {@code count}.
+     */
+    public record Entry<V>(String key, V value, double count, double error) {
+    }
+
+    private static final class Counter<V> {
+        private final String key;
+        private V value;
+        private double count;
+        private double error;
+
+        private Counter(String key, double count, double error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.querino.ai.engine;
+
+/**
+ * Thrown when a request selects a recommendation engine that does not exist or is not available on this node.
+ */
+public class UnknownEngineException extends IllegalArgumentException {
+
+    public UnknownEngineException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,124 @@
+package com.querino.ai.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producer threads and a single consumer thread, backed by a ring buffer.
+ * <p>
+ * Every slot carries a sequence number telling whose turn it is: a producer claims the next position with a CAS
+ * on the tail and may fill the slot once its sequence equals that position; the consumer may take it once the
+ * sequence is one higher, and hands the slot to the next lap by advancing the sequence by the capacity.
+ * Producers never block; {@link #offer(Object)} fails when the ring is full.
+ *
+ * @param <E> The element type
+ */
+public class BoundedMpscQueue<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * Written by the consumer only; volatile so that {@link #size()} can be read from any thread.
+     */
+    private volatile long head;
+
+    /**
+     * @param capacity The minimum capacity; rounded up to a power of two
+     */
+    public BoundedMpscQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element if there is room. Safe to call from any thread.
+     *
+     * @param element The element, not null
+     * @return false if the queue is full
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    // Publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds an element from the previous lap
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element. Must only be called from the consumer thread.
+     *
+     * @return The element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        // Hands the slot back to the producers for the next lap
+        sequences.set(index, position + elements.length);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Removes up to {@code max} elements in order and passes them to the consumer. Must only be called from the
+     * consumer thread.
+     *
+     * @param consumer Receives the elements
+     * @param max The maximum number of elements to remove
+     * @return The number of elements removed
+     */
+    public int drain(Consumer<? super E> consumer, int max) {
+        int drained = 0;
+        E element;
+        while (drained < max && (element = poll()) != null) {
+            consumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return The number of queued elements; approximate while producers or the consumer are active
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, elements.length));
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+}
@@ -0,0 +1,297 @@
+package com.querino.ai.ingest;
+
+import com.querino.ai.engine.RecommendationEngines;
+import com.querino.ai.model.PurchaseEvent;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.profile.UserProfileStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Applies live purchase events to the user profiles and the recommendation engines.
+ * <p>
+ * Producers (request threads reading event streams) put events into a bounded lock-free queue; a single
+ * consumer thread drains it in micro-batches, groups each batch by user and applies it with one profile-log
+ * write and one engine update per user. When the queue is full, {@link #offer(PurchaseEvent)} waits up to the
+ * offer timeout for room, which slows the producer down, and then gives up so that the caller can shed load.
+ */
+@Component
+public class PurchaseEventIngestor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PurchaseEventIngestor.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long RETRY_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final UserProfileStore userProfileStore;
+    private final RecommendationEngines recommendationEngines;
+    private final BoundedMpscQueue<QueuedEvent> queue;
+    private final int batchSize;
+    private final long offerTimeoutNanos;
+    private final Thread consumer;
+
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    /**
+     * Written by the consumer thread only.
+     */
+    private volatile long lagNanos;
+    private volatile long maxLagNanos;
+
+    @Autowired
+    public PurchaseEventIngestor(UserProfileStore userProfileStore,
+                                 RecommendationEngines recommendationEngines,
+                                 @Value("${recommendation.ingest.queue-capacity:65536}") int queueCapacity,
+                                 @Value("${recommendation.ingest.batch-size:4096}") int batchSize,
+                                 @Value("${recommendation.ingest.offer-timeout:100ms}") Duration offerTimeout) {
+        this.userProfileStore = userProfileStore;
+        this.recommendationEngines = recommendationEngines;
+        this.queue = new BoundedMpscQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.consumer = new Thread(this::consume, "purchase-ingest");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Stops accepting events, applies what is still queued and stops the consumer thread.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Queues an event, waiting up to the offer timeout while the queue is full.
+     *
+     * @param event The purchase event
+     * @return false if the queue stayed full or the ingestor is closed; the event was not accepted
+     * @throws IllegalArgumentException If the event has no user ID or product ID
+     */
+    public boolean offer(PurchaseEvent event) {
+        if (event.getUserId() == null || event.getUserId().isBlank()
+            || event.getProductId() == null || event.getProductId().isBlank()) {
+            throw new IllegalArgumentException("A purchase event needs a userId and a productId");
+        }
+        if (!running) {
+            rejected.increment();
+            return false;
+        }
+        QueuedEvent queued = new QueuedEvent(event, System.nanoTime());
+        if (!queue.offer(queued)) {
+            throttled.increment();
+            long deadline = queued.enqueuedAt + offerTimeoutNanos;
+            do {
+                LockSupport.parkNanos(RETRY_PARK_NANOS);
+                if (System.nanoTime() - deadline > 0) {
+                    rejected.increment();
+                    return false;
+                }
+            } while (!queue.offer(queued));
+        }
+        received.increment();
+        if (idle) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private void consume() {
+        List<QueuedEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            if (queue.drain(batch::add, batchSize) == 0) {
+                if (!running) {
+                    return;
+                }
+                // Producers unpark the consumer when they see it idle; the timeout covers the race in between
+                idle = true;
+                if (queue.size() == 0) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    private void apply(List<QueuedEvent> batch) {
+        Map<String, List<PurchaseHistory>> purchasesByUser = new LinkedHashMap<>();
+        long oldest = batch.get(0).enqueuedAt;
+        for (QueuedEvent queued : batch) {
+            purchasesByUser.computeIfAbsent(queued.event.getUserId(), userId -> new ArrayList<>(2))
+                .add(queued.event.toPurchaseHistory());
+        }
+        // Failed events are not retried: a failure here is a bug or a broken profile log, neither of which goes
+        // away on retry. They are counted instead, and the rest of the batch still reaches every engine.
+        boolean profilesFailed = false;
+        long failedEvents = 0;
+        try {
+            userProfileStore.recordPurchases(purchasesByUser);
+        } catch (RuntimeException e) {
+            profilesFailed = true;
+            failedEvents = batch.size();
+            logger.warn("Could not record a batch of {} purchase events in the user profiles", batch.size(), e);
+        }
+        for (Map.Entry<String, List<PurchaseHistory>> entry : purchasesByUser.entrySet()) {
+            try {
+                recommendationEngines.recordPurchases(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                if (!profilesFailed) {
+                    failedEvents += entry.getValue().size();
+                }
+                logger.warn("Could not pass {} purchase events of user {} to the engines", entry.getValue().size(),
+                    entry.getKey(), e);
+            }
+        }
+        if (failedEvents > 0) {
+            failed.add(failedEvents);
+            failedBatches.increment();
+        }
+        applied.add(batch.size() - failedEvents);
+        batches.increment();
+        long lag = System.nanoTime() - oldest;
+        lagNanos = lag;
+        if (lag > maxLagNanos) {
+            maxLagNanos = lag;
+        }
+    }
+
+    /**
+     * Returns how many events were accepted, applied, lost and rejected, and how far the consumer lags behind.
+     *
+     * @return The current ingestion statistics
+     */
+    public IngestStatistics stats() {
+        return new IngestStatistics(received.sum(), applied.sum(), failed.sum(), rejected.sum(), throttled.sum(),
+            batches.sum(), failedBatches.sum(), queue.size(), queue.capacity(),
+            TimeUnit.NANOSECONDS.toMillis(lagNanos), TimeUnit.NANOSECONDS.toMillis(maxLagNanos));
+    }
+
+    private record QueuedEvent(PurchaseEvent event, long enqueuedAt) {
+    }
+
+    /**
+     * Point-in-time view of the ingestion counters.
+     */
+    public static class IngestStatistics {
+        private final long received;
+        private final long applied;
+        private final long failed;
+        private final long rejected;
+        private final long throttled;
+        private final long batches;
+        private final long failedBatches;
+        private final int queueDepth;
+        private final int queueCapacity;
+        private final long lagMillis;
+        private final long maxLagMillis;
+
+        public IngestStatistics(long received, long applied, long failed, long rejected, long throttled,
+                                long batches, long failedBatches, int queueDepth, int queueCapacity, long lagMillis,
+                                long maxLagMillis) {
+            this.received = received;
+            this.applied = applied;
+            this.failed = failed;
+            this.rejected = rejected;
+            this.throttled = throttled;
+            this.batches = batches;
+            this.failedBatches = failedBatches;
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.lagMillis = lagMillis;
+            this.maxLagMillis = maxLagMillis;
+        }
+
+        public long getReceived() {
+            return received;
+        }
+
+        /**
+         * @return Events stored in the profiles and passed to every engine
+         */
+        public long getApplied() {
+            return applied;
+        }
+
+        /**
+         * @return Events taken from the queue that the profiles or an engine failed to record; they are not retried
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return Events turned away because the queue stayed full for the whole offer timeout
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return Events that found the queue full and had to wait for room
+         */
+        public long getThrottled() {
+            return throttled;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * @return Batches with at least one failed event
+         */
+        public long getFailedBatches() {
+            return failedBatches;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        /**
+         * @return Time the oldest event of the last applied batch spent in the queue
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        public long getMaxLagMillis() {
+            return maxLagMillis;
+        }
+
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) (applied + failed) / batches;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.querino.ai.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A request answered with an error recommendation instead of the model's.
+ */
+@Name("com.querino.ai.Fallback")
+@Label("Fallback Taken")
+@Category(PipelineEvents.CATEGORY)
+@Description("A request answered with an error recommendation instead of the model's")
+@StackTrace(false)
+public class FallbackEvent extends jdk.jfr.Event {
+
+    @Label("User ID Hash")
+    long userIdHash;
+
+    @Label("Reason")
+    String reason;
+
+    public static void emit(String userId, String reason) {
+        FallbackEvent event = new FallbackEvent();
+        if (event.shouldCommit()) {
+            event.userIdHash = PipelineEvents.userIdHash(userId);
+            event.reason = reason;
+            event.commit();
+        }
+    }
+}
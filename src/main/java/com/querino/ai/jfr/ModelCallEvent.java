@@ -0,0 +1,59 @@
+package com.querino.ai.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.prompt.Prompt;
+
+/**
+ * An upstream model call: the event starts when the call is made and ends when the whole answer has arrived or
+ * the call failed. Most of a request's wall time is spent here, waiting on the network, where sampling
+ * profilers see nothing.
+ */
+@Name("com.querino.ai.ModelCall")
+@Label("Model Call")
+@Category(PipelineEvents.CATEGORY)
+@Description("A call to the chat model, from sending the prompt to the end of the answer")
+@StackTrace(false)
+public class ModelCallEvent extends jdk.jfr.Event {
+
+    @Label("Streamed")
+    boolean streamed;
+
+    @Label("Prompt Characters")
+    int promptChars;
+
+    @Label("Response Characters")
+    int responseChars;
+
+    @Label("Prompt Tokens")
+    @Description("As reported by the provider, 0 when not reported")
+    int promptTokens;
+
+    @Label("Completion Tokens")
+    @Description("As reported by the provider, 0 when not reported")
+    int completionTokens;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    /**
+     * @param usage The token usage the provider reported, may be null
+     * @param response The answer's text, or null when the call failed
+     */
+    public void finish(Prompt prompt, boolean streamed, Usage usage, String response) {
+        end();
+        if (shouldCommit()) {
+            this.streamed = streamed;
+            this.promptChars = PipelineEvents.chars(prompt);
+            this.responseChars = response == null ? 0 : response.length();
+            this.promptTokens = usage == null || usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+            this.completionTokens = usage == null || usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens();
+            this.succeeded = response != null;
+            commit();
+        }
+    }
+}
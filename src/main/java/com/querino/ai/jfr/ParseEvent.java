@@ -0,0 +1,41 @@
+package com.querino.ai.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The model's answer parsed into recommendations.
+ */
+@Name("com.querino.ai.Parse")
+@Label("Answer Parsed")
+@Category(PipelineEvents.CATEGORY)
+@Description("The model's answer parsed into recommendations")
+@StackTrace(false)
+public class ParseEvent extends jdk.jfr.Event {
+
+    @Label("Response Characters")
+    int responseChars;
+
+    @Label("Recommendations")
+    @Description("Recommendations in the answer: 1, or one per user of a packed prompt")
+    int recommendations;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    /**
+     * @param recommendations Recommendations parsed, or -1 when the answer could not be parsed
+     */
+    public void finish(String response, int recommendations) {
+        end();
+        if (shouldCommit()) {
+            this.responseChars = response == null ? 0 : response.length();
+            this.recommendations = Math.max(0, recommendations);
+            this.succeeded = recommendations >= 0;
+            commit();
+        }
+    }
+}
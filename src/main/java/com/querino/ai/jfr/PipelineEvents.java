@@ -0,0 +1,50 @@
+package com.querino.ai.jfr;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+
+/**
+ * Helpers shared by the recommendation pipeline's flight recorder events.
+ * <p>
+ * Every event follows the usual JFR pattern: {@code begin()} before the work, then a {@code finish(...)} that
+ * ends the event and fills its fields only when {@code shouldCommit()} holds. When no recording is running,
+ * or the event is disabled in it, no field is computed and no hash or size is taken.
+ */
+public final class PipelineEvents {
+
+    /**
+     * The category every event is listed under in JDK Mission Control.
+     */
+    static final String CATEGORY = "Querino";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private PipelineEvents() {
+    }
+
+    /**
+     * Hashes a user ID, so events can be grouped by user without recording who the user is.
+     *
+     * @param userId The user ID, may be null
+     * @return The 64-bit FNV-1a hash of the ID, or 0 for null
+     */
+    public static long userIdHash(String userId) {
+        if (userId == null) {
+            return 0;
+        }
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < userId.length(); i++) {
+            hash = (hash ^ userId.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    static int chars(Prompt prompt) {
+        int chars = 0;
+        for (Message message : prompt.getInstructions()) {
+            chars += message.getText() == null ? 0 : message.getText().length();
+        }
+        return chars;
+    }
+}
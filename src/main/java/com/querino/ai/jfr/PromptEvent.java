@@ -0,0 +1,43 @@
+package com.querino.ai.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.ai.chat.prompt.Prompt;
+
+/**
+ * The request rendered into the prompt sent to the model.
+ */
+@Name("com.querino.ai.Prompt")
+@Label("Prompt Rendered")
+@Category(PipelineEvents.CATEGORY)
+@Description("A recommendation request rendered into a prompt")
+@StackTrace(false)
+public class PromptEvent extends jdk.jfr.Event {
+
+    @Label("User ID Hash")
+    long userIdHash;
+
+    @Label("Messages")
+    int messages;
+
+    @Label("Prompt Characters")
+    int promptChars;
+
+    @Label("Candidates")
+    @Description("Shortlisted products the model must pick from, 0 when it recommends freely")
+    int candidates;
+
+    public void finish(String userId, Prompt prompt, int candidates) {
+        end();
+        if (shouldCommit()) {
+            this.userIdHash = PipelineEvents.userIdHash(userId);
+            this.messages = prompt.getInstructions().size();
+            this.promptChars = PipelineEvents.chars(prompt);
+            this.candidates = candidates;
+            commit();
+        }
+    }
+}
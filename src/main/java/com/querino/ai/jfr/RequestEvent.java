@@ -0,0 +1,46 @@
+package com.querino.ai.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A whole recommendation request, from reaching the service to its answer.
+ */
+@Name("com.querino.ai.Request")
+@Label("Recommendation Request")
+@Category(PipelineEvents.CATEGORY)
+@Description("A recommendation request answered by the service")
+@StackTrace(false)
+public class RequestEvent extends jdk.jfr.Event {
+
+    @Label("User ID Hash")
+    long userIdHash;
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Source")
+    @Description("Where the answer came from: cache, model or engine")
+    String source;
+
+    @Label("Purchases")
+    int purchases;
+
+    @Label("Products")
+    int products;
+
+    public void finish(String userId, String engine, String source, int purchases, int products) {
+        end();
+        if (shouldCommit()) {
+            this.userIdHash = PipelineEvents.userIdHash(userId);
+            this.engine = engine;
+            this.source = source;
+            this.purchases = purchases;
+            this.products = products;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.querino.ai.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the pipeline events of a flight recording and breaks request latency down by stage: count, total, share
+ * of the request time, mean and percentiles of each stage, plus fallbacks by reason and the tokens reported by the
+ * model. Run it on a {@code .jfr} file: {@code StageBreakdown recording.jfr}.
+ */
+public final class StageBreakdown {
+
+    /**
+     * Stages in the order they run; the whole request comes last.
+     */
+    private static final List<String> STAGES = List.of("hydrate", "route", "cache", "retrieval", "prompt", "model",
+        "parse", "ground", "request");
+
+    private final Map<String, List<Long>> durations = new LinkedHashMap<>();
+    private final Map<String, Long> fallbacks = new TreeMap<>();
+    private long promptTokens;
+    private long completionTokens;
+    private long failedModelCalls;
+
+    private StageBreakdown() {
+        for (String stage : STAGES) {
+            durations.put(stage, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Reads a recording.
+     *
+     * @param file A {@code .jfr} file
+     * @return The breakdown of the pipeline events in it; empty when it holds none
+     */
+    public static StageBreakdown read(Path file) throws IOException {
+        StageBreakdown breakdown = new StageBreakdown();
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                breakdown.add(recording.readEvent());
+            }
+        }
+        return breakdown;
+    }
+
+    private void add(RecordedEvent event) {
+        long nanos = event.getDuration().toNanos();
+        switch (event.getEventType().getName()) {
+            case "com.querino.ai.Stage" -> durations.computeIfAbsent(event.getString("stage"), stage -> new ArrayList<>())
+                .add(nanos);
+            case "com.querino.ai.Prompt" -> durations.get("prompt").add(nanos);
+            case "com.querino.ai.ModelCall" -> {
+                durations.get("model").add(nanos);
+                promptTokens += event.getInt("promptTokens");
+                completionTokens += event.getInt("completionTokens");
+                if (!event.getBoolean("succeeded")) {
+                    failedModelCalls++;
+                }
+            }
+            case "com.querino.ai.Parse" -> durations.get("parse").add(nanos);
+            case "com.querino.ai.Request" -> durations.get("request").add(nanos);
+            case "com.querino.ai.Fallback" -> fallbacks.merge(event.getString("reason"), 1L, Long::sum);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * @return The stages seen in the recording, in pipeline order, the whole request last
+     */
+    public List<StageSummary> getStages() {
+        List<StageSummary> stages = new ArrayList<>();
+        durations.forEach((stage, nanos) -> {
+            if (!nanos.isEmpty()) {
+                stages.add(StageSummary.of(stage, nanos));
+            }
+        });
+        return stages;
+    }
+
+    /**
+     * @param stage A stage name, or {@code request}
+     * @return The stage's summary, or null when the recording holds no event for it
+     */
+    public StageSummary getStage(String stage) {
+        List<Long> nanos = durations.get(stage);
+        return nanos == null || nanos.isEmpty() ? null : StageSummary.of(stage, nanos);
+    }
+
+    public Map<String, Long> getFallbacks() {
+        return fallbacks;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public long getFailedModelCalls() {
+        return failedModelCalls;
+    }
+
+    /**
+     * @return The breakdown as a text table; the share is each stage's total over the total request time
+     */
+    public String format() {
+        StageSummary request = getStage("request");
+        StringBuilder out = new StringBuilder(String.format("%-10s %7s %10s %6s %9s %9s %9s %9s %9s%n",
+            "stage", "count", "total ms", "share", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (StageSummary stage : getStages()) {
+            String share = request == null || request.total().isZero() ? "-"
+                : String.format("%.1f%%", 100.0 * stage.total().toNanos() / request.total().toNanos());
+            out.append(String.format("%-10s %7d %10.1f %6s %9.3f %9.3f %9.3f %9.3f %9.3f%n", stage.stage(),
+                stage.count(), millis(stage.total()), share, millis(stage.mean()), millis(stage.p50()),
+                millis(stage.p90()), millis(stage.p99()), millis(stage.max())));
+        }
+        out.append(String.format("tokens: %d prompt, %d completion; failed model calls: %d%n",
+            promptTokens, completionTokens, failedModelCalls));
+        fallbacks.forEach((reason, count) -> out.append(String.format("fallback %s: %d%n", reason, count)));
+        return out.toString();
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+
+    /**
+     * Prints the breakdown of a recording: {@code StageBreakdown <recording.jfr>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: StageBreakdown <recording.jfr>");
+            System.exit(2);
+        }
+        System.out.print(read(Path.of(args[0])).format());
+    }
+
+    /**
+     * Latency of one stage across the events of a recording.
+     */
+    public record StageSummary(String stage, int count, Duration total, Duration p50, Duration p90, Duration p99,
+                               Duration max) {
+
+        static StageSummary of(String stage, List<Long> nanos) {
+            long[] sorted = nanos.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return new StageSummary(stage, sorted.length, Duration.ofNanos(Arrays.stream(sorted).sum()),
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                Duration.ofNanos(sorted[sorted.length - 1]));
+        }
+
+        public Duration mean() {
+            return total.dividedBy(count);
+        }
+
+        private static Duration percentile(long[] sorted, double quantile) {
+            return Duration.ofNanos(sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)]);
+        }
+    }
+}
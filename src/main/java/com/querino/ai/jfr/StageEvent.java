@@ -0,0 +1,39 @@
+package com.querino.ai.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A short stage of a recommendation request with no payload of its own: hydrate, route, cache, retrieval or
+ * ground.
+ */
+@Name("com.querino.ai.Stage")
+@Label("Recommendation Stage")
+@Category(PipelineEvents.CATEGORY)
+@Description("A stage of a recommendation request")
+@StackTrace(false)
+public class StageEvent extends jdk.jfr.Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("User ID Hash")
+    long userIdHash;
+
+    @Label("Items")
+    @Description("Purchases after hydration, 1 for a cache hit, candidates shortlisted, products kept by grounding")
+    int items;
+
+    public void finish(String stage, String userId, int items) {
+        end();
+        if (shouldCommit()) {
+            this.stage = stage;
+            this.userIdHash = PipelineEvents.userIdHash(userId);
+            this.items = items;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.querino.ai.model;
+
+import java.util.List;
+
+/**
+ * Represents the result of a batch recommendation request, one item per input request in input order.
+ */
+public class BatchRecommendationResponse {
+    private List<BatchItem> results;
+    private long elapsedMillis;
+
+    public BatchRecommendationResponse() {
+    }
+
+    public BatchRecommendationResponse(List<BatchItem> results, long elapsedMillis) {
+        this.results = results;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<BatchItem> getResults() {
+        return results;
+    }
+
+    public void setResults(List<BatchItem> results) {
+        this.results = results;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Outcome of a single request within a batch.
+     */
+    public enum Status {
+        OK, FAILED, TIMED_OUT
+    }
+
+    /**
+     * Represents the result for one request of the batch.
+     */
+    public static class BatchItem {
+        private int index;
+        private String userId;
+        private Status status;
+        private Recommendation recommendation;
+        private String error;
+        private long elapsedMillis;
+
+        public BatchItem() {
+        }
+
+        public BatchItem(int index, String userId, Status status, Recommendation recommendation, String error, long elapsedMillis) {
+            this.index = index;
+            this.userId = userId;
+            this.status = status;
+            this.recommendation = recommendation;
+            this.error = error;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public void setUserId(String userId) {
+            this.userId = userId;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public Recommendation getRecommendation() {
+            return recommendation;
+        }
+
+        public void setRecommendation(Recommendation recommendation) {
+            this.recommendation = recommendation;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public void setElapsedMillis(long elapsedMillis) {
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+}
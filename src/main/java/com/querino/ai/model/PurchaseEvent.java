@@ -0,0 +1,80 @@
+package com.querino.ai.model;
+
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+
+/**
+ * A single purchase reported by the shop as it happens, for keeping profiles and engines up to date.
+ */
+public class PurchaseEvent {
+    private String userId;
+    private String productId;
+    private String productName;
+    private String category;
+    private double price;
+    private String purchaseDate;
+
+    public PurchaseEvent() {
+    }
+
+    public PurchaseEvent(String userId, String productId, String productName, String category, double price,
+                         String purchaseDate) {
+        this.userId = userId;
+        this.productId = productId;
+        this.productName = productName;
+        this.category = category;
+        this.price = price;
+        this.purchaseDate = purchaseDate;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public void setPrice(double price) {
+        this.price = price;
+    }
+
+    public String getPurchaseDate() {
+        return purchaseDate;
+    }
+
+    public void setPurchaseDate(String purchaseDate) {
+        this.purchaseDate = purchaseDate;
+    }
+
+    public PurchaseHistory toPurchaseHistory() {
+        return new PurchaseHistory(productId, productName, category, price, purchaseDate);
+    }
+}
@@ -9,6 +9,7 @@ public class Recommendation {
     private String userId;
     private List<RecommendedProduct> recommendedProducts;
     private String reasonForRecommendation;
+    private String engine;
 
     public Recommendation() {
     }
@@ -43,6 +44,17 @@ public class Recommendation {
         this.reasonForRecommendation = reasonForRecommendation;
     }
 
+    /**
+     * @return The name of the engine that produced this recommendation (e.g. {@code llm} or {@code heuristic})
+     */
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
     /**
      * Represents a product recommendation with a reason.
      */
@@ -11,6 +11,8 @@ public class RecommendationRequest {
     private List<PurchaseHistory> purchaseHistory;
     private Double budget;
     private List<String> preferredCategories;
+    private String engine;
+    private Long latencyBudgetMillis;
 
     public RecommendationRequest() {
     }
@@ -64,6 +66,29 @@ public class RecommendationRequest {
         this.preferredCategories = preferredCategories;
     }
 
+    /**
+     * @return The name of the engine that should answer this request, or null for the configured default
+     */
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * @return How long the hybrid engine may wait for the language model before answering from its fallback,
+     *         or null for the configured default
+     */
+    public Long getLatencyBudgetMillis() {
+        return latencyBudgetMillis;
+    }
+
+    public void setLatencyBudgetMillis(Long latencyBudgetMillis) {
+        this.latencyBudgetMillis = latencyBudgetMillis;
+    }
+
     /**
      * Represents a product that the user has purchased in the past.
      */
@@ -0,0 +1,263 @@
+package com.querino.ai.precompute;
+
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.precompute.RecommendationStore.StoredRecommendation;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.service.RecommendationService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Precomputes recommendations for known users in the background so that returning users are served from the
+ * {@link RecommendationStore} instead of waiting for the model.
+ * <p>
+ * Every plan interval, users whose stored recommendation is missing or older than the maximum age are ranked
+ * by staleness: the age of their entry (missing entries count as twice the maximum age) multiplied by one
+ * plus the number of times their recommendation was read since it was last computed. The ranked users are then
+ * refreshed at a fixed rate, with a bounded number of computations in flight, through
+ * {@link RecommendationService#refreshRecommendationsAsync}, which fills in the rest of the request from the
+ * stored user profile and bypasses the recommendation cache.
+ */
+@Component
+public class RecommendationPrecomputer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationPrecomputer.class);
+
+    private final RecommendationService recommendationService;
+    private final RecommendationStore recommendationStore;
+    private final UserProfileStore userProfileStore;
+    private final long maxAgeMillis;
+    private final int maxInFlight;
+    private final String engine;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, LongAdder> readsSinceRefresh = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Deque<String> plan = new ArrayDeque<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder computed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public RecommendationPrecomputer(RecommendationService recommendationService,
+                                     RecommendationStore recommendationStore,
+                                     UserProfileStore userProfileStore,
+                                     @Value("${recommendation.precompute.enabled:false}") boolean enabled,
+                                     @Value("${recommendation.precompute.rate-per-second:2}") double ratePerSecond,
+                                     @Value("${recommendation.precompute.max-age:1h}") Duration maxAge,
+                                     @Value("${recommendation.precompute.max-in-flight:4}") int maxInFlight,
+                                     @Value("${recommendation.precompute.plan-interval:30s}") Duration planInterval,
+                                     @Value("${recommendation.precompute.engine:}") String engine) {
+        this.recommendationService = recommendationService;
+        this.recommendationStore = recommendationStore;
+        this.userProfileStore = userProfileStore;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.maxInFlight = maxInFlight;
+        this.engine = engine == null || engine.isBlank() ? null : engine;
+        if (enabled) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "recommendation-precompute");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long refreshPeriod = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+            scheduler.scheduleWithFixedDelay(this::planQuietly, 0, planInterval.toMillis(), TimeUnit.MILLISECONDS);
+            scheduler.scheduleAtFixedRate(this::refreshNext, refreshPeriod, refreshPeriod, TimeUnit.NANOSECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a user's precomputed recommendation and counts the read towards the user's refresh priority.
+     *
+     * @param userId The user ID
+     * @return The stored recommendation, or null if none has been computed yet
+     */
+    public StoredRecommendation lookup(String userId) {
+        StoredRecommendation stored = recommendationStore.get(userId);
+        (stored == null ? misses : hits).increment();
+        if (stored != null || userProfileStore.get(userId) != null) {
+            readsSinceRefresh.computeIfAbsent(userId, id -> new LongAdder()).increment();
+        }
+        return stored;
+    }
+
+    /**
+     * Ranks the users with a missing or stale recommendation and replaces the refresh plan with them.
+     *
+     * @return The number of users planned for a refresh
+     */
+    public int plan() {
+        long now = System.currentTimeMillis();
+        List<Candidate> candidates = new ArrayList<>();
+        for (String userId : userProfileStore.userIds()) {
+            long computedAt = recommendationStore.computedAt(userId);
+            long age = computedAt < 0 ? 2 * maxAgeMillis : now - computedAt;
+            if (age < maxAgeMillis || refreshing.contains(userId)) {
+                continue;
+            }
+            LongAdder reads = readsSinceRefresh.get(userId);
+            double priority = (double) age * (1 + (reads == null ? 0 : reads.sum()));
+            candidates.add(new Candidate(userId, priority));
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::priority).reversed());
+        synchronized (plan) {
+            plan.clear();
+            candidates.forEach(candidate -> plan.addLast(candidate.userId));
+        }
+        return candidates.size();
+    }
+
+    private void planQuietly() {
+        try {
+            int planned = plan();
+            if (planned > 0) {
+                logger.debug("Planned {} recommendation refreshes", planned);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not plan recommendation refreshes", e);
+        }
+    }
+
+    /**
+     * Starts computing the recommendation of the next user in the plan, unless too many are in flight.
+     *
+     * @return true if a computation was started
+     */
+    public boolean refreshNext() {
+        if (inFlight.get() >= maxInFlight) {
+            return false;
+        }
+        String userId;
+        synchronized (plan) {
+            userId = plan.pollFirst();
+        }
+        if (userId == null || !refreshing.add(userId)) {
+            return false;
+        }
+        inFlight.incrementAndGet();
+        RecommendationRequest request = new RecommendationRequest();
+        request.setUserId(userId);
+        request.setEngine(engine);
+        recommendationService.refreshRecommendationsAsync(request).whenComplete((recommendation, error) -> {
+            try {
+                if (error != null) {
+                    failed.increment();
+                    logger.debug("Could not precompute recommendations of {}", userId, error);
+                } else {
+                    recommendationStore.put(userId, recommendation, System.currentTimeMillis());
+                    readsSinceRefresh.remove(userId);
+                    computed.increment();
+                }
+            } catch (RuntimeException e) {
+                failed.increment();
+                logger.warn("Could not store recommendations of {}", userId, e);
+            } finally {
+                refreshing.remove(userId);
+                inFlight.decrementAndGet();
+            }
+        });
+        return true;
+    }
+
+    public PrecomputeStatistics stats() {
+        int planned;
+        synchronized (plan) {
+            planned = plan.size();
+        }
+        return new PrecomputeStatistics(recommendationStore.stats(), planned, inFlight.get(), computed.sum(),
+            failed.sum(), hits.sum(), misses.sum());
+    }
+
+    private record Candidate(String userId, double priority) {
+    }
+
+    /**
+     * Point-in-time view of the precompute counters.
+     */
+    public static class PrecomputeStatistics {
+        private final RecommendationStore.StoreStatistics store;
+        private final int planned;
+        private final int inFlight;
+        private final long computed;
+        private final long failed;
+        private final long hits;
+        private final long misses;
+
+        public PrecomputeStatistics(RecommendationStore.StoreStatistics store, int planned, int inFlight,
+                                    long computed, long failed, long hits, long misses) {
+            this.store = store;
+            this.planned = planned;
+            this.inFlight = inFlight;
+            this.computed = computed;
+            this.failed = failed;
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public RecommendationStore.StoreStatistics getStore() {
+            return store;
+        }
+
+        /**
+         * @return Users still waiting in the current refresh plan
+         */
+        public int getPlanned() {
+            return planned;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public long getComputed() {
+            return computed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+}
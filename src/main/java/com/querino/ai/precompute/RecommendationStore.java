@@ -0,0 +1,355 @@
+package com.querino.ai.precompute;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.model.Recommendation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Precomputed recommendations keyed by {@code userId}.
+ * <p>
+ * Recommendations are stored as compact JSON (no null fields) in an append-only data file; an in-memory index
+ * maps each user to the offset and length of their latest record, so a lookup is one hash probe and one
+ * positional read regardless of how many users are stored. Records are
+ * {@code [payload length][CRC32][payload]} with a payload of computation time, user ID and JSON. On startup
+ * the index is rebuilt by scanning the file, which ends at the last complete record. Superseded records are
+ * reclaimed by rewriting the file once they take up more than half of it.
+ * <p>
+ * Without a configured directory, or while precomputing is disabled, the records are kept in memory instead and no
+ * file is opened.
+ */
+@Component
+public class RecommendationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationStore.class);
+
+    private static final String FILE_NAME = "recommendations.dat";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_USER_ID_BYTES = Short.MAX_VALUE;
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final Path file;
+
+    /**
+     * Readers share the lock; compaction, which replaces the file, takes it exclusively.
+     */
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    private long fileBytes;
+    private long liveBytes;
+
+    @Autowired
+    public RecommendationStore(@Value("${recommendation.precompute.directory:}") String directory,
+                               @Value("${recommendation.precompute.enabled:false}") boolean enabled) {
+        this.file = !enabled || directory == null || directory.isBlank() ? null : Path.of(directory).resolve(FILE_NAME);
+        if (file != null) {
+            try {
+                open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open recommendation store " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Creates a store that keeps recommendations in memory only.
+     *
+     * @return An empty, non-persistent store
+     */
+    public static RecommendationStore inMemory() {
+        return new RecommendationStore(null, false);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        fileLock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param userId The user ID
+     * @return The stored recommendation and when it was computed, or null if none is stored
+     */
+    public StoredRecommendation get(String userId) {
+        try {
+            Entry entry = file == null ? index.get(userId) : read(userId);
+            return entry == null ? null
+                : new StoredRecommendation(objectMapper.readValue(entry.inline, Recommendation.class), entry.computedAt);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read stored recommendation of " + userId, e);
+        }
+    }
+
+    /**
+     * @param userId The user ID
+     * @return When the stored recommendation was computed (epoch millis), or -1 if none is stored
+     */
+    public long computedAt(String userId) {
+        Entry entry = index.get(userId);
+        return entry == null ? -1 : entry.computedAt;
+    }
+
+    /**
+     * Stores a user's recommendation, replacing the previous one.
+     *
+     * @param userId The user ID
+     * @param recommendation The recommendation
+     * @param computedAt When it was computed (epoch millis)
+     * @throws IllegalArgumentException If the user ID is longer than 32767 bytes in UTF-8
+     */
+    public void put(String userId, Recommendation recommendation, long computedAt) {
+        if (userId.length() > MAX_USER_ID_BYTES / 3 && userId.getBytes(StandardCharsets.UTF_8).length > MAX_USER_ID_BYTES) {
+            throw new IllegalArgumentException("userId exceeds " + MAX_USER_ID_BYTES + " bytes");
+        }
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(recommendation);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize recommendation of " + userId, e);
+        }
+        synchronized (writeLock) {
+            if (file == null) {
+                index.put(userId, new Entry(computedAt, -1, json.length, json));
+                return;
+            }
+            ByteBuffer record = encode(userId, json, computedAt);
+            fileLock.readLock().lock();
+            try {
+                long offset = fileBytes;
+                while (record.hasRemaining()) {
+                    offset += channel.write(record, offset);
+                }
+                Entry previous = index.put(userId, new Entry(computedAt, fileBytes + payloadOffset(userId), json.length, null));
+                liveBytes += record.capacity() - (previous == null ? 0 : recordBytes(userId, previous.length));
+                fileBytes = offset;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write recommendation of " + userId, e);
+            } finally {
+                fileLock.readLock().unlock();
+            }
+            if (fileBytes > MIN_COMPACTION_BYTES && fileBytes > 2 * liveBytes) {
+                compact();
+            }
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return The user IDs with a stored recommendation
+     */
+    public Iterable<String> userIds() {
+        return index.keySet();
+    }
+
+    public StoreStatistics stats() {
+        synchronized (writeLock) {
+            long bytes = file == null
+                ? index.values().stream().mapToLong(entry -> entry.length).sum()
+                : fileBytes;
+            return new StoreStatistics(index.size(), bytes, file == null ? bytes : liveBytes);
+        }
+    }
+
+    /**
+     * Rewrites the data file with only the latest record of every user.
+     */
+    public void compact() {
+        if (file == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            Path temporary = file.resolveSibling(FILE_NAME + ".tmp");
+            fileLock.writeLock().lock();
+            try {
+                long written = 0;
+                Map<String, Entry> compacted = new ConcurrentHashMap<>();
+                try (FileChannel target = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    for (Map.Entry<String, Entry> entry : index.entrySet()) {
+                        String userId = entry.getKey();
+                        byte[] json = read(userId).inline;
+                        ByteBuffer record = encode(userId, json, entry.getValue().computedAt);
+                        compacted.put(userId, new Entry(entry.getValue().computedAt, written + payloadOffset(userId), json.length, null));
+                        while (record.hasRemaining()) {
+                            written += target.write(record);
+                        }
+                    }
+                }
+                channel.close();
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                index.putAll(compacted);
+                logger.info("Compacted recommendation store from {} to {} bytes", fileBytes, written);
+                fileBytes = written;
+                liveBytes = written;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot compact recommendation store " + file, e);
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 10 || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + HEADER_BYTES);
+            payload.flip();
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            long computedAt = payload.getLong();
+            byte[] userIdBytes = new byte[payload.getShort()];
+            payload.get(userIdBytes);
+            String userId = new String(userIdBytes, StandardCharsets.UTF_8);
+            long payloadOffset = position + HEADER_BYTES + payload.position();
+            Entry previous = index.put(userId, new Entry(computedAt, payloadOffset, payload.remaining(), null));
+            liveBytes += HEADER_BYTES + length - (previous == null ? 0 : recordBytes(userId, previous.length));
+            position += HEADER_BYTES + length;
+        }
+        if (position < size) {
+            logger.warn("Dropping {} bytes of incomplete records at the end of {}", size - position, file);
+            channel.truncate(position);
+        }
+        fileBytes = position;
+        logger.info("Loaded {} precomputed recommendations from {}", index.size(), file);
+    }
+
+    /**
+     * Reads a user's latest record from the file.
+     *
+     * @return The index entry with the JSON filled in, or null if the user has no record
+     */
+    private Entry read(String userId) throws IOException {
+        fileLock.readLock().lock();
+        try {
+            // Read the entry under the lock: compaction moves records
+            Entry entry = index.get(userId);
+            if (entry == null) {
+                return null;
+            }
+            ByteBuffer json = ByteBuffer.allocate(entry.length);
+            while (json.hasRemaining()) {
+                if (channel.read(json, entry.offset + json.position()) < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+            return new Entry(entry.computedAt, entry.offset, entry.length, json.array());
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    private static ByteBuffer encode(String userId, byte[] json, long computedAt) {
+        byte[] userIdBytes = userId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(8 + 2 + userIdBytes.length + json.length);
+        payload.putLong(computedAt).putShort((short) userIdBytes.length).put(userIdBytes).put(json).flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.capacity());
+        record.putInt(payload.capacity()).putInt((int) crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    /**
+     * Distance from the start of a record to its JSON.
+     */
+    private static int payloadOffset(String userId) {
+        return HEADER_BYTES + 8 + 2 + userId.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int recordBytes(String userId, int jsonLength) {
+        return payloadOffset(userId) + jsonLength;
+    }
+
+    /**
+     * Where a user's JSON is in the file; {@code inline} holds the JSON itself when kept in memory.
+     */
+    private record Entry(long computedAt, long offset, int length, byte[] inline) {
+    }
+
+    /**
+     * A stored recommendation and when it was computed.
+     */
+    public record StoredRecommendation(Recommendation recommendation, long computedAt) {
+    }
+
+    /**
+     * Point-in-time view of the store size.
+     */
+    public static class StoreStatistics {
+        private final int users;
+        private final long storeBytes;
+        private final long liveBytes;
+
+        public StoreStatistics(int users, long storeBytes, long liveBytes) {
+            this.users = users;
+            this.storeBytes = storeBytes;
+            this.liveBytes = liveBytes;
+        }
+
+        public int getUsers() {
+            return users;
+        }
+
+        public long getStoreBytes() {
+            return storeBytes;
+        }
+
+        /**
+         * @return Bytes taken by the latest record of every user; the rest is reclaimed by compaction
+         */
+        public long getLiveBytes() {
+            return liveBytes;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.querino.ai.profile;
+
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding shared by the profile log and snapshots. Strings are a length-prefixed UTF-8 byte sequence
+ * (length -1 for null); lists are a count (-1 for null) followed by their elements.
+ */
+final class ProfileCodec {
+
+    private ProfileCodec() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    static List<String> readStrings(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    static void writeBudget(DataOutputStream out, Double budget) throws IOException {
+        out.writeBoolean(budget != null);
+        if (budget != null) {
+            out.writeDouble(budget);
+        }
+    }
+
+    static Double readBudget(ByteBuffer in) {
+        return in.get() != 0 ? in.getDouble() : null;
+    }
+
+    static void writePurchases(DataOutputStream out, List<PurchaseHistory> purchases) throws IOException {
+        out.writeInt(purchases.size());
+        for (PurchaseHistory purchase : purchases) {
+            writeString(out, purchase.getProductId());
+            writeString(out, purchase.getProductName());
+            writeString(out, purchase.getCategory());
+            out.writeDouble(purchase.getPrice());
+            writeString(out, purchase.getPurchaseDate());
+        }
+    }
+
+    static List<PurchaseHistory> readPurchases(ByteBuffer in) {
+        int count = in.getInt();
+        List<PurchaseHistory> purchases = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String productId = readString(in);
+            String productName = readString(in);
+            String category = readString(in);
+            double price = in.getDouble();
+            purchases.add(new PurchaseHistory(productId, productName, category, price, readString(in)));
+        }
+        return purchases;
+    }
+
+    static void writeProfile(DataOutputStream out, UserProfile profile) throws IOException {
+        writeString(out, profile.getUserId());
+        writeStrings(out, profile.getInterests());
+        writeStrings(out, profile.getPreferredCategories());
+        writeBudget(out, profile.getBudget());
+        writePurchases(out, profile.getPurchases());
+    }
+
+    static UserProfile readProfile(ByteBuffer in) {
+        String userId = readString(in);
+        List<String> interests = readStrings(in);
+        List<String> preferredCategories = readStrings(in);
+        Double budget = readBudget(in);
+        return new UserProfile(userId, interests, preferredCategories, budget, readPurchases(in));
+    }
+}
@@ -0,0 +1,113 @@
+package com.querino.ai.profile;
+
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable server-side profile of a user. Every change produces a new instance, so readers never need a lock.
+ */
+public final class UserProfile {
+
+    private final String userId;
+    private final List<String> interests;
+    private final List<String> preferredCategories;
+    private final Double budget;
+    private final List<PurchaseHistory> purchases;
+
+    public UserProfile(String userId, List<String> interests, List<String> preferredCategories, Double budget,
+                       List<PurchaseHistory> purchases) {
+        this.userId = userId;
+        this.interests = interests == null ? List.of() : List.copyOf(interests);
+        this.preferredCategories = preferredCategories == null ? List.of() : List.copyOf(preferredCategories);
+        this.budget = budget;
+        this.purchases = purchases == null ? List.of() : Collections.unmodifiableList(new ArrayList<>(purchases));
+    }
+
+    static UserProfile empty(String userId) {
+        return new UserProfile(userId, List.of(), List.of(), null, List.of());
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public List<String> getInterests() {
+        return interests;
+    }
+
+    public List<String> getPreferredCategories() {
+        return preferredCategories;
+    }
+
+    public Double getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The purchases, oldest first
+     */
+    public List<PurchaseHistory> getPurchases() {
+        return purchases;
+    }
+
+    /**
+     * Returns a profile with the given purchases appended. A purchase of the same product on the same date as a
+     * stored one is a repeat of that purchase and is ignored, so clients can resend recent purchases safely.
+     *
+     * @param added The new purchases
+     * @param maxPurchases The maximum number of purchases kept; the oldest are dropped beyond it
+     * @return The updated profile, or this profile if nothing was added
+     */
+    UserProfile withPurchases(List<PurchaseHistory> added, int maxPurchases) {
+        List<PurchaseHistory> merged = null;
+        for (PurchaseHistory purchase : added) {
+            List<PurchaseHistory> current = merged == null ? purchases : merged;
+            if (contains(current, purchase)) {
+                continue;
+            }
+            if (merged == null) {
+                merged = new ArrayList<>(purchases.size() + added.size());
+                merged.addAll(purchases);
+            }
+            merged.add(copy(purchase));
+        }
+        if (merged == null) {
+            return this;
+        }
+        if (merged.size() > maxPurchases) {
+            merged = merged.subList(merged.size() - maxPurchases, merged.size());
+        }
+        return new UserProfile(userId, interests, preferredCategories, budget, merged);
+    }
+
+    /**
+     * Returns a profile with the given preferences replaced; null arguments leave the stored value unchanged.
+     */
+    UserProfile withPreferences(List<String> interests, List<String> preferredCategories, Double budget) {
+        return new UserProfile(userId,
+            interests == null ? this.interests : interests,
+            preferredCategories == null ? this.preferredCategories : preferredCategories,
+            budget == null ? this.budget : budget,
+            purchases);
+    }
+
+    private static boolean contains(List<PurchaseHistory> purchases, PurchaseHistory purchase) {
+        for (int i = purchases.size() - 1; i >= 0; i--) {
+            PurchaseHistory stored = purchases.get(i);
+            if (Objects.equals(stored.getProductId(), purchase.getProductId())
+                && Objects.equals(stored.getPurchaseDate(), purchase.getPurchaseDate())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static PurchaseHistory copy(PurchaseHistory purchase) {
+        return new PurchaseHistory(purchase.getProductId(), purchase.getProductName(), purchase.getCategory(),
+            purchase.getPrice(), purchase.getPurchaseDate());
+    }
+}
@@ -0,0 +1,560 @@
+package com.querino.ai.profile;
+
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Server-side user profiles keyed by {@code userId}, so that clients can send just a user ID plus whatever changed
+ * instead of the whole profile and purchase history. Recommendation requests only read profiles; they change
+ * through {@link #recordPurchases} and {@link #updatePreferences}, called by the profile endpoints and the
+ * purchase-event ingestor.
+ * <p>
+ * Profiles live in memory, at most {@code maxProfiles} of them; beyond that the least recently updated profile is
+ * dropped, and is gone from the next snapshot. When a directory is configured, every change is also appended to a log, and the state
+ * is periodically written to a compacted snapshot after which older logs are deleted. On startup the latest
+ * snapshot is memory-mapped and the logs written after it are replayed. Files are numbered by generation: the
+ * snapshot of generation G holds the state before the log of generation G.
+ * <p>
+ * Log records are {@code [payload length][CRC32][payload]}; replay stops at the first torn or corrupt record,
+ * which can only be the tail of a log written when the process died. Writes go to the OS page cache without
+ * fsync, so the log survives a process crash but not necessarily a machine crash.
+ */
+@Component
+public class UserProfileStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileStore.class);
+
+    private static final byte PURCHASES = 1;
+    private static final byte PREFERENCES = 2;
+    private static final int SNAPSHOT_MAGIC = 0x51505246;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final Pattern FILE_NAME = Pattern.compile("profiles-(\\d+)\\.(log|snapshot)");
+
+    private final Map<String, UserProfile> profiles = new ConcurrentHashMap<>();
+    private final List<ProfileListener> listeners = new CopyOnWriteArrayList<>();
+    private final int maxPurchases;
+    private final int maxProfiles;
+    private final Path directory;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    /**
+     * Guards the log and every profile change, so that log order matches the order changes were applied in.
+     */
+    private final Object lock = new Object();
+    /**
+     * User IDs from least to most recently updated; guarded by the lock.
+     */
+    private final LinkedHashMap<String, Boolean> updateOrder = new LinkedHashMap<>(16, 0.75f, true);
+    private long evicted;
+    private long generation;
+    private FileChannel log;
+    private long logBytes;
+
+    @Autowired
+    public UserProfileStore(@Value("${recommendation.profiles.directory:}") String directory,
+                            @Value("${recommendation.profiles.max-purchases:1000}") int maxPurchases,
+                            @Value("${recommendation.profiles.max-profiles:1000000}") int maxProfiles,
+                            @Value("${recommendation.profiles.snapshot-interval:5m}") Duration snapshotInterval) {
+        this.maxPurchases = maxPurchases;
+        this.maxProfiles = maxProfiles;
+        this.directory = directory == null || directory.isBlank() ? null : Path.of(directory);
+        if (this.directory == null) {
+            this.snapshotScheduler = null;
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open profile store in " + directory, e);
+        }
+        if (snapshotInterval.isZero()) {
+            this.snapshotScheduler = null;
+        } else {
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "profile-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = snapshotInterval.toMillis();
+            snapshotScheduler.scheduleWithFixedDelay(this::snapshotIfChanged, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates a store that keeps profiles in memory only.
+     *
+     * @return An empty, non-persistent store
+     */
+    public static UserProfileStore inMemory() {
+        return new UserProfileStore(null, 1000, 1_000_000, Duration.ZERO);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        synchronized (lock) {
+            if (log != null) {
+                log.close();
+                log = null;
+            }
+        }
+    }
+
+    /**
+     * @param userId The user ID
+     * @return The user's profile, or null if the store does not know the user
+     */
+    public UserProfile get(String userId) {
+        return userId == null ? null : profiles.get(userId);
+    }
+
+    /**
+     * @return A live, unmodifiable view of the IDs of all known users
+     */
+    public Set<String> userIds() {
+        return Collections.unmodifiableSet(profiles.keySet());
+    }
+
+    public int size() {
+        return profiles.size();
+    }
+
+    /**
+     * Registers a listener for later profile changes, e.g. to keep data derived from the profiles up to date.
+     * Listeners are called while the store is locked, so they must be quick and must not call back into the
+     * store's mutators.
+     *
+     * @param listener The listener
+     */
+    public void addListener(ProfileListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @return How many profiles were dropped to stay within the profile limit
+     */
+    public long getEvictedCount() {
+        synchronized (lock) {
+            return evicted;
+        }
+    }
+
+    /**
+     * Appends purchases to a user's profile, creating the profile if needed.
+     *
+     * @param userId The user who made the purchases
+     * @param purchases The new purchases; repeats of stored purchases are ignored
+     * @return The updated profile
+     */
+    public UserProfile recordPurchases(String userId, List<PurchaseHistory> purchases) {
+        requireUserId(userId);
+        synchronized (lock) {
+            UserProfile current = profiles.getOrDefault(userId, UserProfile.empty(userId));
+            UserProfile updated = current.withPurchases(purchases, maxPurchases);
+            if (updated != current) {
+                append(PURCHASES, userId, out -> ProfileCodec.writePurchases(out, purchases));
+                put(updated);
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Appends purchases to the profiles of several users with a single log write. Nothing changes if any user ID
+     * is blank, and profiles are only updated once the records are in the log.
+     *
+     * @param purchasesByUser The new purchases of each user; repeats of stored purchases are ignored
+     */
+    public void recordPurchases(Map<String, List<PurchaseHistory>> purchasesByUser) {
+        purchasesByUser.keySet().forEach(UserProfileStore::requireUserId);
+        synchronized (lock) {
+            ByteArrayOutputStream records = new ByteArrayOutputStream(purchasesByUser.size() * 64);
+            List<UserProfile> updates = new ArrayList<>(purchasesByUser.size());
+            for (Map.Entry<String, List<PurchaseHistory>> entry : purchasesByUser.entrySet()) {
+                String userId = entry.getKey();
+                UserProfile current = profiles.getOrDefault(userId, UserProfile.empty(userId));
+                UserProfile updated = current.withPurchases(entry.getValue(), maxPurchases);
+                if (updated != current) {
+                    encodeRecord(records, PURCHASES, userId, out -> ProfileCodec.writePurchases(out, entry.getValue()));
+                    updates.add(updated);
+                }
+            }
+            if (log != null && records.size() > 0) {
+                write(records);
+            }
+            updates.forEach(this::put);
+        }
+    }
+
+    /**
+     * Replaces a user's preferences; null arguments keep the stored values.
+     *
+     * @param userId The user ID
+     * @param interests The new interests, or null
+     * @param preferredCategories The new preferred categories, or null
+     * @param budget The new budget, or null
+     * @return The updated profile
+     */
+    public UserProfile updatePreferences(String userId, List<String> interests, List<String> preferredCategories,
+                                         Double budget) {
+        requireUserId(userId);
+        synchronized (lock) {
+            UserProfile current = profiles.getOrDefault(userId, UserProfile.empty(userId));
+            append(PREFERENCES, userId, out -> {
+                ProfileCodec.writeStrings(out, interests);
+                ProfileCodec.writeStrings(out, preferredCategories);
+                ProfileCodec.writeBudget(out, budget);
+            });
+            UserProfile updated = current.withPreferences(interests, preferredCategories, budget);
+            put(updated);
+            return updated;
+        }
+    }
+
+    /**
+     * Completes a request from the stored profile without changing it. Fields present in the request are deltas
+     * for this request only: its purchases are appended to the stored ones and its interests, preferred categories
+     * and budget replace the stored ones. The returned request carries the resulting full profile.
+     *
+     * @param request A request that may contain only a userId and what differs from the stored profile
+     * @return The hydrated request, or the request itself if it has no userId or the user is unknown
+     */
+    public RecommendationRequest hydrate(RecommendationRequest request) {
+        String userId = request.getUserId();
+        if (userId == null || userId.isBlank()) {
+            return request;
+        }
+        UserProfile profile = profiles.get(userId);
+        if (profile == null) {
+            return request;
+        }
+        if (request.getPurchaseHistory() != null && !request.getPurchaseHistory().isEmpty()) {
+            profile = profile.withPurchases(request.getPurchaseHistory(), maxPurchases);
+        }
+        if (request.getInterests() != null || request.getPreferredCategories() != null || request.getBudget() != null) {
+            profile = profile.withPreferences(request.getInterests(), request.getPreferredCategories(), request.getBudget());
+        }
+        RecommendationRequest hydrated = new RecommendationRequest(userId, profile.getInterests(),
+            new ArrayList<>(profile.getPurchases()), profile.getBudget(), profile.getPreferredCategories());
+        hydrated.setEngine(request.getEngine());
+        hydrated.setLatencyBudgetMillis(request.getLatencyBudgetMillis());
+        return hydrated;
+    }
+
+    /**
+     * Writes a compacted snapshot if anything was logged since the last one.
+     */
+    public void snapshotIfChanged() {
+        boolean changed;
+        synchronized (lock) {
+            changed = logBytes > 0;
+        }
+        if (changed) {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                logger.warn("Could not write profile snapshot", e);
+            }
+        }
+    }
+
+    /**
+     * Starts a new log generation, writes the state as of that point to a snapshot and deletes the files the
+     * snapshot makes obsolete. Changes keep being accepted (into the new log) while the snapshot is written.
+     *
+     * @return The number of profiles in the snapshot
+     * @throws IOException If the snapshot cannot be written
+     * @throws IllegalStateException If the store is not persistent
+     */
+    public int snapshot() throws IOException {
+        if (directory == null) {
+            throw new IllegalStateException("Profile store is not persistent (recommendation.profiles.directory)");
+        }
+        long snapshotGeneration;
+        List<UserProfile> state;
+        synchronized (lock) {
+            snapshotGeneration = rotate();
+            // Profiles are immutable, so a shallow copy taken under the lock is a consistent view. It is taken in
+            // update order, so that loading the snapshot restores which profiles are evicted first.
+            state = new ArrayList<>(updateOrder.size());
+            for (String userId : updateOrder.keySet()) {
+                state.add(profiles.get(userId));
+            }
+        }
+
+        Path target = file(snapshotGeneration, "snapshot");
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(snapshotGeneration);
+            out.writeInt(state.size());
+            for (UserProfile profile : state) {
+                ProfileCodec.writeProfile(out, profile);
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path file : listFiles()) {
+            if (generationOf(file) < snapshotGeneration) {
+                Files.deleteIfExists(file);
+            }
+        }
+        return state.size();
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = listFiles();
+        long snapshotGeneration = 0;
+        for (Path file : files) {
+            if (file.toString().endsWith(".snapshot")) {
+                snapshotGeneration = Math.max(snapshotGeneration, generationOf(file));
+            }
+        }
+        if (snapshotGeneration > 0) {
+            loadSnapshot(file(snapshotGeneration, "snapshot"));
+        }
+        long lastGeneration = snapshotGeneration;
+        int replayed = 0;
+        for (Path file : files) {
+            long fileGeneration = generationOf(file);
+            if (file.toString().endsWith(".log") && fileGeneration >= snapshotGeneration) {
+                replay(file);
+                replayed++;
+            }
+            lastGeneration = Math.max(lastGeneration, fileGeneration);
+        }
+        // Always continue in a fresh log, so nothing is ever appended after a torn record
+        generation = lastGeneration;
+        rotate();
+        logger.info("Loaded {} user profiles from {} (snapshot generation {}, {} logs replayed)",
+            profiles.size(), directory, snapshotGeneration, replayed);
+    }
+
+    /**
+     * Lists the log and snapshot files in the directory, ordered by generation with each log before the
+     * snapshot of the same generation.
+     */
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                .filter(path -> FILE_NAME.matcher(path.getFileName().toString()).matches())
+                .sorted(Comparator.comparingLong(UserProfileStore::generationOf)
+                    .thenComparing(path -> path.toString().endsWith(".snapshot")))
+                .toList();
+        }
+    }
+
+    private static long generationOf(Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    private long rotate() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        generation++;
+        log = FileChannel.open(file(generation, "log"),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        logBytes = 0;
+        return generation;
+    }
+
+    private Path file(long generation, String kind) {
+        return directory.resolve(String.format("profiles-%012d.%s", generation, kind));
+    }
+
+    private void loadSnapshot(Path file) throws IOException {
+        ByteBuffer in = map(file);
+        if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Not a profile snapshot: " + file);
+        }
+        in.getLong();
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            put(ProfileCodec.readProfile(in));
+        }
+    }
+
+    private void replay(Path file) throws IOException {
+        ByteBuffer in = map(file);
+        CRC32 crc = new CRC32();
+        while (in.remaining() >= 8) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length < 0 || length > in.remaining()) {
+                logger.warn("Ignoring torn record at the end of {}", file);
+                return;
+            }
+            ByteBuffer payload = in.slice(in.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                logger.warn("Ignoring corrupt record at the end of {}", file);
+                return;
+            }
+            in.position(in.position() + length);
+            try {
+                apply(payload);
+            } catch (BufferUnderflowException e) {
+                logger.warn("Ignoring malformed record in {}", file);
+                return;
+            }
+        }
+    }
+
+    private void apply(ByteBuffer payload) {
+        byte type = payload.get();
+        String userId = ProfileCodec.readString(payload);
+        UserProfile current = profiles.getOrDefault(userId, UserProfile.empty(userId));
+        if (type == PURCHASES) {
+            put(current.withPurchases(ProfileCodec.readPurchases(payload), maxPurchases));
+        } else if (type == PREFERENCES) {
+            List<String> interests = ProfileCodec.readStrings(payload);
+            List<String> preferredCategories = ProfileCodec.readStrings(payload);
+            put(current.withPreferences(interests, preferredCategories, ProfileCodec.readBudget(payload)));
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Profile file exceeds 2 GB: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Stores a profile as the most recently updated one, dropping the least recently updated profile beyond the
+     * limit. Must be called while holding the lock, or before the store is shared.
+     */
+    private void put(UserProfile profile) {
+        profiles.put(profile.getUserId(), profile);
+        updateOrder.put(profile.getUserId(), Boolean.TRUE);
+        listeners.forEach(listener -> listener.updated(profile));
+        if (updateOrder.size() > maxProfiles) {
+            Iterator<String> eldest = updateOrder.keySet().iterator();
+            String userId = eldest.next();
+            profiles.remove(userId);
+            eldest.remove();
+            evicted++;
+            listeners.forEach(listener -> listener.removed(userId));
+        }
+    }
+
+    /**
+     * Appends one record to the log. Must be called while holding the lock.
+     */
+    private void append(byte type, String userId, RecordWriter body) {
+        if (log == null) {
+            return;
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream(256);
+        encodeRecord(records, type, userId, body);
+        write(records);
+    }
+
+    private static void encodeRecord(ByteArrayOutputStream records, byte type, String userId, RecordWriter body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            ProfileCodec.writeString(out, userId);
+            body.write(out);
+            byte[] payload = bytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            DataOutputStream header = new DataOutputStream(records);
+            header.writeInt(payload.length);
+            header.writeInt((int) crc.getValue());
+            records.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode profile record", e);
+        }
+    }
+
+    /**
+     * Writes encoded records to the log. Must be called while holding the lock.
+     */
+    private void write(ByteArrayOutputStream records) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+            while (buffer.hasRemaining()) {
+                logBytes += log.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to profile log", e);
+        }
+    }
+
+    private static void requireUserId(String userId) {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("userId must not be blank");
+        }
+    }
+
+    /**
+     * Notified of profile changes.
+     */
+    public interface ProfileListener {
+
+        /**
+         * @param profile The user's profile after the change
+         */
+        void updated(UserProfile profile);
+
+        /**
+         * @param userId The user whose profile was dropped
+         */
+        void removed(String userId);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,88 @@
+package com.querino.ai.prompt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A prompt template parsed once into literal segments and variable slots. Rendering only appends the segments
+ * and slot contents to a buffer; there is no per-call parsing, variable map or template engine.
+ * <p>
+ * A placeholder is a declared variable name in braces, e.g. {@code {profile}}. Any other brace is literal text,
+ * so JSON examples in the template need no escaping.
+ */
+public final class CompiledTemplate {
+
+    private final String[] literals;
+    private final int[] slots;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param template The template text
+     * @param variables The variable names, in the order their values are passed to {@link #render}
+     * @return The compiled template
+     * @throws IllegalArgumentException If a declared variable does not occur in the template
+     */
+    public static CompiledTemplate compile(String template, String... variables) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        boolean[] used = new boolean[variables.length];
+        int literalStart = 0;
+        for (int i = template.indexOf('{'); i >= 0; i = template.indexOf('{', i + 1)) {
+            int end = template.indexOf('}', i);
+            if (end < 0) {
+                break;
+            }
+            int variable = Arrays.asList(variables).indexOf(template.substring(i + 1, end));
+            if (variable >= 0) {
+                literals.add(template.substring(literalStart, i));
+                slots.add(variable);
+                used[variable] = true;
+                literalStart = end + 1;
+                i = end;
+            }
+        }
+        literals.add(template.substring(literalStart));
+        for (int i = 0; i < variables.length; i++) {
+            if (!used[i]) {
+                throw new IllegalArgumentException("Variable '" + variables[i] + "' does not occur in the template");
+            }
+        }
+        return new CompiledTemplate(literals.toArray(new String[0]), slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Renders the template into a buffer.
+     *
+     * @param out The buffer to append to
+     * @param values Writers for the variables, in declaration order
+     */
+    public void render(StringBuilder out, SlotWriter... values) {
+        out.ensureCapacity(out.length() + literalLength + 512);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            values[slots[i]].write(out);
+        }
+        out.append(literals[slots.length]);
+    }
+
+    /**
+     * Writes the value of one variable.
+     */
+    @FunctionalInterface
+    public interface SlotWriter {
+        void write(StringBuilder out);
+    }
+}
@@ -0,0 +1,271 @@
+package com.querino.ai.prompt;
+
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the encoded user profile within a token budget. When the whole purchase history does not fit, the most
+ * recent and the most expensive purchases are kept (alternately, until the budget is used up) and the remaining
+ * ones are rolled up into one summary per category with their count, total spend and latest purchase date.
+ * The prompt size, and with it the model latency, is thus bounded whatever the length of the history.
+ */
+public final class HistoryCompactor {
+
+    /**
+     * Average characters per token of compact JSON with English text; good enough for budgeting.
+     */
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final int tokenBudget;
+
+    /**
+     * @param tokenBudget Maximum estimated tokens of an encoded profile
+     */
+    public HistoryCompactor(int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * Estimates the number of tokens of a text.
+     *
+     * @param text The text
+     * @return The estimated token count
+     */
+    public static int estimateTokens(CharSequence text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * Compacts the purchase history of a request so that its encoded profile fits the token budget.
+     *
+     * @param request The recommendation request
+     * @return The purchases to send verbatim, the category summaries of the others and the estimated profile size
+     */
+    public CompactedHistory compact(RecommendationRequest request) {
+        List<PurchaseHistory> history = request.getPurchaseHistory() == null ? List.of() : request.getPurchaseHistory();
+        StringBuilder scratch = new StringBuilder(256);
+        if (!exceedsBudget(history, scratch)) {
+            scratch.setLength(0);
+            ProfileEncoder.encode(request, history, List.of(), scratch);
+            int fullTokens = estimateTokens(scratch);
+            if (fullTokens <= tokenBudget) {
+                return new CompactedHistory(history, List.of(), fullTokens, history.size());
+            }
+        }
+
+        // Summaries of every category are an upper bound for the summaries of whatever ends up not being kept
+        List<CategorySummary> allSummaries = summarize(history);
+        scratch.setLength(0);
+        ProfileEncoder.encode(request, List.of(), allSummaries, scratch);
+        int usedTokens = estimateTokens(scratch);
+
+        Map<PurchaseHistory, Boolean> kept = new IdentityHashMap<>();
+        for (PurchaseHistory purchase : priorityOrder(history)) {
+            if (kept.containsKey(purchase)) {
+                continue;
+            }
+            scratch.setLength(0);
+            ProfileEncoder.encodePurchase(purchase, 0, scratch);
+            int cost = estimateTokens(scratch) + 1;
+            if (usedTokens + cost > tokenBudget) {
+                break;
+            }
+            usedTokens += cost;
+            kept.put(purchase, Boolean.TRUE);
+        }
+
+        List<PurchaseHistory> keptPurchases = new ArrayList<>(kept.size());
+        List<PurchaseHistory> rolledUp = new ArrayList<>(history.size() - kept.size());
+        for (PurchaseHistory purchase : history) {
+            (kept.containsKey(purchase) ? keptPurchases : rolledUp).add(purchase);
+        }
+        List<CategorySummary> summaries = summarize(rolledUp);
+        scratch.setLength(0);
+        ProfileEncoder.encode(request, keptPurchases, summaries, scratch);
+        return new CompactedHistory(keptPurchases, summaries, estimateTokens(scratch), history.size());
+    }
+
+    /**
+     * Tells, without encoding the whole history, whether its purchases alone are over the budget. Each purchase
+     * is encoded with category index 0, which is never longer than its real encoding, and the sum stops as soon
+     * as it is over; a long history thus costs a few purchase encodings instead of one of its full size.
+     */
+    private boolean exceedsBudget(List<PurchaseHistory> history, StringBuilder scratch) {
+        long maxChars = (long) tokenBudget * CHARS_PER_TOKEN;
+        long chars = 0;
+        for (PurchaseHistory purchase : history) {
+            scratch.setLength(0);
+            ProfileEncoder.encodePurchase(purchase, 0, scratch);
+            chars += scratch.length() + 1;
+            if (chars > maxChars) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Orders purchases by alternately taking the most recent and the most expensive one not yet taken.
+     */
+    private static List<PurchaseHistory> priorityOrder(List<PurchaseHistory> history) {
+        List<PurchaseHistory> byRecency = new ArrayList<>(history);
+        byRecency.sort(Comparator.comparing((PurchaseHistory purchase) -> purchase.getPurchaseDate() == null ? "" : purchase.getPurchaseDate())
+            .reversed());
+        List<PurchaseHistory> byValue = new ArrayList<>(history);
+        byValue.sort(Comparator.comparingDouble(PurchaseHistory::getPrice).reversed());
+        List<PurchaseHistory> order = new ArrayList<>(history.size() * 2);
+        for (int i = 0; i < history.size(); i++) {
+            order.add(byRecency.get(i));
+            order.add(byValue.get(i));
+        }
+        return order;
+    }
+
+    private static List<CategorySummary> summarize(List<PurchaseHistory> purchases) {
+        Map<String, CategorySummary> summaries = new LinkedHashMap<>();
+        for (PurchaseHistory purchase : purchases) {
+            String category = purchase.getCategory() == null ? "" : purchase.getCategory().trim();
+            summaries.computeIfAbsent(category.toLowerCase(Locale.ROOT), key -> new CategorySummary(category))
+                .add(purchase);
+        }
+        List<CategorySummary> result = new ArrayList<>(summaries.values());
+        result.sort(Comparator.comparingDouble(CategorySummary::getSpend).reversed());
+        return result;
+    }
+
+    /**
+     * Result of compacting a purchase history.
+     */
+    public static final class CompactedHistory {
+        private final List<PurchaseHistory> purchases;
+        private final List<CategorySummary> summaries;
+        private final int estimatedTokens;
+        private final int originalPurchases;
+
+        CompactedHistory(List<PurchaseHistory> purchases, List<CategorySummary> summaries, int estimatedTokens,
+                         int originalPurchases) {
+            this.purchases = purchases;
+            this.summaries = summaries;
+            this.estimatedTokens = estimatedTokens;
+            this.originalPurchases = originalPurchases;
+        }
+
+        /**
+         * @return The purchases sent verbatim, in their original order
+         */
+        public List<PurchaseHistory> getPurchases() {
+            return purchases;
+        }
+
+        /**
+         * @return Per-category summaries of the purchases that were not kept, highest spend first
+         */
+        public List<CategorySummary> getSummaries() {
+            return summaries;
+        }
+
+        /**
+         * @return The estimated token count of the encoded profile
+         */
+        public int getEstimatedTokens() {
+            return estimatedTokens;
+        }
+
+        public boolean isCompacted() {
+            return purchases.size() < originalPurchases;
+        }
+
+        public int getRolledUpPurchases() {
+            return originalPurchases - purchases.size();
+        }
+    }
+
+    /**
+     * Aggregate of the rolled-up purchases of one category.
+     */
+    public static final class CategorySummary {
+        private final String category;
+        private int count;
+        private double spend;
+        private LocalDate lastPurchase;
+
+        CategorySummary(String category) {
+            this.category = category;
+        }
+
+        void add(PurchaseHistory purchase) {
+            count++;
+            spend += purchase.getPrice();
+            LocalDate date = parseDate(purchase.getPurchaseDate());
+            if (date != null && (lastPurchase == null || date.isAfter(lastPurchase))) {
+                lastPurchase = date;
+            }
+        }
+
+        /**
+         * Reads the {@code yyyy-MM-dd} date a plain date or timestamp starts with. Parsed by hand, as every
+         * rolled-up purchase goes through here and a formatter allocates several objects per date.
+         */
+        private static LocalDate parseDate(String date) {
+            if (date == null || date.length() < 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+                return null;
+            }
+            int year = digits(date, 0, 4);
+            int month = digits(date, 5, 7);
+            int day = digits(date, 8, 10);
+            if (year < 0 || month < 0 || day < 0) {
+                return null;
+            }
+            try {
+                return LocalDate.of(year, month, day);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        private static int digits(String text, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getSpend() {
+            return Math.round(spend * 100) / 100.0;
+        }
+
+        /**
+         * @return The latest valid purchase date, or null if none of the dates could be parsed
+         */
+        public LocalDate getLastPurchase() {
+            return lastPurchase;
+        }
+    }
+}
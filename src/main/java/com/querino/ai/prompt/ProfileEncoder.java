@@ -0,0 +1,275 @@
+package com.querino.ai.prompt;
+
+import com.querino.ai.model.Product;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Encodes recommendation requests as compact JSON for prompts, written straight into a buffer:
+ * single-letter keys, categories listed once and referenced by index, purchases as positional arrays, and
+ * null or empty fields left out. Only fields the model needs are encoded.
+ * <pre>
+ * {"u":"user123","i":["technology"],"b":500,"c":["electronics"],"p":[0],"h":[["p001","Wireless Headphones",0,129.99,"2023-10-15"]]}
+ * </pre>
+ */
+public final class ProfileEncoder {
+
+    /**
+     * Explains the keys to the model; included once per prompt.
+     */
+    public static final String LEGEND = "u=user ID, i=interests, b=budget, c=category names, "
+        + "p=preferred categories as indexes into c, h=purchase history as [productId, name, category index, price, date], "
+        + "s=older purchases summarized per category as [category index, count, total spend, last date]";
+
+    private ProfileEncoder() {
+    }
+
+    /**
+     * Appends the compact encoding of a request.
+     *
+     * @param request The request to encode
+     * @param out The buffer to append to
+     */
+    public static void encode(RecommendationRequest request, StringBuilder out) {
+        encode(request, request.getPurchaseHistory() == null ? List.of() : request.getPurchaseHistory(), List.of(), out);
+    }
+
+    /**
+     * Appends the compact encoding of a request whose purchase history has been compacted.
+     *
+     * @param request The request to encode; its own purchase history is ignored
+     * @param history The purchases to encode verbatim
+     * @param summaries Per-category summaries of the remaining purchases
+     * @param out The buffer to append to
+     */
+    public static void encode(RecommendationRequest request, List<PurchaseHistory> history,
+                              List<HistoryCompactor.CategorySummary> summaries, StringBuilder out) {
+        List<String> categories = new ArrayList<>(8);
+        List<String> categoryKeys = new ArrayList<>(8);
+        int[] preferred = indexes(request.getPreferredCategories(), categories, categoryKeys);
+        int[] historyCategories = new int[history.size()];
+        for (int i = 0; i < historyCategories.length; i++) {
+            historyCategories[i] = index(history.get(i).getCategory(), categories, categoryKeys);
+        }
+        int[] summaryCategories = new int[summaries.size()];
+        for (int i = 0; i < summaryCategories.length; i++) {
+            summaryCategories[i] = index(summaries.get(i).getCategory(), categories, categoryKeys);
+        }
+
+        out.append('{');
+        boolean first = true;
+        if (request.getUserId() != null && !request.getUserId().isEmpty()) {
+            first = key(out, "u", first);
+            string(out, request.getUserId());
+        }
+        if (request.getInterests() != null && !request.getInterests().isEmpty()) {
+            first = key(out, "i", first);
+            out.append('[');
+            for (int i = 0; i < request.getInterests().size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                string(out, request.getInterests().get(i));
+            }
+            out.append(']');
+        }
+        if (request.getBudget() != null) {
+            first = key(out, "b", first);
+            number(out, request.getBudget());
+        }
+        if (!categories.isEmpty()) {
+            first = key(out, "c", first);
+            out.append('[');
+            for (int i = 0; i < categories.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                string(out, categories.get(i));
+            }
+            out.append(']');
+        }
+        if (preferred.length > 0) {
+            first = key(out, "p", first);
+            out.append('[');
+            for (int i = 0; i < preferred.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(preferred[i]);
+            }
+            out.append(']');
+        }
+        if (historyCategories.length > 0) {
+            first = key(out, "h", first);
+            out.append('[');
+            for (int i = 0; i < historyCategories.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                encodePurchase(history.get(i), historyCategories[i], out);
+            }
+            out.append(']');
+        }
+        if (summaryCategories.length > 0) {
+            key(out, "s", first);
+            out.append('[');
+            for (int i = 0; i < summaryCategories.length; i++) {
+                HistoryCompactor.CategorySummary summary = summaries.get(i);
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append('[');
+                category(out, summaryCategories[i]);
+                out.append(',').append(summary.getCount()).append(',');
+                number(out, summary.getSpend());
+                if (summary.getLastPurchase() != null) {
+                    out.append(',');
+                    string(out, summary.getLastPurchase().toString());
+                }
+                out.append(']');
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    /**
+     * Appends one purchase as a positional array.
+     *
+     * @param purchase The purchase
+     * @param categoryIndex The index of its category in the profile's dictionary, or -1
+     * @param out The buffer to append to
+     */
+    static void encodePurchase(PurchaseHistory purchase, int categoryIndex, StringBuilder out) {
+        out.append('[');
+        string(out, purchase.getProductId());
+        out.append(',');
+        string(out, purchase.getProductName());
+        out.append(',');
+        category(out, categoryIndex);
+        out.append(',');
+        number(out, purchase.getPrice());
+        if (purchase.getPurchaseDate() != null && !purchase.getPurchaseDate().isEmpty()) {
+            out.append(',');
+            string(out, purchase.getPurchaseDate());
+        }
+        out.append(']');
+    }
+
+    /**
+     * Appends catalog products the model may choose from, as an array of {@code [productId, name, category, price]}.
+     * Descriptions are left out; the name and category are enough to pick and rank.
+     *
+     * @param candidates The products
+     * @param out The buffer to append to
+     */
+    public static void encodeCandidates(List<Product> candidates, StringBuilder out) {
+        out.append('[');
+        for (int i = 0; i < candidates.size(); i++) {
+            Product product = candidates.get(i);
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append('[');
+            string(out, product.getId());
+            out.append(',');
+            string(out, product.getName());
+            out.append(',');
+            string(out, product.getCategory());
+            out.append(',');
+            number(out, product.getPrice());
+            out.append(']');
+        }
+        out.append(']');
+    }
+
+    private static void category(StringBuilder out, int categoryIndex) {
+        if (categoryIndex < 0) {
+            out.append("null");
+        } else {
+            out.append(categoryIndex);
+        }
+    }
+
+    private static int[] indexes(List<String> names, List<String> categories, List<String> categoryKeys) {
+        if (names == null || names.isEmpty()) {
+            return new int[0];
+        }
+        int[] result = new int[names.size()];
+        int count = 0;
+        for (String name : names) {
+            int index = index(name, categories, categoryKeys);
+            if (index >= 0) {
+                result[count++] = index;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the dictionary index of a category, adding it on first sight; categories differing only in case
+     * or surrounding whitespace share an entry.
+     */
+    private static int index(String name, List<String> categories, List<String> categoryKeys) {
+        if (name == null || name.isBlank()) {
+            return -1;
+        }
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        int index = categoryKeys.indexOf(key);
+        if (index < 0) {
+            categoryKeys.add(key);
+            categories.add(name.trim());
+            index = categories.size() - 1;
+        }
+        return index;
+    }
+
+    private static boolean key(StringBuilder out, String key, boolean first) {
+        if (!first) {
+            out.append(',');
+        }
+        out.append('"').append(key).append("\":");
+        return false;
+    }
+
+    private static void number(StringBuilder out, double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else if (Double.isFinite(value)) {
+            out.append(value);
+        } else {
+            out.append("null");
+        }
+    }
+
+    private static void string(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,327 @@
+package com.querino.ai.prompt;
+
+import com.querino.ai.model.Product;
+import com.querino.ai.model.RecommendationRequest;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds the recommendation prompts. The templates are compiled once; each prompt is rendered into a
+ * per-thread buffer that is reused across calls, with the user profiles compacted to the token budget by
+ * {@link HistoryCompactor} and encoded by {@link ProfileEncoder}.
+ */
+@Component
+public class PromptPipeline {
+
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final CompiledTemplate RECOMMENDATION = CompiledTemplate.compile("""
+        You are a shopping recommendation assistant. Based on the user's preferences and purchase history,
+        recommend products that they might be interested in.
+
+        User profile (compact JSON; {legend}):
+        {profile}
+
+        Provide recommendations in the following JSON format:
+        {
+          "userId": "user's ID",
+          "recommendedProducts": [
+            {
+              "productId": "generated unique ID",
+              "productName": "name of the product",
+              "category": "product category",
+              "price": price as a number,
+              "reasonForRecommendation": "detailed reason why this product is recommended"
+            }
+          ],
+          "reasonForRecommendation": "overall explanation for the recommendations"
+        }
+
+        Generate 3-5 product recommendations that match the user's interests, are within their budget (if specified),
+        and align with their preferred categories (if specified). Consider their purchase history to avoid recommending
+        similar products they already own. Each recommendation should have a unique ID, realistic name, appropriate category,
+        reasonable price, and a personalized reason for recommendation.
+
+        Respond ONLY with the JSON, no additional text.
+        """, "legend", "profile");
+
+    private static final CompiledTemplate PACKED = CompiledTemplate.compile("""
+        You are a shopping recommendation assistant. For EACH of the users below, based on that user's
+        preferences and purchase history, recommend products that they might be interested in.
+
+        Users (a JSON array, one compact profile per user; {legend}):
+        {profiles}
+
+        Provide recommendations as a JSON array with exactly one entry per user, in the following format:
+        [
+          {
+            "userId": "the user's ID, copied exactly from the input",
+            "recommendedProducts": [
+              {
+                "productId": "generated unique ID",
+                "productName": "name of the product",
+                "category": "product category",
+                "price": price as a number,
+                "reasonForRecommendation": "detailed reason why this product is recommended"
+              }
+            ],
+            "reasonForRecommendation": "overall explanation for this user's recommendations"
+          }
+        ]
+
+        For each user, generate 3-5 product recommendations that match their interests, are within their budget
+        (if specified), and align with their preferred categories (if specified). Consider their purchase history
+        to avoid recommending similar products they already own. Each recommendation should have a unique ID,
+        realistic name, appropriate category, reasonable price, and a personalized reason for recommendation.
+        Never mix up users: every recommendation must be based only on that user's own information.
+
+        Respond ONLY with the JSON array, no additional text.
+        """, "legend", "profiles");
+
+    private static final CompiledTemplate GROUNDED = CompiledTemplate.compile("""
+        You are a shopping recommendation assistant. Based on the user's preferences and purchase history,
+        pick the products from our catalog that they are most likely to be interested in.
+
+        User profile (compact JSON; {legend}):
+        {profile}
+
+        Candidate products (JSON array of [productId, name, category, price]):
+        {candidates}
+
+        Provide recommendations in the following JSON format:
+        {
+          "userId": "user's ID",
+          "recommendedProducts": [
+            {
+              "productId": "productId copied exactly from the candidates",
+              "reasonForRecommendation": "one sentence on why this product suits the user"
+            }
+          ],
+          "reasonForRecommendation": "overall explanation for the recommendations"
+        }
+
+        Pick 3-5 candidates, best match first, that match the user's interests, are within their budget (if specified)
+        and align with their preferred categories (if specified). Avoid products similar to ones they already own.
+        Only use productIds from the candidate list.
+
+        Respond ONLY with the JSON, no additional text.
+        """, "legend", "profile", "candidates");
+
+    private static final CompiledTemplate PACKED_GROUNDED = CompiledTemplate.compile("""
+        You are a shopping recommendation assistant. For EACH of the users below, based on that user's
+        preferences and purchase history, pick the products from that user's candidates that they are most
+        likely to be interested in.
+
+        Users (a JSON array with one {"profile": compact profile, "candidates": [[productId, name, category, price], ...]}
+        per user; profile keys: {legend}):
+        {users}
+
+        Provide recommendations as a JSON array with exactly one entry per user, in the following format:
+        [
+          {
+            "userId": "the user's ID, copied exactly from the input",
+            "recommendedProducts": [
+              {
+                "productId": "productId copied exactly from that user's candidates",
+                "reasonForRecommendation": "one sentence on why this product suits the user"
+              }
+            ],
+            "reasonForRecommendation": "overall explanation for this user's recommendations"
+          }
+        ]
+
+        For each user, pick 3-5 of their candidates, best match first, that match their interests, are within their
+        budget (if specified) and align with their preferred categories (if specified). Avoid products similar to ones
+        they already own. Only use productIds from that user's own candidate list.
+
+        Respond ONLY with the JSON array, no additional text.
+        """, "legend", "users");
+
+    private static final CompiledTemplate.SlotWriter LEGEND = out -> out.append(ProfileEncoder.LEGEND);
+
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+    private final HistoryCompactor historyCompactor;
+
+    private final LongAdder profiles = new LongAdder();
+    private final LongAdder compactedProfiles = new LongAdder();
+    private final LongAdder rolledUpPurchases = new LongAdder();
+    private final LongAdder profileTokens = new LongAdder();
+    private final LongAccumulator maxProfileTokens = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param profileTokenBudget Maximum estimated tokens of one encoded user profile
+     */
+    @Autowired
+    public PromptPipeline(@Value("${recommendation.prompt.profile-token-budget:600}") int profileTokenBudget) {
+        this.historyCompactor = new HistoryCompactor(profileTokenBudget);
+    }
+
+    /**
+     * Builds the prompt asking for one user's recommendations.
+     *
+     * @param request The recommendation request
+     * @return The prompt
+     */
+    public Prompt recommendationPrompt(RecommendationRequest request) {
+        StringBuilder buffer = buffer();
+        RECOMMENDATION.render(buffer, LEGEND, out -> encodeProfile(request, out));
+        return new Prompt(release(buffer));
+    }
+
+    /**
+     * Builds the prompt asking for several users' recommendations at once.
+     *
+     * @param requests The recommendation requests, each with a distinct userId
+     * @return The prompt
+     */
+    public Prompt packedPrompt(List<RecommendationRequest> requests) {
+        StringBuilder buffer = buffer();
+        PACKED.render(buffer, LEGEND, out -> {
+            out.append('[');
+            for (int i = 0; i < requests.size(); i++) {
+                if (i > 0) {
+                    out.append(",\n");
+                }
+                encodeProfile(requests.get(i), out);
+            }
+            out.append(']');
+        });
+        return new Prompt(release(buffer));
+    }
+
+    /**
+     * Builds the prompt asking the model to pick and rank one user's recommendations from catalog candidates.
+     *
+     * @param request The recommendation request
+     * @param candidates The catalog products the model may choose from
+     * @return The prompt
+     */
+    public Prompt groundedPrompt(RecommendationRequest request, List<Product> candidates) {
+        StringBuilder buffer = buffer();
+        GROUNDED.render(buffer, LEGEND, out -> encodeProfile(request, out),
+            out -> ProfileEncoder.encodeCandidates(candidates, out));
+        return new Prompt(release(buffer));
+    }
+
+    /**
+     * Builds the prompt asking the model to pick and rank several users' recommendations from their candidates.
+     *
+     * @param requests The recommendation requests, each with a distinct userId
+     * @param candidates The catalog products each user's recommendations may be chosen from, in request order
+     * @return The prompt
+     */
+    public Prompt packedGroundedPrompt(List<RecommendationRequest> requests, List<List<Product>> candidates) {
+        StringBuilder buffer = buffer();
+        PACKED_GROUNDED.render(buffer, LEGEND, out -> {
+            out.append('[');
+            for (int i = 0; i < requests.size(); i++) {
+                if (i > 0) {
+                    out.append(",\n");
+                }
+                out.append("{\"profile\":");
+                encodeProfile(requests.get(i), out);
+                out.append(",\"candidates\":");
+                ProfileEncoder.encodeCandidates(candidates.get(i), out);
+                out.append('}');
+            }
+            out.append(']');
+        });
+        return new Prompt(release(buffer));
+    }
+
+    private void encodeProfile(RecommendationRequest request, StringBuilder out) {
+        HistoryCompactor.CompactedHistory history = historyCompactor.compact(request);
+        ProfileEncoder.encode(request, history.getPurchases(), history.getSummaries(), out);
+        profiles.increment();
+        profileTokens.add(history.getEstimatedTokens());
+        maxProfileTokens.accumulate(history.getEstimatedTokens());
+        if (history.isCompacted()) {
+            compactedProfiles.increment();
+            rolledUpPurchases.add(history.getRolledUpPurchases());
+        }
+    }
+
+    /**
+     * Returns a snapshot of the profile size counters.
+     *
+     * @return The current prompt statistics
+     */
+    public PromptStatistics stats() {
+        return new PromptStatistics(historyCompactor.getTokenBudget(), profiles.sum(), compactedProfiles.sum(),
+            rolledUpPurchases.sum(), profileTokens.sum(), maxProfileTokens.get());
+    }
+
+    private StringBuilder buffer() {
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    private String release(StringBuilder buffer) {
+        String text = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            // Do not keep the memory of an unusually large prompt around for the rest of the thread's life
+            buffers.remove();
+        }
+        return text;
+    }
+
+    /**
+     * Point-in-time view of the encoded profile sizes.
+     */
+    public static class PromptStatistics {
+        private final int profileTokenBudget;
+        private final long profiles;
+        private final long compactedProfiles;
+        private final long rolledUpPurchases;
+        private final long profileTokens;
+        private final long maxProfileTokens;
+
+        public PromptStatistics(int profileTokenBudget, long profiles, long compactedProfiles, long rolledUpPurchases,
+                                long profileTokens, long maxProfileTokens) {
+            this.profileTokenBudget = profileTokenBudget;
+            this.profiles = profiles;
+            this.compactedProfiles = compactedProfiles;
+            this.rolledUpPurchases = rolledUpPurchases;
+            this.profileTokens = profileTokens;
+            this.maxProfileTokens = maxProfileTokens;
+        }
+
+        public int getProfileTokenBudget() {
+            return profileTokenBudget;
+        }
+
+        public long getProfiles() {
+            return profiles;
+        }
+
+        public long getCompactedProfiles() {
+            return compactedProfiles;
+        }
+
+        public long getRolledUpPurchases() {
+            return rolledUpPurchases;
+        }
+
+        /**
+         * @return The estimated tokens of all encoded profiles
+         */
+        public long getProfileTokens() {
+            return profileTokens;
+        }
+
+        public long getMaxProfileTokens() {
+            return maxProfileTokens;
+        }
+
+        public double getAverageProfileTokens() {
+            return profiles == 0 ? 0 : (double) profileTokens / profiles;
+        }
+    }
+}
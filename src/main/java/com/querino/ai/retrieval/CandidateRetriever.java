@@ -0,0 +1,270 @@
+package com.querino.ai.retrieval;
+
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.Recommendation.RecommendedProduct;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.vector.ProductVectorIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Selects a short list of real catalog products for a user before the model is asked, so that the model only
+ * picks and ranks products instead of inventing them. The prompt then carries a few dozen short candidate
+ * entries, the answer carries product IDs and one-line reasons, and the names, categories and prices of the
+ * picks are filled in from the catalog; IDs that are not on the list are dropped.
+ * <p>
+ * Candidates come from two sources: the products of the user's preferred categories within budget, and the
+ * nearest neighbours in the {@link ProductVectorIndex} of a query made of the user's interests, preferred
+ * categories and latest purchases. Both are scored by similarity to that query, with a bonus for preferred
+ * categories; products the user already bought are left out.
+ */
+@Component
+public class CandidateRetriever {
+
+    /**
+     * Products fetched from each source per candidate slot, to leave room for filtering and re-scoring.
+     */
+    private static final int OVERFETCH = 3;
+
+    private final ProductCatalog productCatalog;
+    private final ProductVectorIndex productVectorIndex;
+    private final boolean enabled;
+    private final int maxCandidates;
+    private final double categoryBoost;
+
+    private final LongAdder shortlists = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder picked = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @Autowired
+    public CandidateRetriever(ProductCatalog productCatalog,
+                              ProductVectorIndex productVectorIndex,
+                              @Value("${recommendation.retrieval.enabled:true}") boolean enabled,
+                              @Value("${recommendation.retrieval.max-candidates:20}") int maxCandidates,
+                              @Value("${recommendation.retrieval.category-boost:0.25}") double categoryBoost) {
+        this.productCatalog = productCatalog;
+        this.productVectorIndex = productVectorIndex;
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+        this.categoryBoost = categoryBoost;
+    }
+
+    /**
+     * Creates a retriever that never shortlists, so the model recommends freely.
+     *
+     * @return A disabled retriever
+     */
+    public static CandidateRetriever disabled() {
+        return new CandidateRetriever(null, null, false, 0, 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Selects the candidates for a request.
+     *
+     * @param request The hydrated recommendation request
+     * @return The shortlist; empty when retrieval is disabled or the catalog has nothing to offer
+     */
+    public Shortlist shortlist(RecommendationRequest request) {
+        if (!enabled || maxCandidates <= 0) {
+            return Shortlist.NONE;
+        }
+        CatalogSnapshot snapshot = productCatalog.current();
+        Set<String> owned = new HashSet<>();
+        List<PurchaseHistory> history = request.getPurchaseHistory() == null ? List.of() : request.getPurchaseHistory();
+        history.forEach(purchase -> owned.add(purchase.getProductId()));
+        Set<String> preferred = new HashSet<>();
+        if (request.getPreferredCategories() != null) {
+            request.getPreferredCategories().forEach(category -> preferred.add(CatalogSnapshot.normalize(category)));
+        }
+        Double budget = request.getBudget();
+
+        float[] query = productVectorIndex.embedTaste(request.getInterests(), request.getPreferredCategories(), history);
+        Map<String, ScoredProduct> scored = new LinkedHashMap<>();
+        if (query != null) {
+            for (ProductVectorIndex.SimilarProduct similar : productVectorIndex.search(query, maxCandidates * OVERFETCH, 0)) {
+                consider(similar.product(), similar.score(), budget, owned, preferred, scored);
+            }
+        }
+        List<String> categories = preferred.isEmpty() ? null : request.getPreferredCategories();
+        for (Product product : snapshot.find(categories, budget, maxCandidates * OVERFETCH)) {
+            if (!scored.containsKey(product.getId())) {
+                float similarity = query == null ? 0 : productVectorIndex.similarity(query, product);
+                consider(product, similarity, budget, owned, preferred, scored);
+            }
+        }
+
+        List<ScoredProduct> ranked = new ArrayList<>(scored.values());
+        ranked.sort(Comparator.comparingDouble(ScoredProduct::score).reversed());
+        List<Product> selected = new ArrayList<>(Math.min(maxCandidates, ranked.size()));
+        for (int i = 0; i < ranked.size() && selected.size() < maxCandidates; i++) {
+            selected.add(ranked.get(i).product());
+        }
+        if (selected.isEmpty()) {
+            return Shortlist.NONE;
+        }
+        shortlists.increment();
+        candidates.add(selected.size());
+        return new Shortlist(selected, this);
+    }
+
+    private void consider(Product product, float similarity, Double budget, Set<String> owned, Set<String> preferred,
+                          Map<String, ScoredProduct> scored) {
+        if (owned.contains(product.getId()) || (budget != null && product.getPrice() > budget)) {
+            return;
+        }
+        double score = similarity + (preferred.contains(CatalogSnapshot.normalize(product.getCategory())) ? categoryBoost : 0);
+        scored.putIfAbsent(product.getId(), new ScoredProduct(product, score));
+    }
+
+    /**
+     * Returns a snapshot of the retrieval counters.
+     *
+     * @return The current retrieval statistics
+     */
+    public RetrievalStatistics stats() {
+        return new RetrievalStatistics(maxCandidates, shortlists.sum(), candidates.sum(), picked.sum(), dropped.sum());
+    }
+
+    private record ScoredProduct(Product product, double score) {
+    }
+
+    /**
+     * The candidates offered to the model for one request, and the means to turn the model's picks back into
+     * full catalog products.
+     */
+    public static final class Shortlist {
+
+        static final Shortlist NONE = new Shortlist(List.of(), null);
+
+        private final List<Product> products;
+        private final Map<String, Product> byId;
+        private final CandidateRetriever retriever;
+
+        Shortlist(List<Product> products, CandidateRetriever retriever) {
+            this.products = List.copyOf(products);
+            this.byId = new LinkedHashMap<>();
+            products.forEach(product -> byId.put(product.getId(), product));
+            this.retriever = retriever;
+        }
+
+        public List<Product> getProducts() {
+            return products;
+        }
+
+        public boolean isEmpty() {
+            return products.isEmpty();
+        }
+
+        /**
+         * Completes one picked product from the catalog.
+         *
+         * @param pick A product from the model's answer; only its ID and reason are used
+         * @return The picked product with catalog name, category and price, or null if its ID was not a candidate
+         */
+        public RecommendedProduct ground(RecommendedProduct pick) {
+            Product product = pick == null || pick.getProductId() == null ? null : byId.get(pick.getProductId().trim());
+            if (product == null) {
+                if (retriever != null) {
+                    retriever.dropped.increment();
+                }
+                return null;
+            }
+            if (retriever != null) {
+                retriever.picked.increment();
+            }
+            return new RecommendedProduct(product.getId(), product.getName(), product.getCategory(), product.getPrice(),
+                pick.getReasonForRecommendation());
+        }
+
+        /**
+         * Completes every picked product from the catalog, dropping IDs that were not candidates and repeats.
+         *
+         * @param recommendation The model's answer
+         * @return The same recommendation, with grounded products
+         */
+        public Recommendation ground(Recommendation recommendation) {
+            if (recommendation.getRecommendedProducts() == null) {
+                recommendation.setRecommendedProducts(new ArrayList<>());
+                return recommendation;
+            }
+            List<RecommendedProduct> grounded = new ArrayList<>(recommendation.getRecommendedProducts().size());
+            Set<String> seen = new HashSet<>();
+            for (RecommendedProduct pick : recommendation.getRecommendedProducts()) {
+                RecommendedProduct product = ground(pick);
+                if (product != null && seen.add(product.getProductId())) {
+                    grounded.add(product);
+                }
+            }
+            recommendation.setRecommendedProducts(grounded);
+            return recommendation;
+        }
+    }
+
+    /**
+     * Point-in-time view of the retrieval counters.
+     */
+    public static class RetrievalStatistics {
+        private final int maxCandidates;
+        private final long shortlists;
+        private final long candidates;
+        private final long picked;
+        private final long dropped;
+
+        public RetrievalStatistics(int maxCandidates, long shortlists, long candidates, long picked, long dropped) {
+            this.maxCandidates = maxCandidates;
+            this.shortlists = shortlists;
+            this.candidates = candidates;
+            this.picked = picked;
+            this.dropped = dropped;
+        }
+
+        public int getMaxCandidates() {
+            return maxCandidates;
+        }
+
+        public long getShortlists() {
+            return shortlists;
+        }
+
+        public long getCandidates() {
+            return candidates;
+        }
+
+        public double getAverageCandidates() {
+            return shortlists == 0 ? 0 : (double) candidates / shortlists;
+        }
+
+        /**
+         * @return The picked products that were on the shortlist
+         */
+        public long getPicked() {
+            return picked;
+        }
+
+        /**
+         * @return The picked products that were not on the shortlist and were left out of the answer
+         */
+        public long getDropped() {
+            return dropped;
+        }
+    }
+}
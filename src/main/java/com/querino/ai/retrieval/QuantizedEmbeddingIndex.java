@@ -0,0 +1,346 @@
+package com.querino.ai.retrieval;
+
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.catalog.ProductTable;
+import com.querino.ai.model.Product;
+import com.querino.ai.profile.UserProfile;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.vector.ProductVectorIndex;
+import com.querino.ai.vector.ProductVectorIndex.SimilarProduct;
+import com.querino.ai.vector.QuantizedVectors;
+import com.querino.ai.vector.VectorKernels;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Product and user embeddings kept as 8-bit {@link QuantizedVectors}, for matching users to products and to each
+ * other by brute force without holding float vectors for the whole catalog and user base. Products are embedded
+ * like in the {@link ProductVectorIndex}; a user is embedded from their interests, preferred categories and
+ * latest purchases. Because the embedder is deterministic, the final shortlist is re-ranked by re-embedding just
+ * those few products or users in full precision instead of storing the float vectors.
+ * <p>
+ * The quantized product embeddings are the only brute-force copy of the catalog's vectors; the
+ * {@link com.querino.ai.engine.EmbeddingEngine} scans them through {@link #productsLike}. User embeddings follow
+ * the {@link UserProfileStore}: they are re-embedded whenever a profile changes and dropped with the profile.
+ * <p>
+ * Nothing is embedded on the caller's thread. The users stored at startup are embedded in the background, and
+ * the product embeddings of a catalog version are built in the background once a search needs them; until they
+ * are, product searches are answered by the {@link ProductVectorIndex}.
+ */
+@Component
+public class QuantizedEmbeddingIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuantizedEmbeddingIndex.class);
+    private static final VectorKernels KERNELS = VectorKernels.get();
+
+    private final ProductCatalog productCatalog;
+    private final ProductVectorIndex productVectorIndex;
+    private final UserProfileStore userProfileStore;
+    private final int rerankFactor;
+    private final QuantizedVectors users;
+    /**
+     * Serializes storing user embeddings, so that the startup pass never overwrites a newer profile's embedding.
+     */
+    private final Object userLock = new Object();
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quantized-embeddings");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    private volatile IndexedProducts products;
+
+    @Autowired
+    public QuantizedEmbeddingIndex(ProductCatalog productCatalog,
+                                   ProductVectorIndex productVectorIndex,
+                                   UserProfileStore userProfileStore,
+                                   @Value("${recommendation.quantization.rerank-factor:4}") int rerankFactor) {
+        this.productCatalog = productCatalog;
+        this.productVectorIndex = productVectorIndex;
+        this.userProfileStore = userProfileStore;
+        this.rerankFactor = rerankFactor;
+        this.users = new QuantizedVectors(productVectorIndex.embed("").length);
+        // Catalog versions start at 1, so the products are embedded once a search needs them
+        this.products = new IndexedProducts(0, null);
+        // Listen before the first pass, so that no change made during it is missed
+        userProfileStore.addListener(new UserProfileStore.ProfileListener() {
+            @Override
+            public void updated(UserProfile profile) {
+                synchronized (userLock) {
+                    embedUser(profile);
+                }
+            }
+
+            @Override
+            public void removed(String userId) {
+                synchronized (userLock) {
+                    users.remove(userId);
+                }
+            }
+        });
+        builder.execute(this::embedStoredUsers);
+    }
+
+    @PreDestroy
+    public void close() {
+        builder.shutdownNow();
+    }
+
+    /**
+     * Finds the catalog products closest to a user's taste, leaving out products the user already bought.
+     *
+     * @param userId The user ID
+     * @param limit The maximum number of products
+     * @return The products with exact similarities, most similar first, or null if the user has no profile
+     */
+    public List<SimilarProduct> productsForUser(String userId, int limit) {
+        UserProfile profile = userProfileStore.get(userId);
+        if (profile == null) {
+            return null;
+        }
+        float[] query = tasteOf(profile);
+        if (query == null) {
+            return List.of();
+        }
+        Set<String> owned = new HashSet<>();
+        profile.getPurchases().forEach(purchase -> owned.add(purchase.getProductId()));
+        return productsLike(query, limit, owned);
+    }
+
+    /**
+     * Finds the catalog products closest to an embedding: the quantized codes pick {@code limit * rerankFactor}
+     * candidates, which are re-embedded and ranked by exact similarity.
+     *
+     * @param query The query embedding, e.g. a taste from {@link ProductVectorIndex#embedTaste}
+     * @param limit The maximum number of products
+     * @param excluded IDs of products not to return
+     * @return The products with exact similarities, most similar first
+     */
+    public List<SimilarProduct> productsLike(float[] query, int limit, Set<String> excluded) {
+        CatalogSnapshot snapshot = productCatalog.current();
+        IndexedProducts indexed = products(snapshot);
+        if (indexed == null) {
+            return fromVectorIndex(query, limit, excluded);
+        }
+        List<QuantizedVectors.Match> candidates = indexed.vectors.search(query, limit * Math.max(1, rerankFactor),
+            excluded);
+        List<SimilarProduct> scored = new ArrayList<>(candidates.size());
+        for (QuantizedVectors.Match candidate : candidates) {
+            Product product = snapshot.findById(candidate.key());
+            if (product != null) {
+                scored.add(new SimilarProduct(product, productVectorIndex.similarity(query, product)));
+            }
+        }
+        scored.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return scored.size() > limit ? new ArrayList<>(scored.subList(0, limit)) : scored;
+    }
+
+    /**
+     * @return Whether the product embeddings of the current catalog are built and searched
+     */
+    public boolean isReady() {
+        return products.catalogVersion == productCatalog.current().getVersion();
+    }
+
+    /**
+     * Finds the users with the most similar taste.
+     *
+     * @param userId The user ID
+     * @param limit The maximum number of users, not counting the user
+     * @return The user IDs with exact similarities, most similar first, or null if the user has no profile
+     */
+    public List<QuantizedVectors.Match> similarUsers(String userId, int limit) {
+        UserProfile profile = userProfileStore.get(userId);
+        if (profile == null) {
+            return null;
+        }
+        float[] query = tasteOf(profile);
+        if (query == null) {
+            return List.of();
+        }
+        List<QuantizedVectors.Match> matches = users.search(query, limit + 1, rerankFactor, key -> {
+            UserProfile other = userProfileStore.get(key);
+            float[] vector = other == null ? null : tasteOf(other);
+            return vector == null ? -1 : KERNELS.dot(query, vector);
+        });
+        List<QuantizedVectors.Match> others = new ArrayList<>(limit);
+        for (QuantizedVectors.Match match : matches) {
+            if (!match.key().equals(userId) && others.size() < limit) {
+                others.add(match);
+            }
+        }
+        return others;
+    }
+
+    /**
+     * Measures the memory saved by quantizing the product embeddings and the recall lost, using the stored
+     * users (or, without users, product names) as queries against brute-force float search.
+     *
+     * @param queries The maximum number of queries
+     * @param k The number of neighbours per query
+     * @return The memory footprint and recall of the quantized product embeddings
+     */
+    public QuantizedVectors.QuantizationReport report(int queries, int k) {
+        CatalogSnapshot snapshot = productCatalog.current();
+        List<float[]> vectors = new ArrayList<>(queries);
+        for (String userId : userProfileStore.userIds()) {
+            UserProfile profile = userProfileStore.get(userId);
+            if (vectors.size() < queries && profile != null) {
+                float[] taste = tasteOf(profile);
+                if (taste != null) {
+                    vectors.add(taste);
+                }
+            }
+        }
+        ProductTable table = snapshot.getTable();
+        for (int row = 0; row < table.size() && vectors.size() < queries; row++) {
+            vectors.add(productVectorIndex.embed(table.getProduct(row).getName()));
+        }
+        return awaitProducts(snapshot).vectors.evaluate(vectors, k, rerankFactor,
+            productId -> productVectorIndex.embed(snapshot.findById(productId)));
+    }
+
+    /**
+     * @return The number of users with a stored embedding
+     */
+    public int userCount() {
+        return users.size();
+    }
+
+    /**
+     * Stores the embedding of a user's current profile, or drops it when there is nothing to embed.
+     */
+    private void embedUser(UserProfile profile) {
+        float[] vector = tasteOf(profile);
+        if (vector == null) {
+            users.remove(profile.getUserId());
+        } else {
+            users.put(profile.getUserId(), vector);
+        }
+    }
+
+    private float[] tasteOf(UserProfile profile) {
+        return productVectorIndex.embedTaste(profile.getInterests(), profile.getPreferredCategories(), profile.getPurchases());
+    }
+
+    /**
+     * Embeds the users stored before this index listened to the store. Profiles are read again under the user
+     * lock, so an embedding stored by the listener in the meantime is only ever replaced by the same profile's.
+     */
+    private void embedStoredUsers() {
+        long start = System.nanoTime();
+        for (String userId : userProfileStore.userIds()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            synchronized (userLock) {
+                UserProfile profile = userProfileStore.get(userId);
+                if (profile != null) {
+                    embedUser(profile);
+                }
+            }
+        }
+        logger.info("Embedded {} stored users in {} ms", users.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Searches the vector index instead of the quantized codes, while those are being built.
+     */
+    private List<SimilarProduct> fromVectorIndex(float[] query, int limit, Set<String> excluded) {
+        List<SimilarProduct> found = productVectorIndex.search(query, limit + excluded.size(), 0);
+        List<SimilarProduct> results = new ArrayList<>(Math.min(limit, found.size()));
+        for (SimilarProduct product : found) {
+            if (results.size() < limit && !excluded.contains(product.product().getId())) {
+                results.add(product);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the quantized product embeddings of a catalog version, or null after starting to build them in the
+     * background when they are missing or belong to an older catalog.
+     */
+    private IndexedProducts products(CatalogSnapshot snapshot) {
+        IndexedProducts current = products;
+        if (current.catalogVersion == snapshot.getVersion()) {
+            return current;
+        }
+        if (building.compareAndSet(false, true)) {
+            builder.execute(this::buildProducts);
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the product embeddings of a catalog version, for callers that need them rather than an answer.
+     */
+    private IndexedProducts awaitProducts(CatalogSnapshot snapshot) {
+        IndexedProducts ready = products(snapshot);
+        if (ready != null) {
+            return ready;
+        }
+        try {
+            // The builder runs one task at a time, so this one runs after the build
+            ready = builder.submit(() -> products).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the product embeddings", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Product embeddings could not be built", e.getCause());
+        }
+        if (ready.vectors == null) {
+            throw new IllegalStateException("Product embeddings could not be built");
+        }
+        return ready;
+    }
+
+    /**
+     * Builds the product embeddings on the builder thread until they match the current catalog. The caller must
+     * have set {@code building}.
+     */
+    private void buildProducts() {
+        try {
+            CatalogSnapshot snapshot = productCatalog.current();
+            while (products.catalogVersion != snapshot.getVersion()) {
+                long start = System.nanoTime();
+                products = index(snapshot);
+                logger.info("Quantized {} product embeddings in {} ms", snapshot.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+                snapshot = productCatalog.current();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Building the quantized product embeddings failed", e);
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private IndexedProducts index(CatalogSnapshot snapshot) {
+        ProductTable table = snapshot.getTable();
+        QuantizedVectors vectors = new QuantizedVectors(users.getDimensions());
+        for (int row = 0; row < table.size(); row++) {
+            Product product = table.getProduct(row);
+            vectors.put(product.getId(), productVectorIndex.embed(product));
+        }
+        return new IndexedProducts(snapshot.getVersion(), vectors);
+    }
+
+    private record IndexedProducts(long catalogVersion, QuantizedVectors vectors) {
+    }
+}
@@ -0,0 +1,188 @@
+package com.querino.ai.service;
+
+import com.querino.ai.model.BatchRecommendationResponse;
+import com.querino.ai.model.BatchRecommendationResponse.BatchItem;
+import com.querino.ai.model.BatchRecommendationResponse.Status;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Service for generating recommendations for many users at once.
+ * Requests are fanned out to the {@link RecommendationService} with bounded parallelism; a failing item
+ * never fails the batch, and items still running when the batch deadline passes are reported as timed out.
+ */
+@Service
+public class BatchRecommendationService {
+
+    private final RecommendationService recommendationService;
+    private final int maxParallelism;
+    private final int maxBatchSize;
+    private final Duration defaultDeadline;
+
+    @Autowired
+    public BatchRecommendationService(RecommendationService recommendationService,
+                                      @Value("${recommendation.batch.max-parallelism:8}") int maxParallelism,
+                                      @Value("${recommendation.batch.max-size:500}") int maxBatchSize,
+                                      @Value("${recommendation.batch.deadline:20s}") Duration defaultDeadline) {
+        this.recommendationService = recommendationService;
+        this.maxParallelism = maxParallelism;
+        this.maxBatchSize = maxBatchSize;
+        this.defaultDeadline = defaultDeadline;
+    }
+
+    /**
+     * Generates recommendations for every request of the batch.
+     *
+     * @param requests The recommendation requests
+     * @param deadline The time budget for the whole batch, or null for the configured default
+     * @return A future completed, at the latest when the deadline passes, with one result per request in input order
+     * @throws IllegalArgumentException If the batch is larger than the configured maximum
+     */
+    public CompletableFuture<BatchRecommendationResponse> generateBatchRecommendations(List<RecommendationRequest> requests,
+                                                                                       Duration deadline) {
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size " + requests.size() + " exceeds the maximum of " + maxBatchSize);
+        }
+        return new BatchRun(requests).start(deadline == null ? defaultDeadline : deadline);
+    }
+
+    /**
+     * State of one batch: a sliding window of at most {@code maxParallelism} in-flight items.
+     * <p>
+     * Items are started by a single drain loop: a completion only asks for the next start, so calls that
+     * complete synchronously (cache hits, engine answers) refill the window iteratively instead of recursing.
+     */
+    private class BatchRun {
+        private final List<RecommendationRequest> requests;
+        private final AtomicReferenceArray<BatchItem> items;
+        private final AtomicReferenceArray<CompletableFuture<Recommendation>> calls;
+        private final AtomicLongArray startedAt;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private final AtomicInteger pendingStarts = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final long batchStart = System.nanoTime();
+
+        BatchRun(List<RecommendationRequest> requests) {
+            this.requests = requests;
+            this.items = new AtomicReferenceArray<>(requests.size());
+            this.calls = new AtomicReferenceArray<>(requests.size());
+            this.startedAt = new AtomicLongArray(requests.size());
+            this.remaining = new AtomicInteger(requests.size());
+        }
+
+        CompletableFuture<BatchRecommendationResponse> start(Duration deadline) {
+            if (requests.isEmpty()) {
+                done.complete(null);
+            }
+            requestStarts(Math.min(maxParallelism, requests.size()));
+            return done.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((ignored, error) -> {
+                    if (error != null) {
+                        cancelInFlight();
+                    }
+                    return buildResponse();
+                });
+        }
+
+        /**
+         * Asks for the given number of items to be started. Only the thread that finds no starts pending runs
+         * the loop; starts requested meanwhile, including by completions of the items it starts, are picked up
+         * by that loop instead of a nested call.
+         */
+        private void requestStarts(int count) {
+            if (pendingStarts.getAndAdd(count) != 0) {
+                return;
+            }
+            int missed = count;
+            do {
+                for (int i = 0; i < missed; i++) {
+                    startNext();
+                }
+                missed = pendingStarts.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Cancels the calls still running after the deadline so that their results are dropped.
+         */
+        private void cancelInFlight() {
+            for (int i = 0; i < requests.size(); i++) {
+                CompletableFuture<Recommendation> call = calls.get(i);
+                if (call != null && items.get(i) == null) {
+                    call.cancel(true);
+                }
+            }
+        }
+
+        private void startNext() {
+            int index = nextIndex.getAndIncrement();
+            if (index >= requests.size() || done.isDone()) {
+                return;
+            }
+            RecommendationRequest request = requests.get(index);
+            startedAt.set(index, System.nanoTime());
+            CompletableFuture<Recommendation> call;
+            if (request == null) {
+                call = CompletableFuture.failedFuture(new IllegalArgumentException("Request must not be null"));
+            } else {
+                try {
+                    call = recommendationService.fetchRecommendationsAsync(request);
+                } catch (RuntimeException e) {
+                    call = CompletableFuture.failedFuture(e);
+                }
+            }
+            calls.set(index, call);
+            call.whenComplete((recommendation, error) -> {
+                if (done.isDone()) {
+                    return;
+                }
+                long elapsed = elapsedMillis(startedAt.get(index));
+                String userId = request == null ? null : request.getUserId();
+                if (error == null) {
+                    items.set(index, new BatchItem(index, userId, Status.OK, recommendation, null, elapsed));
+                } else {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    items.set(index, new BatchItem(index, userId, Status.FAILED, null, String.valueOf(cause.getMessage()), elapsed));
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    done.complete(null);
+                } else {
+                    requestStarts(1);
+                }
+            });
+        }
+
+        private BatchRecommendationResponse buildResponse() {
+            List<BatchItem> results = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                BatchItem item = items.get(i);
+                if (item == null) {
+                    RecommendationRequest request = requests.get(i);
+                    long elapsed = startedAt.get(i) == 0 ? 0 : elapsedMillis(startedAt.get(i));
+                    item = new BatchItem(i, request == null ? null : request.getUserId(), Status.TIMED_OUT, null,
+                        "Batch deadline exceeded", elapsed);
+                }
+                results.add(item);
+            }
+            return new BatchRecommendationResponse(results, elapsedMillis(batchStart));
+        }
+
+        private long elapsedMillis(long startNanos) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+}
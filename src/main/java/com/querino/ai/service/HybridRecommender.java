@@ -0,0 +1,172 @@
+package com.querino.ai.service;
+
+import com.querino.ai.engine.RecommendationEngine;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Answers within a latency budget: the language model is called right away, and if it has not answered when the
+ * budget runs out (or fails before that) the request is answered by a cheap fallback engine instead.
+ * A late model answer is not wasted; it still lands in the recommendation cache and is served on the next visit.
+ */
+public class HybridRecommender {
+
+    private final Function<RecommendationRequest, CompletableFuture<Recommendation>> modelCall;
+    private final Function<RecommendationRequest, Recommendation> cacheLookup;
+    private final RecommendationEngine fallback;
+    private final Duration defaultLatencyBudget;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder modelAnswers = new LongAdder();
+    private final LongAdder deadlineFallbacks = new LongAdder();
+    private final LongAdder errorFallbacks = new LongAdder();
+    private final LongAdder lateModelAnswers = new LongAdder();
+
+    /**
+     * @param modelCall Calls the language model; its answer is expected to be cached by the caller
+     * @param cacheLookup Returns a cached model answer for the request, or null
+     * @param fallback The engine answering when the model misses the deadline
+     * @param defaultLatencyBudget Budget for requests that do not carry their own
+     */
+    public HybridRecommender(Function<RecommendationRequest, CompletableFuture<Recommendation>> modelCall,
+                             Function<RecommendationRequest, Recommendation> cacheLookup,
+                             RecommendationEngine fallback,
+                             Duration defaultLatencyBudget) {
+        this.modelCall = modelCall;
+        this.cacheLookup = cacheLookup;
+        this.fallback = fallback;
+        this.defaultLatencyBudget = defaultLatencyBudget;
+    }
+
+    /**
+     * Recommends products within the request's latency budget.
+     *
+     * @param request The recommendation request; {@link RecommendationRequest#getLatencyBudgetMillis()} overrides
+     *                the default budget
+     * @return A future completed no later than the budget, with the model's or the fallback engine's recommendation
+     */
+    public CompletableFuture<Recommendation> recommend(RecommendationRequest request) {
+        requests.increment();
+        Recommendation cached = cacheLookup.apply(request);
+        if (cached != null) {
+            cacheHits.increment();
+            modelAnswers.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        Duration budget = request.getLatencyBudgetMillis() != null
+            ? Duration.ofMillis(Math.max(0, request.getLatencyBudgetMillis()))
+            : defaultLatencyBudget;
+        CompletableFuture<Recommendation> model;
+        try {
+            model = modelCall.apply(request);
+        } catch (RuntimeException e) {
+            model = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<Recommendation> result = new CompletableFuture<>();
+        // Whoever claims the request first answers it; counters are updated before the caller sees the answer
+        AtomicBoolean claimed = new AtomicBoolean();
+        model.whenComplete((recommendation, error) -> {
+            if (error == null && recommendation != null) {
+                if (claimed.compareAndSet(false, true)) {
+                    modelAnswers.increment();
+                    result.complete(recommendation);
+                } else {
+                    lateModelAnswers.increment();
+                }
+            } else if (claimed.compareAndSet(false, true)) {
+                errorFallbacks.increment();
+                answerFromFallback(request, result);
+            }
+        });
+        if (!claimed.get()) {
+            CompletableFuture.delayedExecutor(budget.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (claimed.compareAndSet(false, true)) {
+                    deadlineFallbacks.increment();
+                    answerFromFallback(request, result);
+                }
+            });
+        }
+        return result;
+    }
+
+    private void answerFromFallback(RecommendationRequest request, CompletableFuture<Recommendation> result) {
+        try {
+            result.complete(fallback.recommend(request));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the hybrid counters.
+     *
+     * @return The current hybrid statistics
+     */
+    public HybridStatistics stats() {
+        return new HybridStatistics(requests.sum(), cacheHits.sum(), modelAnswers.sum(), deadlineFallbacks.sum(),
+            errorFallbacks.sum(), lateModelAnswers.sum());
+    }
+
+    /**
+     * Point-in-time view of the hybrid counters.
+     */
+    public static class HybridStatistics {
+        private final long requests;
+        private final long cacheHits;
+        private final long modelAnswers;
+        private final long deadlineFallbacks;
+        private final long errorFallbacks;
+        private final long lateModelAnswers;
+
+        public HybridStatistics(long requests, long cacheHits, long modelAnswers, long deadlineFallbacks,
+                                long errorFallbacks, long lateModelAnswers) {
+            this.requests = requests;
+            this.cacheHits = cacheHits;
+            this.modelAnswers = modelAnswers;
+            this.deadlineFallbacks = deadlineFallbacks;
+            this.errorFallbacks = errorFallbacks;
+            this.lateModelAnswers = lateModelAnswers;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        public long getModelAnswers() {
+            return modelAnswers;
+        }
+
+        public long getDeadlineFallbacks() {
+            return deadlineFallbacks;
+        }
+
+        public long getErrorFallbacks() {
+            return errorFallbacks;
+        }
+
+        /**
+         * @return Model answers that arrived after the fallback had already answered; they were cached
+         */
+        public long getLateModelAnswers() {
+            return lateModelAnswers;
+        }
+
+        public double getFallbackRate() {
+            return requests == 0 ? 0 : (double) (deadlineFallbacks + errorFallbacks) / requests;
+        }
+    }
+}
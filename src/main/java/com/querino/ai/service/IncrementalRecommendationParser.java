@@ -0,0 +1,159 @@
+package com.querino.ai.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.querino.ai.model.Recommendation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Incremental parser for a recommendation JSON document arriving as a token stream.
+ * Each element of {@code recommendedProducts} is emitted as soon as its closing brace is seen,
+ * so callers can forward products before the model has finished generating the whole answer.
+ * Text before the root object (e.g. a markdown code fence) and after it is ignored.
+ * Instances are not thread-safe; use one parser per stream.
+ */
+public class IncrementalRecommendationParser {
+
+    private static final String PRODUCTS_FIELD = "recommendedProducts";
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final List<Recommendation.RecommendedProduct> products = new ArrayList<>();
+
+    private boolean started;
+    private boolean complete;
+    private int depth;
+    private boolean inProducts;
+    private String currentField;
+    private String userId;
+    private String reasonForRecommendation;
+    private TokenBuffer productBuffer;
+    private int productDepth;
+
+    public IncrementalRecommendationParser(ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Feeds the next chunk of model output.
+     *
+     * @param chunk The next piece of generated text
+     * @return The products whose JSON objects were completed by this chunk, in order
+     * @throws IOException If the accumulated text is not valid JSON
+     */
+    public List<Recommendation.RecommendedProduct> feed(String chunk) throws IOException {
+        if (complete || chunk == null || chunk.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (!started) {
+            int rootStart = chunk.indexOf('{');
+            if (rootStart < 0) {
+                return Collections.emptyList();
+            }
+            started = true;
+            chunk = chunk.substring(rootStart);
+        }
+
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+
+        List<Recommendation.RecommendedProduct> emitted = Collections.emptyList();
+        JsonToken token;
+        while (!complete && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            Recommendation.RecommendedProduct product = handle(token);
+            if (product != null) {
+                if (emitted.isEmpty()) {
+                    emitted = new ArrayList<>();
+                }
+                emitted.add(product);
+                products.add(product);
+            }
+        }
+        return emitted;
+    }
+
+    private Recommendation.RecommendedProduct handle(JsonToken token) throws IOException {
+        if (productBuffer != null) {
+            productBuffer.copyCurrentEvent(parser);
+            if (token.isStructStart()) {
+                productDepth++;
+            } else if (token.isStructEnd() && --productDepth == 0) {
+                try (JsonParser productParser = productBuffer.asParser(objectMapper)) {
+                    productBuffer = null;
+                    return objectMapper.readValue(productParser, Recommendation.RecommendedProduct.class);
+                }
+            }
+            return null;
+        }
+
+        switch (token) {
+            case START_OBJECT -> {
+                if (inProducts && depth == 2) {
+                    productBuffer = new TokenBuffer(parser);
+                    productBuffer.copyCurrentEvent(parser);
+                    productDepth = 1;
+                } else {
+                    depth++;
+                }
+            }
+            case START_ARRAY -> {
+                if (depth == 1 && PRODUCTS_FIELD.equals(currentField)) {
+                    inProducts = true;
+                }
+                depth++;
+            }
+            case END_OBJECT, END_ARRAY -> {
+                depth--;
+                if (depth == 1) {
+                    inProducts = false;
+                } else if (depth == 0) {
+                    complete = true;
+                }
+            }
+            case FIELD_NAME -> {
+                if (depth == 1) {
+                    currentField = parser.currentName();
+                }
+            }
+            case VALUE_STRING -> {
+                if (depth == 1 && "userId".equals(currentField)) {
+                    userId = parser.getText();
+                } else if (depth == 1 && "reasonForRecommendation".equals(currentField)) {
+                    reasonForRecommendation = parser.getText();
+                }
+            }
+            default -> {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the root JSON object has been fully received.
+     *
+     * @return true once the closing brace of the root object was parsed
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Assembles everything parsed so far into a recommendation.
+     *
+     * @return The recommendation built from the streamed document
+     */
+    public Recommendation toRecommendation() {
+        return new Recommendation(userId, new ArrayList<>(products), reasonForRecommendation);
+    }
+}
@@ -0,0 +1,128 @@
+package com.querino.ai.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of concurrent asynchronous calls to the model without blocking any thread.
+ * Calls beyond the concurrency limit wait in a bounded queue and are started as running calls complete;
+ * calls beyond the queue bound are rejected immediately.
+ */
+@Component
+public class OutboundCallLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrentCalls;
+    private final int maxPending;
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ThreadLocal<Boolean> draining = ThreadLocal.withInitial(() -> false);
+
+    @Autowired
+    public OutboundCallLimiter(@Value("${recommendation.async.max-concurrent-calls:64}") int maxConcurrentCalls,
+                               @Value("${recommendation.async.max-pending-calls:5000}") int maxPending) {
+        this.permits = new Semaphore(maxConcurrentCalls);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Starts the call once a permit is available.
+     *
+     * @param call Starts the asynchronous call; invoked at most once
+     * @param <T> The result type
+     * @return A future completed with the call's outcome, or failed with a
+     *         {@link RejectedExecutionException} if the pending queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (Throwable t) {
+                started = CompletableFuture.failedFuture(t);
+            }
+            started.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+                release();
+            });
+        };
+
+        if (permits.tryAcquire()) {
+            start.run();
+            return result;
+        }
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            result.completeExceptionally(new RejectedExecutionException(
+                "Too many pending model calls (limit " + maxPending + ")"));
+            return result;
+        }
+        pending.add(start);
+        drainPending();
+        return result;
+    }
+
+    private void release() {
+        permits.release();
+        drainPending();
+    }
+
+    /**
+     * Starts queued calls while permits are free. A call that completes synchronously releases its permit from
+     * inside {@code next.run()}; the nested drain then returns at once and this loop starts the following call,
+     * so a queue of synchronous calls runs iteratively instead of recursing one frame per call.
+     */
+    private void drainPending() {
+        if (draining.get()) {
+            return;
+        }
+        draining.set(true);
+        try {
+            // A call may have been queued between the failed tryAcquire and a concurrent release
+            while (!pending.isEmpty() && permits.tryAcquire()) {
+                Runnable next = pending.poll();
+                if (next == null) {
+                    permits.release();
+                    continue;
+                }
+                pendingCount.decrementAndGet();
+                next.run();
+            }
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * Returns the number of calls currently running.
+     *
+     * @return The number of calls holding a permit
+     */
+    public int getActiveCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of calls waiting for a permit.
+     *
+     * @return The number of queued calls
+     */
+    public int getPendingCalls() {
+        return pendingCount.get();
+    }
+}
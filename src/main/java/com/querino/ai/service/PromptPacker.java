@@ -0,0 +1,239 @@
+package com.querino.ai.service;
+
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Groups recommendation requests that arrive within a short window into a single packed prompt, so that the
+ * fixed instructions and output schema are paid for once per group instead of once per user.
+ * The packed answer is demultiplexed by {@code userId}; users missing from it fall back to a single-user call.
+ */
+public class PromptPacker {
+
+    private final int maxUsersPerPrompt;
+    private final Duration window;
+    private final ScheduledExecutorService scheduler;
+    private final Function<List<RecommendationRequest>, CompletableFuture<List<Recommendation>>> packedCall;
+    private final Function<RecommendationRequest, CompletableFuture<Recommendation>> singleCall;
+
+    private final Object lock = new Object();
+    private List<PendingRequest> queue = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final LongAdder packedPrompts = new LongAdder();
+    private final LongAdder packedUsers = new LongAdder();
+    private final LongAdder singleCalls = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * @param maxUsersPerPrompt Maximum number of users sent in one prompt; a full group is sent immediately
+     * @param window How long the first request of a group waits for others to join
+     * @param scheduler Scheduler used to flush a group when its window closes
+     * @param packedCall Calls the model with a packed prompt and returns the recommendations it contains
+     * @param singleCall Calls the model for a single user
+     */
+    public PromptPacker(int maxUsersPerPrompt, Duration window, ScheduledExecutorService scheduler,
+                        Function<List<RecommendationRequest>, CompletableFuture<List<Recommendation>>> packedCall,
+                        Function<RecommendationRequest, CompletableFuture<Recommendation>> singleCall) {
+        this.maxUsersPerPrompt = maxUsersPerPrompt;
+        this.window = window;
+        this.scheduler = scheduler;
+        this.packedCall = packedCall;
+        this.singleCall = singleCall;
+    }
+
+    /**
+     * Queues a request for the next packed prompt.
+     *
+     * @param request The recommendation request; requests without a userId cannot be demultiplexed and are sent alone
+     * @return A future completed with the user's recommendation
+     */
+    public CompletableFuture<Recommendation> submit(RecommendationRequest request) {
+        if (request.getUserId() == null || request.getUserId().isBlank()) {
+            return callSingle(request);
+        }
+
+        PendingRequest pending = new PendingRequest(request);
+        List<PendingRequest> flushBefore = null;
+        List<PendingRequest> flushNow = null;
+        synchronized (lock) {
+            if (containsUser(queue, request.getUserId())) {
+                // The same user cannot appear twice in one prompt, so close the current group first
+                flushBefore = takeQueue();
+            }
+            queue.add(pending);
+            if (queue.size() >= maxUsersPerPrompt) {
+                flushNow = takeQueue();
+            } else if (queue.size() == 1) {
+                List<PendingRequest> group = queue;
+                scheduledFlush = scheduler.schedule(() -> flushGroup(group), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (flushBefore != null) {
+            dispatch(flushBefore);
+        }
+        if (flushNow != null) {
+            dispatch(flushNow);
+        }
+        return pending.result;
+    }
+
+    private void flushGroup(List<PendingRequest> group) {
+        List<PendingRequest> taken = null;
+        synchronized (lock) {
+            // The group may already have been sent because it filled up before the window closed
+            if (queue == group && !queue.isEmpty()) {
+                taken = takeQueue();
+            }
+        }
+        if (taken != null) {
+            dispatch(taken);
+        }
+    }
+
+    private List<PendingRequest> takeQueue() {
+        List<PendingRequest> taken = queue;
+        queue = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return taken;
+    }
+
+    private static boolean containsUser(List<PendingRequest> group, String userId) {
+        for (PendingRequest pending : group) {
+            if (userId.equals(pending.request.getUserId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dispatch(List<PendingRequest> group) {
+        if (group.size() == 1) {
+            PendingRequest only = group.get(0);
+            forward(callSingle(only.request), only.result);
+            return;
+        }
+
+        List<RecommendationRequest> requests = new ArrayList<>(group.size());
+        for (PendingRequest pending : group) {
+            requests.add(pending.request);
+        }
+        packedPrompts.increment();
+        packedUsers.add(group.size());
+
+        CompletableFuture<List<Recommendation>> call;
+        try {
+            call = packedCall.apply(requests);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((recommendations, error) -> {
+            Map<String, Recommendation> byUser = new HashMap<>();
+            if (error == null && recommendations != null) {
+                for (Recommendation recommendation : recommendations) {
+                    if (recommendation != null && recommendation.getUserId() != null) {
+                        byUser.putIfAbsent(recommendation.getUserId(), recommendation);
+                    }
+                }
+            }
+            for (PendingRequest pending : group) {
+                Recommendation recommendation = byUser.get(pending.request.getUserId());
+                if (recommendation != null) {
+                    pending.result.complete(recommendation);
+                } else {
+                    fallbacks.increment();
+                    forward(callSingle(pending.request), pending.result);
+                }
+            }
+        });
+    }
+
+    private CompletableFuture<Recommendation> callSingle(RecommendationRequest request) {
+        singleCalls.increment();
+        try {
+            return singleCall.apply(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static void forward(CompletableFuture<Recommendation> source, CompletableFuture<Recommendation> target) {
+        source.whenComplete((value, error) -> {
+            if (error != null) {
+                target.completeExceptionally(error);
+            } else {
+                target.complete(value);
+            }
+        });
+    }
+
+    /**
+     * Returns a snapshot of the packing counters.
+     *
+     * @return The current packing statistics
+     */
+    public PackingStatistics stats() {
+        return new PackingStatistics(packedPrompts.sum(), packedUsers.sum(), singleCalls.sum(), fallbacks.sum());
+    }
+
+    private static final class PendingRequest {
+        private final RecommendationRequest request;
+        private final CompletableFuture<Recommendation> result = new CompletableFuture<>();
+
+        private PendingRequest(RecommendationRequest request) {
+            this.request = request;
+        }
+    }
+
+    /**
+     * Point-in-time view of the packing counters.
+     */
+    public static class PackingStatistics {
+        private final long packedPrompts;
+        private final long packedUsers;
+        private final long singleCalls;
+        private final long fallbacks;
+
+        public PackingStatistics(long packedPrompts, long packedUsers, long singleCalls, long fallbacks) {
+            this.packedPrompts = packedPrompts;
+            this.packedUsers = packedUsers;
+            this.singleCalls = singleCalls;
+            this.fallbacks = fallbacks;
+        }
+
+        public long getPackedPrompts() {
+            return packedPrompts;
+        }
+
+        public long getPackedUsers() {
+            return packedUsers;
+        }
+
+        public long getSingleCalls() {
+            return singleCalls;
+        }
+
+        public long getFallbacks() {
+            return fallbacks;
+        }
+
+        public double getAverageUsersPerPrompt() {
+            return packedPrompts == 0 ? 0 : (double) packedUsers / packedPrompts;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.querino.ai.service;
+
+import com.querino.ai.cache.RecommendationCache;
+import com.querino.ai.cache.RequestCoalescer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer instrumentation of the recommendation path, exposed through Actuator ({@code /actuator/metrics} and
+ * {@code /actuator/prometheus}):
+ * <ul>
+ *   <li>{@code recommendation.stage}: a timer per stage of a request (tag {@code stage}), with a percentile
+ *       histogram so p50/p95/p99 can be computed across instances</li>
+ *   <li>{@code recommendation.requests}: a timer per answered request, tagged with the {@code engine} that
+ *       answered and the {@code source} of the answer ({@code cache}, {@code model} or {@code engine})</li>
+ *   <li>{@code recommendation.tokens}: prompt and completion tokens per model call (tag {@code type}) from the
+ *       chat response's usage metadata, plus {@code recommendation.tokens.last} gauges of the latest call</li>
+ *   <li>{@code recommendation.parse.failures} and {@code recommendation.fallbacks} (tag {@code reason})</li>
+ *   <li>function counters and gauges over the cache, coalescing and hybrid statistics</li>
+ * </ul>
+ */
+@Component
+public class RecommendationMetrics {
+
+    /**
+     * The stages of a request, in the order they run.
+     */
+    public enum Stage {
+        HYDRATE, ROUTE, CACHE, RETRIEVAL, PROMPT, MODEL, PARSE, GROUND;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+    private final Map<String, Timer> requests = new ConcurrentHashMap<>();
+    private final Map<String, Counter> fallbacks = new ConcurrentHashMap<>();
+    private final Counter parseFailures;
+    private final DistributionSummary promptTokens;
+    private final DistributionSummary completionTokens;
+    private volatile long lastPromptTokens;
+    private volatile long lastCompletionTokens;
+
+    @Autowired
+    public RecommendationMetrics(MeterRegistry registry, RecommendationCache recommendationCache) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("recommendation.stage")
+                .description("Time spent in one stage of a recommendation request")
+                .tag("stage", stage.tag)
+                .publishPercentileHistogram()
+                .register(registry));
+        }
+        this.parseFailures = Counter.builder("recommendation.parse.failures")
+            .description("Model answers that could not be parsed as recommendations")
+            .register(registry);
+        this.promptTokens = tokens("prompt");
+        this.completionTokens = tokens("completion");
+        Gauge.builder("recommendation.tokens.last", this, metrics -> metrics.lastPromptTokens)
+            .description("Tokens of the latest model call")
+            .tag("type", "prompt")
+            .register(registry);
+        Gauge.builder("recommendation.tokens.last", this, metrics -> metrics.lastCompletionTokens)
+            .description("Tokens of the latest model call")
+            .tag("type", "completion")
+            .register(registry);
+        if (recommendationCache != null) {
+            FunctionCounter.builder("recommendation.cache.requests", recommendationCache, cache -> cache.stats().getHitCount())
+                .tag("result", "hit")
+                .register(registry);
+            FunctionCounter.builder("recommendation.cache.requests", recommendationCache, cache -> cache.stats().getMissCount())
+                .tag("result", "miss")
+                .register(registry);
+            FunctionCounter.builder("recommendation.cache.evictions", recommendationCache, cache -> cache.stats().getEvictionCount())
+                .register(registry);
+            Gauge.builder("recommendation.cache.size", recommendationCache, cache -> cache.stats().getSize())
+                .register(registry);
+        }
+    }
+
+    /**
+     * @return Metrics kept in a private in-memory registry, for tests and benchmarks
+     */
+    public static RecommendationMetrics inMemory() {
+        return new RecommendationMetrics(new SimpleMeterRegistry(), null);
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Records the time since {@code startNanos} for a stage.
+     *
+     * @param stage The stage
+     * @param startNanos The {@link System#nanoTime()} at which the stage started
+     */
+    public void recordStage(Stage stage, long startNanos) {
+        stages.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a stage whose time is spread over several intervals, e.g. parsing a streamed answer chunk by chunk.
+     *
+     * @param stage The stage
+     * @param nanos The total time spent in it
+     */
+    public void recordStageNanos(Stage stage, long nanos) {
+        stages.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a whole request.
+     *
+     * @param engine The engine that answered
+     * @param source Where the answer came from: {@code cache}, {@code model} or {@code engine}
+     * @param startNanos The {@link System#nanoTime()} at which the request started
+     */
+    public void recordRequest(String engine, String source, long startNanos) {
+        requests.computeIfAbsent(engine + '/' + source, key -> Timer.builder("recommendation.requests")
+                .description("Answered recommendation requests")
+                .tag("engine", engine == null ? "unknown" : engine)
+                .tag("source", source)
+                .publishPercentileHistogram()
+                .register(registry))
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the token usage a chat response reports, if any.
+     *
+     * @param response A model answer, or the last chunk of a streamed one
+     */
+    public void recordTokens(ChatResponse response) {
+        Usage usage = response == null || response.getMetadata() == null ? null : response.getMetadata().getUsage();
+        if (usage == null) {
+            return;
+        }
+        Integer prompt = usage.getPromptTokens();
+        Integer completion = usage.getCompletionTokens();
+        if (prompt != null && prompt > 0) {
+            promptTokens.record(prompt);
+            lastPromptTokens = prompt;
+        }
+        if (completion != null && completion > 0) {
+            completionTokens.record(completion);
+            lastCompletionTokens = completion;
+        }
+    }
+
+    public void parseFailure() {
+        parseFailures.increment();
+    }
+
+    /**
+     * Counts a request answered with an error recommendation instead of the model's.
+     *
+     * @param reason Why, e.g. {@code parse} or {@code coalescing-timeout}
+     */
+    public void fallback(String reason) {
+        fallbacks.computeIfAbsent(reason, key -> Counter.builder("recommendation.fallbacks")
+                .description("Requests answered with an error recommendation instead of the model's")
+                .tag("reason", reason)
+                .register(registry))
+            .increment();
+    }
+
+    /**
+     * Exposes the request coalescer's counters.
+     */
+    void bindCoalescing(Supplier<RequestCoalescer.CoalescingStatistics> stats) {
+        FunctionCounter.builder("recommendation.coalescing.upstream.calls", stats, s -> s.get().getUpstreamCalls())
+            .register(registry);
+        FunctionCounter.builder("recommendation.coalescing.collapsed", stats, s -> s.get().getCollapsedCalls())
+            .register(registry);
+    }
+
+    /**
+     * Exposes the hybrid engine's fallbacks, which answer from another engine when the model is late or fails.
+     */
+    void bindHybrid(Supplier<HybridRecommender.HybridStatistics> stats) {
+        FunctionCounter.builder("recommendation.fallbacks", stats, s -> s.get().getDeadlineFallbacks())
+            .tag("reason", "hybrid-deadline")
+            .register(registry);
+        FunctionCounter.builder("recommendation.fallbacks", stats, s -> s.get().getErrorFallbacks())
+            .tag("reason", "hybrid-error")
+            .register(registry);
+    }
+
+    private DistributionSummary tokens(String type) {
+        return DistributionSummary.builder("recommendation.tokens")
+            .description("Tokens per model call, from the chat response's usage metadata")
+            .baseUnit("tokens")
+            .tag("type", type)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+}
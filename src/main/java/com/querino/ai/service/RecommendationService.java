@@ -1,18 +1,54 @@
 package com.querino.ai.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.cache.RecommendationCache;
+import com.querino.ai.cache.RecommendationKey;
+import com.querino.ai.cache.RequestCoalescer;
+import com.querino.ai.engine.RecommendationEngine;
+import com.querino.ai.engine.RecommendationEngines;
+import com.querino.ai.engine.UnknownEngineException;
+import com.querino.ai.jfr.FallbackEvent;
+import com.querino.ai.jfr.ModelCallEvent;
+import com.querino.ai.jfr.ParseEvent;
+import com.querino.ai.jfr.PromptEvent;
+import com.querino.ai.jfr.RequestEvent;
+import com.querino.ai.jfr.StageEvent;
 import com.querino.ai.model.Recommendation;
 import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.prompt.PromptPipeline;
+import com.querino.ai.retrieval.CandidateRetriever;
+import com.querino.ai.service.RecommendationMetrics.Stage;
+import jakarta.annotation.PreDestroy;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service for generating shopping recommendations using OpenAI.
@@ -20,76 +56,690 @@ import java.util.Map;
 @Service
 public class RecommendationService {
 
+    private static final TypeReference<List<Recommendation>> RECOMMENDATION_LIST = new TypeReference<>() {
+    };
+
     private final ChatClient chatClient;
     private final ObjectMapper objectMapper;
+    private final PromptPipeline promptPipeline;
+    private final RecommendationCache recommendationCache;
+    private final RequestCoalescer<RecommendationKey, Recommendation> requestCoalescer;
+    private final Duration coalescingWaitTimeout;
+    private final OutboundCallLimiter outboundCallLimiter;
+    private final ScheduledExecutorService packingScheduler;
+    private final PromptPacker promptPacker;
+    private final RecommendationEngines recommendationEngines;
+    private final HybridRecommender hybridRecommender;
+    private final UserProfileStore userProfileStore;
+    private final CandidateRetriever candidateRetriever;
+    private final RecommendationMetrics metrics;
 
     @Autowired
-    public RecommendationService(ChatClient.Builder chatClientBuilder) {
+    public RecommendationService(ChatClient.Builder chatClientBuilder,
+                                 PromptPipeline promptPipeline,
+                                 RecommendationCache recommendationCache,
+                                 @Value("${recommendation.coalescing.wait-timeout:30s}") Duration coalescingWaitTimeout,
+                                 OutboundCallLimiter outboundCallLimiter,
+                                 @Value("${recommendation.packing.enabled:false}") boolean packingEnabled,
+                                 @Value("${recommendation.packing.max-users:8}") int packingMaxUsers,
+                                 @Value("${recommendation.packing.window:20ms}") Duration packingWindow,
+                                 RecommendationEngines recommendationEngines,
+                                 @Value("${recommendation.hybrid.latency-budget:300ms}") Duration hybridLatencyBudget,
+                                 @Value("${recommendation.hybrid.fallback-engine:heuristic}") String hybridFallbackEngine,
+                                 UserProfileStore userProfileStore,
+                                 CandidateRetriever candidateRetriever,
+                                 RecommendationMetrics metrics) {
         this.chatClient = chatClientBuilder.build();
         this.objectMapper = new ObjectMapper();
+        this.promptPipeline = promptPipeline;
+        this.recommendationCache = recommendationCache;
+        this.requestCoalescer = new RequestCoalescer<>();
+        this.coalescingWaitTimeout = coalescingWaitTimeout;
+        this.outboundCallLimiter = outboundCallLimiter;
+        this.recommendationEngines = recommendationEngines;
+        this.userProfileStore = userProfileStore;
+        this.candidateRetriever = candidateRetriever;
+        this.metrics = metrics;
+        RecommendationEngine hybridFallback = recommendationEngines.get(hybridFallbackEngine);
+        this.hybridRecommender = hybridFallback == null ? null : new HybridRecommender(
+            this::fetchModelRecommendationsAsync,
+            cacheable -> recommendationCache.get(RecommendationKey.of(cacheable)),
+            hybridFallback,
+            hybridLatencyBudget);
+        metrics.bindCoalescing(requestCoalescer::stats);
+        if (hybridRecommender != null) {
+            metrics.bindHybrid(hybridRecommender::stats);
+        }
+        if (packingEnabled) {
+            this.packingScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "prompt-packer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.promptPacker = new PromptPacker(packingMaxUsers, packingWindow, packingScheduler,
+                this::requestPackedRecommendationsAsync,
+                single -> outboundCallLimiter.submit(() -> requestRecommendationAsync(single)));
+        } else {
+            this.packingScheduler = null;
+            this.promptPacker = null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (packingScheduler != null) {
+            packingScheduler.shutdownNow();
+        }
     }
 
     /**
      * Generates personalized shopping recommendations based on user preferences and purchase history.
+     * Results are served from the recommendation cache when an equivalent request was answered recently,
+     * and concurrent equivalent requests share a single model call.
+     * Requests selecting another engine (see {@link RecommendationRequest#getEngine()}) are answered by that engine.
+     * A request may carry only a user ID and what differs from the user's stored profile; the rest comes from
+     * the profile, which the request does not change (see {@link UserProfileStore#hydrate(RecommendationRequest)}).
      *
      * @param request The recommendation request containing user preferences and purchase history
      * @return A recommendation containing suggested products
+     * @throws UnknownEngineException If the request names an unknown or unavailable engine
      */
     public Recommendation generateRecommendations(RecommendationRequest request) {
+        RequestEvent event = new RequestEvent();
+        event.begin();
+        long start = System.nanoTime();
+        RecommendationRequest hydrated = hydrate(request);
+        CompletableFuture<Recommendation> routed = route(hydrated);
+        if (routed != null) {
+            return answered(hydrated, routed.join(), "engine", start, event);
+        }
+        RecommendationKey key = RecommendationKey.of(hydrated);
+        Recommendation cached = cachedRecommendation(hydrated, key);
+        if (cached != null) {
+            return answered(hydrated, cached, "cache", start, event);
+        }
         try {
-            String requestJson = objectMapper.writeValueAsString(request);
-
-            // Create a prompt template for generating recommendations
-            String templateString = """
-                You are a shopping recommendation assistant. Based on the user's preferences and purchase history,
-                recommend products that they might be interested in.
-
-                User information:
-                ```
-                {requestJson}
-                ```
-
-                Provide recommendations in the following JSON format:
-                {
-                  "userId": "user's ID",
-                  "recommendedProducts": [
-                    {
-                      "productId": "generated unique ID",
-                      "productName": "name of the product",
-                      "category": "product category",
-                      "price": price as a number,
-                      "reasonForRecommendation": "detailed reason why this product is recommended"
-                    }
-                  ],
-                  "reasonForRecommendation": "overall explanation for the recommendations"
+            Recommendation recommendation = requestCoalescer.call(key, () -> {
+                Recommendation answer = promptPacker != null
+                    ? awaitPacked(hydrated)
+                    : requestRecommendation(hydrated);
+                answer.setEngine(RecommendationEngines.LLM);
+                recommendationCache.put(key, answer);
+                return answer;
+            }, coalescingWaitTimeout);
+            return answered(hydrated, recommendation, "model", start, event);
+        } catch (JsonProcessingException e) {
+            // In case of JSON processing error, return a basic recommendation with an error message
+            return fallback(hydrated, "parse", e.getMessage());
+        } catch (TimeoutException e) {
+            return fallback(hydrated, "coalescing-timeout", "timed out waiting for an identical in-flight request");
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            return fallback(hydrated, "error", e.getMessage());
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #generateRecommendations(RecommendationRequest)}. The model is called through
+     * its non-blocking streaming API, so no thread is held while waiting for the answer, and the number of concurrent
+     * model calls is bounded by the {@link OutboundCallLimiter}.
+     *
+     * @param request The recommendation request containing user preferences and purchase history
+     * @return A future completed with the recommendation; it fails with a
+     *         {@link java.util.concurrent.RejectedExecutionException} when too many calls are already queued
+     */
+    public CompletableFuture<Recommendation> generateRecommendationsAsync(RecommendationRequest request) {
+        return fetchRecommendationsAsync(request)
+            .exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof JsonProcessingException) {
+                    return fallback(request, "parse", cause.getMessage());
                 }
+                if (cause instanceof TimeoutException) {
+                    return fallback(request, "coalescing-timeout", "timed out waiting for an identical in-flight request");
+                }
+                throw error instanceof CompletionException completion ? completion : new CompletionException(cause);
+            });
+    }
+
+    /**
+     * Like {@link #generateRecommendationsAsync(RecommendationRequest)}, but failures are not turned into an
+     * error recommendation: the future fails with the underlying cause (e.g. a {@link JsonProcessingException}
+     * for an unparseable answer), which lets callers tell failed results apart.
+     *
+     * @param request The recommendation request containing user preferences and purchase history
+     * @return A future completed with the recommendation or failed with the cause
+     */
+    public CompletableFuture<Recommendation> fetchRecommendationsAsync(RecommendationRequest request) {
+        return fetchAsync(request, true);
+    }
+
+    /**
+     * Like {@link #fetchRecommendationsAsync(RecommendationRequest)}, but never answers from the recommendation
+     * cache: the recommendation is computed afresh and replaces the cached one. Used to refresh stored
+     * recommendations, which must not be refreshed with an answer that is itself stale.
+     *
+     * @param request The recommendation request containing user preferences and purchase history
+     * @return A future completed with the fresh recommendation or failed with the cause
+     */
+    public CompletableFuture<Recommendation> refreshRecommendationsAsync(RecommendationRequest request) {
+        return fetchAsync(request, false);
+    }
+
+    private CompletableFuture<Recommendation> fetchAsync(RecommendationRequest request, boolean useCache) {
+        RequestEvent event = new RequestEvent();
+        event.begin();
+        long start = System.nanoTime();
+        RecommendationRequest hydrated = hydrate(request);
+        try {
+            CompletableFuture<Recommendation> routed = route(hydrated);
+            if (routed != null) {
+                return routed.thenApply(recommendation -> answered(hydrated, recommendation, "engine", start, event));
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        RecommendationKey key = RecommendationKey.of(hydrated);
+        Recommendation cached = useCache ? cachedRecommendation(hydrated, key) : null;
+        if (cached != null) {
+            return CompletableFuture.completedFuture(answered(hydrated, cached, "cache", start, event));
+        }
+        return callModelCoalescedAsync(hydrated, key)
+            .thenApply(recommendation -> answered(hydrated, recommendation, "model", start, event));
+    }
+
+    /**
+     * Returns how large the encoded user profiles are and how often purchase histories had to be compacted.
+     *
+     * @return The current prompt statistics
+     */
+    public PromptPipeline.PromptStatistics getPromptStatistics() {
+        return promptPipeline.stats();
+    }
+
+    /**
+     * Returns how many candidate shortlists were sent to the model and how many of its picks were not on them.
+     *
+     * @return The current retrieval statistics, or null when retrieval is disabled
+     */
+    public CandidateRetriever.RetrievalStatistics getRetrievalStatistics() {
+        return candidateRetriever.isEnabled() ? candidateRetriever.stats() : null;
+    }
+
+    /**
+     * Returns how often the hybrid engine was answered by the model and how often it fell back.
+     *
+     * @return The current hybrid statistics, or null when no fallback engine is available
+     */
+    public HybridRecommender.HybridStatistics getHybridStatistics() {
+        return hybridRecommender == null ? null : hybridRecommender.stats();
+    }
+
+    /**
+     * Returns how many prompts were packed with several users and how many users fell back to single calls.
+     *
+     * @return The current packing statistics, or null when prompt packing is disabled
+     */
+    public PromptPacker.PackingStatistics getPackingStatistics() {
+        return promptPacker == null ? null : promptPacker.stats();
+    }
+
+    /**
+     * Returns how many upstream calls were made and how many requests were collapsed onto them.
+     *
+     * @return The current coalescing statistics
+     */
+    public RequestCoalescer.CoalescingStatistics getCoalescingStatistics() {
+        return requestCoalescer.stats();
+    }
+
+    /**
+     * Streams recommended products as the model generates them. Each product is emitted as soon as its
+     * JSON object is complete; the assembled recommendation is cached once the whole answer has arrived.
+     *
+     * @param request The recommendation request containing user preferences and purchase history
+     * @return The recommended products, in the order the model produces them
+     */
+    public Flux<Recommendation.RecommendedProduct> streamRecommendations(RecommendationRequest request) {
+        RequestEvent requestEvent = new RequestEvent();
+        requestEvent.begin();
+        long requestStart = System.nanoTime();
+        RecommendationRequest hydrated = hydrate(request);
+        CompletableFuture<Recommendation> routed = route(hydrated);
+        if (routed != null) {
+            return Mono.fromFuture(routed)
+                .map(recommendation -> answered(hydrated, recommendation, "engine", requestStart, requestEvent))
+                .flatMapIterable(Recommendation::getRecommendedProducts);
+        }
+        RecommendationKey key = RecommendationKey.of(hydrated);
+        Recommendation cached = cachedRecommendation(hydrated, key);
+        if (cached != null && cached.getRecommendedProducts() != null) {
+            return Flux.fromIterable(answered(hydrated, cached, "cache", requestStart, requestEvent)
+                .getRecommendedProducts());
+        }
+        return Flux.defer(() -> {
+            CandidateRetriever.Shortlist shortlist = shortlist(hydrated);
+            Prompt prompt = buildPrompt(hydrated, shortlist);
+            IncrementalRecommendationParser parser;
+            try {
+                parser = new IncrementalRecommendationParser(objectMapper);
+            } catch (IOException e) {
+                return Flux.error(e);
+            }
+            // Products are grounded once, as they stream; the cached recommendation reuses them
+            List<Recommendation.RecommendedProduct> streamed = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            ModelCallEvent modelCall = new ModelCallEvent();
+            modelCall.begin();
+            long modelStart = System.nanoTime();
+            StringBuilder response = new StringBuilder();
+            AtomicReference<ChatResponse> usage = new AtomicReference<>();
+            // Parsing is interleaved with the model's output, so its time is summed over the chunks
+            long[] parseNanos = new long[1];
+            return chatClient.prompt(prompt).stream().chatResponse()
+                .doOnNext(chunk -> {
+                    if (reportsUsage(chunk)) {
+                        usage.set(chunk);
+                    }
+                })
+                .mapNotNull(RecommendationService::textOf)
+                .doOnNext(response::append)
+                .doOnComplete(() -> {
+                    metrics.recordStage(Stage.MODEL, modelStart);
+                    metrics.recordTokens(usage.get());
+                    modelCall.finish(prompt, true, usageOf(usage.get()), response.toString());
+                })
+                .doOnError(error -> modelCall.finish(prompt, true, null, null))
+                .concatMapIterable(chunk -> {
+                    long parseStart = System.nanoTime();
+                    try {
+                        List<Recommendation.RecommendedProduct> products = parser.feed(chunk);
+                        if (!shortlist.isEmpty()) {
+                            products = products.stream().map(shortlist::ground).filter(Objects::nonNull)
+                                .filter(product -> seen.add(product.getProductId())).toList();
+                        }
+                        streamed.addAll(products);
+                        return products;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } finally {
+                        parseNanos[0] += System.nanoTime() - parseStart;
+                    }
+                })
+                .concatWith(Mono.fromRunnable(() -> {
+                    // The flight recorder event covers the final assembly; the stage timer gets the whole parse
+                    ParseEvent parseEvent = new ParseEvent();
+                    parseEvent.begin();
+                    long parseStart = System.nanoTime();
+                    Recommendation recommendation = parser.isComplete() ? parser.toRecommendation() : null;
+                    metrics.recordStageNanos(Stage.PARSE, parseNanos[0] + System.nanoTime() - parseStart);
+                    if (recommendation == null) {
+                        metrics.parseFailure();
+                        parseEvent.finish(response.toString(), -1);
+                        return;
+                    }
+                    parseEvent.finish(response.toString(), 1);
+                    recommendation.setRecommendedProducts(streamed);
+                    recommendation.setEngine(RecommendationEngines.LLM);
+                    recommendationCache.put(key, recommendation);
+                    answered(hydrated, recommendation, "model", requestStart, requestEvent);
+                }));
+        });
+    }
+
+    /**
+     * Calls the model and parses its answer, without consulting the cache.
+     *
+     * @param request The recommendation request
+     * @return The parsed recommendation
+     * @throws JsonProcessingException If the response cannot be parsed
+     */
+    private Recommendation requestRecommendation(RecommendationRequest request) throws JsonProcessingException {
+        CandidateRetriever.Shortlist shortlist = shortlist(request);
+        Prompt prompt = buildPrompt(request, shortlist);
+
+        // Call OpenAI to generate recommendations
+        ModelCallEvent event = new ModelCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        ChatResponse response;
+        try {
+            response = chatClient.prompt(prompt).call().chatResponse();
+        } catch (RuntimeException e) {
+            event.finish(prompt, false, null, null);
+            throw e;
+        }
+        metrics.recordStage(Stage.MODEL, start);
+        metrics.recordTokens(response);
+        event.finish(prompt, false, usageOf(response), textOf(response));
 
-                Generate 3-5 product recommendations that match the user's interests, are within their budget (if specified),
-                and align with their preferred categories (if specified). Consider their purchase history to avoid recommending
-                similar products they already own. Each recommendation should have a unique ID, realistic name, appropriate category,
-                reasonable price, and a personalized reason for recommendation.
+        // Parse the JSON response into a Recommendation object
+        return ground(parse(textOf(response)), shortlist);
+    }
 
-                Respond ONLY with the JSON, no additional text.
-            """;
+    private RecommendationRequest hydrate(RecommendationRequest request) {
+        StageEvent event = new StageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        RecommendationRequest hydrated = userProfileStore.hydrate(request);
+        metrics.recordStage(Stage.HYDRATE, start);
+        event.finish("hydrate", request.getUserId(), sizeOf(hydrated.getPurchaseHistory()));
+        return hydrated;
+    }
 
-            Map<String, Object> variables = new HashMap<>();
-            variables.put("requestJson", requestJson);
+    private CompletableFuture<Recommendation> route(RecommendationRequest request) {
+        StageEvent event = new StageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return routeToEngine(request);
+        } finally {
+            metrics.recordStage(Stage.ROUTE, start);
+            event.finish("route", request.getUserId(), 0);
+        }
+    }
 
-            PromptTemplate promptTemplate = new PromptTemplate(templateString, variables);
-            Prompt prompt = promptTemplate.create();
+    private Recommendation cachedRecommendation(RecommendationRequest request, RecommendationKey key) {
+        StageEvent event = new StageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Recommendation cached = recommendationCache.get(key);
+        metrics.recordStage(Stage.CACHE, start);
+        event.finish("cache", request.getUserId(), cached == null ? 0 : 1);
+        return cached;
+    }
 
-            // Call OpenAI to generate recommendations
-            String responseContent = chatClient.prompt(prompt).call().content();
+    private CandidateRetriever.Shortlist shortlist(RecommendationRequest request) {
+        StageEvent event = new StageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        CandidateRetriever.Shortlist shortlist = candidateRetriever.shortlist(request);
+        metrics.recordStage(Stage.RETRIEVAL, start);
+        event.finish("retrieval", request.getUserId(), sizeOf(shortlist.getProducts()));
+        return shortlist;
+    }
 
-            // Parse the JSON response into a Recommendation object
-            return objectMapper.readValue(responseContent, Recommendation.class);
+    private Recommendation parse(String responseContent) throws JsonProcessingException {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            Recommendation recommendation = objectMapper.readValue(responseContent, Recommendation.class);
+            event.finish(responseContent, 1);
+            return recommendation;
         } catch (JsonProcessingException e) {
-            // In case of JSON processing error, return a basic recommendation with an error message
-            Recommendation errorRecommendation = new Recommendation();
-            errorRecommendation.setUserId(request.getUserId());
-            errorRecommendation.setRecommendedProducts(new ArrayList<>());
-            errorRecommendation.setReasonForRecommendation("Error generating recommendations: " + e.getMessage());
-            return errorRecommendation;
+            metrics.parseFailure();
+            event.finish(responseContent, -1);
+            throw e;
+        } finally {
+            metrics.recordStage(Stage.PARSE, start);
+        }
+    }
+
+    private Recommendation answered(RecommendationRequest request, Recommendation recommendation, String source,
+                                    long start, RequestEvent event) {
+        metrics.recordRequest(recommendation.getEngine(), source, start);
+        event.finish(request.getUserId(), recommendation.getEngine(), source, sizeOf(request.getPurchaseHistory()),
+            sizeOf(recommendation.getRecommendedProducts()));
+        return recommendation;
+    }
+
+    private Recommendation fallback(RecommendationRequest request, String reason, String message) {
+        metrics.fallback(reason);
+        FallbackEvent.emit(request.getUserId(), reason);
+        return errorRecommendation(request, message);
+    }
+
+    /**
+     * Lets every engine learn from the request, then hands it to the engine it selects.
+     *
+     * @return The engine's answer, or null when the language model alone should answer
+     * @throws UnknownEngineException If the request names an unknown or unavailable engine
+     */
+    private CompletableFuture<Recommendation> routeToEngine(RecommendationRequest request) {
+        recommendationEngines.observe(request);
+        String name = recommendationEngines.resolve(request);
+        if (RecommendationEngines.HYBRID.equals(name)) {
+            if (hybridRecommender == null) {
+                throw new UnknownEngineException("The hybrid engine is not available: no fallback engine configured");
+            }
+            return hybridRecommender.recommend(request);
+        }
+        RecommendationEngine engine = recommendationEngines.get(name);
+        return engine == null ? null : CompletableFuture.completedFuture(engine.recommend(request));
+    }
+
+    /**
+     * Answers from the cache or the language model; concurrent equivalent requests share one model call.
+     */
+    private CompletableFuture<Recommendation> fetchModelRecommendationsAsync(RecommendationRequest request) {
+        RecommendationKey key = RecommendationKey.of(request);
+        Recommendation cached = cachedRecommendation(request, key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return callModelCoalescedAsync(request, key);
+    }
+
+    private CompletableFuture<Recommendation> callModelCoalescedAsync(RecommendationRequest request,
+                                                                      RecommendationKey key) {
+        return requestCoalescer.execute(key, () -> startRecommendationAsync(request)
+            .thenApply(recommendation -> {
+                recommendation.setEngine(RecommendationEngines.LLM);
+                recommendationCache.put(key, recommendation);
+                return recommendation;
+            }), coalescingWaitTimeout);
+    }
+
+    private CompletableFuture<Recommendation> startRecommendationAsync(RecommendationRequest request) {
+        if (promptPacker != null) {
+            return promptPacker.submit(request);
+        }
+        return outboundCallLimiter.submit(() -> requestRecommendationAsync(request));
+    }
+
+    private Recommendation awaitPacked(RecommendationRequest request) throws Exception {
+        try {
+            return promptPacker.submit(request).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Calls the model through its streaming API and parses the assembled answer, without consulting the cache.
+     *
+     * @param request The recommendation request
+     * @return A future completed with the parsed recommendation
+     */
+    private CompletableFuture<Recommendation> requestRecommendationAsync(RecommendationRequest request) {
+        CandidateRetriever.Shortlist shortlist = shortlist(request);
+        Prompt prompt = buildPrompt(request, shortlist);
+        return callModelAsync(prompt)
+            .thenApply(responseContent -> {
+                try {
+                    return ground(parse(responseContent), shortlist);
+                } catch (JsonProcessingException e) {
+                    throw new CompletionException(e);
+                }
+            });
+    }
+
+    /**
+     * Calls the model once for several users and parses the array of recommendations it returns.
+     *
+     * @param requests The requests packed into the prompt, each with a distinct userId
+     * @return A future completed with the recommendations found in the answer, in any order
+     */
+    private CompletableFuture<List<Recommendation>> requestPackedRecommendationsAsync(List<RecommendationRequest> requests) {
+        List<RecommendationRequest> grounded = new ArrayList<>(requests.size());
+        List<CandidateRetriever.Shortlist> shortlists = new ArrayList<>(requests.size());
+        List<RecommendationRequest> ungrounded = new ArrayList<>();
+        for (RecommendationRequest request : requests) {
+            CandidateRetriever.Shortlist shortlist = shortlist(request);
+            if (shortlist.isEmpty()) {
+                ungrounded.add(request);
+            } else {
+                grounded.add(request);
+                shortlists.add(shortlist);
+            }
+        }
+        if (grounded.isEmpty()) {
+            return requestPackedRecommendationsAsync(ungrounded, null);
+        }
+        if (ungrounded.isEmpty()) {
+            return requestPackedRecommendationsAsync(grounded, shortlists);
+        }
+        // Users without candidates would get an empty candidate list in the grounded prompt, so they get their own
+        // ungrounded prompt
+        return requestPackedRecommendationsAsync(grounded, shortlists)
+            .thenCombine(requestPackedRecommendationsAsync(ungrounded, null), (first, second) -> {
+                List<Recommendation> all = new ArrayList<>(first.size() + second.size());
+                all.addAll(first);
+                all.addAll(second);
+                return all;
+            });
+    }
+
+    /**
+     * Sends one packed prompt.
+     *
+     * @param shortlists The users' shortlists for a grounded prompt, or null for an ungrounded one
+     */
+    private CompletableFuture<List<Recommendation>> requestPackedRecommendationsAsync(
+            List<RecommendationRequest> requests, List<CandidateRetriever.Shortlist> shortlists) {
+        Map<String, CandidateRetriever.Shortlist> shortlistsByUser = new HashMap<>();
+        if (shortlists != null) {
+            for (int i = 0; i < requests.size(); i++) {
+                shortlistsByUser.put(requests.get(i).getUserId(), shortlists.get(i));
+            }
+        }
+        boolean grounded = shortlists != null;
+        Prompt prompt = grounded
+            ? promptPipeline.packedGroundedPrompt(requests,
+                shortlists.stream().map(CandidateRetriever.Shortlist::getProducts).toList())
+            : buildPackedPrompt(requests);
+        return outboundCallLimiter.submit(() -> callModelAsync(prompt))
+            .thenApply(responseContent -> {
+                ParseEvent event = new ParseEvent();
+                event.begin();
+                long start = System.nanoTime();
+                try {
+                    List<Recommendation> recommendations = objectMapper.readValue(responseContent, RECOMMENDATION_LIST);
+                    event.finish(responseContent, recommendations.size());
+                    if (grounded) {
+                        for (Recommendation recommendation : recommendations) {
+                            CandidateRetriever.Shortlist shortlist = shortlistsByUser.get(recommendation.getUserId());
+                            if (shortlist != null) {
+                                shortlist.ground(recommendation);
+                            }
+                        }
+                    }
+                    return recommendations;
+                } catch (JsonProcessingException e) {
+                    metrics.parseFailure();
+                    event.finish(responseContent, -1);
+                    throw new CompletionException(e);
+                } finally {
+                    metrics.recordStage(Stage.PARSE, start);
+                }
+            });
+    }
+
+    /**
+     * Streams the model's answer and joins its text. Providers report token usage on the last chunk(s), so the
+     * latest usage seen is the one recorded.
+     */
+    private CompletableFuture<String> callModelAsync(Prompt prompt) {
+        return Mono.defer(() -> {
+            ModelCallEvent event = new ModelCallEvent();
+            event.begin();
+            long start = System.nanoTime();
+            StringBuilder text = new StringBuilder();
+            AtomicReference<ChatResponse> usage = new AtomicReference<>();
+            return chatClient.prompt(prompt).stream().chatResponse()
+                .doOnNext(response -> {
+                    String chunk = textOf(response);
+                    if (chunk != null) {
+                        text.append(chunk);
+                    }
+                    if (reportsUsage(response)) {
+                        usage.set(response);
+                    }
+                })
+                .doOnError(error -> event.finish(prompt, true, null, null))
+                .then(Mono.fromSupplier(() -> {
+                    metrics.recordStage(Stage.MODEL, start);
+                    metrics.recordTokens(usage.get());
+                    event.finish(prompt, true, usageOf(usage.get()), text.toString());
+                    return text.toString();
+                }));
+        }).toFuture();
+    }
+
+    private static boolean reportsUsage(ChatResponse response) {
+        Usage usage = usageOf(response);
+        return usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0;
+    }
+
+    private static Usage usageOf(ChatResponse response) {
+        return response == null || response.getMetadata() == null ? null : response.getMetadata().getUsage();
+    }
+
+    private static int sizeOf(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+
+    private static String textOf(ChatResponse response) {
+        return response == null || response.getResult() == null || response.getResult().getOutput() == null
+            ? null
+            : response.getResult().getOutput().getText();
+    }
+
+    /**
+     * Builds the prompt asking the model to pick from the shortlist, or to recommend freely when there is none.
+     */
+    private Prompt buildPrompt(RecommendationRequest request, CandidateRetriever.Shortlist shortlist) {
+        PromptEvent event = new PromptEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Prompt prompt = shortlist.isEmpty()
+            ? promptPipeline.recommendationPrompt(request)
+            : promptPipeline.groundedPrompt(request, shortlist.getProducts());
+        metrics.recordStage(Stage.PROMPT, start);
+        event.finish(request.getUserId(), prompt, sizeOf(shortlist.getProducts()));
+        return prompt;
+    }
+
+    private Recommendation ground(Recommendation recommendation, CandidateRetriever.Shortlist shortlist) {
+        if (shortlist.isEmpty()) {
+            return recommendation;
         }
+        StageEvent event = new StageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Recommendation grounded = shortlist.ground(recommendation);
+        metrics.recordStage(Stage.GROUND, start);
+        event.finish("ground", recommendation.getUserId(), sizeOf(grounded.getRecommendedProducts()));
+        return grounded;
+    }
+
+    private Prompt buildPackedPrompt(List<RecommendationRequest> requests) {
+        return promptPipeline.packedPrompt(requests);
+    }
+
+    private Recommendation errorRecommendation(RecommendationRequest request, String message) {
+        Recommendation errorRecommendation = new Recommendation();
+        errorRecommendation.setUserId(request.getUserId());
+        errorRecommendation.setRecommendedProducts(new ArrayList<>());
+        errorRecommendation.setReasonForRecommendation("Error generating recommendations: " + message);
+        errorRecommendation.setEngine(RecommendationEngines.LLM);
+        return errorRecommendation;
     }
 }
@@ -1,5 +1,6 @@
 package com.querino.ai.util;
 
+import com.querino.ai.model.Product;
 import com.querino.ai.model.RecommendationRequest;
 import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
 
@@ -76,4 +77,97 @@ public class SampleDataProvider {
         request.setPurchaseHistory(purchaseHistory);
         return request;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a sample product catalog covering the categories of the sample users.
+     *
+     * @return A list of sample products
+     */
+    public static List<Product> createSampleCatalog() {
+        return Arrays.asList(
+            new Product("c001", "Noise Cancelling Headphones", "electronics", "Over-ear headphones with active noise cancelling", 249.99),
+            new Product("c002", "Smart Watch", "electronics", "Fitness and notification smart watch", 199.99),
+            new Product("c003", "Portable Bluetooth Speaker", "electronics", "Water-resistant speaker with 12 hour battery", 59.99),
+            new Product("c004", "4K Streaming Stick", "electronics", "Streams 4K HDR content to any TV", 49.99),
+            new Product("c005", "Ultrabook Laptop", "computers", "14 inch lightweight laptop", 999.99),
+            new Product("c006", "27 Inch Monitor", "computers", "QHD IPS monitor for work and gaming", 299.99),
+            new Product("c007", "External SSD 1TB", "computers", "USB-C portable solid state drive", 109.99),
+            new Product("c008", "Mini PC", "computers", "Compact desktop for home lab projects", 449.99),
+            new Product("c009", "USB-C Hub", "accessories", "7-in-1 hub with HDMI and card reader", 39.99),
+            new Product("c010", "Laptop Stand", "accessories", "Adjustable aluminium laptop stand", 34.99),
+            new Product("c011", "Mouse Pad XL", "accessories", "Extended desk mat for keyboard and mouse", 19.99),
+            new Product("c012", "Webcam 1080p", "accessories", "Full HD webcam with microphone", 69.99),
+            new Product("c101", "Adjustable Dumbbells", "sports equipment", "Pair of dumbbells from 2 to 24 kg", 279.99),
+            new Product("c102", "Resistance Bands Set", "sports equipment", "Five bands with handles and door anchor", 24.99),
+            new Product("c103", "Foam Roller", "sports equipment", "High density roller for recovery", 22.99),
+            new Product("c104", "GPS Running Watch", "fitness trackers", "Running watch with GPS and heart rate", 249.99),
+            new Product("c105", "Heart Rate Chest Strap", "fitness trackers", "Bluetooth and ANT+ chest strap", 79.99),
+            new Product("c106", "Smart Scale", "fitness trackers", "Body composition scale with app sync", 49.99),
+            new Product("c107", "Running Jacket", "athletic wear", "Lightweight wind and water resistant jacket", 89.99),
+            new Product("c108", "Compression Socks", "athletic wear", "Graduated compression running socks", 19.99),
+            new Product("c109", "Trail Running Shoes", "athletic wear", "Grippy shoes for off-road running", 139.99),
+            new Product("c201", "Food Processor", "kitchen appliances", "Ten cup food processor", 129.99),
+            new Product("c202", "Sous Vide Cooker", "kitchen appliances", "Precision immersion circulator", 149.99),
+            new Product("c203", "Espresso Machine", "kitchen appliances", "Manual espresso machine with steam wand", 399.99),
+            new Product("c204", "Cast Iron Skillet", "cookware", "Pre-seasoned 12 inch skillet", 39.99),
+            new Product("c205", "Dutch Oven", "cookware", "Enamelled cast iron, 5.5 quart", 89.99),
+            new Product("c206", "Chef's Knife", "cookware", "8 inch forged stainless steel knife", 59.99),
+            new Product("c207", "Silicone Baking Mats", "bakeware", "Set of two non-stick baking mats", 16.99),
+            new Product("c208", "Springform Pan", "bakeware", "9 inch leakproof springform pan", 21.99),
+            new Product("c209", "Bread Proofing Basket", "bakeware", "Banneton basket with liner", 18.99),
+            new Product("c210", "Instant-Read Thermometer", "kitchen gadgets", "Digital thermometer with 3 second readout", 29.99)
+        );
+    }
+
+    /**
+     * Creates sample purchase histories of other shoppers, overlapping with the sample users' purchases and the
+     * sample catalog, from which the collaborative-filtering engine learns which products are bought together.
+     *
+     * @return Sample requests carrying only a user ID and a purchase history
+     */
+    public static List<RecommendationRequest> createSamplePurchaseHistories() {
+        PurchaseHistory headphones = new PurchaseHistory("p001", "Wireless Headphones", "electronics", 129.99, "2023-10-01");
+        PurchaseHistory keyboard = new PurchaseHistory("p002", "Mechanical Keyboard", "computers", 89.99, "2023-10-01");
+        PurchaseHistory mouse = new PurchaseHistory("p003", "Gaming Mouse", "accessories", 59.99, "2023-10-01");
+        PurchaseHistory monitor = new PurchaseHistory("c006", "27 Inch Monitor", "computers", 299.99, "2023-10-01");
+        PurchaseHistory hub = new PurchaseHistory("c009", "USB-C Hub", "accessories", 39.99, "2023-10-01");
+        PurchaseHistory mousePad = new PurchaseHistory("c011", "Mouse Pad XL", "accessories", 19.99, "2023-10-01");
+        PurchaseHistory speaker = new PurchaseHistory("c003", "Portable Bluetooth Speaker", "electronics", 59.99, "2023-10-01");
+        PurchaseHistory shoes = new PurchaseHistory("p101", "Running Shoes", "athletic wear", 119.99, "2023-10-01");
+        PurchaseHistory tracker = new PurchaseHistory("p102", "Fitness Tracker", "fitness trackers", 149.99, "2023-10-01");
+        PurchaseHistory yogaMat = new PurchaseHistory("p103", "Yoga Mat", "sports equipment", 29.99, "2023-10-01");
+        PurchaseHistory socks = new PurchaseHistory("c108", "Compression Socks", "athletic wear", 19.99, "2023-10-01");
+        PurchaseHistory chestStrap = new PurchaseHistory("c105", "Heart Rate Chest Strap", "fitness trackers", 79.99, "2023-10-01");
+        PurchaseHistory foamRoller = new PurchaseHistory("c103", "Foam Roller", "sports equipment", 22.99, "2023-10-01");
+        PurchaseHistory mixer = new PurchaseHistory("p201", "Stand Mixer", "kitchen appliances", 249.99, "2023-10-01");
+        PurchaseHistory cookwareSet = new PurchaseHistory("p202", "Non-stick Cookware Set", "cookware", 129.99, "2023-10-01");
+        PurchaseHistory scale = new PurchaseHistory("p203", "Digital Kitchen Scale", "kitchen gadgets", 24.99, "2023-10-01");
+        PurchaseHistory bakingMats = new PurchaseHistory("c207", "Silicone Baking Mats", "bakeware", 16.99, "2023-10-01");
+        PurchaseHistory springform = new PurchaseHistory("c208", "Springform Pan", "bakeware", 21.99, "2023-10-01");
+        PurchaseHistory knife = new PurchaseHistory("c206", "Chef's Knife", "cookware", 59.99, "2023-10-01");
+        PurchaseHistory thermometer = new PurchaseHistory("c210", "Instant-Read Thermometer", "kitchen gadgets", 29.99, "2023-10-01");
+
+        return Arrays.asList(
+            history("shopper01", headphones, keyboard, hub, mousePad),
+            history("shopper02", keyboard, mouse, mousePad, monitor),
+            history("shopper03", headphones, speaker, hub),
+            history("shopper04", mouse, mousePad, keyboard),
+            history("shopper05", headphones, monitor, hub),
+            history("shopper06", shoes, socks, tracker),
+            history("shopper07", tracker, chestStrap, shoes),
+            history("shopper08", yogaMat, foamRoller, socks),
+            history("shopper09", shoes, socks, foamRoller),
+            history("shopper10", mixer, bakingMats, springform),
+            history("shopper11", cookwareSet, knife, thermometer),
+            history("shopper12", scale, bakingMats, thermometer),
+            history("shopper13", mixer, springform, scale)
+        );
+    }
+
+    private static RecommendationRequest history(String userId, PurchaseHistory... purchases) {
+        RecommendationRequest request = new RecommendationRequest();
+        request.setUserId(userId);
+        request.setPurchaseHistory(Arrays.asList(purchases));
+        return request;
+    }
+}
@@ -0,0 +1,150 @@
+package com.querino.ai.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing dictionary that numbers strings densely from 0 in insertion order, so ids can index arrays,
+ * without boxing. Not thread-safe.
+ */
+public final class StringIdMap {
+
+    private static final int EMPTY = -1;
+
+    private String[] keys;
+    private int[] slots;
+    private int size;
+    private int mask;
+
+    public StringIdMap() {
+        this(8);
+    }
+
+    /**
+     * @param expectedSize Number of strings the map should hold without resizing
+     */
+    public StringIdMap(int expectedSize) {
+        keys = new String[Math.max(4, expectedSize)];
+        allocate(Integer.highestOneBit(Math.max(4, expectedSize * 4 / 3 + 1) * 2 - 1));
+    }
+
+    private void allocate(int capacity) {
+        slots = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /**
+     * @param key A string, or null
+     * @return The id of the string, or -1 if it has none
+     */
+    public int get(String key) {
+        return key == null ? EMPTY : slots[slotFor(key)];
+    }
+
+    /**
+     * Returns the id of a string, numbering it first if it is new.
+     *
+     * @param key A non-null string
+     * @return Its id
+     */
+    public int add(String key) {
+        int slot = slotFor(key);
+        if (slots[slot] != EMPTY) {
+            return slots[slot];
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        keys[size] = key;
+        slots[slot] = size;
+        if (++size > (mask + 1) * 3 / 4) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * Removes a string. The string with the highest id takes over the removed id, so ids stay dense.
+     *
+     * @param key A string
+     * @return The id the string had, or -1 if it had none
+     */
+    public int remove(String key) {
+        int slot = slotFor(key);
+        int id = slots[slot];
+        if (id == EMPTY) {
+            return EMPTY;
+        }
+        deleteSlot(slot);
+        int last = --size;
+        if (id != last) {
+            String moved = keys[last];
+            slots[slotFor(moved)] = id;
+            keys[id] = moved;
+        }
+        keys[last] = null;
+        return id;
+    }
+
+    /**
+     * @param id An id below {@link #size()}
+     * @return The string with that id
+     */
+    public String key(int id) {
+        return keys[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return An independent copy, for handing to readers on other threads
+     */
+    public StringIdMap copy() {
+        StringIdMap copy = new StringIdMap(0);
+        copy.keys = Arrays.copyOf(keys, Math.max(4, size));
+        copy.slots = slots.clone();
+        copy.size = size;
+        copy.mask = mask;
+        return copy;
+    }
+
+    private int slotFor(String key) {
+        int slot = mix(key.hashCode()) & mask;
+        while (slots[slot] != EMPTY && !keys[slots[slot]].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Backward-shift deletion keeps probe sequences intact without tombstones.
+     */
+    private void deleteSlot(int hole) {
+        for (int next = (hole + 1) & mask; slots[next] != EMPTY; next = (next + 1) & mask) {
+            int home = mix(keys[slots[next]].hashCode()) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        slots[hole] = EMPTY;
+    }
+
+    private void rehash() {
+        allocate(slots.length * 2);
+        for (int id = 0; id < size; id++) {
+            int slot = mix(keys[id].hashCode()) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
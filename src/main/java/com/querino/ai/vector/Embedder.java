@@ -0,0 +1,20 @@
+package com.querino.ai.vector;
+
+/**
+ * Turns text into a fixed-size vector; similar texts get vectors with a high cosine similarity.
+ */
+public interface Embedder {
+
+    /**
+     * @return The length of every vector this embedder produces
+     */
+    int dimensions();
+
+    /**
+     * Embeds a text.
+     *
+     * @param text The text
+     * @return A vector of {@link #dimensions()} floats with unit length, or all zeros for text without words
+     */
+    float[] embed(String text);
+}
@@ -0,0 +1,94 @@
+package com.querino.ai.vector;
+
+import java.util.Locale;
+
+/**
+ * Local, deterministic stand-in for an embedding model, using feature hashing: every lower-cased word and
+ * every character trigram of a word adds a signed weight to a dimension picked by its hash. Texts sharing
+ * words or word fragments ("runner", "running") end up close; there is no notion of synonyms. The same text
+ * always gives the same vector, on every machine, so indexes can be built and tested without an external
+ * service.
+ */
+public class HashingEmbedder implements Embedder {
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float TRIGRAM_WEIGHT = 0.5f;
+
+    private final int dimensions;
+
+    public HashingEmbedder(int dimensions) {
+        if (dimensions < 1) {
+            throw new IllegalArgumentException("Dimensions must be positive: " + dimensions);
+        }
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        if (text == null) {
+            return vector;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                addWord(vector, lower, start, i);
+                start = -1;
+            }
+        }
+        normalize(vector);
+        return vector;
+    }
+
+    private void addWord(float[] vector, String text, int start, int end) {
+        add(vector, hash(text, start, end, 0x5bd1e995), WORD_WEIGHT);
+        // Trigrams of the word padded with boundary markers, so prefixes and suffixes count as well
+        String padded = "^" + text.substring(start, end) + "$";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            add(vector, hash(padded, i, i + 3, 0x27d4eb2d), TRIGRAM_WEIGHT);
+        }
+    }
+
+    private void add(float[] vector, long hash, float weight) {
+        int index = (int) Long.remainderUnsigned(hash >>> 1, dimensions);
+        vector[index] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    /**
+     * Scales a vector to unit length in place; a zero vector is left as it is.
+     *
+     * @param vector The vector
+     */
+    static void normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+    }
+
+    private static long hash(String text, int start, int end, long seed) {
+        long h = seed;
+        for (int i = start; i < end; i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
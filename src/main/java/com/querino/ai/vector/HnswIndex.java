@@ -0,0 +1,651 @@
+package com.querino.ai.vector;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Approximate nearest-neighbour index over unit vectors (cosine similarity) using a Hierarchical Navigable
+ * Small World graph: every vector is a node on level 0 and, with exponentially falling probability, on higher
+ * levels too. A search descends greedily through the sparse upper levels and then explores level 0 with a
+ * candidate list of {@code ef} entries; a larger {@code ef} raises recall at the cost of latency.
+ * <p>
+ * Vectors are stored off-heap in chunks of direct (or, after {@link #load}, memory-mapped) float buffers, so
+ * millions of them add nothing to garbage-collection work. Each node's links are an immutable array swapped
+ * in atomically, and a node is fully written before any link points to it, so searches run without locks
+ * while a single writer inserts.
+ */
+public final class HnswIndex {
+
+    private static final int MAGIC = 0x51484E53;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int[] NO_LINKS = new int[0];
+    /**
+     * Largest mapping a single buffer can address.
+     */
+    private static final long MAX_MAPPING_BYTES = Integer.MAX_VALUE;
+
+    private final int dimensions;
+    private final int m;
+    private final int maxLinksLevel0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final int chunkBits;
+    private final int chunkMask;
+    private final Random random;
+    private final Object writeLock = new Object();
+
+    private volatile FloatBuffer[] chunks = new FloatBuffer[0];
+    private volatile AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<>(16);
+    private volatile EntryPoint entryPoint;
+    private volatile int size;
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    /**
+     * @param dimensions The vector length
+     * @param m Links per node on the upper levels (twice as many on level 0); 12 to 48 is typical
+     * @param efConstruction Candidate list size while inserting; larger builds a better graph, more slowly
+     * @param seed Seed for the level assignment, for reproducible indexes
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, long seed) {
+        if (dimensions < 1 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("Invalid HNSW parameters: dimensions=" + dimensions + ", m=" + m
+                + ", efConstruction=" + efConstruction);
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxLinksLevel0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        // About 1 MB of vectors per chunk
+        this.chunkBits = Math.max(0, 31 - Integer.numberOfLeadingZeros(Math.max(1, (1 << 20) / (dimensions * Float.BYTES))));
+        this.chunkMask = (1 << chunkBits) - 1;
+        this.random = new Random(seed);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @param id A node ID returned by {@link #add}
+     * @return The key the node was added with
+     */
+    public String key(int id) {
+        return nodes.get(id).key;
+    }
+
+    /**
+     * Adds a vector. Safe to call while other threads search; inserts are serialized.
+     *
+     * @param key The key returned by searches, e.g. a product ID
+     * @param vector The vector; normalized to unit length on the way in
+     * @return The node ID
+     */
+    public int add(String key, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        float[] query = vector.clone();
+        HashingEmbedder.normalize(query);
+        synchronized (writeLock) {
+            int id = size;
+            ensureCapacity(id + 1);
+            FloatBuffer chunk = chunks[id >>> chunkBits];
+            chunk.put((id & chunkMask) * dimensions, query);
+
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            int[][] links = new int[level + 1][];
+            Arrays.fill(links, NO_LINKS);
+            nodes.set(id, new Node(key, links));
+
+            EntryPoint entry = entryPoint;
+            if (entry == null) {
+                size = id + 1;
+                entryPoint = new EntryPoint(id, level);
+                return id;
+            }
+            int current = entry.id;
+            float currentDistance = distance(query, current);
+            for (int l = entry.level; l > level; l--) {
+                long closest = greedyClosest(query, current, currentDistance, l);
+                current = idOf(closest);
+                currentDistance = distanceOf(closest);
+            }
+            for (int l = Math.min(level, entry.level); l >= 0; l--) {
+                long[] candidates = searchLevel(query, current, currentDistance, efConstruction, l).sortedAscending();
+                int[] neighbours = selectNeighbours(candidates, m);
+                setLinks(id, l, neighbours);
+                int maxLinks = l == 0 ? maxLinksLevel0 : m;
+                for (int neighbour : neighbours) {
+                    linkBack(neighbour, id, l, maxLinks);
+                }
+                current = idOf(candidates[0]);
+                currentDistance = distanceOf(candidates[0]);
+            }
+            size = id + 1;
+            if (level > entry.level) {
+                entryPoint = new EntryPoint(id, level);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Finds the approximate nearest neighbours of a vector. Safe to call concurrently with inserts.
+     *
+     * @param vector The query vector; need not be normalized
+     * @param k The number of neighbours
+     * @param ef The candidate list size, at least {@code k}; larger raises recall and latency
+     * @return Up to {@code k} neighbours, most similar first
+     */
+    public List<Neighbour> search(float[] vector, int k, int ef) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        EntryPoint entry = entryPoint;
+        if (entry == null || k <= 0) {
+            return List.of();
+        }
+        float[] query = vector.clone();
+        HashingEmbedder.normalize(query);
+        int current = entry.id;
+        float currentDistance = distance(query, current);
+        for (int l = entry.level; l > 0; l--) {
+            long closest = greedyClosest(query, current, currentDistance, l);
+            current = idOf(closest);
+            currentDistance = distanceOf(closest);
+        }
+        long[] found = searchLevel(query, current, currentDistance, Math.max(ef, k), 0).sortedAscending();
+        List<Neighbour> neighbours = new ArrayList<>(Math.min(k, found.length));
+        for (int i = 0; i < found.length && neighbours.size() < k; i++) {
+            int id = idOf(found[i]);
+            neighbours.add(new Neighbour(id, key(id), 1 - distanceOf(found[i])));
+        }
+        return neighbours;
+    }
+
+    /**
+     * Exact nearest neighbours by scanning every vector; for measuring recall.
+     *
+     * @param vector The query vector
+     * @param k The number of neighbours
+     * @return The {@code k} most similar vectors, most similar first
+     */
+    public List<Neighbour> exactSearch(float[] vector, int k) {
+        return exactSearch(vector, k, size);
+    }
+
+    /**
+     * Exact nearest neighbours among the first {@code count} vectors.
+     */
+    List<Neighbour> exactSearch(float[] vector, int k, int count) {
+        float[] query = vector.clone();
+        HashingEmbedder.normalize(query);
+        LongHeap best = new LongHeap(k + 1);
+        for (int id = 0; id < count; id++) {
+            best.add(-encode(distance(query, id), id));
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        List<Neighbour> neighbours = new ArrayList<>(best.size());
+        while (best.size() > 0) {
+            long encoded = -best.poll();
+            neighbours.add(0, new Neighbour(idOf(encoded), key(idOf(encoded)), 1 - distanceOf(encoded)));
+        }
+        return neighbours;
+    }
+
+    /**
+     * Writes the index to a file: a header, the vectors as one contiguous block (so that {@link #load} can map
+     * them), then the keys and the links. The file is written to a temporary name and moved into place.
+     *
+     * @param file The target file
+     * @param fingerprint Caller-defined value stored in the header, e.g. to detect a changed source
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file, long fingerprint) throws IOException {
+        synchronized (writeLock) {
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream stream = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+                EntryPoint entry = entryPoint;
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(dimensions);
+                out.writeInt(m);
+                out.writeInt(efConstruction);
+                out.writeInt(size);
+                out.writeInt(entry == null ? -1 : entry.id);
+                out.writeInt(entry == null ? -1 : entry.level);
+                out.writeLong(fingerprint);
+                out.write(new byte[HEADER_BYTES - 40]);
+                float[] vector = new float[dimensions];
+                for (int id = 0; id < size; id++) {
+                    chunks[id >>> chunkBits].get((id & chunkMask) * dimensions, vector);
+                    for (float value : vector) {
+                        out.writeFloat(value);
+                    }
+                }
+                for (int id = 0; id < size; id++) {
+                    Node node = nodes.get(id);
+                    byte[] key = node.key.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    out.writeInt(node.links.length);
+                    for (int[] links : node.links) {
+                        out.writeInt(links.length);
+                        for (int link : links) {
+                            out.writeInt(link);
+                        }
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Reads the fingerprint stored by {@link #save} without loading the index.
+     *
+     * @param file An index file
+     * @return The fingerprint
+     * @throws IOException If the file is not an index file
+     */
+    public static long readFingerprint(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not an HNSW index file: " + file);
+            }
+            return header.getLong(32);
+        }
+    }
+
+    /**
+     * Opens an index written by {@link #save}. The vectors stay in the memory-mapped file; only the keys and
+     * links are read onto the heap. New vectors can be added to the loaded index.
+     *
+     * @param file The index file
+     * @param seed Seed for the levels of vectors added after loading
+     * @return The index
+     * @throws IOException If the file cannot be read or is not an index file
+     */
+    public static HnswIndex load(Path file, long seed) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not an HNSW index file: " + file);
+            }
+            HnswIndex index = new HnswIndex(header.getInt(), header.getInt(), header.getInt(), seed);
+            int size = header.getInt();
+            int entryId = header.getInt();
+            int entryLevel = header.getInt();
+
+            int dimensions = index.dimensions;
+            long vectorBytes = (long) size * dimensions * Float.BYTES;
+            long chunkBytes = (long) Float.BYTES * dimensions << index.chunkBits;
+            int fullChunks = (int) (size >>> index.chunkBits);
+            index.chunks = new FloatBuffer[fullChunks];
+            // Map the vectors in large regions and slice them into chunks; full chunks are never written again
+            long chunksPerMapping = Math.max(1, MAX_MAPPING_BYTES / chunkBytes);
+            for (int first = 0; first < fullChunks; first += (int) chunksPerMapping) {
+                int count = (int) Math.min(chunksPerMapping, fullChunks - first);
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + first * chunkBytes, count * chunkBytes);
+                for (int c = 0; c < count; c++) {
+                    index.chunks[first + c] = mapping.slice((int) (c * chunkBytes), (int) chunkBytes)
+                        .order(ByteOrder.BIG_ENDIAN).asFloatBuffer();
+                }
+            }
+            // The last, partial chunk is copied so that inserts can continue filling it
+            int remainder = size & index.chunkMask;
+            if (remainder > 0) {
+                index.ensureCapacity(size);
+                ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + fullChunks * chunkBytes, (long) remainder * dimensions * Float.BYTES);
+                index.chunks[fullChunks].put(0, tail.asFloatBuffer(), 0, remainder * dimensions);
+            }
+
+            long position = HEADER_BYTES + vectorBytes;
+            ByteBuffer rest = channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+            AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<>(Math.max(16, size));
+            for (int id = 0; id < size; id++) {
+                byte[] key = new byte[rest.getInt()];
+                rest.get(key);
+                int[][] links = new int[rest.getInt()][];
+                for (int l = 0; l < links.length; l++) {
+                    links[l] = new int[rest.getInt()];
+                    for (int i = 0; i < links[l].length; i++) {
+                        links[l][i] = rest.getInt();
+                    }
+                }
+                nodes.set(id, new Node(new String(key, StandardCharsets.UTF_8), links));
+            }
+            index.nodes = nodes;
+            index.size = size;
+            index.entryPoint = entryId < 0 ? null : new EntryPoint(entryId, entryLevel);
+            return index;
+        }
+    }
+
+    /**
+     * Follows the closest neighbour on one level until no neighbour is closer.
+     *
+     * @return The closest node found, encoded with its distance
+     */
+    private long greedyClosest(float[] query, int start, float startDistance, int level) {
+        int current = start;
+        float currentDistance = startDistance;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : links(current, level)) {
+                float distance = distance(query, neighbour);
+                if (distance < currentDistance) {
+                    current = neighbour;
+                    currentDistance = distance;
+                    improved = true;
+                }
+            }
+        }
+        return encode(currentDistance, current);
+    }
+
+    /**
+     * Best-first search of one level, keeping the {@code ef} closest nodes found.
+     *
+     * @return The closest nodes as a max-heap of negated encodings
+     */
+    private LongHeap searchLevel(float[] query, int start, float startDistance, int ef, int level) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(nodes.length());
+        LongHeap candidates = new LongHeap(ef * 2);
+        LongHeap results = new LongHeap(ef + 1);
+        long startEncoded = encode(startDistance, start);
+        visited.add(start);
+        candidates.add(startEncoded);
+        results.add(-startEncoded);
+        while (candidates.size() > 0) {
+            long closest = candidates.poll();
+            float farthestResult = distanceOf(-results.peek());
+            if (distanceOf(closest) > farthestResult && results.size() >= ef) {
+                break;
+            }
+            for (int neighbour : links(idOf(closest), level)) {
+                if (!visited.add(neighbour)) {
+                    continue;
+                }
+                float distance = distance(query, neighbour);
+                if (results.size() < ef || distance < distanceOf(-results.peek())) {
+                    long encoded = encode(distance, neighbour);
+                    candidates.add(encoded);
+                    results.add(-encoded);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Picks up to {@code max} neighbours from candidates sorted by distance, skipping a candidate when it is
+     * closer to an already picked neighbour than to the new node. This keeps links spread in all directions,
+     * which is what makes the graph navigable.
+     */
+    private int[] selectNeighbours(long[] sortedCandidates, int max) {
+        int[] selected = new int[Math.min(max, sortedCandidates.length)];
+        int count = 0;
+        float[] candidateVector = new float[dimensions];
+        for (int i = 0; i < sortedCandidates.length && count < selected.length; i++) {
+            int candidate = idOf(sortedCandidates[i]);
+            float distanceToNode = distanceOf(sortedCandidates[i]);
+            vector(candidate, candidateVector);
+            boolean diverse = true;
+            for (int j = 0; j < count && diverse; j++) {
+                diverse = distance(candidateVector, selected[j]) >= distanceToNode;
+            }
+            if (diverse) {
+                selected[count++] = candidate;
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    /**
+     * Adds a link from {@code neighbour} to the new node, re-selecting its links if it has too many.
+     */
+    private void linkBack(int neighbour, int id, int level, int maxLinks) {
+        int[] current = links(neighbour, level);
+        int[] updated;
+        if (current.length < maxLinks) {
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = id;
+        } else {
+            float[] neighbourVector = new float[dimensions];
+            vector(neighbour, neighbourVector);
+            long[] candidates = new long[current.length + 1];
+            for (int i = 0; i < current.length; i++) {
+                candidates[i] = encode(distance(neighbourVector, current[i]), current[i]);
+            }
+            candidates[current.length] = encode(distance(neighbourVector, id), id);
+            Arrays.sort(candidates);
+            updated = selectNeighbours(candidates, maxLinks);
+        }
+        setLinks(neighbour, level, updated);
+    }
+
+    private int[] links(int id, int level) {
+        int[][] links = nodes.get(id).links;
+        return level < links.length ? links[level] : NO_LINKS;
+    }
+
+    /**
+     * Replaces one level of a node's links by publishing a new node; readers see either the old or new links.
+     */
+    private void setLinks(int id, int level, int[] links) {
+        AtomicReferenceArray<Node> current = nodes;
+        Node node = current.get(id);
+        int[][] updated = node.links.clone();
+        updated[level] = links;
+        current.set(id, new Node(node.key, updated));
+    }
+
+    private void ensureCapacity(int capacity) {
+        int neededChunks = (capacity + chunkMask) >>> chunkBits;
+        FloatBuffer[] current = chunks;
+        if (neededChunks > current.length) {
+            FloatBuffer[] grown = Arrays.copyOf(current, neededChunks);
+            for (int c = current.length; c < grown.length; c++) {
+                grown[c] = ByteBuffer.allocateDirect(Float.BYTES * dimensions << chunkBits)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            }
+            chunks = grown;
+        }
+        AtomicReferenceArray<Node> currentNodes = nodes;
+        if (capacity > currentNodes.length()) {
+            AtomicReferenceArray<Node> grown = new AtomicReferenceArray<>(Math.max(capacity, currentNodes.length() * 2));
+            for (int i = 0; i < currentNodes.length(); i++) {
+                grown.set(i, currentNodes.get(i));
+            }
+            nodes = grown;
+        }
+    }
+
+    private void vector(int id, float[] target) {
+        chunks[id >>> chunkBits].get((id & chunkMask) * dimensions, target);
+    }
+
+    /**
+     * Cosine distance {@code 1 - dot} between a unit query vector and a stored unit vector.
+     */
+    private float distance(float[] query, int id) {
+        FloatBuffer chunk = chunks[id >>> chunkBits];
+        int offset = (id & chunkMask) * dimensions;
+        float dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * chunk.get(offset + i);
+        }
+        return 1 - dot;
+    }
+
+    /**
+     * Packs a distance and a node ID into a long that orders by distance, then ID. Distances are clamped to
+     * be non-negative, so their IEEE 754 bits order like the values.
+     */
+    private static long encode(float distance, int id) {
+        return (long) Float.floatToRawIntBits(Math.max(0f, distance)) << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    private static int idOf(long encoded) {
+        return (int) encoded;
+    }
+
+    private static float distanceOf(long encoded) {
+        return Float.intBitsToFloat((int) (encoded >>> 32));
+    }
+
+    /**
+     * A search result.
+     *
+     * @param id The node ID
+     * @param key The key the vector was added with
+     * @param similarity The cosine similarity to the query, from -1 to 1
+     */
+    public record Neighbour(int id, String key, float similarity) {
+    }
+
+    private record Node(String key, int[][] links) {
+    }
+
+    private record EntryPoint(int id, int level) {
+    }
+
+    /**
+     * Min-heap of longs; a max-heap is kept by adding negated values.
+     */
+    private static final class LongHeap {
+        private long[] heap;
+        private int size;
+
+        LongHeap(int capacity) {
+            heap = new long[Math.max(4, capacity)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void add(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long poll() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+
+        /**
+         * Empties the heap of negated encodings, returning the original encodings by ascending distance.
+         */
+        long[] sortedAscending() {
+            long[] sorted = new long[size];
+            for (int i = sorted.length - 1; i >= 0; i--) {
+                sorted[i] = -poll();
+            }
+            return sorted;
+        }
+    }
+
+    /**
+     * Per-thread visited marks, reset in constant time by bumping a generation number.
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[capacity];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return false if the node was already visited
+         */
+        boolean add(int id) {
+            if (id >= marks.length) {
+                marks = Arrays.copyOf(marks, Math.max(id + 1, marks.length * 2));
+            }
+            if (marks[id] == generation) {
+                return false;
+            }
+            marks[id] = generation;
+            return true;
+        }
+    }
+}
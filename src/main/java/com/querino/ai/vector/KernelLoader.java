@@ -0,0 +1,35 @@
+package com.querino.ai.vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the {@link VectorKernels} implementation once, on first use. The Vector API kernels are loaded by name
+ * so that this class, and everything using the kernels, still links when the incubator module is missing.
+ */
+final class KernelLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(KernelLoader.class);
+
+    static final VectorKernels INSTANCE = load();
+
+    private KernelLoader() {
+    }
+
+    private static VectorKernels load() {
+        if ("scalar".equalsIgnoreCase(System.getProperty("querino.vector.kernels"))
+            || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            logger.info("Using scalar vector kernels (start with --add-modules jdk.incubator.vector for SIMD)");
+            return ScalarKernels.INSTANCE;
+        }
+        try {
+            VectorKernels kernels = (VectorKernels) Class.forName("com.querino.ai.vector.SimdKernels")
+                .getDeclaredField("INSTANCE").get(null);
+            logger.info("Using {} vector kernels", kernels.name());
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Vector API kernels unavailable, using scalar kernels: {}", e.toString());
+            return ScalarKernels.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.querino.ai.vector;
+
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.catalog.ProductTable;
+import com.querino.ai.model.Product;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * Approximate nearest-neighbour search over the product catalog: every product's name, category and description
+ * is embedded with a {@link HashingEmbedder} and added to an {@link HnswIndex}, so "products like X" and free-text
+ * queries are answered in well under a millisecond without calling a model.
+ * <p>
+ * At startup the index is loaded from the configured index file if that file was built from the same catalog;
+ * otherwise it is built in the background, and until it is ready queries are answered by an exact scan: the
+ * products already inserted are scanned in the index and the rest are embedded on the fly. When the catalog is
+ * replaced, the next query starts a rebuild in the background and keeps answering from the previous index until
+ * the new one is swapped in; products no longer in the catalog are left out.
+ */
+@Component
+public class ProductVectorIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductVectorIndex.class);
+    private static final long SEED = 42;
+    /**
+     * Latest purchases that describe a user's taste.
+     */
+    private static final int TASTE_PURCHASES = 5;
+    private static final VectorKernels KERNELS = VectorKernels.get();
+
+    private final ProductCatalog productCatalog;
+    private final Embedder embedder;
+    private final int m;
+    private final int efConstruction;
+    private final int defaultEfSearch;
+    private final Path indexFile;
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vector-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private volatile IndexedCatalog indexed;
+
+    @Autowired
+    public ProductVectorIndex(ProductCatalog productCatalog,
+                              @Value("${recommendation.vector.dimensions:256}") int dimensions,
+                              @Value("${recommendation.vector.m:16}") int m,
+                              @Value("${recommendation.vector.ef-construction:100}") int efConstruction,
+                              @Value("${recommendation.vector.ef-search:64}") int efSearch,
+                              @Value("${recommendation.vector.index-file:}") String indexFile) {
+        this(productCatalog, new HashingEmbedder(dimensions), m, efConstruction, efSearch,
+            indexFile == null || indexFile.isBlank() ? null : Path.of(indexFile));
+    }
+
+    public ProductVectorIndex(ProductCatalog productCatalog, Embedder embedder, int m, int efConstruction,
+                              int efSearch, Path indexFile) {
+        this.productCatalog = productCatalog;
+        this.embedder = embedder;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.defaultEfSearch = efSearch;
+        this.indexFile = indexFile;
+        CatalogSnapshot snapshot = productCatalog.current();
+        IndexedCatalog loaded = load(snapshot, fingerprint(snapshot.getTable()));
+        if (loaded != null) {
+            this.indexed = loaded;
+        } else {
+            this.indexed = new IndexedCatalog(snapshot.getVersion(), newIndex(), snapshot.getTable(), false);
+            rebuilding.set(true);
+            rebuildInBackground();
+        }
+    }
+
+    /**
+     * Finds the products closest to a free-text query.
+     *
+     * @param text The query, e.g. "wireless noise cancelling headphones"
+     * @param limit The maximum number of products
+     * @param ef The search breadth, or 0 for the configured default; larger is slower but more accurate
+     * @return The most similar products, most similar first
+     */
+    public List<SimilarProduct> search(String text, int limit, int ef) {
+        return search(embedder.embed(text), limit, ef, null);
+    }
+
+    /**
+     * Finds the products closest to a catalog product.
+     *
+     * @param productId The product ID
+     * @param limit The maximum number of products, not counting the product itself
+     * @param ef The search breadth, or 0 for the configured default
+     * @return The most similar other products, most similar first, or null if the product is not in the catalog
+     */
+    public List<SimilarProduct> similarTo(String productId, int limit, int ef) {
+        Product product = productCatalog.findById(productId);
+        if (product == null) {
+            return null;
+        }
+        return search(embedder.embed(textOf(product)), limit, ef, productId);
+    }
+
+    /**
+     * Finds the products closest to an embedding returned by {@link #embed}.
+     *
+     * @param query The query embedding
+     * @param limit The maximum number of products
+     * @param ef The search breadth, or 0 for the configured default
+     * @return The most similar products, most similar first
+     */
+    public List<SimilarProduct> search(float[] query, int limit, int ef) {
+        return search(query, limit, ef, null);
+    }
+
+    /**
+     * Embeds a text with the same embedder as the catalog, for callers searching the index directly.
+     *
+     * @param text The text
+     * @return The embedding
+     */
+    public float[] embed(String text) {
+        return embedder.embed(text);
+    }
+
+    /**
+     * Embeds a product the way it is embedded in the index.
+     *
+     * @param product The product
+     * @return The embedding
+     */
+    public float[] embed(Product product) {
+        return embedder.embed(textOf(product));
+    }
+
+    /**
+     * Scores a single product against an embedding without searching the index.
+     *
+     * @param query The query embedding
+     * @param product The product
+     * @return The cosine similarity, from -1 to 1
+     */
+    public float similarity(float[] query, Product product) {
+        return KERNELS.dot(query, embed(product));
+    }
+
+    /**
+     * Embeds a user's taste: interests, preferred categories and the latest purchases.
+     *
+     * @param interests The user's interests, or null
+     * @param preferredCategories The user's preferred categories, or null
+     * @param purchases The user's purchases, oldest first
+     * @return The embedding, or null if there is nothing to describe the user with
+     */
+    public float[] embedTaste(List<String> interests, List<String> preferredCategories, List<PurchaseHistory> purchases) {
+        String text = tasteText(interests, preferredCategories, purchases);
+        return text.isBlank() ? null : embedder.embed(text);
+    }
+
+    /**
+     * @return The number of indexed products; it grows while the first build runs
+     */
+    public int size() {
+        return indexed.index.size();
+    }
+
+    /**
+     * @return Whether the index is fully built; until then queries are answered by an exact scan
+     */
+    public boolean isReady() {
+        return indexed.ready;
+    }
+
+    /**
+     * @return The catalog version the current index was built from
+     */
+    public long getCatalogVersion() {
+        return indexed.catalogVersion;
+    }
+
+    /**
+     * Rebuilds the index from the current catalog on the calling thread.
+     */
+    public void rebuild() {
+        indexed = build(productCatalog.current(), newIndex());
+    }
+
+    @PreDestroy
+    public void close() {
+        rebuilder.shutdownNow();
+    }
+
+    private List<SimilarProduct> search(float[] query, int limit, int ef, String excludedId) {
+        refreshIfStale();
+        CatalogSnapshot snapshot = productCatalog.current();
+        int wanted = Math.max(0, limit) + (excludedId == null ? 0 : 1);
+        int breadth = Math.max(ef > 0 ? ef : defaultEfSearch, wanted);
+        IndexedCatalog current = indexed;
+        List<HnswIndex.Neighbour> neighbours = current.ready
+            ? current.index.search(query, wanted, breadth)
+            : exactSearch(current, query, wanted);
+        List<SimilarProduct> results = new ArrayList<>(wanted);
+        for (HnswIndex.Neighbour neighbour : neighbours) {
+            if (results.size() == limit) {
+                break;
+            }
+            if (neighbour.key().equals(excludedId)) {
+                continue;
+            }
+            // Skips products removed from the catalog since the index was built
+            Product product = snapshot.findById(neighbour.key());
+            if (product != null) {
+                results.add(new SimilarProduct(product, neighbour.similarity()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Scans every product of an index that is still being built: the inserted ones in the index, the rest by
+     * embedding them.
+     */
+    private List<HnswIndex.Neighbour> exactSearch(IndexedCatalog building, float[] query, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        // Rows are inserted in order, so node i is row i
+        int inserted = building.index.size();
+        List<HnswIndex.Neighbour> best = new ArrayList<>(building.index.exactSearch(query, k, inserted));
+        float[] normalized = query.clone();
+        HashingEmbedder.normalize(normalized);
+        for (int row = inserted; row < building.table.size(); row++) {
+            Product product = building.table.getProduct(row);
+            float similarity = KERNELS.dot(normalized, embedder.embed(textOf(product)));
+            if (best.size() < k || similarity > best.get(best.size() - 1).similarity()) {
+                int position = 0;
+                while (position < best.size() && best.get(position).similarity() >= similarity) {
+                    position++;
+                }
+                best.add(position, new HnswIndex.Neighbour(row, product.getId(), similarity));
+                if (best.size() > k) {
+                    best.remove(k);
+                }
+            }
+        }
+        return best;
+    }
+
+    private void refreshIfStale() {
+        if (indexed.catalogVersion == productCatalog.current().getVersion() || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildInBackground();
+    }
+
+    /**
+     * Builds the index on the rebuild thread until it is ready and matches the current catalog. The caller must
+     * have set {@code rebuilding}.
+     */
+    private void rebuildInBackground() {
+        rebuilder.execute(() -> {
+            try {
+                CatalogSnapshot snapshot = productCatalog.current();
+                while (!indexed.ready || snapshot.getVersion() != indexed.catalogVersion) {
+                    // The first build fills the index that exact scans are reading; later ones start afresh
+                    IndexedCatalog current = indexed;
+                    boolean first = !current.ready && snapshot.getVersion() == current.catalogVersion;
+                    indexed = open(snapshot, first ? current.index : newIndex());
+                    snapshot = productCatalog.current();
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Building the product vector index failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    /**
+     * Loads the index file if it matches the catalog, otherwise builds the index into the given empty index and
+     * saves it.
+     */
+    private IndexedCatalog open(CatalogSnapshot snapshot, HnswIndex target) {
+        long fingerprint = fingerprint(snapshot.getTable());
+        IndexedCatalog loaded = load(snapshot, fingerprint);
+        if (loaded != null) {
+            return loaded;
+        }
+        IndexedCatalog built = build(snapshot, target);
+        if (indexFile != null) {
+            try {
+                if (indexFile.getParent() != null) {
+                    Files.createDirectories(indexFile.getParent());
+                }
+                built.index.save(indexFile, fingerprint);
+            } catch (IOException e) {
+                logger.warn("Cannot save vector index to {}: {}", indexFile, e.getMessage());
+            }
+        }
+        return built;
+    }
+
+    /**
+     * @return The index file if it was built from the catalog, otherwise null
+     */
+    private IndexedCatalog load(CatalogSnapshot snapshot, long fingerprint) {
+        if (indexFile == null || !Files.exists(indexFile)) {
+            return null;
+        }
+        try {
+            if (HnswIndex.readFingerprint(indexFile) == fingerprint) {
+                HnswIndex index = HnswIndex.load(indexFile, SEED);
+                logger.info("Loaded vector index of {} products from {}", index.size(), indexFile);
+                return new IndexedCatalog(snapshot.getVersion(), index, snapshot.getTable(), true);
+            }
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable vector index file {}: {}", indexFile, e.getMessage());
+        }
+        return null;
+    }
+
+    private HnswIndex newIndex() {
+        return new HnswIndex(embedder.dimensions(), m, efConstruction, SEED);
+    }
+
+    private IndexedCatalog build(CatalogSnapshot snapshot, HnswIndex index) {
+        long start = System.nanoTime();
+        ProductTable table = snapshot.getTable();
+        for (int row = 0; row < table.size(); row++) {
+            Product product = table.getProduct(row);
+            index.add(product.getId(), embedder.embed(textOf(product)));
+        }
+        logger.info("Built vector index of {} products in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+        return new IndexedCatalog(snapshot.getVersion(), index, table, true);
+    }
+
+    /**
+     * Identifies the catalog contents and index settings an index file was built from. Every product contributes
+     * its ID and the exact text that is embedded, so that an edited name or description invalidates the file.
+     */
+    private long fingerprint(ProductTable table) {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + embedder.dimensions();
+        hash = 31 * hash + m;
+        hash = 31 * hash + efConstruction;
+        hash = 31 * hash + table.size();
+        CRC32C text = new CRC32C();
+        for (int row = 0; row < table.size(); row++) {
+            Product product = table.getProduct(row);
+            text.reset();
+            text.update(textOf(product).getBytes(StandardCharsets.UTF_8));
+            hash = 31 * hash + product.getId().hashCode();
+            hash = 31 * hash + text.getValue();
+        }
+        return hash;
+    }
+
+    private static String tasteText(List<String> interests, List<String> preferredCategories,
+                                    List<PurchaseHistory> purchases) {
+        StringBuilder text = new StringBuilder();
+        if (interests != null) {
+            interests.forEach(interest -> text.append(interest).append(' '));
+        }
+        if (preferredCategories != null) {
+            preferredCategories.forEach(category -> text.append(category).append(' '));
+        }
+        if (purchases != null) {
+            for (int i = Math.max(0, purchases.size() - TASTE_PURCHASES); i < purchases.size(); i++) {
+                PurchaseHistory purchase = purchases.get(i);
+                if (purchase.getProductName() != null) {
+                    text.append(purchase.getProductName()).append(' ');
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    static String textOf(Product product) {
+        StringBuilder text = new StringBuilder();
+        if (product.getName() != null) {
+            text.append(product.getName());
+        }
+        if (product.getCategory() != null) {
+            text.append(' ').append(product.getCategory());
+        }
+        if (product.getDescription() != null) {
+            text.append(' ').append(product.getDescription());
+        }
+        return text.toString();
+    }
+
+    /**
+     * An index and the catalog it is built from; until {@code ready}, the index holds only the first rows.
+     */
+    private record IndexedCatalog(long catalogVersion, HnswIndex index, ProductTable table, boolean ready) {
+    }
+
+    /**
+     * A product and its similarity to the query.
+     *
+     * @param product The product
+     * @param score The cosine similarity, from -1 to 1
+     */
+    public record SimilarProduct(Product product, float score) {
+    }
+}
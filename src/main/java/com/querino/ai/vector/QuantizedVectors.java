@@ -0,0 +1,340 @@
+package com.querino.ai.vector;
+
+import com.querino.ai.util.StringIdMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Keyed unit vectors stored as 8-bit integers: each component is scaled by the vector's largest absolute
+ * component to the range -127..127, and only that one float scale is kept per vector. A vector of {@code d}
+ * dimensions takes {@code d + 4} bytes instead of {@code 4d}, close to a quarter.
+ * <p>
+ * Searches quantize the query the same way and scan all codes with an integer dot product, a block of rows per
+ * call to the SIMD {@link VectorKernels} where available. Codes are kept in chunks of about 1 MB, so the store
+ * can grow past the 2 GB limit of a single array and never copies the codes when it grows. The quantization
+ * error slightly reorders close matches, so {@link #search(float[], int, int, Rescorer)} fetches a few times more candidates than needed and
+ * re-ranks them with exact float scores supplied by the caller.
+ */
+public final class QuantizedVectors {
+
+    private static final int MAX_CODE = 127;
+    /**
+     * Rows scored per kernel call, small enough for the scores to stay in cache.
+     */
+    private static final int BLOCK_ROWS = 256;
+    private static final VectorKernels KERNELS = VectorKernels.get();
+
+    private final int dimensions;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int chunkBits;
+    private final int chunkMask;
+    private final StringIdMap ids = new StringIdMap(16);
+    private byte[][] codes = new byte[0][];
+    private float[] scales = new float[16];
+
+    public QuantizedVectors(int dimensions) {
+        if (dimensions < 1) {
+            throw new IllegalArgumentException("Dimensions must be positive: " + dimensions);
+        }
+        this.dimensions = dimensions;
+        // About 1 MB of codes per chunk
+        this.chunkBits = Math.max(0, 31 - Integer.numberOfLeadingZeros(Math.max(1, (1 << 20) / dimensions)));
+        this.chunkMask = (1 << chunkBits) - 1;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a vector, or replaces the vector stored under the same key.
+     *
+     * @param key The key returned by searches
+     * @param vector The vector; normalized to unit length before quantization
+     */
+    public void put(String key, float[] vector) {
+        byte[] quantized = new byte[dimensions];
+        float scale = quantize(vector, quantized);
+        lock.writeLock().lock();
+        try {
+            int id = ids.add(key);
+            if (id == scales.length) {
+                scales = Arrays.copyOf(scales, scales.length * 2);
+            }
+            if (id >>> chunkBits == codes.length) {
+                codes = Arrays.copyOf(codes, codes.length + 1);
+                codes[codes.length - 1] = new byte[dimensions << chunkBits];
+            }
+            System.arraycopy(quantized, 0, codes[id >>> chunkBits], (id & chunkMask) * dimensions, dimensions);
+            scales[id] = scale;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the vector stored under a key, if any. The last stored vector moves into its place.
+     *
+     * @param key The key
+     */
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            int last = ids.size() - 1;
+            int id = ids.remove(key);
+            if (id >= 0 && id != last) {
+                System.arraycopy(codes[last >>> chunkBits], (last & chunkMask) * dimensions,
+                    codes[id >>> chunkBits], (id & chunkMask) * dimensions, dimensions);
+                scales[id] = scales[last];
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the vectors with the highest approximate cosine similarity, from the quantized codes only.
+     *
+     * @param query The query vector
+     * @param k The number of results
+     * @return Up to {@code k} matches, most similar first
+     */
+    public List<Match> search(float[] query, int k) {
+        return search(query, k, Set.of());
+    }
+
+    /**
+     * Like {@link #search(float[], int)}, leaving out some keys.
+     *
+     * @param query The query vector
+     * @param k The number of results
+     * @param excluded Keys not to return
+     * @return Up to {@code k} matches, most similar first
+     */
+    public List<Match> search(float[] query, int k, Set<String> excluded) {
+        byte[] quantizedQuery = new byte[dimensions];
+        float queryScale = quantize(query, quantizedQuery);
+        TopK top = new TopK(k);
+        int[] block = new int[Math.min(BLOCK_ROWS, chunkMask + 1)];
+        lock.readLock().lock();
+        try {
+            // Blocks never cross a chunk boundary, since both hold a power of two rows
+            for (int first = 0, size = ids.size(); first < size; first += block.length) {
+                int rows = Math.min(block.length, size - first);
+                KERNELS.dotRows(quantizedQuery, codes[first >>> chunkBits], first & chunkMask, rows, block);
+                for (int i = 0; i < rows; i++) {
+                    int id = first + i;
+                    float score = queryScale * scales[id] * block[i];
+                    if (top.accepts(score) && !excluded.contains(ids.key(id))) {
+                        top.add(score, ids.key(id));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top.toList();
+    }
+
+    /**
+     * Finds the vectors most similar to a query: the {@code k * rerankFactor} best quantized matches are scored
+     * again with exact similarities, and the best {@code k} of those are returned.
+     *
+     * @param query The query vector
+     * @param k The number of results
+     * @param rerankFactor How many times {@code k} candidates to re-rank; 1 disables re-ranking
+     * @param exact Supplies the exact similarity of the query to a stored key
+     * @return Up to {@code k} matches, most similar first, with exact similarities
+     */
+    public List<Match> search(float[] query, int k, int rerankFactor, Rescorer exact) {
+        List<Match> candidates = search(query, k * Math.max(1, rerankFactor));
+        TopK top = new TopK(k);
+        for (Match candidate : candidates) {
+            float score = exact.score(candidate.key());
+            if (top.accepts(score)) {
+                top.add(score, candidate.key());
+            }
+        }
+        return top.toList();
+    }
+
+    /**
+     * Measures how many of the exact top-{@code k} neighbours the quantized search finds, with and without
+     * re-ranking, against brute-force float search over the original vectors.
+     *
+     * @param queries The query vectors
+     * @param k The number of neighbours per query
+     * @param rerankFactor The re-rank factor to evaluate
+     * @param originals Supplies the original float vector of a stored key
+     * @return The memory footprint and recall
+     */
+    public QuantizationReport evaluate(List<float[]> queries, int k, int rerankFactor, Function<String, float[]> originals) {
+        List<String> storedKeys;
+        lock.readLock().lock();
+        try {
+            storedKeys = new ArrayList<>(ids.size());
+            for (int id = 0; id < ids.size(); id++) {
+                storedKeys.add(ids.key(id));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<float[]> vectors = new ArrayList<>(storedKeys.size());
+        Map<String, float[]> vectorsByKey = new HashMap<>();
+        for (String key : storedKeys) {
+            float[] vector = originals.apply(key).clone();
+            HashingEmbedder.normalize(vector);
+            vectors.add(vector);
+            vectorsByKey.put(key, vector);
+        }
+        long expected = 0;
+        long quantizedHits = 0;
+        long rerankedHits = 0;
+        for (float[] rawQuery : queries) {
+            float[] query = rawQuery.clone();
+            HashingEmbedder.normalize(query);
+            TopK exactTop = new TopK(k);
+            for (int i = 0; i < vectors.size(); i++) {
+                float score = KERNELS.dot(query, vectors.get(i));
+                if (exactTop.accepts(score)) {
+                    exactTop.add(score, storedKeys.get(i));
+                }
+            }
+            Set<String> truth = new HashSet<>();
+            exactTop.toList().forEach(match -> truth.add(match.key()));
+            expected += truth.size();
+            for (Match match : search(query, k)) {
+                quantizedHits += truth.contains(match.key()) ? 1 : 0;
+            }
+            for (Match match : search(query, k, rerankFactor, key -> KERNELS.dot(query, vectorsByKey.get(key)))) {
+                rerankedHits += truth.contains(match.key()) ? 1 : 0;
+            }
+        }
+        long count = storedKeys.size();
+        return new QuantizationReport(count, dimensions, count * dimensions * Float.BYTES,
+            count * (dimensions + Float.BYTES), queries.size(), k, rerankFactor,
+            expected == 0 ? 1 : (double) quantizedHits / expected,
+            expected == 0 ? 1 : (double) rerankedHits / expected);
+    }
+
+    /**
+     * Quantizes a vector after normalizing it.
+     *
+     * @param vector The vector
+     * @param target Receives the codes
+     * @return The scale that turns the codes back into the unit vector's components
+     */
+    private float quantize(float[] vector, byte[] target) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        float[] unit = vector.clone();
+        HashingEmbedder.normalize(unit);
+        float maxAbs = 0;
+        for (float value : unit) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (maxAbs == 0) {
+            Arrays.fill(target, (byte) 0);
+            return 0;
+        }
+        float inverse = MAX_CODE / maxAbs;
+        for (int i = 0; i < dimensions; i++) {
+            target[i] = (byte) Math.round(unit[i] * inverse);
+        }
+        return maxAbs / MAX_CODE;
+    }
+
+    /**
+     * Supplies the exact similarity of the query to a stored key, for re-ranking.
+     */
+    @FunctionalInterface
+    public interface Rescorer {
+        float score(String key);
+    }
+
+    /**
+     * A search result.
+     *
+     * @param key The key the vector was stored under
+     * @param score The cosine similarity to the query, approximate unless re-ranked
+     */
+    public record Match(String key, float score) {
+    }
+
+    /**
+     * Memory footprint and measured recall of the quantized vectors.
+     *
+     * @param vectors The number of stored vectors
+     * @param dimensions The vector length
+     * @param floatBytes The bytes the vectors would take as 32-bit floats
+     * @param quantizedBytes The bytes of the codes and scales
+     * @param queries The number of queries evaluated
+     * @param k The number of neighbours per query
+     * @param rerankFactor The re-rank factor evaluated
+     * @param recall The share of exact top-k neighbours found from the codes alone
+     * @param rerankedRecall The share of exact top-k neighbours found after re-ranking
+     */
+    public record QuantizationReport(long vectors, int dimensions, long floatBytes, long quantizedBytes, int queries,
+                                     int k, int rerankFactor, double recall, double rerankedRecall) {
+
+        public double getCompressionRatio() {
+            return quantizedBytes == 0 ? 0 : (double) floatBytes / quantizedBytes;
+        }
+    }
+
+    /**
+     * Keeps the {@code k} highest scores seen, in a small array sorted by descending score.
+     */
+    private static final class TopK {
+        private final float[] scores;
+        private final String[] keys;
+        private int count;
+
+        TopK(int k) {
+            scores = new float[Math.max(0, k)];
+            keys = new String[Math.max(0, k)];
+        }
+
+        boolean accepts(float score) {
+            return count < scores.length || (scores.length > 0 && score > scores[count - 1]);
+        }
+
+        void add(float score, String key) {
+            int i = count < scores.length ? count++ : count - 1;
+            while (i > 0 && scores[i - 1] < score) {
+                scores[i] = scores[i - 1];
+                keys[i] = keys[i - 1];
+                i--;
+            }
+            scores[i] = score;
+            keys[i] = key;
+        }
+
+        List<Match> toList() {
+            List<Match> matches = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                matches.add(new Match(keys[i], scores[i]));
+            }
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.querino.ai.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels using the JDK Vector API at the widest vector size the CPU supports. Only loaded by
+ * {@link VectorKernels#get()} after checking that the {@code jdk.incubator.vector} module is present.
+ * <p>
+ * Float dot products use fused multiply-adds into two accumulators. Int8 codes are widened to ints a vector at a
+ * time, so a 512-bit CPU multiplies 16 codes per instruction. {@link #dotRows} scores four code rows per pass
+ * over the query, widening each query chunk once for all four.
+ */
+final class SimdKernels implements VectorKernels {
+
+    static final SimdKernels INSTANCE = new SimdKernels();
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = VectorSpecies.of(byte.class,
+        VectorShape.forBitSize(INTS.length() * Byte.SIZE));
+
+    private SimdKernels() {
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + FLOATS.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int step = FLOATS.length();
+        FloatVector sum0 = FloatVector.zero(FLOATS);
+        FloatVector sum1 = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (; i + 2 * step <= length; i += 2 * step) {
+            sum0 = FloatVector.fromArray(FLOATS, a, aOffset + i)
+                .fma(FloatVector.fromArray(FLOATS, b, bOffset + i), sum0);
+            sum1 = FloatVector.fromArray(FLOATS, a, aOffset + i + step)
+                .fma(FloatVector.fromArray(FLOATS, b, bOffset + i + step), sum1);
+        }
+        for (; i + step <= length; i += step) {
+            sum0 = FloatVector.fromArray(FLOATS, a, aOffset + i)
+                .fma(FloatVector.fromArray(FLOATS, b, bOffset + i), sum0);
+        }
+        float sum = sum0.add(sum1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int step = INTS.length();
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (; i + step <= length; i += step) {
+            sum = widen(a, aOffset + i).mul(widen(b, bOffset + i)).add(sum);
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public void dotRows(byte[] query, byte[] matrix, int firstRow, int rows, int[] scores) {
+        int dimensions = query.length;
+        int step = INTS.length();
+        int vectorEnd = dimensions - dimensions % step;
+        int r = 0;
+        for (; r + 3 < rows; r += 4) {
+            int o0 = (firstRow + r) * dimensions;
+            int o1 = o0 + dimensions;
+            int o2 = o1 + dimensions;
+            int o3 = o2 + dimensions;
+            IntVector s0 = IntVector.zero(INTS);
+            IntVector s1 = IntVector.zero(INTS);
+            IntVector s2 = IntVector.zero(INTS);
+            IntVector s3 = IntVector.zero(INTS);
+            for (int i = 0; i < vectorEnd; i += step) {
+                IntVector q = widen(query, i);
+                s0 = q.mul(widen(matrix, o0 + i)).add(s0);
+                s1 = q.mul(widen(matrix, o1 + i)).add(s1);
+                s2 = q.mul(widen(matrix, o2 + i)).add(s2);
+                s3 = q.mul(widen(matrix, o3 + i)).add(s3);
+            }
+            int d0 = s0.reduceLanes(VectorOperators.ADD);
+            int d1 = s1.reduceLanes(VectorOperators.ADD);
+            int d2 = s2.reduceLanes(VectorOperators.ADD);
+            int d3 = s3.reduceLanes(VectorOperators.ADD);
+            for (int i = vectorEnd; i < dimensions; i++) {
+                d0 += query[i] * matrix[o0 + i];
+                d1 += query[i] * matrix[o1 + i];
+                d2 += query[i] * matrix[o2 + i];
+                d3 += query[i] * matrix[o3 + i];
+            }
+            scores[r] = d0;
+            scores[r + 1] = d1;
+            scores[r + 2] = d2;
+            scores[r + 3] = d3;
+        }
+        for (; r < rows; r++) {
+            scores[r] = dot(query, 0, matrix, (firstRow + r) * dimensions, dimensions);
+        }
+    }
+
+    private static IntVector widen(byte[] codes, int offset) {
+        return (IntVector) ByteVector.fromArray(BYTES, codes, offset).castShape(INTS, 0);
+    }
+}
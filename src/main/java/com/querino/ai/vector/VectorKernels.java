@@ -0,0 +1,70 @@
+package com.querino.ai.vector;
+
+/**
+ * Similarity kernels over float and int8 vectors. {@link #get()} returns an implementation using the JDK Vector
+ * API when the JVM was started with {@code --add-modules jdk.incubator.vector}, and a plain scalar one otherwise;
+ * both give the same results up to float rounding, and exactly the same int8 results.
+ * <p>
+ * Matrices are contiguous row-major arrays: row {@code r} of a matrix with {@code d} columns occupies
+ * {@code matrix[r * d]} to {@code matrix[r * d + d - 1]}.
+ */
+public interface VectorKernels {
+
+    /**
+     * Returns the fastest kernels available in this JVM. Setting the system property
+     * {@code querino.vector.kernels=scalar} forces the scalar kernels.
+     *
+     * @return The kernels
+     */
+    static VectorKernels get() {
+        return KernelLoader.INSTANCE;
+    }
+
+    /**
+     * @return The scalar kernels, available in every JVM
+     */
+    static VectorKernels scalar() {
+        return ScalarKernels.INSTANCE;
+    }
+
+    /**
+     * @return A short name of the implementation, for logs and statistics
+     */
+    String name();
+
+    /**
+     * Dot product of two ranges of float vectors.
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Dot product of two int8 code ranges, accumulated in 32-bit integers.
+     */
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    /**
+     * Scores every row of an int8 code matrix against a query.
+     *
+     * @param query The query codes, as long as a row
+     * @param matrix The row-major code matrix
+     * @param firstRow The first row to score
+     * @param rows The number of rows to score
+     * @param scores Receives the dot product of row {@code firstRow + i} at index {@code i}
+     */
+    void dotRows(byte[] query, byte[] matrix, int firstRow, int rows, int[] scores);
+
+    default float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vector lengths differ: " + a.length + " and " + b.length);
+        }
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Cosine similarity of two vectors; 0 if either is all zeros.
+     */
+    default float cosine(float[] a, float[] b) {
+        float norms = (float) Math.sqrt((double) dot(a, a) * dot(b, b));
+        return norms == 0 ? 0 : dot(a, b) / norms;
+    }
+}
@@ -0,0 +1,155 @@
+package com.querino.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.controller.RecommendationController;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.service.OutboundCallLimiter;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests for the asynchronous recommendation path and the outbound call limiter.
+ */
+public class AsyncRecommendationTest {
+
+    private static final String CANNED_RESPONSE = """
+        {"userId": "user123", "recommendedProducts": [{"productId": "rec001", "productName": "Smart Watch",
+        "category": "electronics", "price": 199.99, "reasonForRecommendation": "Fits your gadgets"}],
+        "reasonForRecommendation": "Based on your interests in technology"}
+        """;
+
+    @Test
+    void submit_BeyondConcurrencyLimit_ShouldQueueAndNeverExceedLimit() throws Exception {
+        // Given
+        OutboundCallLimiter limiter = new OutboundCallLimiter(2, 100);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<String>> upstream = new ArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            results.add(limiter.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                CompletableFuture<String> call = new CompletableFuture<>();
+                synchronized (upstream) {
+                    upstream.add(call);
+                }
+                return call.whenComplete((value, error) -> running.decrementAndGet());
+            }));
+        }
+        assertEquals(2, limiter.getActiveCalls());
+        assertEquals(8, limiter.getPendingCalls());
+        for (int completed = 0; completed < 10; completed++) {
+            CompletableFuture<String> next;
+            synchronized (upstream) {
+                next = upstream.get(completed);
+            }
+            next.complete("done");
+        }
+
+        // Then
+        for (CompletableFuture<String> result : results) {
+            assertEquals("done", result.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, limiter.getActiveCalls());
+        assertEquals(0, limiter.getPendingCalls());
+    }
+
+    @Test
+    void submit_WithLongQueueOfSynchronousCalls_ShouldDrainWithoutRecursing() throws Exception {
+        // Given
+        OutboundCallLimiter limiter = new OutboundCallLimiter(1, 50_000);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        limiter.submit(() -> blocker);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            results.add(limiter.submit(() -> CompletableFuture.completedFuture("done")));
+        }
+
+        // When
+        blocker.complete("done");
+
+        // Then
+        for (CompletableFuture<String> result : results) {
+            assertEquals("done", result.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(0, limiter.getActiveCalls());
+        assertEquals(0, limiter.getPendingCalls());
+    }
+
+    @Test
+    void submit_WhenPendingQueueIsFull_ShouldReject() {
+        // Given
+        OutboundCallLimiter limiter = new OutboundCallLimiter(1, 1);
+        limiter.submit(CompletableFuture::new);
+        limiter.submit(CompletableFuture::new);
+
+        // When
+        CompletableFuture<Object> rejected = limiter.submit(CompletableFuture::new);
+
+        // Then
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void generateRecommendationsAsync_ShouldParseStreamedAnswerAndCacheIt() throws Exception {
+        // Given
+        StubChatModel chatModel = new StubChatModel(CANNED_RESPONSE);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel).build();
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+
+        // When
+        Recommendation first = service.generateRecommendationsAsync(request).get(5, TimeUnit.SECONDS);
+        Recommendation second = service.generateRecommendationsAsync(request).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals("Smart Watch", first.getRecommendedProducts().get(0).getProductName());
+        assertSame(first, second);
+        assertEquals(1, chatModel.getCalls());
+    }
+
+    @Test
+    void getRecommendationsAsync_ShouldReleaseRequestAndDispatchResult() throws Exception {
+        // Given
+        StubChatModel chatModel = new StubChatModel(CANNED_RESPONSE);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel).build();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new RecommendationController(service)).build();
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/recommendations/async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(request)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.userId", is("user123")))
+            .andExpect(jsonPath("$.recommendedProducts[0].productName", is("Smart Watch")));
+    }
+}
@@ -0,0 +1,197 @@
+package com.querino.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.controller.BatchRecommendationController;
+import com.querino.ai.model.BatchRecommendationResponse;
+import com.querino.ai.model.BatchRecommendationResponse.Status;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.service.BatchRecommendationService;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests for batch recommendation generation.
+ */
+public class BatchRecommendationTest {
+
+    private static final Function<Prompt, String> ECHO_USER = prompt -> {
+        String text = prompt.getContents();
+        if (text.contains("user-bad")) {
+            return "Sorry, I cannot help with that.";
+        }
+        String userId = text.contains("user456") ? "user456" : "user123";
+        return "{\"userId\": \"" + userId + "\", \"recommendedProducts\": [], \"reasonForRecommendation\": \"ok\"}";
+    };
+
+    @Test
+    void generateBatchRecommendations_WithOneBadAnswer_ShouldIsolateFailureAndKeepOrder() throws Exception {
+        // Given
+        BatchRecommendationService batchService = batchService(new StubChatModel(ECHO_USER), 2);
+        RecommendationRequest bad = SampleDataProvider.createTechEnthusiastRequest();
+        bad.setUserId("user-bad");
+        List<RecommendationRequest> requests = Arrays.asList(
+            SampleDataProvider.createTechEnthusiastRequest(), bad, SampleDataProvider.createFitnessEnthusiastRequest());
+
+        // When
+        BatchRecommendationResponse response = batchService.generateBatchRecommendations(requests, null)
+            .get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(3, response.getResults().size());
+        assertEquals(Status.OK, response.getResults().get(0).getStatus());
+        assertEquals("user123", response.getResults().get(0).getRecommendation().getUserId());
+        assertEquals(Status.FAILED, response.getResults().get(1).getStatus());
+        assertNotNull(response.getResults().get(1).getError());
+        assertEquals(Status.OK, response.getResults().get(2).getStatus());
+        assertEquals("user456", response.getResults().get(2).getRecommendation().getUserId());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, response.getResults().get(i).getIndex());
+        }
+    }
+
+    @Test
+    void generateBatchRecommendations_WhenDeadlinePasses_ShouldReportTimedOutItems() throws Exception {
+        // Given
+        BatchRecommendationService batchService = batchService(new StubChatModel(ECHO_USER, Duration.ofSeconds(2)), 1);
+        List<RecommendationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RecommendationRequest request = SampleDataProvider.createHomeCookRequest();
+            request.setUserId("user" + i);
+            requests.add(request);
+        }
+
+        // When
+        BatchRecommendationResponse response = batchService.generateBatchRecommendations(requests, Duration.ofMillis(100))
+            .get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(3, response.getResults().size());
+        response.getResults().forEach(item -> assertEquals(Status.TIMED_OUT, item.getStatus()));
+        assertTrue(response.getElapsedMillis() < 2000);
+    }
+
+    @Test
+    void generateBatchRecommendations_WithCallsCompletingSynchronously_ShouldNotRecurse() throws Exception {
+        // Given: every item is answered immediately, as engine answers and cache hits are
+        RecommendationService service = mock(RecommendationService.class);
+        when(service.fetchRecommendationsAsync(any())).thenAnswer(invocation -> CompletableFuture.completedFuture(
+            new Recommendation(invocation.<RecommendationRequest>getArgument(0).getUserId(), List.of(), "cached")));
+        int size = 10_000;
+        BatchRecommendationService batchService = new BatchRecommendationService(service, 1, size, Duration.ofSeconds(30));
+        List<RecommendationRequest> requests = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            RecommendationRequest request = new RecommendationRequest();
+            request.setUserId("user" + i);
+            requests.add(request);
+        }
+
+        // When
+        BatchRecommendationResponse response = batchService.generateBatchRecommendations(requests, null)
+            .get(30, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(size, response.getResults().size());
+        response.getResults().forEach(item -> assertEquals(Status.OK, item.getStatus()));
+        assertEquals("user" + (size - 1), response.getResults().get(size - 1).getRecommendation().getUserId());
+    }
+
+    @Test
+    void generateBatchRecommendations_WhenDeadlinePasses_ShouldCancelTheCallsInFlight() throws Exception {
+        // Given
+        RecommendationService service = mock(RecommendationService.class);
+        List<CompletableFuture<Recommendation>> calls = new ArrayList<>();
+        when(service.fetchRecommendationsAsync(any())).thenAnswer(invocation -> {
+            CompletableFuture<Recommendation> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        });
+        BatchRecommendationService batchService = new BatchRecommendationService(service, 2, 10, Duration.ofSeconds(5));
+        List<RecommendationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RecommendationRequest request = new RecommendationRequest();
+            request.setUserId("user" + i);
+            requests.add(request);
+        }
+
+        // When
+        BatchRecommendationResponse response = batchService.generateBatchRecommendations(requests, Duration.ofMillis(100))
+            .get(5, TimeUnit.SECONDS);
+
+        // Then: the two started calls are cancelled and the third one is never started
+        response.getResults().forEach(item -> assertEquals(Status.TIMED_OUT, item.getStatus()));
+        assertEquals(2, calls.size());
+        calls.forEach(call -> assertTrue(call.isCancelled()));
+    }
+
+    @Test
+    void generateBatchRecommendations_BeyondMaximumSize_ShouldBeRejected() throws Exception {
+        // Given
+        BatchRecommendationService batchService = batchService(new StubChatModel(ECHO_USER), 2);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new BatchRecommendationController(batchService)).build();
+        List<RecommendationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            requests.add(SampleDataProvider.createTechEnthusiastRequest());
+        }
+
+        // Then
+        mockMvc.perform(post("/api/recommendations/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(requests)))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void batchEndpoint_ShouldReturnResultsInInputOrder() throws Exception {
+        // Given
+        BatchRecommendationService batchService = batchService(new StubChatModel(ECHO_USER), 2);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new BatchRecommendationController(batchService)).build();
+        List<RecommendationRequest> requests = Arrays.asList(
+            SampleDataProvider.createFitnessEnthusiastRequest(), SampleDataProvider.createTechEnthusiastRequest());
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/recommendations/batch")
+                .param("deadlineMillis", "5000")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(requests)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.results", hasSize(2)))
+            .andExpect(jsonPath("$.results[0].userId", is("user456")))
+            .andExpect(jsonPath("$.results[0].status", is("OK")))
+            .andExpect(jsonPath("$.results[1].userId", is("user123")));
+    }
+
+    private BatchRecommendationService batchService(StubChatModel chatModel, int parallelism) {
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel).build();
+        return new BatchRecommendationService(service, parallelism, 10, Duration.ofSeconds(5));
+    }
+}
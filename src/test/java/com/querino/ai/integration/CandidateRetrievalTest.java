@@ -0,0 +1,208 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.retrieval.CandidateRetriever;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import com.querino.ai.vector.HashingEmbedder;
+import com.querino.ai.vector.ProductVectorIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for shortlisting catalog candidates ahead of the prompt and grounding the model's picks.
+ */
+public class CandidateRetrievalTest {
+
+    private static final String PICKS = "{\"userId\": \"user789\", \"recommendedProducts\": ["
+        + "{\"productId\": \"c205\", \"reasonForRecommendation\": \"for slow cooking\"},"
+        + "{\"productId\": \"made-up-42\", \"reasonForRecommendation\": \"invented\"},"
+        + "{\"productId\": \"c208\", \"reasonForRecommendation\": \"for cheesecakes\"},"
+        + "{\"productId\": \"c205\", \"reasonForRecommendation\": \"repeated\"}],"
+        + " \"reasonForRecommendation\": \"kitchen upgrades\"}";
+
+    private final ProductCatalog catalog = new ProductCatalog(true);
+    private final ProductVectorIndex vectorIndex = new ProductVectorIndex(catalog, new HashingEmbedder(256), 16, 100, 64, null);
+
+    @Test
+    void shortlist_ShouldRespectBudgetSkipOwnedProductsAndPreferCategories() {
+        // Given
+        CandidateRetriever retriever = new CandidateRetriever(catalog, vectorIndex, true, 8, 0.25);
+        RecommendationRequest request = SampleDataProvider.createHomeCookRequest();
+        request.setBudget(100.0);
+        request.setPurchaseHistory(List.of(
+            new PurchaseHistory("c204", "Cast Iron Skillet", "cookware", 39.99, "2024-01-10")));
+
+        // When
+        List<Product> candidates = retriever.shortlist(request).getProducts();
+
+        // Then
+        assertEquals(8, candidates.size());
+        assertTrue(candidates.stream().allMatch(product -> product.getPrice() <= 100.0));
+        assertTrue(candidates.stream().noneMatch(product -> product.getId().equals("c204")));
+        assertTrue(candidates.stream().limit(5).allMatch(product -> List.of("kitchen appliances", "cookware", "bakeware")
+            .contains(product.getCategory())), candidates.toString());
+    }
+
+    @Test
+    void generateRecommendations_WithShortlist_ShouldSendCandidatesAndHydratePicksFromCatalog() {
+        // Given
+        AtomicReference<String> sentPrompt = new AtomicReference<>();
+        StubChatModel chatModel = new StubChatModel(prompt -> {
+            sentPrompt.set(prompt.getContents());
+            return PICKS;
+        });
+        CandidateRetriever retriever = new CandidateRetriever(catalog, vectorIndex, true, 12, 0.25);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .candidateRetriever(retriever)
+            .build();
+
+        // When
+        Recommendation recommendation = service.generateRecommendations(SampleDataProvider.createHomeCookRequest());
+
+        // Then
+        assertTrue(sentPrompt.get().contains("[\"c205\",\"Dutch Oven\",\"cookware\",89.99]"));
+        assertFalse(sentPrompt.get().contains("generated unique ID"));
+        List<Recommendation.RecommendedProduct> products = recommendation.getRecommendedProducts();
+        assertEquals(List.of("c205", "c208"), products.stream().map(Recommendation.RecommendedProduct::getProductId).toList());
+        assertEquals("Dutch Oven", products.get(0).getProductName());
+        assertEquals(89.99, products.get(0).getPrice());
+        assertEquals("for slow cooking", products.get(0).getReasonForRecommendation());
+        CandidateRetriever.RetrievalStatistics stats = service.getRetrievalStatistics();
+        assertEquals(1, stats.getShortlists());
+        assertEquals(12, stats.getCandidates());
+        assertEquals(3, stats.getPicked());
+        assertEquals(1, stats.getDropped());
+    }
+
+    @Test
+    void streamRecommendations_WithShortlist_ShouldOnlyEmitCatalogProducts() {
+        // Given
+        StubChatModel chatModel = new StubChatModel(PICKS);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .candidateRetriever(new CandidateRetriever(catalog, vectorIndex, true, 12, 0.25))
+            .build();
+
+        // When
+        List<Recommendation.RecommendedProduct> products = service
+            .streamRecommendations(SampleDataProvider.createHomeCookRequest())
+            .collectList().block(Duration.ofSeconds(5));
+
+        // Then
+        assertNotNull(products);
+        assertTrue(products.stream().noneMatch(product -> product.getProductId().equals("made-up-42")));
+        assertEquals("Springform Pan", products.get(1).getProductName());
+    }
+
+    @Test
+    void streamRecommendations_WithShortlist_ShouldGroundEachPickOnceAndCacheWhatWasStreamed() {
+        // Given
+        StubChatModel chatModel = new StubChatModel(PICKS);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .candidateRetriever(new CandidateRetriever(catalog, vectorIndex, true, 12, 0.25))
+            .build();
+
+        // When
+        List<Recommendation.RecommendedProduct> streamed = service
+            .streamRecommendations(SampleDataProvider.createHomeCookRequest())
+            .collectList().block(Duration.ofSeconds(5));
+        Recommendation cached = service.generateRecommendations(SampleDataProvider.createHomeCookRequest());
+
+        // Then
+        assertNotNull(streamed);
+        assertEquals(List.of("c205", "c208"), streamed.stream().map(Recommendation.RecommendedProduct::getProductId).toList());
+        assertEquals(List.of("c205", "c208"), cached.getRecommendedProducts().stream()
+            .map(Recommendation.RecommendedProduct::getProductId).toList());
+        assertEquals(1, chatModel.getCalls());
+        CandidateRetriever.RetrievalStatistics stats = service.getRetrievalStatistics();
+        assertEquals(3, stats.getPicked());
+        assertEquals(1, stats.getDropped());
+    }
+
+    @Test
+    void generateRecommendationsAsync_WhenPacked_ShouldGroundEachUserFromOwnShortlist() throws Exception {
+        // Given
+        Function<Prompt, String> responder = prompt -> "["
+            + "{\"userId\": \"user123\", \"recommendedProducts\": [{\"productId\": \"c009\", \"reasonForRecommendation\": \"r\"}], \"reasonForRecommendation\": \"tech\"},"
+            + "{\"userId\": \"user789\", \"recommendedProducts\": [{\"productId\": \"c009\", \"reasonForRecommendation\": \"r\"},"
+            + "{\"productId\": \"c207\", \"reasonForRecommendation\": \"r\"}], \"reasonForRecommendation\": \"cook\"}]";
+        StubChatModel chatModel = new StubChatModel(responder);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .candidateRetriever(new CandidateRetriever(catalog, vectorIndex, true, 10, 0.25))
+            .packing(2, Duration.ofSeconds(5))
+            .build();
+
+        // When
+        CompletableFuture<Recommendation> tech = service.generateRecommendationsAsync(SampleDataProvider.createTechEnthusiastRequest());
+        CompletableFuture<Recommendation> cook = service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest());
+
+        // Then
+        assertEquals("USB-C Hub", tech.get(5, TimeUnit.SECONDS).getRecommendedProducts().get(0).getProductName());
+        List<Recommendation.RecommendedProduct> cookProducts = cook.get(5, TimeUnit.SECONDS).getRecommendedProducts();
+        assertEquals(1, cookProducts.size());
+        assertEquals("c207", cookProducts.get(0).getProductId());
+        assertEquals(1, chatModel.getCalls());
+    }
+
+    @Test
+    void generateRecommendationsAsync_WhenPackedWithAUserWithoutCandidates_ShouldAnswerThatUserUngrounded() throws Exception {
+        // Given
+        RecommendationRequest penny = new RecommendationRequest();
+        penny.setUserId("penny");
+        penny.setInterests(List.of("cooking"));
+        penny.setBudget(0.01);
+        CandidateRetriever retriever = new CandidateRetriever(catalog, vectorIndex, true, 10, 0.25);
+        assertTrue(retriever.shortlist(penny).isEmpty());
+        Function<Prompt, String> responder = prompt -> prompt.getContents().contains("\"candidates\"")
+            ? "[{\"userId\": \"user789\", \"recommendedProducts\": [{\"productId\": \"c207\", \"reasonForRecommendation\": \"r\"}], \"reasonForRecommendation\": \"cook\"}]"
+            : "[{\"userId\": \"penny\", \"recommendedProducts\": [{\"productId\": \"gen-1\", \"productName\": \"Wooden Spoon\", \"category\": \"cookware\", \"price\": 0.01, \"reasonForRecommendation\": \"r\"}], \"reasonForRecommendation\": \"cheap\"}]";
+        StubChatModel chatModel = new StubChatModel(responder);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .candidateRetriever(retriever)
+            .packing(2, Duration.ofSeconds(5))
+            .build();
+
+        // When
+        CompletableFuture<Recommendation> cook = service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest());
+        CompletableFuture<Recommendation> cheap = service.generateRecommendationsAsync(penny);
+
+        // Then
+        assertEquals("c207", cook.get(5, TimeUnit.SECONDS).getRecommendedProducts().get(0).getProductId());
+        assertEquals("Wooden Spoon", cheap.get(5, TimeUnit.SECONDS).getRecommendedProducts().get(0).getProductName());
+        assertEquals(2, chatModel.getCalls());
+    }
+
+    @Test
+    void shortlist_WhenDisabled_ShouldLeaveThePromptUngrounded() {
+        // Given
+        AtomicReference<String> sentPrompt = new AtomicReference<>();
+        StubChatModel chatModel = new StubChatModel(prompt -> {
+            sentPrompt.set(prompt.getContents());
+            return PICKS;
+        });
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .candidateRetriever(CandidateRetriever.disabled())
+            .build();
+
+        // When
+        Recommendation recommendation = service.generateRecommendations(SampleDataProvider.createHomeCookRequest());
+
+        // Then
+        assertTrue(sentPrompt.get().contains("generated unique ID"));
+        assertEquals(4, recommendation.getRecommendedProducts().size());
+        assertNull(service.getRetrievalStatistics());
+    }
+}
@@ -0,0 +1,190 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.cassette.CassetteChatModel;
+import com.querino.ai.cassette.ChatCassette;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.service.RecommendationMetrics;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for recording model answers to a cassette and replaying them without the model.
+ */
+public class CassetteTest {
+
+    private static final String RESPONSE = """
+        {"userId":"user123","recommendedProducts":[{"productId":"rec001","productName":"Smart Watch",
+        "category":"electronics","price":199.99,"reasonForRecommendation":"Tracks your workouts"}],
+        "reasonForRecommendation":"Based on your interest in technology"}""";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replay_ShouldAnswerTheRecordedRequestsWithoutTheModel() throws Exception {
+        // Given
+        Path file = directory.resolve("chat.cassette");
+        StubChatModel recordedModel = new StubChatModel(RESPONSE);
+        Recommendation recorded;
+        Recommendation recordedAsync;
+        try (CassetteChatModel recorder = new CassetteChatModel(recordedModel, ChatCassette.forRecording(file),
+                 CassetteChatModel.Mode.RECORD, false)) {
+            RecommendationService service = RecommendationServiceBuilder.forModel(recorder).build();
+            recorded = service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+            recordedAsync = service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest()).join();
+            assertEquals(2, recorder.stats().getRecorded());
+        }
+        StubChatModel unreachable = new StubChatModel(prompt -> {
+            throw new AssertionError("The model must not be called when replaying");
+        });
+
+        // When
+        CassetteChatModel player = new CassetteChatModel(unreachable, ChatCassette.forReplay(file),
+            CassetteChatModel.Mode.REPLAY, false);
+        RecommendationService service = RecommendationServiceBuilder.forModel(player).build();
+        Recommendation replayed = service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+        Recommendation replayedAsync = service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest()).join();
+
+        // Then
+        assertEquals(2, recordedModel.getCalls());
+        assertEquals(0, unreachable.getCalls());
+        assertEquals(productIds(recorded), productIds(replayed));
+        assertEquals(productIds(recordedAsync), productIds(replayedAsync));
+        assertEquals(recorded.getReasonForRecommendation(), replayed.getReasonForRecommendation());
+        assertEquals(2, player.stats().getReplayed());
+        assertEquals(2, player.stats().getRecordings());
+    }
+
+    @Test
+    void replay_WithTiming_ShouldTakeAsLongAsTheRecordedCall() throws Exception {
+        // Given
+        Path file = directory.resolve("slow.cassette");
+        Prompt prompt = new Prompt(List.of(new UserMessage("recommend something")));
+        StubChatModel slowModel = new StubChatModel(p -> {
+            try {
+                Thread.sleep(150);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow answer";
+        }, Duration.ofMillis(150));
+        try (CassetteChatModel recorder = new CassetteChatModel(slowModel, ChatCassette.forRecording(file),
+                 CassetteChatModel.Mode.RECORD, false)) {
+            recorder.call(prompt);
+            recorder.stream(prompt).blockLast();
+        }
+        CassetteChatModel player = new CassetteChatModel(null, ChatCassette.forReplay(file),
+            CassetteChatModel.Mode.REPLAY, true);
+
+        // When
+        long start = System.nanoTime();
+        ChatResponse response = player.call(prompt);
+        long callMillis = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        List<ChatResponse> chunks = player.stream(prompt).collectList().block();
+        long streamMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertEquals("slow answer", response.getResult().getOutput().getText());
+        assertTrue(callMillis >= 140, "replayed call took " + callMillis + " ms");
+        assertTrue(streamMillis >= 140, "replayed stream took " + streamMillis + " ms");
+        assertEquals("slow answer", String.join("", chunks.stream()
+            .map(chunk -> chunk.getResult().getOutput().getText()).toList()));
+    }
+
+    @Test
+    void replay_ShouldReportTheRecordedTokenUsage() throws Exception {
+        // Given a model that reports the usage of blocking calls and on the last chunk of streams
+        Path file = directory.resolve("usage.cassette");
+        StubChatModel model = new StubChatModel(RESPONSE) {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                super.call(prompt);
+                return new ChatResponse(List.of(new Generation(new AssistantMessage(RESPONSE))),
+                    ChatResponseMetadata.builder().usage(new DefaultUsage(420, 85)).build());
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return super.stream(prompt).concatWith(Flux.just(new ChatResponse(
+                    List.of(new Generation(new AssistantMessage(""))),
+                    ChatResponseMetadata.builder().usage(new DefaultUsage(300, 60)).build())));
+            }
+        };
+        try (CassetteChatModel recorder = new CassetteChatModel(model, ChatCassette.forRecording(file),
+                 CassetteChatModel.Mode.RECORD, false)) {
+            RecommendationService service = RecommendationServiceBuilder.forModel(recorder).build();
+            service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+            service.streamRecommendations(SampleDataProvider.createHomeCookRequest()).blockLast();
+        }
+        RecommendationMetrics metrics = RecommendationMetrics.inMemory();
+
+        // When
+        CassetteChatModel player = new CassetteChatModel(null, ChatCassette.forReplay(file),
+            CassetteChatModel.Mode.REPLAY, false);
+        RecommendationService service = RecommendationServiceBuilder.forModel(player).metrics(metrics).build();
+        service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+        service.streamRecommendations(SampleDataProvider.createHomeCookRequest()).blockLast();
+
+        // Then
+        MeterRegistry registry = metrics.getRegistry();
+        assertEquals(720, registry.get("recommendation.tokens").tag("type", "prompt").summary().totalAmount());
+        assertEquals(145, registry.get("recommendation.tokens").tag("type", "completion").summary().totalAmount());
+        assertEquals(60, registry.get("recommendation.tokens.last").tag("type", "completion").gauge().value());
+    }
+
+    @Test
+    void replay_WithUnknownPromptOrTornTail_ShouldFailOnlyTheUnknownPrompt() throws Exception {
+        // Given
+        Path file = directory.resolve("torn.cassette");
+        Prompt known = new Prompt(List.of(new UserMessage("known")));
+        try (CassetteChatModel recorder = new CassetteChatModel(new StubChatModel("first"),
+                 ChatCassette.forRecording(file), CassetteChatModel.Mode.RECORD, false)) {
+            recorder.call(known);
+        }
+        try (CassetteChatModel recorder = new CassetteChatModel(new StubChatModel("second"),
+                 ChatCassette.forRecording(file), CassetteChatModel.Mode.RECORD, false)) {
+            recorder.call(known);
+        }
+        // A record cut short when the recording process died
+        Files.write(file, new byte[]{0, 0, 1, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // When
+        CassetteChatModel player = new CassetteChatModel(null, ChatCassette.forReplay(file),
+            CassetteChatModel.Mode.REPLAY, false);
+
+        // Then
+        assertEquals("first", player.call(known).getResult().getOutput().getText());
+        assertEquals("second", player.call(known).getResult().getOutput().getText());
+        assertEquals("first", player.call(known).getResult().getOutput().getText());
+        assertThrows(IllegalStateException.class, () -> player.call(new Prompt(List.of(new UserMessage("unknown")))));
+        assertEquals(1, player.stats().getMisses());
+        assertEquals(CassetteChatModel.Mode.REPLAY, CassetteChatModel.Mode.parse("replay"));
+        assertEquals(CassetteChatModel.Mode.OFF, CassetteChatModel.Mode.parse(""));
+    }
+
+    private static List<String> productIds(Recommendation recommendation) {
+        return recommendation.getRecommendedProducts().stream()
+            .map(Recommendation.RecommendedProduct::getProductId)
+            .toList();
+    }
+}
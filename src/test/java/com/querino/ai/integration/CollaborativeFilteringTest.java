@@ -0,0 +1,203 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.engine.CollaborativeFilteringEngine;
+import com.querino.ai.engine.IntFloatMap;
+import com.querino.ai.engine.RecommendationEngines;
+import com.querino.ai.engine.UnknownEngineException;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import com.querino.ai.util.StringIdMap;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the item-to-item collaborative-filtering engine and engine selection.
+ */
+public class CollaborativeFilteringTest {
+
+    @Test
+    void intFloatMap_ShouldAccumulateGrowAndRemove() {
+        // Given
+        IntFloatMap map = new IntFloatMap(2);
+
+        // When
+        for (int key = 0; key < 1000; key++) {
+            map.addTo(key, 1f);
+            map.addTo(key, 0.5f);
+        }
+        for (int key = 0; key < 1000; key += 2) {
+            assertTrue(map.remove(key));
+        }
+
+        // Then
+        assertEquals(500, map.size());
+        assertEquals(1.5f, map.get(999));
+        assertEquals(0f, map.get(998));
+        assertFalse(map.containsKey(0));
+        assertTrue(map.containsKey(1));
+        assertEquals(500, map.keys().length);
+    }
+
+    @Test
+    void stringIdMap_ShouldNumberStringsDenselyAndGrow() {
+        // Given
+        StringIdMap map = new StringIdMap(2);
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.add("p" + i));
+        }
+        StringIdMap copy = map.copy();
+        map.add("late");
+
+        // Then
+        assertEquals(1001, map.size());
+        assertEquals(7, map.add("p7"));
+        assertEquals(999, map.get("p999"));
+        assertEquals("p999", map.key(999));
+        assertEquals(-1, map.get("missing"));
+        assertEquals(-1, map.get(null));
+        assertEquals(1000, copy.size());
+        assertEquals(-1, copy.get("late"));
+    }
+
+    @Test
+    void recordPurchases_BeyondTheLimits_ShouldDropTheLeastRecentUserAndOldestBasketItems() {
+        // Given
+        CollaborativeFilteringEngine engine = new CollaborativeFilteringEngine(new ProductCatalog(true), 5, 50, 2, 2,
+            false, false, Duration.ZERO);
+        engine.recordPurchases("a", List.of(purchase("c204", "Cast Iron Skillet"), purchase("c205", "Dutch Oven"),
+            purchase("c206", "Chef Knife")));
+        engine.recordPurchases("b", List.of(purchase("c206", "Chef Knife"), purchase("c207", "Cutting Board")));
+
+        // When
+        engine.recordPurchases("a", List.of(purchase("c204", "Cast Iron Skillet")));
+        engine.recordPurchases("c", List.of(purchase("c208", "Apron")));
+        engine.rebuild();
+
+        // Then
+        assertEquals(2, engine.getUserCount());
+        RecommendationRequest request = new RecommendationRequest();
+        request.setPurchaseHistory(List.of(purchase("c204", "Cast Iron Skillet")));
+        assertEquals(List.of("c206"), engine.recommend(request).getRecommendedProducts().stream()
+            .map(Recommendation.RecommendedProduct::getProductId).toList(), "buying c204 again evicted the oldest item, c205");
+        request.setPurchaseHistory(List.of(purchase("c207", "Cutting Board")));
+        assertTrue(engine.recommend(request).getRecommendedProducts().isEmpty(), "user b was least recently active");
+    }
+
+    @Test
+    void observe_ByDefault_ShouldNotLearnFromRequests() {
+        // Given
+        CollaborativeFilteringEngine engine = engine();
+        RecommendationRequest request = new RecommendationRequest();
+        request.setUserId("poisoner");
+        request.setPurchaseHistory(List.of(purchase("c204", "Cast Iron Skillet"), purchase("c205", "Dutch Oven")));
+        int users = engine.getUserCount();
+
+        // When
+        engine.observe(request);
+        engine.rebuild();
+
+        // Then
+        assertEquals(users, engine.getUserCount());
+        request.setPurchaseHistory(List.of(purchase("c204", "Cast Iron Skillet")));
+        assertTrue(engine.recommend(request).getRecommendedProducts().isEmpty());
+    }
+
+    @Test
+    void recommend_ForTechEnthusiast_ShouldSuggestItemsBoughtTogetherWithinBudget() {
+        // Given
+        CollaborativeFilteringEngine engine = engine();
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        request.setBudget(100.0);
+
+        // When
+        Recommendation recommendation = engine.recommend(request);
+
+        // Then
+        List<Recommendation.RecommendedProduct> products = recommendation.getRecommendedProducts();
+        assertEquals("user123", recommendation.getUserId());
+        assertFalse(products.isEmpty());
+        assertEquals("c011", products.get(0).getProductId());
+        assertEquals("Mouse Pad XL", products.get(0).getProductName());
+        Set<String> purchased = Set.of("p001", "p002", "p003");
+        for (Recommendation.RecommendedProduct product : products) {
+            assertFalse(purchased.contains(product.getProductId()));
+            assertTrue(product.getPrice() <= 100.0);
+            assertTrue(product.getReasonForRecommendation().startsWith("Often bought together with"));
+        }
+        assertTrue(products.stream().noneMatch(product -> product.getProductId().equals("c006")));
+    }
+
+    @Test
+    void recordPurchases_AfterRebuild_ShouldLearnNewPairs() {
+        // Given
+        CollaborativeFilteringEngine engine = engine();
+        RecommendationRequest request = new RecommendationRequest();
+        request.setUserId("new-user");
+        request.setPurchaseHistory(List.of(purchase("c204", "Cast Iron Skillet")));
+        assertTrue(engine.recommend(request).getRecommendedProducts().isEmpty());
+
+        // When
+        engine.recordPurchases("shopper20", Arrays.asList(purchase("c204", "Cast Iron Skillet"), purchase("c205", "Dutch Oven")));
+        engine.rebuild();
+
+        // Then
+        Recommendation recommendation = engine.recommend(request);
+        assertEquals("c205", recommendation.getRecommendedProducts().get(0).getProductId());
+        assertEquals(89.99, recommendation.getRecommendedProducts().get(0).getPrice());
+    }
+
+    @Test
+    void generateRecommendations_WithCollaborativeEngine_ShouldNotCallTheModel() {
+        // Given
+        StubChatModel chatModel = new StubChatModel("not used");
+        RecommendationEngines engines = new RecommendationEngines(List.of(engine()), "llm");
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel).engines(engines).build();
+        RecommendationRequest request = SampleDataProvider.createFitnessEnthusiastRequest();
+        request.setEngine("Collaborative");
+
+        // When
+        Recommendation recommendation = service.generateRecommendations(request);
+
+        // Then
+        assertFalse(recommendation.getRecommendedProducts().isEmpty());
+        assertEquals(0, chatModel.getCalls());
+        request.setEngine("unknown");
+        assertThrows(UnknownEngineException.class, () -> service.generateRecommendations(request));
+    }
+
+    @Test
+    void generateRecommendationsAsync_WithCollaborativeDefault_ShouldAnswerImmediately() throws Exception {
+        // Given
+        StubChatModel chatModel = new StubChatModel("not used");
+        RecommendationEngines engines = new RecommendationEngines(List.of(engine()), CollaborativeFilteringEngine.NAME);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel).engines(engines).build();
+
+        // When
+        Recommendation recommendation = service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest()).get();
+
+        // Then
+        assertEquals("user789", recommendation.getUserId());
+        assertFalse(recommendation.getRecommendedProducts().isEmpty());
+        assertEquals(0, chatModel.getCalls());
+    }
+
+    private static CollaborativeFilteringEngine engine() {
+        return new CollaborativeFilteringEngine(new ProductCatalog(true), 5, 50, 200, 100_000, false, true, Duration.ZERO);
+    }
+
+    private static PurchaseHistory purchase(String productId, String productName) {
+        return new PurchaseHistory(productId, productName, "cookware", 0.0, "2024-01-01");
+    }
+}
@@ -0,0 +1,136 @@
+package com.querino.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ColumnarCatalogWriter;
+import com.querino.ai.catalog.MappedProductTable;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the columnar catalog file format and its memory-mapped loader.
+ */
+public class ColumnarCatalogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void convert_FromCsv_ShouldMapEveryProductBackUnchanged() throws IOException {
+        // Given
+        List<Product> products = SampleDataProvider.createSampleCatalog();
+        List<String> lines = new ArrayList<>();
+        lines.add("id,price,name,category,description");
+        for (Product product : products) {
+            lines.add(product.getId() + "," + product.getPrice() + ",\"" + product.getName().replace("\"", "\"\"")
+                + "\"," + product.getCategory() + ",\"" + product.getDescription() + "\"");
+        }
+        Path csv = Files.write(directory.resolve("products.csv"), lines);
+        Path catalogFile = directory.resolve("catalog.qcat");
+
+        // When
+        int written = ColumnarCatalogWriter.convert(csv, catalogFile);
+        MappedProductTable table = MappedProductTable.open(catalogFile);
+
+        // Then
+        assertEquals(products.size(), written);
+        assertEquals(products.size(), table.size());
+        for (int row = 0; row < products.size(); row++) {
+            Product expected = products.get(row);
+            Product actual = table.getProduct(row);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getCategory(), actual.getCategory());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getPrice(), actual.getPrice());
+        }
+    }
+
+    @Test
+    void load_FromJsonLines_ShouldAnswerQueriesLikeTheInMemoryCatalog() throws IOException {
+        // Given
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> lines = new ArrayList<>();
+        for (Product product : SampleDataProvider.createSampleCatalog()) {
+            lines.add(objectMapper.writeValueAsString(product));
+        }
+        lines.add(objectMapper.writeValueAsString(new Product("u1", "Crème brûlée torch", "kitchen gadgets", "Butane torch — refillable", 27.5)));
+        Path jsonl = Files.write(directory.resolve("products.jsonl"), lines);
+        Path catalogFile = directory.resolve("catalog.qcat");
+        ColumnarCatalogWriter.convert(jsonl, catalogFile);
+        ProductCatalog catalog = new ProductCatalog(false);
+
+        // When
+        CatalogSnapshot snapshot = catalog.load(catalogFile);
+        List<Product> gadgets = catalog.findProducts(Arrays.asList("kitchen gadgets"), 30.0, 10);
+
+        // Then
+        assertEquals(32, snapshot.size());
+        assertEquals(Arrays.asList("u1", "c210"), gadgets.stream().map(Product::getId).toList());
+        assertEquals("Crème brûlée torch", catalog.findById("u1").getName());
+        assertEquals("Butane torch — refillable", catalog.findById("u1").getDescription());
+        assertEquals(4, catalog.count(Arrays.asList("cookware", "bakeware"), 40.0));
+        assertNull(catalog.findById("missing"));
+    }
+
+    @Test
+    void load_WithStoredIndexes_ShouldAnswerLikeIndexesBuiltInMemory() throws IOException {
+        // Given
+        List<Product> products = new ArrayList<>(SampleDataProvider.createSampleCatalog());
+        products.add(new Product("é-1", "Reading lamp", "Books", "Clip-on", 12.0));
+        products.add(new Product("b-2", "Novel", "books ", "Paperback", 9.5));
+        products.add(new Product("b-3", "Atlas", "BOOKS", "Hardcover", 9.5));
+        products.add(new Product("b-2", "Novel, second edition", "books", "Paperback", 11.0));
+        Path catalogFile = directory.resolve("indexed.qcat");
+        try (var out = Files.newOutputStream(catalogFile)) {
+            ColumnarCatalogWriter.write(products, out);
+        }
+        ProductCatalog inMemory = new ProductCatalog(false);
+        inMemory.replace(products);
+        ProductCatalog mapped = new ProductCatalog(false);
+
+        // When
+        mapped.load(catalogFile);
+
+        // Then
+        assertEquals(inMemory.current().getCategories(), mapped.current().getCategories());
+        for (List<String> categories : List.of(List.of("books"), List.of("Cookware", "bakeware"), List.<String>of())) {
+            for (Double budget : Arrays.asList(10.0, 40.0, null)) {
+                assertEquals(ids(inMemory.findProducts(categories, budget, 50)),
+                    ids(mapped.findProducts(categories, budget, 50)), categories + " under " + budget);
+            }
+        }
+        assertEquals(List.of("b-2", "b-3"), ids(mapped.findProducts(List.of("Books"), 10.0, 10)));
+        assertEquals("Novel, second edition", mapped.findById("b-2").getName());
+        assertEquals("Reading lamp", mapped.findById("é-1").getName());
+        assertNull(mapped.findById("é"));
+        for (Product product : SampleDataProvider.createSampleCatalog()) {
+            assertEquals(product.getName(), mapped.findById(product.getId()).getName());
+        }
+    }
+
+    @Test
+    void open_WithForeignFile_ShouldBeRejected() throws IOException {
+        // Given
+        Path file = Files.writeString(directory.resolve("products.csv"), "id,name,category,description,price\n");
+
+        // Then
+        assertThrows(IOException.class, () -> MappedProductTable.open(file));
+    }
+
+    private static List<String> ids(List<Product> products) {
+        return products.stream().map(Product::getId).toList();
+    }
+}
@@ -0,0 +1,100 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.jfr.FallbackEvent;
+import com.querino.ai.jfr.ModelCallEvent;
+import com.querino.ai.jfr.ParseEvent;
+import com.querino.ai.jfr.PipelineEvents;
+import com.querino.ai.jfr.PromptEvent;
+import com.querino.ai.jfr.RequestEvent;
+import com.querino.ai.jfr.StageBreakdown;
+import com.querino.ai.jfr.StageEvent;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the flight recorder events of the recommendation pipeline and their offline breakdown.
+ */
+public class FlightRecorderEventsTest {
+
+    private static final String RESPONSE = """
+        {"userId":"user123","recommendedProducts":[{"productId":"rec001","productName":"Smart Watch",
+        "category":"electronics","price":199.99,"reasonForRecommendation":"Tracks your workouts"}],
+        "reasonForRecommendation":"Based on your interest in technology"}""";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recording_ShouldBreakRequestsDownByStage() throws Exception {
+        // Given
+        RecommendationService service = RecommendationServiceBuilder.forModel(
+            new StubChatModel(prompt -> prompt.getContents().contains("user789") ? "not json" : RESPONSE))
+            .build();
+        Path file = directory.resolve("pipeline.jfr");
+
+        // When
+        try (Recording recording = startRecording()) {
+            service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+            service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+            service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest()).join();
+            recording.stop();
+            recording.dump(file);
+        }
+        StageBreakdown breakdown = StageBreakdown.read(file);
+
+        // Then
+        assertEquals(2, breakdown.getStage("request").count(), "the fallback is not an answered request");
+        assertEquals(3, breakdown.getStage("hydrate").count());
+        assertEquals(3, breakdown.getStage("cache").count());
+        assertEquals(2, breakdown.getStage("prompt").count());
+        assertEquals(2, breakdown.getStage("model").count());
+        assertEquals(2, breakdown.getStage("parse").count());
+        assertNull(breakdown.getStage("ground"), "retrieval is disabled, so nothing is grounded");
+        assertEquals(1L, breakdown.getFallbacks().get("parse"));
+        assertTrue(breakdown.getStage("model").p99().compareTo(breakdown.getStage("model").max()) <= 0);
+        String table = breakdown.format();
+        assertTrue(table.contains("model") && table.contains("fallback parse: 1"), table);
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent request = events.stream()
+            .filter(event -> event.getEventType().getName().equals("com.querino.ai.Request"))
+            .filter(event -> "cache".equals(event.getString("source")))
+            .findFirst().orElseThrow();
+        assertEquals(PipelineEvents.userIdHash("user123"), request.getLong("userIdHash"));
+        assertEquals("llm", request.getString("engine"));
+        RecordedEvent prompt = events.stream()
+            .filter(event -> event.getEventType().getName().equals("com.querino.ai.Prompt"))
+            .findFirst().orElseThrow();
+        assertTrue(prompt.getInt("promptChars") > 0);
+        assertTrue(events.stream()
+            .filter(event -> event.getEventType().getName().equals("com.querino.ai.ModelCall"))
+            .anyMatch(event -> event.getBoolean("streamed") && event.getInt("responseChars") == "not json".length()));
+    }
+
+    @Test
+    void userIdHash_ShouldBeStableAndNotTheId() {
+        assertEquals(PipelineEvents.userIdHash("user123"), PipelineEvents.userIdHash("user123"));
+        assertNotEquals(PipelineEvents.userIdHash("user123"), PipelineEvents.userIdHash("user124"));
+        assertEquals(0, PipelineEvents.userIdHash(null));
+    }
+
+    private static Recording startRecording() {
+        Recording recording = new Recording();
+        for (Class<? extends jdk.jfr.Event> type : List.of(RequestEvent.class, StageEvent.class, PromptEvent.class,
+                 ModelCallEvent.class, ParseEvent.class, FallbackEvent.class)) {
+            recording.enable(type).withoutThreshold();
+        }
+        recording.start();
+        return recording;
+    }
+}
@@ -0,0 +1,118 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.prompt.HistoryCompactor;
+import com.querino.ai.prompt.HistoryCompactor.CategorySummary;
+import com.querino.ai.prompt.HistoryCompactor.CompactedHistory;
+import com.querino.ai.prompt.PromptPipeline;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for compacting long purchase histories to a token budget.
+ */
+public class HistoryCompactionTest {
+
+    private static final String[] CATEGORIES = {"electronics", "books", "garden", "toys", "grocery"};
+
+    @Test
+    void compact_ShortHistory_ShouldKeepEverything() {
+        // Given
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+
+        // When
+        CompactedHistory history = new HistoryCompactor(600).compact(request);
+
+        // Then
+        assertFalse(history.isCompacted());
+        assertEquals(3, history.getPurchases().size());
+        assertTrue(history.getSummaries().isEmpty());
+    }
+
+    @Test
+    void compact_LongHistory_ShouldFitBudgetAndRollUpTheRest() {
+        // Given
+        RecommendationRequest request = longHistoryRequest(500);
+
+        // When
+        CompactedHistory history = new HistoryCompactor(300).compact(request);
+
+        // Then
+        assertTrue(history.isCompacted());
+        assertTrue(history.getEstimatedTokens() <= 300, "estimated " + history.getEstimatedTokens());
+        List<String> kept = history.getPurchases().stream().map(PurchaseHistory::getProductId).toList();
+        assertTrue(kept.contains("p499"), "most recent purchase must be kept");
+        assertTrue(kept.contains("p250"), "most expensive purchase must be kept");
+        int summarized = history.getSummaries().stream().mapToInt(CategorySummary::getCount).sum();
+        assertEquals(500, summarized + kept.size());
+        assertEquals(500 - kept.size(), history.getRolledUpPurchases());
+        CategorySummary summary = history.getSummaries().get(0);
+        assertNotNull(summary.getLastPurchase());
+        assertTrue(summary.getLastPurchase().isBefore(LocalDate.of(2025, 1, 1)));
+    }
+
+    @Test
+    void compact_ShouldReadSummaryDatesFromDatesAndTimestampsAndSkipInvalidOnes() {
+        // Given a budget too small for any purchase, so that everything is rolled up
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        request.setPurchaseHistory(List.of(
+            new PurchaseHistory("t1", "Kite", "toys", 20.0, "2024-03-05T10:15:00Z"),
+            new PurchaseHistory("t2", "Yo-yo", "toys", 5.0, "2024-02-29"),
+            new PurchaseHistory("t3", "Puzzle", "toys", 15.0, "2024-13-01"),
+            new PurchaseHistory("b1", "Novel", "books", 12.0, "2023-02-30"),
+            new PurchaseHistory("b2", "Atlas", "books", 30.0, "yesterday"),
+            new PurchaseHistory("b3", "Comic", "books", 8.0, null)));
+
+        // When
+        CompactedHistory history = new HistoryCompactor(1).compact(request);
+
+        // Then
+        assertTrue(history.getPurchases().isEmpty());
+        CategorySummary books = history.getSummaries().get(0);
+        CategorySummary toys = history.getSummaries().get(1);
+        assertEquals("books", books.getCategory());
+        assertNull(books.getLastPurchase(), "none of the book dates is valid");
+        assertEquals(LocalDate.of(2024, 3, 5), toys.getLastPurchase());
+        assertEquals(3, toys.getCount());
+    }
+
+    @Test
+    void recommendationPrompt_ShouldStayBoundedWhateverTheHistoryLength() {
+        // Given
+        PromptPipeline pipeline = new PromptPipeline(400);
+
+        // When
+        int hundred = pipeline.recommendationPrompt(longHistoryRequest(100)).getContents().length();
+        int fiveThousand = pipeline.recommendationPrompt(longHistoryRequest(5000)).getContents().length();
+
+        // Then
+        assertTrue(fiveThousand < hundred + 200, hundred + " vs " + fiveThousand);
+        PromptPipeline.PromptStatistics stats = pipeline.stats();
+        assertEquals(2, stats.getProfiles());
+        assertEquals(2, stats.getCompactedProfiles());
+        assertTrue(stats.getMaxProfileTokens() <= 400);
+    }
+
+    /**
+     * Purchases one per day starting 2023-01-01; p250 is by far the most expensive.
+     */
+    private static RecommendationRequest longHistoryRequest(int purchases) {
+        List<PurchaseHistory> history = new ArrayList<>(purchases);
+        LocalDate date = LocalDate.of(2023, 1, 1);
+        for (int i = 0; i < purchases; i++) {
+            double price = i == 250 ? 2500.0 : 10.0 + i % 40;
+            history.add(new PurchaseHistory("p" + i, "Product number " + i, CATEGORIES[i % CATEGORIES.length], price,
+                date.plusDays(i).toString()));
+        }
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        request.setPurchaseHistory(history);
+        return request;
+    }
+}
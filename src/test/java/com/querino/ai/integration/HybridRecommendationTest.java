@@ -0,0 +1,145 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.engine.HeuristicEngine;
+import com.querino.ai.engine.RecommendationEngines;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.service.HybridRecommender;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the heuristic engine and the deadline-aware hybrid engine.
+ */
+public class HybridRecommendationTest {
+
+    private static final String MODEL_RESPONSE = """
+        {"userId": "user123", "recommendedProducts": [{"productId": "rec001", "productName": "Smart Watch",
+        "category": "electronics", "price": 199.99, "reasonForRecommendation": "Fits your gadgets"}],
+        "reasonForRecommendation": "Based on your interests in technology"}
+        """;
+
+    @Test
+    void recommend_WithHeuristicEngine_ShouldPickUnpurchasedCatalogProductsWithinBudget() {
+        // Given
+        HeuristicEngine engine = new HeuristicEngine(new ProductCatalog(true), 5);
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        request.setBudget(100.0);
+
+        // When
+        Recommendation recommendation = engine.recommend(request);
+
+        // Then
+        assertEquals(HeuristicEngine.NAME, recommendation.getEngine());
+        assertEquals(5, recommendation.getRecommendedProducts().size());
+        Set<String> categories = Set.of("electronics", "computers", "accessories");
+        for (Recommendation.RecommendedProduct product : recommendation.getRecommendedProducts()) {
+            assertTrue(categories.contains(product.getCategory()));
+            assertTrue(product.getPrice() <= 100.0);
+        }
+    }
+
+    @Test
+    void generateRecommendations_WhenModelMissesDeadline_ShouldFallBackAndCacheLateAnswer() throws Exception {
+        // Given
+        StubChatModel chatModel = new StubChatModel(prompt -> MODEL_RESPONSE, Duration.ofMillis(500));
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .engines(hybridEngines())
+            .build();
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        request.setEngine(RecommendationEngines.HYBRID);
+        request.setLatencyBudgetMillis(50L);
+
+        // When
+        long start = System.nanoTime();
+        Recommendation first = service.generateRecommendations(request);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertEquals(HeuristicEngine.NAME, first.getEngine());
+        assertTrue(elapsedMillis < 400, "answered after " + elapsedMillis + " ms");
+        awaitLateAnswers(service, 1);
+        Recommendation second = service.generateRecommendations(request);
+        assertEquals(RecommendationEngines.LLM, second.getEngine());
+        assertEquals("Smart Watch", second.getRecommendedProducts().get(0).getProductName());
+        HybridRecommender.HybridStatistics stats = service.getHybridStatistics();
+        assertEquals(2, stats.getRequests());
+        assertEquals(1, stats.getDeadlineFallbacks());
+        assertEquals(1, stats.getCacheHits());
+        assertEquals(0.5, stats.getFallbackRate());
+        assertEquals(1, chatModel.getCalls());
+    }
+
+    @Test
+    void generateRecommendationsAsync_WhenModelAnswersInTime_ShouldReturnModelAnswer() throws Exception {
+        // Given
+        StubChatModel chatModel = new StubChatModel(MODEL_RESPONSE);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .engines(new RecommendationEngines(List.of(new HeuristicEngine(new ProductCatalog(true), 5)),
+                RecommendationEngines.HYBRID))
+            .build();
+
+        // When
+        Recommendation recommendation = service.generateRecommendationsAsync(SampleDataProvider.createTechEnthusiastRequest())
+            .get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(RecommendationEngines.LLM, recommendation.getEngine());
+        assertEquals(1, service.getHybridStatistics().getModelAnswers());
+    }
+
+    @Test
+    void generateRecommendations_WhenModelFails_ShouldFallBackBeforeDeadline() {
+        // Given
+        StubChatModel chatModel = new StubChatModel("Sorry, I cannot help with that.");
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .engines(hybridEngines())
+            .build();
+        RecommendationRequest request = SampleDataProvider.createHomeCookRequest();
+        request.setEngine(RecommendationEngines.HYBRID);
+        request.setLatencyBudgetMillis(10_000L);
+
+        // When
+        Recommendation recommendation = service.generateRecommendations(request);
+
+        // Then
+        assertEquals(HeuristicEngine.NAME, recommendation.getEngine());
+        assertFalse(recommendation.getRecommendedProducts().isEmpty());
+        assertEquals(1, service.getHybridStatistics().getErrorFallbacks());
+    }
+
+    @Test
+    void generateRecommendations_WithLlmEngine_ShouldReportModelAsEngine() {
+        // Given
+        RecommendationService service = RecommendationServiceBuilder.forModel(new StubChatModel(MODEL_RESPONSE))
+            .build();
+
+        // When
+        Recommendation recommendation = service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+
+        // Then
+        assertEquals(RecommendationEngines.LLM, recommendation.getEngine());
+        assertNull(service.getHybridStatistics());
+    }
+
+    private static RecommendationEngines hybridEngines() {
+        return new RecommendationEngines(List.of(new HeuristicEngine(new ProductCatalog(true), 5)), RecommendationEngines.LLM);
+    }
+
+    private static void awaitLateAnswers(RecommendationService service, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getHybridStatistics().getLateModelAnswers() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, service.getHybridStatistics().getLateModelAnswers());
+    }
+}
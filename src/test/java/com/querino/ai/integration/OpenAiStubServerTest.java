@@ -0,0 +1,161 @@
+package com.querino.ai.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.loadtest.LatencyModel;
+import com.querino.ai.loadtest.LoadGenerator;
+import com.querino.ai.loadtest.OpenAiStubServer;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the whole application against the chat-completions stub, over real HTTP on both sides, and checks the
+ * stub's latency and failure injection and the exported metrics.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
+public class OpenAiStubServerTest {
+
+    private static final OpenAiStubServer STUB = startStub();
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    @DynamicPropertySource
+    static void stubProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.ai.openai.base-url", STUB::getBaseUrl);
+        registry.add("spring.ai.openai.api-key", () -> "stub-key");
+        registry.add("recommendation.profiles.directory", () -> "");
+        registry.add("recommendation.precompute.directory", () -> "");
+        registry.add("recommendation.vector.index-file", () -> "");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STUB.close();
+    }
+
+    @Test
+    void postRecommendations_ShouldBeAnsweredByTheModelThroughTheStub() throws Exception {
+        // Given
+        String body = OBJECT_MAPPER.writeValueAsString(SampleDataProvider.createFitnessEnthusiastRequest());
+
+        // When
+        JsonNode sync = post("/api/recommendations", body);
+        JsonNode async = post("/api/recommendations/async", body.replace("user456", "user456-async"));
+
+        // Then
+        for (JsonNode recommendation : new JsonNode[]{sync, async}) {
+            assertEquals("llm", recommendation.path("engine").asText());
+            assertTrue(recommendation.path("recommendedProducts").size() >= 3, recommendation.toString());
+            for (JsonNode product : recommendation.path("recommendedProducts")) {
+                assertNotNull(productCatalog.findById(product.path("productId").asText()), product.toString());
+            }
+        }
+        assertTrue(STUB.stats().streamed() >= 1, "the async endpoint streams from the model");
+        HttpResponse<String> prometheus = CLIENT.send(HttpRequest.newBuilder(
+            URI.create("http://localhost:" + port + "/actuator/prometheus")).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, prometheus.statusCode());
+        assertTrue(prometheus.body().contains("recommendation_stage_seconds_bucket{stage=\"model\""),
+            "per-stage latency histograms are exported");
+    }
+
+    @Test
+    void loadGenerator_ShouldReportEveryRequestAndItsLatency() throws Exception {
+        // Given
+        LoadGenerator generator = new LoadGenerator(URI.create("http://localhost:" + port + "/api/recommendations"),
+            4, 1000, Duration.ofSeconds(10));
+        long modelCalls = STUB.stats().requests();
+
+        // When
+        LoadGenerator.LoadReport report = generator.run(Duration.ofSeconds(30), 40);
+
+        // Then
+        assertEquals(40, report.requests());
+        assertEquals(0, report.failures());
+        assertTrue(report.throughput() > 0);
+        assertTrue(report.p50() <= report.p99() && report.p99() <= report.max());
+        assertEquals(modelCalls + 40, STUB.stats().requests());
+    }
+
+    @Test
+    void stub_ShouldInjectLatencyErrorsAndTimeouts() throws Exception {
+        try (OpenAiStubServer failing = new OpenAiStubServer(0, LatencyModel.fixed(Duration.ofMillis(50)),
+                 Duration.ZERO, 1.0, 0, Duration.ZERO, OpenAiStubServer.canned("{}"));
+             OpenAiStubServer hanging = new OpenAiStubServer(0, LatencyModel.NONE, Duration.ZERO, 0, 1.0,
+                 Duration.ofSeconds(5), OpenAiStubServer.canned("{}"))) {
+            // When
+            long start = System.nanoTime();
+            HttpResponse<String> failed = CLIENT.send(completionRequest(failing, Duration.ofSeconds(5)),
+                HttpResponse.BodyHandlers.ofString());
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            // Then
+            assertEquals(500, failed.statusCode());
+            assertTrue(elapsedMillis >= 50, "latency injected before the error: " + elapsedMillis);
+            assertThrows(HttpTimeoutException.class, () -> CLIENT.send(
+                completionRequest(hanging, Duration.ofMillis(200)), HttpResponse.BodyHandlers.ofString()));
+            assertEquals(1, failing.stats().errors());
+            assertEquals(1, hanging.stats().timeouts());
+        }
+    }
+
+    @Test
+    void latencyModel_ShouldParseEveryDistribution() {
+        assertEquals(0, LatencyModel.parse("none").sampleMillis());
+        assertEquals(800, LatencyModel.parse("fixed:800ms").sampleMillis());
+        long uniform = LatencyModel.parse("uniform:200ms:2s").sampleMillis();
+        assertTrue(uniform >= 200 && uniform <= 2000, "uniform " + uniform);
+        assertTrue(LatencyModel.parse("lognormal:800ms:0.5").sampleMillis() > 0);
+        assertThrows(IllegalArgumentException.class, () -> LatencyModel.parse("gaussian:1s"));
+    }
+
+    private JsonNode post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        HttpResponse<String> response = CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return OBJECT_MAPPER.readTree(response.body());
+    }
+
+    private static HttpRequest completionRequest(OpenAiStubServer stub, Duration timeout) {
+        return HttpRequest.newBuilder(URI.create(stub.getBaseUrl() + "/v1/chat/completions"))
+            .timeout(timeout)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString("{\"model\":\"gpt-4o\",\"messages\":[{\"role\":\"user\",\"content\":\"hi\"}]}"))
+            .build();
+    }
+
+    private static OpenAiStubServer startStub() {
+        try {
+            return OpenAiStubServer.instant();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
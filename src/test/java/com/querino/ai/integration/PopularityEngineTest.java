@@ -0,0 +1,212 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.engine.CountMinSketch;
+import com.querino.ai.engine.PopularityEngine;
+import com.querino.ai.engine.PopularityEngine.PopularProduct;
+import com.querino.ai.engine.RecommendationEngines;
+import com.querino.ai.engine.SpaceSavingTopK;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the popularity sketches and the popularity engine.
+ */
+public class PopularityEngineTest {
+
+    private static final Duration HALF_LIFE = Duration.ofDays(1);
+
+    @Test
+    void countMinSketch_ShouldNeverUndercountAndStayWithinErrorBound() {
+        // Given
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+        int[] truth = new int[5000];
+        Random random = new Random(42);
+
+        // When (Zipf-like: key k is drawn with probability roughly proportional to 1 / (k + 1))
+        for (int i = 0; i < 100_000; i++) {
+            int key = (int) Math.min(truth.length - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(truth.length))) - 1);
+            truth[key]++;
+            sketch.add("p" + key, 1);
+        }
+
+        // Then
+        double bound = Math.E / sketch.getWidth() * sketch.getTotalWeight();
+        int withinBound = 0;
+        for (int key = 0; key < truth.length; key++) {
+            double estimate = sketch.estimate("p" + key);
+            assertTrue(estimate >= truth[key], "estimate below true count for p" + key);
+            if (estimate - truth[key] <= bound) {
+                withinBound++;
+            }
+        }
+        assertTrue(withinBound >= truth.length * 0.98, "too many estimates outside the error bound: " + withinBound);
+    }
+
+    @Test
+    void spaceSavingTopK_ShouldKeepHeavyHittersAmongNoise() {
+        // Given
+        SpaceSavingTopK<String> topK = new SpaceSavingTopK<>(10);
+
+        // When
+        for (int round = 0; round < 1000; round++) {
+            topK.add("hot-a", "A", 1);
+            topK.add("noise-" + round, "n", 1);
+            if (round % 2 == 0) {
+                topK.add("hot-b", "B", 1);
+            }
+        }
+
+        // Then
+        List<SpaceSavingTopK.Entry<String>> top = topK.top(2);
+        assertEquals("hot-a", top.get(0).key());
+        assertEquals("hot-b", top.get(1).key());
+        assertTrue(top.get(0).count() - top.get(0).error() <= 1000);
+        assertTrue(top.get(0).count() >= 1000);
+        assertEquals(10, topK.size());
+    }
+
+    @Test
+    void top_ShouldFavourRecentPurchasesAndDecayByHalfLife() {
+        // Given
+        MutableClock clock = new MutableClock();
+        PopularityEngine engine = engine(clock);
+        buy(engine, "c204", "Cast Iron Skillet", "cookware", 39.99, 8);
+        clock.advance(HALF_LIFE.multipliedBy(2));
+
+        // When
+        buy(engine, "c206", "Chef's Knife", "cookware", 59.99, 3);
+        List<PopularProduct> top = engine.top(List.of("Cookware"), null, 5, Set.of());
+
+        // Then (8 purchases two half-lives ago count as 2)
+        assertEquals("c206", top.get(0).productId());
+        assertEquals(3.0, top.get(0).recentPurchases(), 1e-9);
+        assertEquals("c204", top.get(1).productId());
+        assertEquals(2.0, top.get(1).recentPurchases(), 1e-9);
+        assertEquals(5.0, engine.categoryPurchases("cookware"), 1e-9);
+    }
+
+    @Test
+    void top_AfterRescale_ShouldKeepDecayedCounts() {
+        // Given
+        MutableClock clock = new MutableClock();
+        PopularityEngine engine = engine(clock);
+        buy(engine, "c204", "Cast Iron Skillet", "cookware", 39.99, 1 << 10);
+
+        // When (40 half-lives push the weight past the rescale threshold)
+        clock.advance(HALF_LIFE.multipliedBy(40));
+        buy(engine, "c206", "Chef's Knife", "cookware", 59.99, 1);
+
+        // Then
+        List<PopularProduct> top = engine.top(List.of("cookware"), null, 5, Set.of());
+        assertEquals("c206", top.get(0).productId());
+        assertEquals(1.0, top.get(0).recentPurchases(), 1e-9);
+        assertEquals(Math.pow(2, -30), top.get(1).recentPurchases(), 1e-15);
+    }
+
+    @Test
+    void recommend_ColdStartUser_ShouldReturnPopularProductsInCategoriesUnderBudget() {
+        // Given
+        PopularityEngine engine = engine(new MutableClock());
+        buy(engine, "c205", "Dutch Oven", "cookware", 89.99, 10);
+        buy(engine, "c204", "Cast Iron Skillet", "cookware", 39.99, 5);
+        buy(engine, "c207", "Silicone Baking Mats", "bakeware", 16.99, 7);
+        buy(engine, "c002", "Smart Watch", "electronics", 199.99, 20);
+        RecommendationRequest request = new RecommendationRequest("newbie", List.of("Bake", "cook"),
+            new ArrayList<>(), 50.0, List.of());
+
+        // When
+        Recommendation recommendation = engine.recommend(request);
+
+        // Then
+        assertEquals(PopularityEngine.NAME, recommendation.getEngine());
+        List<String> ids = recommendation.getRecommendedProducts().stream()
+            .map(Recommendation.RecommendedProduct::getProductId).toList();
+        assertEquals(List.of("c207", "c204"), ids);
+    }
+
+    @Test
+    void recommend_NothingPopularInCategories_ShouldFallBackToOverallPopularity() {
+        // Given
+        PopularityEngine engine = engine(new MutableClock());
+        buy(engine, "c003", "Portable Bluetooth Speaker", "electronics", 59.99, 4);
+        RecommendationRequest request = new RecommendationRequest("newbie", List.of(), new ArrayList<>(), null,
+            List.of("gardening"));
+
+        // When
+        Recommendation recommendation = engine.recommend(request);
+
+        // Then
+        assertEquals("c003", recommendation.getRecommendedProducts().get(0).getProductId());
+        assertEquals("Popular with other shoppers right now", recommendation.getReasonForRecommendation());
+    }
+
+    @Test
+    void resolve_WithColdStartEngine_ShouldRouteRequestsWithoutAnySignal() {
+        // Given
+        RecommendationEngines engines = new RecommendationEngines(List.of(engine(new MutableClock())),
+            RecommendationEngines.LLM, PopularityEngine.NAME);
+        RecommendationRequest coldStart = new RecommendationRequest();
+        coldStart.setUserId("newbie");
+
+        // Then
+        assertEquals(PopularityEngine.NAME, engines.resolve(coldStart));
+        assertEquals(RecommendationEngines.LLM, engines.resolve(SampleDataProvider.createTechEnthusiastRequest()));
+        coldStart.setInterests(List.of("trail running", "camping"));
+        assertEquals(RecommendationEngines.LLM, engines.resolve(coldStart), "interests are enough for the model");
+        coldStart.setInterests(null);
+        coldStart.setEngine("llm");
+        assertEquals(RecommendationEngines.LLM, engines.resolve(coldStart));
+    }
+
+    private static PopularityEngine engine(Clock clock) {
+        return new PopularityEngine(new ProductCatalog(true), 5, 16, 32, 1024, 4, HALF_LIFE, false, clock);
+    }
+
+    private static void buy(PopularityEngine engine, String productId, String name, String category, double price,
+                            int times) {
+        List<PurchaseHistory> purchases = new ArrayList<>();
+        for (int i = 0; i < times; i++) {
+            purchases.add(new PurchaseHistory(productId, name, category, price, "2024-01-01"));
+        }
+        engine.recordPurchases("buyer", purchases);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
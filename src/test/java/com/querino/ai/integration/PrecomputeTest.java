@@ -0,0 +1,234 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.controller.PrecomputedRecommendationController;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.precompute.RecommendationPrecomputer;
+import com.querino.ai.precompute.RecommendationStore;
+import com.querino.ai.precompute.RecommendationStore.StoredRecommendation;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.service.RecommendationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests for precomputing recommendations and serving them from the store.
+ */
+public class PrecomputeTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    /**
+     * Answers for whichever of the test users the prompt is about.
+     */
+    private static final Function<Prompt, String> ECHO_USER = prompt -> {
+        String text = prompt.getContents();
+        String userId = text.contains("alice") ? "alice" : text.contains("bob") ? "bob" : "carol";
+        return "{\"userId\": \"" + userId + "\", \"recommendedProducts\": [{\"productId\": \"rec-" + userId
+            + "\", \"productName\": \"Gift\", \"category\": \"misc\", \"price\": 10.0, \"reasonForRecommendation\": \"r\"}],"
+            + " \"reasonForRecommendation\": \"fresh\"}";
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recommendationStore_Restart_ShouldServeLatestRecordOfEveryUser() throws Exception {
+        // Given
+        RecommendationStore store = new RecommendationStore(directory.toString(), true);
+        store.put("alice", recommendation("alice", "first"), 1000);
+        store.put("bob", recommendation("bob", "only"), 2000);
+        store.put("alice", recommendation("alice", "second"), 3000);
+        store.close();
+        Files.write(directory.resolve("recommendations.dat"), new byte[]{0, 0, 1, 0, 7}, StandardOpenOption.APPEND);
+
+        // When
+        RecommendationStore restarted = new RecommendationStore(directory.toString(), true);
+
+        // Then
+        assertEquals(2, restarted.size());
+        StoredRecommendation alice = restarted.get("alice");
+        assertEquals("second", alice.recommendation().getReasonForRecommendation());
+        assertEquals(3000, alice.computedAt());
+        assertEquals("only", restarted.get("bob").recommendation().getReasonForRecommendation());
+        assertNull(restarted.get("carol"));
+        assertTrue(restarted.stats().getStoreBytes() > restarted.stats().getLiveBytes());
+        restarted.close();
+    }
+
+    @Test
+    void recommendationStore_Compact_ShouldDropSupersededRecords() throws Exception {
+        // Given
+        RecommendationStore store = new RecommendationStore(directory.toString(), true);
+        for (int round = 0; round < 5; round++) {
+            for (int user = 0; user < 20; user++) {
+                store.put("user" + user, recommendation("user" + user, "round " + round), round);
+            }
+        }
+
+        // When
+        store.compact();
+
+        // Then
+        RecommendationStore.StoreStatistics stats = store.stats();
+        assertEquals(stats.getLiveBytes(), stats.getStoreBytes());
+        assertEquals(Files.size(directory.resolve("recommendations.dat")), stats.getStoreBytes());
+        assertEquals("round 4", store.get("user7").recommendation().getReasonForRecommendation());
+        store.close();
+        assertEquals("round 4", new RecommendationStore(directory.toString(), true).get("user19")
+            .recommendation().getReasonForRecommendation());
+    }
+
+    @Test
+    void recommendationStore_WhenDisabled_ShouldNotOpenAFile() {
+        // Given
+        Path storeDirectory = directory.resolve("recommendations");
+        RecommendationStore store = new RecommendationStore(storeDirectory.toString(), false);
+
+        // When
+        store.put("alice", recommendation("alice", "kept in memory"), 1000);
+
+        // Then
+        assertFalse(Files.exists(storeDirectory));
+        assertEquals("kept in memory", store.get("alice").recommendation().getReasonForRecommendation());
+    }
+
+    @Test
+    void recommendationStore_WithOverlongUserId_ShouldRejectItAndKeepTheFileReadable() throws Exception {
+        // Given
+        RecommendationStore store = new RecommendationStore(directory.toString(), true);
+        store.put("alice", recommendation("alice", "before"), 1000);
+
+        // When
+        assertThrows(IllegalArgumentException.class,
+            () -> store.put("u".repeat(40_000), recommendation("long", "rejected"), 2000));
+        store.put("bob", recommendation("bob", "after"), 3000);
+        store.close();
+
+        // Then
+        RecommendationStore restarted = new RecommendationStore(directory.toString(), true);
+        assertEquals(2, restarted.size());
+        assertEquals("after", restarted.get("bob").recommendation().getReasonForRecommendation());
+        restarted.close();
+    }
+
+    @Test
+    void refreshRecommendationsAsync_ShouldBypassTheCacheAndUpdateIt() {
+        // Given
+        UserProfileStore profiles = profiles("alice");
+        StubChatModel chatModel = new StubChatModel(ECHO_USER);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel).profiles(profiles).build();
+        RecommendationRequest request = new RecommendationRequest();
+        request.setUserId("alice");
+        service.fetchRecommendationsAsync(request).join();
+
+        // When
+        Recommendation refreshed = service.refreshRecommendationsAsync(request).join();
+        service.fetchRecommendationsAsync(request).join();
+
+        // Then
+        assertEquals("rec-alice", refreshed.getRecommendedProducts().get(0).getProductId());
+        assertEquals(2, chatModel.getCalls(), "the refresh calls the model, the last fetch is served from the cache");
+    }
+
+    @Test
+    void plan_ShouldRankStaleUsersByAgeAndReads() {
+        // Given
+        UserProfileStore profiles = profiles("alice", "bob", "carol", "dave");
+        RecommendationStore store = RecommendationStore.inMemory();
+        long now = System.currentTimeMillis();
+        store.put("alice", recommendation("alice", "old"), now - 2 * HOUR);
+        store.put("bob", recommendation("bob", "older"), now - 3 * HOUR);
+        store.put("dave", recommendation("dave", "recent"), now - HOUR / 2);
+        // The answer streams in after a delay, so the first refresh cannot finish inside refreshNext()
+        RecommendationPrecomputer precomputer = precomputer(new StubChatModel(ECHO_USER, Duration.ofSeconds(1)),
+            profiles, store, 1);
+        for (int i = 0; i < 5; i++) {
+            precomputer.lookup("alice");
+        }
+
+        // When
+        int planned = precomputer.plan();
+
+        // Then (alice: 2h x 6 reads, bob: 3h, carol: missing = 2h; dave is fresh)
+        assertEquals(3, planned);
+        assertTrue(precomputer.refreshNext());
+        assertFalse(precomputer.refreshNext(), "only one refresh may be in flight");
+    }
+
+    @Test
+    void refreshNext_ShouldComputeFromStoredProfileAndServeFromStore() throws Exception {
+        // Given
+        UserProfileStore profiles = profiles("alice", "bob", "carol");
+        RecommendationStore store = RecommendationStore.inMemory();
+        StubChatModel chatModel = new StubChatModel(ECHO_USER);
+        RecommendationPrecomputer precomputer = precomputer(chatModel, profiles, store, 4);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new PrecomputedRecommendationController(precomputer)).build();
+        mockMvc.perform(get("/api/recommendations/carol")).andExpect(status().isNotFound());
+
+        // When
+        assertEquals(3, precomputer.plan());
+        while (precomputer.refreshNext()) {
+            // start every planned refresh
+        }
+        awaitTrue(() -> store.size() == 3 && precomputer.stats().getInFlight() == 0);
+
+        // Then
+        mockMvc.perform(get("/api/recommendations/carol"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Age", "0"))
+            .andExpect(jsonPath("$.recommendedProducts[0].productId", is("rec-carol")))
+            .andExpect(jsonPath("$.engine", is("llm")));
+        assertEquals(3, chatModel.getCalls());
+        assertEquals(0, precomputer.plan());
+        RecommendationPrecomputer.PrecomputeStatistics stats = precomputer.stats();
+        assertEquals(3, stats.getComputed());
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+    }
+
+    private static RecommendationPrecomputer precomputer(StubChatModel chatModel, UserProfileStore profiles,
+                                                         RecommendationStore store, int maxInFlight) {
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel).profiles(profiles).build();
+        return new RecommendationPrecomputer(service, store, profiles, false, 2, Duration.ofHours(1), maxInFlight,
+            Duration.ofSeconds(30), "");
+    }
+
+    private static UserProfileStore profiles(String... userIds) {
+        UserProfileStore profiles = UserProfileStore.inMemory();
+        for (String userId : userIds) {
+            profiles.recordPurchases(userId, List.of(
+                new PurchaseHistory("p-" + userId, "Item", "misc", 12.0, "2024-01-01")));
+        }
+        return profiles;
+    }
+
+    private static Recommendation recommendation(String userId, String reason) {
+        return new Recommendation(userId, List.of(), reason);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5s");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.catalog.CatalogSnapshot;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the in-memory product catalog and its category and price indexes.
+ */
+public class ProductCatalogTest {
+
+    @Test
+    void findProducts_WithCategoriesAndBudget_ShouldReturnMatchesCheapestFirst() {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+
+        // When
+        List<Product> products = catalog.findProducts(Arrays.asList("Cookware", "bakeware"), 40.0, 10);
+
+        // Then
+        assertEquals(4, products.size());
+        assertEquals("c207", products.get(0).getId());
+        for (int i = 1; i < products.size(); i++) {
+            assertTrue(products.get(i - 1).getPrice() <= products.get(i).getPrice());
+        }
+        products.forEach(product -> assertTrue(product.getPrice() <= 40.0));
+        assertEquals(4, catalog.count(Arrays.asList("cookware", "bakeware"), 40.0));
+    }
+
+    @Test
+    void findProducts_WithCategoriesNormalizingToTheSameName_ShouldSearchEachCategoryOnce() {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+
+        // When
+        List<Product> products = catalog.findProducts(Arrays.asList("Cookware", "cookware ", "bakeware"), 40.0, 10);
+
+        // Then
+        assertEquals(4, products.size());
+        assertEquals(4, products.stream().map(Product::getId).distinct().count());
+        assertEquals(4, catalog.count(Arrays.asList("COOKWARE", "cookware", "bakeware"), 40.0));
+    }
+
+    @Test
+    void findProducts_WithoutFilters_ShouldSearchWholeCatalogUpToLimit() {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+
+        // When
+        List<Product> products = catalog.findProducts(null, null, 3);
+
+        // Then
+        assertEquals(3, products.size());
+        assertEquals("c207", products.get(0).getId());
+        assertEquals(31, catalog.count(null, null));
+        assertTrue(catalog.findProducts(List.of("unknown"), 100.0, 10).isEmpty());
+    }
+
+    @Test
+    void swap_ShouldPublishNewVersionWithoutChangingHeldSnapshot() {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+        CatalogSnapshot before = catalog.current();
+
+        // When
+        CatalogSnapshot after = catalog.replace(List.of(new Product("x1", "Tea Kettle", "cookware", "Kettle", 35.0)));
+
+        // Then
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertSame(after, catalog.current());
+        assertEquals(1, catalog.count(null, null));
+        assertNull(catalog.findById("c204"));
+        assertEquals("Cast Iron Skillet", before.findById("c204").getName());
+        assertEquals(31, before.size());
+    }
+}
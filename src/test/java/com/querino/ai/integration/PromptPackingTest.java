@@ -0,0 +1,98 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.service.PromptPacker;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for packing several users into one prompt.
+ */
+public class PromptPackingTest {
+
+    /**
+     * Answers packed prompts for user123 and user456 only, so user789 has to fall back to a single call.
+     */
+    private static final Function<Prompt, String> PACKED_RESPONDER = prompt -> {
+        String text = prompt.getContents();
+        if (text.contains("Users (a JSON array")) {
+            return "[" + recommendationJson("user456") + "," + recommendationJson("user123") + "]";
+        }
+        String userId = text.contains("user789") ? "user789" : text.contains("user456") ? "user456" : "user123";
+        return recommendationJson(userId);
+    };
+
+    private static String recommendationJson(String userId) {
+        return "{\"userId\": \"" + userId + "\", \"recommendedProducts\": [{\"productId\": \"rec-" + userId
+            + "\", \"productName\": \"Gift\", \"category\": \"misc\", \"price\": 10.0, \"reasonForRecommendation\": \"r\"}],"
+            + " \"reasonForRecommendation\": \"for " + userId + "\"}";
+    }
+
+    @Test
+    void generateRecommendationsAsync_WithinWindow_ShouldPackUsersAndDemultiplexByUserId() throws Exception {
+        // Given
+        StubChatModel chatModel = new StubChatModel(PACKED_RESPONDER);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .packing(8, Duration.ofMillis(200))
+            .build();
+
+        // When
+        CompletableFuture<Recommendation> tech = service.generateRecommendationsAsync(SampleDataProvider.createTechEnthusiastRequest());
+        CompletableFuture<Recommendation> fitness = service.generateRecommendationsAsync(SampleDataProvider.createFitnessEnthusiastRequest());
+        CompletableFuture<Recommendation> cook = service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest());
+
+        // Then
+        assertEquals("for user123", tech.get(5, TimeUnit.SECONDS).getReasonForRecommendation());
+        assertEquals("for user456", fitness.get(5, TimeUnit.SECONDS).getReasonForRecommendation());
+        assertEquals("for user789", cook.get(5, TimeUnit.SECONDS).getReasonForRecommendation());
+        PromptPacker.PackingStatistics stats = service.getPackingStatistics();
+        assertEquals(1, stats.getPackedPrompts());
+        assertEquals(3, stats.getPackedUsers());
+        assertEquals(1, stats.getFallbacks());
+        assertEquals(2, chatModel.getCalls());
+    }
+
+    @Test
+    void generateRecommendationsAsync_WhenGroupIsFull_ShouldSendWithoutWaitingForWindow() throws Exception {
+        // Given
+        StubChatModel chatModel = new StubChatModel(PACKED_RESPONDER);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .packing(2, Duration.ofSeconds(30))
+            .build();
+
+        // When
+        CompletableFuture<Recommendation> tech = service.generateRecommendationsAsync(SampleDataProvider.createTechEnthusiastRequest());
+        CompletableFuture<Recommendation> fitness = service.generateRecommendationsAsync(SampleDataProvider.createFitnessEnthusiastRequest());
+
+        // Then
+        assertEquals("user123", tech.get(5, TimeUnit.SECONDS).getUserId());
+        assertEquals("user456", fitness.get(5, TimeUnit.SECONDS).getUserId());
+        assertEquals(1, chatModel.getCalls());
+        assertEquals(0, service.getPackingStatistics().getFallbacks());
+    }
+
+    @Test
+    void generateRecommendations_WithPackingEnabled_ShouldServeSynchronousCallers() {
+        // Given
+        StubChatModel chatModel = new StubChatModel(PACKED_RESPONDER);
+        RecommendationService service = RecommendationServiceBuilder.forModel(chatModel)
+            .packing(8, Duration.ofMillis(10))
+            .build();
+
+        // When
+        Recommendation recommendation = service.generateRecommendations(SampleDataProvider.createHomeCookRequest());
+
+        // Then
+        assertEquals("for user789", recommendation.getReasonForRecommendation());
+        assertEquals(1, service.getPackingStatistics().getSingleCalls());
+    }
+}
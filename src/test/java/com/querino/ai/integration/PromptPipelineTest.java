@@ -0,0 +1,90 @@
+package com.querino.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.prompt.CompiledTemplate;
+import com.querino.ai.prompt.ProfileEncoder;
+import com.querino.ai.prompt.PromptPipeline;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the precompiled prompt templates and the compact profile encoding.
+ */
+public class PromptPipelineTest {
+
+    @Test
+    void render_ShouldFillDeclaredVariablesAndKeepOtherBracesLiteral() {
+        // Given
+        CompiledTemplate template = CompiledTemplate.compile("{\"a\": {x}, \"b\": {y}} {z}", "x", "z");
+        StringBuilder out = new StringBuilder();
+
+        // When
+        template.render(out, buffer -> buffer.append(1), buffer -> buffer.append("end"));
+
+        // Then
+        assertEquals("{\"a\": 1, \"b\": {y}} end", out.toString());
+        assertThrows(IllegalArgumentException.class, () -> CompiledTemplate.compile("no variables", "x"));
+    }
+
+    @Test
+    void encode_ShouldUseShortKeysAndSharedCategoryDictionary() {
+        // Given
+        RecommendationRequest request = new RecommendationRequest();
+        request.setUserId("u\"1");
+        request.setInterests(List.of("cooking"));
+        request.setPreferredCategories(Arrays.asList("Cookware", "bakeware"));
+        request.setPurchaseHistory(List.of(new PurchaseHistory("p1", "Pan", "cookware", 25.0, "2024-01-02")));
+        request.setEngine("llm");
+        StringBuilder out = new StringBuilder();
+
+        // When
+        ProfileEncoder.encode(request, out);
+
+        // Then
+        assertEquals("{\"u\":\"u\\\"1\",\"i\":[\"cooking\"],\"c\":[\"Cookware\",\"bakeware\"],\"p\":[0,1],"
+            + "\"h\":[[\"p1\",\"Pan\",0,25,\"2024-01-02\"]]}", out.toString());
+    }
+
+    @Test
+    void encode_ShouldBeMuchSmallerThanFullRequestJson() throws Exception {
+        // Given
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        String fullJson = new ObjectMapper().writeValueAsString(request);
+        StringBuilder out = new StringBuilder();
+
+        // When
+        ProfileEncoder.encode(request, out);
+
+        // Then
+        assertTrue(out.length() < fullJson.length() * 0.6, out.length() + " vs " + fullJson.length());
+        assertTrue(out.toString().contains("\"b\":500"));
+        assertFalse(out.toString().contains("null"));
+    }
+
+    @Test
+    void prompts_ShouldContainProfilesAndLegend() {
+        // Given
+        PromptPipeline pipeline = new PromptPipeline(600);
+
+        // When
+        String single = pipeline.recommendationPrompt(SampleDataProvider.createHomeCookRequest()).getContents();
+        String packed = pipeline.packedPrompt(Arrays.asList(
+            SampleDataProvider.createTechEnthusiastRequest(), SampleDataProvider.createFitnessEnthusiastRequest())).getContents();
+
+        // Then
+        assertTrue(single.contains("{\"u\":\"user789\""));
+        assertTrue(single.contains(ProfileEncoder.LEGEND));
+        assertTrue(single.contains("\"recommendedProducts\": ["));
+        assertTrue(packed.startsWith("You are a shopping recommendation assistant. For EACH"));
+        assertTrue(packed.contains("Users (a JSON array"));
+        assertTrue(packed.contains("\"u\":\"user123\"") && packed.contains("\"u\":\"user456\""));
+        assertEquals(single, pipeline.recommendationPrompt(SampleDataProvider.createHomeCookRequest()).getContents());
+    }
+}
@@ -0,0 +1,268 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.controller.PurchaseEventController;
+import com.querino.ai.engine.RecommendationEngine;
+import com.querino.ai.engine.RecommendationEngines;
+import com.querino.ai.ingest.BoundedMpscQueue;
+import com.querino.ai.ingest.PurchaseEventIngestor;
+import com.querino.ai.model.PurchaseEvent;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.profile.UserProfileStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests for streaming purchase events into the profiles and engines.
+ */
+public class PurchaseEventIngestionTest {
+
+    @Test
+    void boundedMpscQueue_ConcurrentProducers_ShouldDeliverEveryElementInProducerOrder() throws Exception {
+        // Given
+        BoundedMpscQueue<long[]> queue = new BoundedMpscQueue<>(1024);
+        int producers = 4;
+        int perProducer = 100_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(new Thread(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    long[] element = {producer, i};
+                    while (!queue.offer(element)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+
+        // When
+        threads.forEach(Thread::start);
+        long[] next = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] element = queue.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals(next[(int) element[0]]++, element[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Then
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void boundedMpscQueue_WhenFull_ShouldRefuseOffers() {
+        // Given
+        BoundedMpscQueue<String> queue = new BoundedMpscQueue<>(3);
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer("e" + i));
+        }
+
+        // Then
+        assertEquals(4, queue.capacity());
+        assertFalse(queue.offer("e4"));
+        assertEquals("e0", queue.poll());
+        assertTrue(queue.offer("e4"));
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    void offer_ShouldApplyEventsToProfilesAndEnginesInBatches() throws Exception {
+        // Given
+        UserProfileStore profiles = UserProfileStore.inMemory();
+        RecordingEngine engine = new RecordingEngine(null);
+        PurchaseEventIngestor ingestor = ingestor(profiles, engine, 1024, Duration.ofMillis(100));
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ingestor.offer(event("user" + (i % 10), "p" + i)));
+        }
+        awaitTrue(() -> ingestor.stats().getApplied() == 1000);
+        ingestor.close();
+
+        // Then
+        assertEquals(10, profiles.size());
+        assertEquals(100, profiles.get("user3").getPurchases().size());
+        assertEquals(1000, engine.purchases.get());
+        PurchaseEventIngestor.IngestStatistics stats = ingestor.stats();
+        assertEquals(1000, stats.getReceived());
+        assertEquals(0, stats.getRejected());
+        assertTrue(stats.getBatches() >= 1);
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    @Test
+    void offer_EventWithoutUserId_ShouldBeRejected() throws Exception {
+        // Given
+        PurchaseEventIngestor ingestor = ingestor(UserProfileStore.inMemory(), new RecordingEngine(null), 16, Duration.ZERO);
+
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> ingestor.offer(event(null, "p1")));
+        ingestor.close();
+    }
+
+    @Test
+    void ingestPurchases_NdjsonStream_ShouldQueueValidEventsAndSkipInvalidOnes() throws Exception {
+        // Given
+        UserProfileStore profiles = UserProfileStore.inMemory();
+        PurchaseEventIngestor ingestor = ingestor(profiles, new RecordingEngine(null), 1024, Duration.ofMillis(100));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new PurchaseEventController(ingestor)).build();
+        String body = """
+            {"userId": "u1", "productId": "p1", "productName": "Pan", "category": "cookware", "price": 30.0, "purchaseDate": "2024-01-01"}
+            {"userId": "u1", "productId": "p2", "productName": "Pot", "category": "cookware", "price": 45.0, "purchaseDate": "2024-01-02"}
+            {"productId": "p3"}
+            {"userId": "u2", "productId": "p1", "productName": "Pan", "category": "cookware", "price": 30.0, "purchaseDate": "2024-01-03"}
+            """;
+
+        // When
+        mockMvc.perform(post("/api/events/purchases").contentType(MediaType.APPLICATION_NDJSON).content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.accepted", is(3)))
+            .andExpect(jsonPath("$.skipped", is(1)));
+
+        // Then
+        awaitTrue(() -> ingestor.stats().getApplied() == 3);
+        assertEquals(2, profiles.get("u1").getPurchases().size());
+        assertEquals("cookware", profiles.get("u2").getPurchases().get(0).getCategory());
+        ingestor.close();
+    }
+
+    @Test
+    void ingestPurchases_WhenQueueStaysFull_ShouldAnswerTooManyRequests() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        PurchaseEventIngestor ingestor = ingestor(UserProfileStore.inMemory(), new RecordingEngine(release), 2,
+            Duration.ofMillis(200));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new PurchaseEventController(ingestor)).build();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append("{\"userId\": \"u").append(i).append("\", \"productId\": \"p").append(i).append("\"}\n");
+        }
+
+        // When
+        mockMvc.perform(post("/api/events/purchases").contentType(MediaType.APPLICATION_NDJSON).content(body.toString()))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", "1"))
+            .andExpect(jsonPath("$.accepted", is(3)));
+
+        // Then
+        assertEquals(1, ingestor.stats().getRejected());
+        assertTrue(ingestor.stats().getThrottled() >= 1);
+        release.countDown();
+        awaitTrue(() -> ingestor.stats().getApplied() == 3);
+        ingestor.close();
+    }
+
+    @Test
+    void offer_WhenAnEngineFails_ShouldCountTheLostEventsAndStillFeedTheOtherEngines() throws Exception {
+        // Given
+        UserProfileStore profiles = UserProfileStore.inMemory();
+        RecordingEngine recording = new RecordingEngine(null);
+        RecommendationEngine failing = new RecordingEngine(null) {
+            @Override
+            public String getName() {
+                return "failing";
+            }
+
+            @Override
+            public void recordPurchases(String userId, List<PurchaseHistory> purchases) {
+                if (userId.equals("u2")) {
+                    throw new IllegalStateException("engine bug");
+                }
+            }
+        };
+        RecommendationEngines engines = new RecommendationEngines(List.of(failing, recording), "llm");
+        PurchaseEventIngestor ingestor = new PurchaseEventIngestor(profiles, engines, 1024, 1, Duration.ofMillis(100));
+
+        // When
+        ingestor.offer(event("u1", "p1"));
+        ingestor.offer(event("u2", "p2"));
+        ingestor.offer(event("u3", "p3"));
+
+        // Then
+        awaitTrue(() -> ingestor.stats().getApplied() + ingestor.stats().getFailed() == 3);
+        assertEquals(2, ingestor.stats().getApplied());
+        assertEquals(1, ingestor.stats().getFailed());
+        assertEquals(1, ingestor.stats().getFailedBatches());
+        assertEquals(3, recording.purchases.get());
+        assertNotNull(profiles.get("u2"));
+        ingestor.close();
+    }
+
+    private static PurchaseEventIngestor ingestor(UserProfileStore profiles, RecommendationEngine engine, int capacity,
+                                                  Duration offerTimeout) {
+        RecommendationEngines engines = new RecommendationEngines(List.of(engine), "llm");
+        return new PurchaseEventIngestor(profiles, engines, capacity, 1, offerTimeout);
+    }
+
+    private static PurchaseEvent event(String userId, String productId) {
+        return new PurchaseEvent(userId, productId, "Product " + productId, "misc", 9.99, "2024-01-01");
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5s");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Counts the purchases it is told about; optionally blocks the ingest thread until released.
+     */
+    private static class RecordingEngine implements RecommendationEngine {
+        private final CountDownLatch release;
+        private final AtomicInteger purchases = new AtomicInteger();
+
+        RecordingEngine(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public Recommendation recommend(RecommendationRequest request) {
+            return new Recommendation();
+        }
+
+        @Override
+        public void recordPurchases(String userId, List<PurchaseHistory> purchases) {
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            this.purchases.addAndGet(purchases.size());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.retrieval.QuantizedEmbeddingIndex;
+import com.querino.ai.vector.Embedder;
+import com.querino.ai.vector.HashingEmbedder;
+import com.querino.ai.vector.ProductVectorIndex;
+import com.querino.ai.vector.ProductVectorIndex.SimilarProduct;
+import com.querino.ai.vector.QuantizedVectors;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the int8 quantized embeddings and the user and product matching built on them.
+ */
+public class QuantizedVectorsTest {
+
+    @Test
+    void evaluate_ShouldReportNearlyFourfoldCompressionAndHighRecallAfterRerank() {
+        // Given
+        Random random = new Random(5);
+        int dimensions = 128;
+        QuantizedVectors vectors = new QuantizedVectors(dimensions);
+        Map<String, float[]> originals = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            float[] vector = randomVector(random, dimensions);
+            originals.put("v" + i, vector);
+            vectors.put("v" + i, vector);
+        }
+        List<float[]> queries = new ArrayList<>();
+        for (int q = 0; q < 50; q++) {
+            queries.add(randomVector(random, dimensions));
+        }
+
+        // When
+        QuantizedVectors.QuantizationReport report = vectors.evaluate(queries, 10, 4, originals::get);
+
+        // Then
+        assertEquals(5000, report.vectors());
+        assertEquals(5000L * dimensions * 4, report.floatBytes());
+        assertEquals(5000L * (dimensions + 4), report.quantizedBytes(), "one byte per component plus a float scale");
+        assertEquals(4.0 * dimensions / (dimensions + 4), report.getCompressionRatio(), 1e-9);
+        assertTrue(report.recall() >= 0.8, "recall " + report.recall());
+        assertTrue(report.rerankedRecall() >= 0.98, "reranked recall " + report.rerankedRecall());
+        assertTrue(report.rerankedRecall() >= report.recall());
+    }
+
+    @Test
+    void put_WithExistingKey_ShouldReplaceTheVector() {
+        // Given
+        QuantizedVectors vectors = new QuantizedVectors(3);
+        vectors.put("a", new float[]{1, 0, 0});
+        vectors.put("b", new float[]{0, 1, 0});
+
+        // When
+        vectors.put("a", new float[]{0, 0, 1});
+
+        // Then
+        assertEquals(2, vectors.size());
+        List<QuantizedVectors.Match> matches = vectors.search(new float[]{0, 0, 2}, 1);
+        assertEquals("a", matches.get(0).key());
+        assertEquals(1.0, matches.get(0).score(), 0.01);
+    }
+
+    @Test
+    void put_BeyondOneChunk_ShouldKeepEveryVectorSearchable() {
+        // Given 64K dimensions, so a chunk holds 16 vectors
+        int dimensions = 1 << 16;
+        QuantizedVectors vectors = new QuantizedVectors(dimensions);
+        for (int i = 0; i < 40; i++) {
+            vectors.put("v" + i, basis(dimensions, i));
+        }
+
+        // When
+        vectors.remove("v3");
+
+        // Then
+        assertEquals(39, vectors.size());
+        for (int i : new int[]{0, 15, 16, 31, 32, 39}) {
+            assertEquals("v" + i, vectors.search(basis(dimensions, i), 1).get(0).key());
+        }
+        assertTrue(vectors.search(basis(dimensions, 3), 1).get(0).score() < 0.01);
+    }
+
+    @Test
+    void remove_ShouldMoveTheLastVectorIntoTheGap() {
+        // Given
+        QuantizedVectors vectors = new QuantizedVectors(3);
+        vectors.put("a", new float[]{1, 0, 0});
+        vectors.put("b", new float[]{0, 1, 0});
+        vectors.put("c", new float[]{0, 0, 1});
+
+        // When
+        vectors.remove("a");
+        vectors.remove("missing");
+
+        // Then
+        assertEquals(2, vectors.size());
+        assertEquals("c", vectors.search(new float[]{0, 0, 1}, 1).get(0).key());
+        assertEquals("b", vectors.search(new float[]{0, 1, 0}, 1).get(0).key());
+        assertTrue(vectors.search(new float[]{1, 0, 0}, 2).stream().noneMatch(match -> match.key().equals("a")));
+    }
+
+    @Test
+    void search_WithRescorer_ShouldReturnExactScoresInExactOrder() {
+        // Given
+        QuantizedVectors vectors = new QuantizedVectors(2);
+        vectors.put("near", new float[]{1, 0.01f});
+        vectors.put("nearer", new float[]{1, 0.005f});
+        vectors.put("far", new float[]{0, 1});
+        Map<String, Float> exact = Map.of("near", 0.5f, "nearer", 0.9f, "far", 0.1f);
+
+        // When
+        List<QuantizedVectors.Match> matches = vectors.search(new float[]{1, 0}, 2, 2, exact::get);
+
+        // Then
+        assertEquals(List.of(new QuantizedVectors.Match("nearer", 0.9f), new QuantizedVectors.Match("near", 0.5f)), matches);
+    }
+
+    @Test
+    void productsForUser_ShouldMatchTasteAndSkipOwnedProducts() throws Exception {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+        ProductVectorIndex vectorIndex = new ProductVectorIndex(catalog, new HashingEmbedder(256), 16, 100, 64, null);
+        UserProfileStore profiles = UserProfileStore.inMemory();
+        profiles.updatePreferences("runner", List.of("running", "trail"), List.of("athletic wear"), null);
+        profiles.recordPurchases("runner", List.of(
+            new PurchaseHistory("c109", "Trail Running Shoes", "athletic wear", 139.99, "2024-02-01")));
+        profiles.updatePreferences("jogger", List.of("running"), List.of("athletic wear"), null);
+        profiles.updatePreferences("baker", List.of("baking", "bread"), List.of("bakeware"), null);
+        QuantizedEmbeddingIndex index = new QuantizedEmbeddingIndex(catalog, vectorIndex, profiles, 4);
+        awaitTrue(() -> index.userCount() == 3);
+
+        // When
+        List<SimilarProduct> products = index.productsForUser("runner", 3);
+        List<QuantizedVectors.Match> similarUsers = index.similarUsers("runner", 2);
+
+        // Then
+        assertEquals(3, products.size());
+        assertTrue(products.stream().noneMatch(product -> product.product().getId().equals("c109")));
+        String topProduct = products.get(0).product().getName() + " " + products.get(0).product().getDescription();
+        assertTrue(topProduct.toLowerCase().contains("running"), topProduct);
+        assertTrue(products.get(0).score() >= products.get(1).score());
+        assertEquals("jogger", similarUsers.get(0).key());
+        assertEquals(3, index.userCount());
+        assertNull(index.productsForUser("nobody", 3));
+        QuantizedVectors.QuantizationReport report = index.report(20, 5);
+        assertEquals(catalog.current().size(), report.vectors());
+        assertTrue(report.rerankedRecall() >= report.recall());
+        index.close();
+    }
+
+    @Test
+    void userEmbeddings_ShouldFollowProfileChangesAndEvictions() throws Exception {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+        ProductVectorIndex vectorIndex = new ProductVectorIndex(catalog, new HashingEmbedder(256), 16, 100, 64, null);
+        UserProfileStore profiles = new UserProfileStore(null, 1000, 3, Duration.ZERO);
+        profiles.updatePreferences("runner", List.of("running", "trail"), List.of("athletic wear"), null);
+        profiles.updatePreferences("baker", List.of("baking", "bread"), List.of("bakeware"), null);
+        profiles.updatePreferences("cook", List.of("cooking"), List.of("kitchen"), null);
+        QuantizedEmbeddingIndex index = new QuantizedEmbeddingIndex(catalog, vectorIndex, profiles, 4);
+        awaitTrue(() -> index.userCount() == 3);
+        assertEquals("cook", index.similarUsers("baker", 1).get(0).key());
+
+        // When
+        profiles.updatePreferences("runner", List.of("baking", "bread"), List.of("bakeware"), null);
+        List<QuantizedVectors.Match> afterUpdate = index.similarUsers("baker", 1);
+        profiles.updatePreferences("painter", List.of("painting"), List.of("art"), null);
+
+        // Then
+        assertEquals("runner", afterUpdate.get(0).key(), "runner's stored embedding was refreshed without querying runner");
+        assertEquals(3, index.userCount(), "the least recently updated profile was evicted and its embedding dropped");
+        assertTrue(index.similarUsers("painter", 3).stream().noneMatch(match -> match.key().equals("baker")));
+        index.close();
+    }
+
+    @Test
+    void productsLike_WhileTheCodesAreBuilt_ShouldAnswerFromTheVectorIndex() throws Exception {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+        HashingEmbedder hashing = new HashingEmbedder(256);
+        CountDownLatch release = new CountDownLatch(1);
+        Embedder blocking = new Embedder() {
+            @Override
+            public int dimensions() {
+                return hashing.dimensions();
+            }
+
+            @Override
+            public float[] embed(String text) {
+                if (Thread.currentThread().getName().equals("quantized-embeddings")) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return hashing.embed(text);
+            }
+        };
+        ProductVectorIndex vectorIndex = new ProductVectorIndex(catalog, blocking, 16, 100, 64, null);
+        awaitTrue(vectorIndex::isReady);
+        QuantizedEmbeddingIndex index = new QuantizedEmbeddingIndex(catalog, vectorIndex, UserProfileStore.inMemory(), 4);
+        float[] taste = vectorIndex.embedTaste(List.of("running", "trail"), List.of("athletic wear"), null);
+
+        // When
+        List<SimilarProduct> whileBuilding = index.productsLike(taste, 3, Set.of("c109"));
+        boolean readyWhileBuilding = index.isReady();
+        release.countDown();
+        awaitTrue(index::isReady);
+        List<SimilarProduct> fromCodes = index.productsLike(taste, 3, Set.of("c109"));
+
+        // Then
+        assertFalse(readyWhileBuilding);
+        assertEquals(3, whileBuilding.size());
+        assertTrue(whileBuilding.stream().noneMatch(product -> product.product().getId().equals("c109")));
+        assertEquals(fromCodes.stream().map(product -> product.product().getId()).toList(),
+            whileBuilding.stream().map(product -> product.product().getId()).toList());
+        index.close();
+        vectorIndex.close();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5s");
+            Thread.sleep(5);
+        }
+    }
+
+    private static float[] basis(int dimensions, int axis) {
+        float[] vector = new float[dimensions];
+        vector[axis] = 1;
+        return vector;
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,144 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.cache.RecommendationCache;
+import com.querino.ai.cache.RecommendationKey;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the recommendation cache and its use by the RecommendationService.
+ * The chat model is replaced by a stub returning a canned response.
+ */
+public class RecommendationCacheTest {
+
+    private static final String CANNED_RESPONSE = """
+        {
+          "userId": "user123",
+          "recommendedProducts": [
+            {
+              "productId": "rec001",
+              "productName": "Smart Watch",
+              "category": "electronics",
+              "price": 199.99,
+              "reasonForRecommendation": "This complements your existing tech gadgets"
+            }
+          ],
+          "reasonForRecommendation": "Based on your interests in technology and gaming"
+        }
+        """;
+
+    private StubChatModel chatModel;
+    private RecommendationCache recommendationCache;
+    private RecommendationService recommendationService;
+
+    @BeforeEach
+    void setUp() {
+        chatModel = new StubChatModel(CANNED_RESPONSE);
+        recommendationCache = new RecommendationCache(100, Duration.ofMinutes(10));
+        recommendationService = RecommendationServiceBuilder.forModel(chatModel).cache(recommendationCache).build();
+    }
+
+    @Test
+    void key_WithReorderedAndRecasedFields_ShouldBeEqual() {
+        // Given
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        RecommendationRequest reordered = SampleDataProvider.createTechEnthusiastRequest();
+        List<String> interests = new ArrayList<>(reordered.getInterests());
+        Collections.reverse(interests);
+        interests.set(0, interests.get(0).toUpperCase());
+        reordered.setInterests(interests);
+        List<RecommendationRequest.PurchaseHistory> history = new ArrayList<>(reordered.getPurchaseHistory());
+        Collections.reverse(history);
+        reordered.setPurchaseHistory(history);
+        reordered.setBudget(500.001);
+
+        // Then
+        assertEquals(RecommendationKey.of(request), RecommendationKey.of(reordered));
+        assertEquals(RecommendationKey.of(request).hashCode(), RecommendationKey.of(reordered).hashCode());
+    }
+
+    @Test
+    void key_WithDifferentBudget_ShouldDiffer() {
+        // Given
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        RecommendationRequest other = SampleDataProvider.createTechEnthusiastRequest();
+        other.setBudget(250.0);
+
+        // Then
+        assertNotEquals(RecommendationKey.of(request), RecommendationKey.of(other));
+    }
+
+    @Test
+    void generateRecommendations_WithRepeatedRequest_ShouldCallModelOnce() {
+        // Given
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+
+        // When
+        Recommendation first = recommendationService.generateRecommendations(request);
+        Recommendation second = recommendationService.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+
+        // Then
+        assertEquals(1, chatModel.getCalls());
+        assertSame(first, second);
+        assertEquals(1, recommendationCache.stats().getHitCount());
+        assertEquals(1, recommendationCache.stats().getMissCount());
+    }
+
+    @Test
+    void invalidateUser_ShouldForceFreshModelCall() {
+        // Given
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        recommendationService.generateRecommendations(request);
+
+        // When
+        int removed = recommendationCache.invalidateUser("user123");
+        recommendationService.generateRecommendations(request);
+
+        // Then
+        assertEquals(1, removed);
+        assertEquals(2, chatModel.getCalls());
+    }
+
+    @Test
+    void put_BeyondMaximumSize_ShouldEvict() {
+        // Given
+        RecommendationCache smallCache = new RecommendationCache(2, Duration.ofMinutes(10));
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+            request.setUserId("user" + i);
+            smallCache.put(RecommendationKey.of(request),
+                new Recommendation("user" + i, Arrays.asList(), "reason"));
+        }
+
+        // Then
+        RecommendationCache.CacheStatistics stats = awaitEvictions(smallCache);
+        assertTrue(stats.getEvictionCount() > 0);
+        assertTrue(stats.getSize() <= 2);
+    }
+
+    private RecommendationCache.CacheStatistics awaitEvictions(RecommendationCache cache) {
+        // Caffeine performs eviction asynchronously on the common pool
+        for (int i = 0; i < 50 && cache.stats().getSize() > 2; i++) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return cache.stats();
+    }
+}
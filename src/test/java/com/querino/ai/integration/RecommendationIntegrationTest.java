@@ -2,10 +2,12 @@ package com.querino.ai.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.querino.ai.controller.RecommendationController;
+import com.querino.ai.engine.UnknownEngineException;
 import com.querino.ai.model.Recommendation;
 import com.querino.ai.model.RecommendationRequest;
 import com.querino.ai.service.RecommendationService;
 import com.querino.ai.util.SampleDataProvider;
+import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -20,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -92,6 +95,24 @@ public class RecommendationIntegrationTest {
             .andExpect(jsonPath("$.recommendedProducts[1].productName", is("Wireless Earbuds")));
     }
 
+    @Test
+    void getRecommendations_WithUnknownEngine_ShouldReturnBadRequestButNotHideOtherFailures() throws Exception {
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        request.setEngine("nonexistent");
+        when(recommendationService.generateRecommendations(any(RecommendationRequest.class)))
+            .thenThrow(new UnknownEngineException("Unknown recommendation engine: nonexistent"))
+            .thenThrow(new IllegalArgumentException("bug in an engine"));
+
+        mockMvc.perform(post("/api/recommendations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("Unknown recommendation engine: nonexistent"));
+        assertThrows(ServletException.class, () -> mockMvc.perform(post("/api/recommendations")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(request))));
+    }
+
     @Test
     void getRecommendations_WithEmptyUserId_ShouldStillWork() throws Exception {
         RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
@@ -0,0 +1,143 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.service.RecommendationMetrics;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the per-stage, token and fallback metrics of the recommendation path.
+ */
+public class RecommendationMetricsTest {
+
+    private static final String RESPONSE = """
+        {"userId":"user123","recommendedProducts":[{"productId":"rec001","productName":"Smart Watch",
+        "category":"electronics","price":199.99,"reasonForRecommendation":"Tracks your workouts"}],
+        "reasonForRecommendation":"Based on your interest in technology"}""";
+
+    @Test
+    void generateRecommendations_ShouldTimeEveryStageAndTheRequest() {
+        // Given
+        RecommendationMetrics metrics = RecommendationMetrics.inMemory();
+        RecommendationService service = RecommendationServiceBuilder.forModel(new StubChatModel(RESPONSE))
+            .metrics(metrics)
+            .build();
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+
+        // When
+        service.generateRecommendations(request);
+        service.generateRecommendations(request);
+        service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest()).join();
+
+        // Then
+        MeterRegistry registry = metrics.getRegistry();
+        Map<String, Long> expectedStages = Map.of("hydrate", 3L, "route", 3L, "cache", 3L,
+            "prompt", 2L, "model", 2L, "parse", 2L);
+        expectedStages.forEach((stage, count) -> assertEquals(count, stageCount(registry, stage), "stage " + stage));
+        assertEquals(2, registry.get("recommendation.requests").tag("source", "model").timer().count());
+        assertEquals(1, registry.get("recommendation.requests").tag("source", "cache").timer().count());
+        assertEquals("llm", registry.get("recommendation.requests").tag("source", "cache").timer().getId().getTag("engine"));
+        assertEquals(2, registry.get("recommendation.coalescing.upstream.calls").functionCounter().count());
+    }
+
+    @Test
+    void generateRecommendations_WithUnparseableAnswer_ShouldCountTheFailureAndTheFallback() {
+        // Given
+        RecommendationMetrics metrics = RecommendationMetrics.inMemory();
+        RecommendationService service = RecommendationServiceBuilder.forModel(new StubChatModel("not json"))
+            .metrics(metrics)
+            .build();
+
+        // When
+        Recommendation sync = service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+        Recommendation async = service.generateRecommendationsAsync(SampleDataProvider.createHomeCookRequest()).join();
+
+        // Then
+        assertTrue(sync.getRecommendedProducts().isEmpty());
+        assertTrue(async.getRecommendedProducts().isEmpty());
+        MeterRegistry registry = metrics.getRegistry();
+        assertEquals(2, registry.get("recommendation.parse.failures").counter().count());
+        assertEquals(2, registry.get("recommendation.fallbacks").tag("reason", "parse").counter().count());
+        assertNull(registry.find("recommendation.requests").timer());
+    }
+
+    @Test
+    void generateRecommendations_ShouldRecordTheTokenUsageTheModelReports() {
+        // Given
+        RecommendationMetrics metrics = RecommendationMetrics.inMemory();
+        StubChatModel model = new StubChatModel(RESPONSE) {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                super.call(prompt);
+                return new ChatResponse(List.of(new Generation(new AssistantMessage(RESPONSE))),
+                    ChatResponseMetadata.builder().usage(new DefaultUsage(420, 85)).build());
+            }
+        };
+        RecommendationService service = RecommendationServiceBuilder.forModel(model).metrics(metrics).build();
+
+        // When
+        service.generateRecommendations(SampleDataProvider.createTechEnthusiastRequest());
+
+        // Then
+        MeterRegistry registry = metrics.getRegistry();
+        assertEquals(420, registry.get("recommendation.tokens").tag("type", "prompt").summary().totalAmount());
+        assertEquals(85, registry.get("recommendation.tokens").tag("type", "completion").summary().totalAmount());
+        assertEquals(85, registry.get("recommendation.tokens.last").tag("type", "completion").gauge().value());
+    }
+
+    @Test
+    void streamRecommendations_ShouldTimeTheRequestAndParseAndRecordTokens() {
+        // Given a model that reports the usage on an extra last chunk, like the providers do
+        RecommendationMetrics metrics = RecommendationMetrics.inMemory();
+        StubChatModel model = new StubChatModel(prompt -> prompt.getContents().contains("user789") ? "not json" : RESPONSE) {
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return super.stream(prompt).concatWith(Flux.just(new ChatResponse(
+                    List.of(new Generation(new AssistantMessage(""))),
+                    ChatResponseMetadata.builder().usage(new DefaultUsage(420, 85)).build())));
+            }
+        };
+        RecommendationService service = RecommendationServiceBuilder.forModel(model).metrics(metrics).build();
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+
+        // When
+        List<Recommendation.RecommendedProduct> streamed = service.streamRecommendations(request).collectList().block();
+        List<Recommendation.RecommendedProduct> cached = service.streamRecommendations(request).collectList().block();
+        List<Recommendation.RecommendedProduct> unparseable = service.streamRecommendations(
+            SampleDataProvider.createHomeCookRequest()).collectList().block();
+
+        // Then
+        assertEquals(1, streamed.size());
+        assertEquals(streamed, cached);
+        assertTrue(unparseable.isEmpty());
+        MeterRegistry registry = metrics.getRegistry();
+        assertEquals(1, registry.get("recommendation.requests").tag("source", "model").timer().count());
+        assertEquals(1, registry.get("recommendation.requests").tag("source", "cache").timer().count());
+        assertEquals(2, stageCount(registry, "model"));
+        assertEquals(2, stageCount(registry, "parse"));
+        assertTrue(registry.get("recommendation.stage").tag("stage", "parse").timer().totalTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(1, registry.get("recommendation.parse.failures").counter().count());
+        assertEquals(840, registry.get("recommendation.tokens").tag("type", "prompt").summary().totalAmount());
+        assertEquals(85, registry.get("recommendation.tokens.last").tag("type", "completion").gauge().value());
+    }
+
+    private static long stageCount(MeterRegistry registry, String stage) {
+        return registry.get("recommendation.stage").tag("stage", stage).timer().count();
+    }
+}
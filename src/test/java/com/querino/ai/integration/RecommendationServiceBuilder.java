@@ -0,0 +1,86 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.cache.RecommendationCache;
+import com.querino.ai.engine.RecommendationEngines;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.prompt.PromptPipeline;
+import com.querino.ai.retrieval.CandidateRetriever;
+import com.querino.ai.service.OutboundCallLimiter;
+import com.querino.ai.service.RecommendationMetrics;
+import com.querino.ai.service.RecommendationService;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+
+import java.time.Duration;
+
+/**
+ * Builds RecommendationService instances wired to a stub chat model. Everything not set keeps the defaults used
+ * across tests: an LLM-only service with a small cache, no packing, no profiles and no candidate retrieval.
+ */
+public final class RecommendationServiceBuilder {
+
+    private final ChatModel chatModel;
+    private PromptPipeline promptPipeline = new PromptPipeline(600);
+    private RecommendationCache recommendationCache = new RecommendationCache(100, Duration.ofMinutes(10));
+    private boolean packingEnabled = false;
+    private int packingMaxUsers = 8;
+    private Duration packingWindow = Duration.ofMillis(20);
+    private RecommendationEngines recommendationEngines = RecommendationEngines.llmOnly();
+    private UserProfileStore userProfileStore = UserProfileStore.inMemory();
+    private CandidateRetriever candidateRetriever = CandidateRetriever.disabled();
+    private RecommendationMetrics metrics = RecommendationMetrics.inMemory();
+
+    private RecommendationServiceBuilder(ChatModel chatModel) {
+        this.chatModel = chatModel;
+    }
+
+    public static RecommendationServiceBuilder forModel(ChatModel chatModel) {
+        return new RecommendationServiceBuilder(chatModel);
+    }
+
+    public RecommendationServiceBuilder promptPipeline(PromptPipeline promptPipeline) {
+        this.promptPipeline = promptPipeline;
+        return this;
+    }
+
+    public RecommendationServiceBuilder cache(RecommendationCache recommendationCache) {
+        this.recommendationCache = recommendationCache;
+        return this;
+    }
+
+    /**
+     * Packs concurrent requests into shared prompts of up to the given number of users.
+     */
+    public RecommendationServiceBuilder packing(int maxUsers, Duration window) {
+        this.packingEnabled = true;
+        this.packingMaxUsers = maxUsers;
+        this.packingWindow = window;
+        return this;
+    }
+
+    public RecommendationServiceBuilder engines(RecommendationEngines recommendationEngines) {
+        this.recommendationEngines = recommendationEngines;
+        return this;
+    }
+
+    public RecommendationServiceBuilder profiles(UserProfileStore userProfileStore) {
+        this.userProfileStore = userProfileStore;
+        return this;
+    }
+
+    public RecommendationServiceBuilder candidateRetriever(CandidateRetriever candidateRetriever) {
+        this.candidateRetriever = candidateRetriever;
+        return this;
+    }
+
+    public RecommendationServiceBuilder metrics(RecommendationMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public RecommendationService build() {
+        return new RecommendationService(ChatClient.builder(chatModel), promptPipeline, recommendationCache,
+            Duration.ofSeconds(5), new OutboundCallLimiter(4, 100), packingEnabled, packingMaxUsers, packingWindow,
+            recommendationEngines, Duration.ofMillis(300), "heuristic", userProfileStore, candidateRetriever, metrics);
+    }
+}
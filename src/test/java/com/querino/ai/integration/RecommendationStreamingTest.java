@@ -0,0 +1,140 @@
+package com.querino.ai.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.controller.RecommendationController;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.service.IncrementalRecommendationParser;
+import com.querino.ai.service.RecommendationService;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests for incremental parsing of streamed model output and the streaming endpoint.
+ */
+public class RecommendationStreamingTest {
+
+    private static final String STREAMED_RESPONSE = """
+        ```json
+        {
+          "userId": "user123",
+          "recommendedProducts": [
+            {
+              "productId": "rec001",
+              "productName": "Smart Watch",
+              "category": "electronics",
+              "price": 199.99,
+              "reasonForRecommendation": "This complements your {existing} tech gadgets"
+            },
+            {
+              "productId": "rec002",
+              "productName": "Wireless Earbuds",
+              "category": "electronics",
+              "price": 149.99,
+              "reasonForRecommendation": "Great for gaming and music"
+            }
+          ],
+          "reasonForRecommendation": "Based on your interests in technology and gaming"
+        }
+        ```
+        """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private RecommendationService recommendationService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(new RecommendationController(recommendationService)).build();
+    }
+
+    @Test
+    void feed_WithSmallChunks_ShouldEmitEachProductWhenItsObjectCloses() throws Exception {
+        // Given
+        IncrementalRecommendationParser parser = new IncrementalRecommendationParser(objectMapper);
+        List<Integer> emittedAt = new ArrayList<>();
+        List<Recommendation.RecommendedProduct> products = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < STREAMED_RESPONSE.length(); i += 3) {
+            String chunk = STREAMED_RESPONSE.substring(i, Math.min(i + 3, STREAMED_RESPONSE.length()));
+            for (Recommendation.RecommendedProduct product : parser.feed(chunk)) {
+                emittedAt.add(i + chunk.length());
+                products.add(product);
+            }
+        }
+
+        // Then
+        assertEquals(2, products.size());
+        assertEquals("Smart Watch", products.get(0).getProductName());
+        assertEquals("This complements your {existing} tech gadgets", products.get(0).getReasonForRecommendation());
+        assertEquals(149.99, products.get(1).getPrice());
+        assertTrue(emittedAt.get(0) < STREAMED_RESPONSE.indexOf("rec002"),
+            "first product should be emitted before the second one is generated");
+        assertTrue(parser.isComplete());
+        Recommendation recommendation = parser.toRecommendation();
+        assertEquals("user123", recommendation.getUserId());
+        assertEquals("Based on your interests in technology and gaming", recommendation.getReasonForRecommendation());
+        assertEquals(2, recommendation.getRecommendedProducts().size());
+    }
+
+    @Test
+    void feed_WithIncompleteDocument_ShouldNotBeComplete() throws Exception {
+        // Given
+        IncrementalRecommendationParser parser = new IncrementalRecommendationParser(objectMapper);
+
+        // When
+        parser.feed(STREAMED_RESPONSE.substring(0, STREAMED_RESPONSE.indexOf("rec002")));
+
+        // Then
+        assertFalse(parser.isComplete());
+        assertEquals(1, parser.toRecommendation().getRecommendedProducts().size());
+    }
+
+    @Test
+    void streamRecommendations_ShouldWriteNdjsonLines() throws Exception {
+        // Given
+        RecommendationRequest request = SampleDataProvider.createTechEnthusiastRequest();
+        when(recommendationService.streamRecommendations(any(RecommendationRequest.class))).thenReturn(Flux.just(
+            new Recommendation.RecommendedProduct("rec001", "Smart Watch", "electronics", 199.99, "reason"),
+            new Recommendation.RecommendedProduct("rec002", "Wireless Earbuds", "electronics", 149.99, "reason")
+        ));
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/recommendations/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"productName\":\"Smart Watch\"")))
+            .andExpect(content().string(containsString("\"productName\":\"Wireless Earbuds\"")));
+    }
+}
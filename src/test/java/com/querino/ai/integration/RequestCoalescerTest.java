@@ -0,0 +1,134 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.cache.RequestCoalescer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the single-flight request coalescer.
+ */
+public class RequestCoalescerTest {
+
+    private static final int CALLERS = 8;
+
+    private RequestCoalescer<String, String> coalescer;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new RequestCoalescer<>();
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void call_WithConcurrentIdenticalKeys_ShouldShareOneUpstreamCall() throws Exception {
+        // Given
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        // When
+        List<Future<String>> results = submitAll(() -> coalescer.call("user123", () -> {
+            upstreamCalls.incrementAndGet();
+            release.await();
+            return "recommendation";
+        }, Duration.ofSeconds(5)));
+        awaitInFlightFollowers(CALLERS - 1);
+        release.countDown();
+
+        // Then
+        for (Future<String> result : results) {
+            assertEquals("recommendation", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(1, coalescer.stats().getUpstreamCalls());
+        assertEquals(CALLERS - 1, coalescer.stats().getCollapsedCalls());
+        assertEquals(0, coalescer.stats().getInFlight());
+    }
+
+    @Test
+    void call_WhenLeaderFails_ShouldPropagateFailureToAllWaiters() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+
+        // When
+        List<Future<String>> results = submitAll(() -> coalescer.call("user123", () -> {
+            release.await();
+            throw new IllegalStateException("upstream unavailable");
+        }, Duration.ofSeconds(5)));
+        awaitInFlightFollowers(CALLERS - 1);
+        release.countDown();
+
+        // Then
+        for (Future<String> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void call_WhenLeaderIsTooSlow_ShouldTimeOutFollower() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> coalescer.call("user123", () -> {
+            release.await();
+            return "recommendation";
+        }, Duration.ofSeconds(5)));
+        while (coalescer.stats().getInFlight() == 0) {
+            Thread.onSpinWait();
+        }
+
+        // When / Then
+        assertThrows(TimeoutException.class,
+            () -> coalescer.call("user123", () -> "unused", Duration.ofMillis(20)));
+        release.countDown();
+        assertEquals("recommendation", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(1, coalescer.stats().getWaiterTimeouts());
+    }
+
+    @Test
+    void call_WithDifferentKeys_ShouldNotCoalesce() throws Exception {
+        // When
+        coalescer.call("user123", () -> "a", Duration.ofSeconds(1));
+        coalescer.call("user456", () -> "b", Duration.ofSeconds(1));
+
+        // Then
+        assertEquals(2, coalescer.stats().getUpstreamCalls());
+        assertEquals(0, coalescer.stats().getCollapsedCalls());
+    }
+
+    private List<Future<String>> submitAll(Callable<String> task) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(task));
+        }
+        return results;
+    }
+
+    private void awaitInFlightFollowers(int followers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescer.stats().getCollapsedCalls() < followers && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.querino.ai.integration;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Chat model stub for tests: answers every prompt with a canned response, streamed in small chunks
+ * when the streaming API is used, and counts how often it was called.
+ */
+public class StubChatModel implements ChatModel {
+
+    private static final int CHUNK_SIZE = 16;
+
+    private final Function<Prompt, String> responder;
+    private final Duration streamLatency;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    public StubChatModel(String response) {
+        this(prompt -> response);
+    }
+
+    public StubChatModel(Function<Prompt, String> responder) {
+        this(responder, Duration.ZERO);
+    }
+
+    public StubChatModel(Function<Prompt, String> responder, Duration streamLatency) {
+        this.responder = responder;
+        this.streamLatency = streamLatency;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        calls.incrementAndGet();
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(responder.apply(prompt)))));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            calls.incrementAndGet();
+            String response = responder.apply(prompt);
+            List<ChatResponse> chunks = new ArrayList<>();
+            for (int i = 0; i < response.length(); i += CHUNK_SIZE) {
+                String chunk = response.substring(i, Math.min(i + CHUNK_SIZE, response.length()));
+                chunks.add(new ChatResponse(List.of(new Generation(new AssistantMessage(chunk)))));
+            }
+            Flux<ChatResponse> stream = Flux.fromIterable(chunks);
+            return streamLatency.isZero() ? stream : stream.delaySubscription(streamLatency);
+        });
+    }
+
+    public int getCalls() {
+        return calls.get();
+    }
+}
@@ -0,0 +1,241 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.profile.UserProfile;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.util.SampleDataProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the server-side user profile store.
+ */
+public class UserProfileStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void hydrate_RequestWithOnlyUserIdAndDelta_ShouldCarryTheStoredProfile() {
+        // Given
+        UserProfileStore store = UserProfileStore.inMemory();
+        RecommendationRequest stored = SampleDataProvider.createTechEnthusiastRequest();
+        store.recordPurchases("user123", stored.getPurchaseHistory());
+        store.updatePreferences("user123", stored.getInterests(), stored.getPreferredCategories(), stored.getBudget());
+        RecommendationRequest delta = new RecommendationRequest();
+        delta.setUserId("user123");
+        delta.setEngine("heuristic");
+        delta.setPurchaseHistory(List.of(purchase("p900", "2024-05-01")));
+
+        // When
+        RecommendationRequest hydrated = store.hydrate(delta);
+
+        // Then
+        assertEquals(4, hydrated.getPurchaseHistory().size());
+        assertEquals("p900", hydrated.getPurchaseHistory().get(3).getProductId());
+        assertEquals(SampleDataProvider.createTechEnthusiastRequest().getInterests(), hydrated.getInterests());
+        assertEquals(500.0, hydrated.getBudget());
+        assertEquals("heuristic", hydrated.getEngine());
+        assertEquals(3, store.get("user123").getPurchases().size(), "hydrating must not change the stored profile");
+    }
+
+    @Test
+    void hydrate_WithPreferences_ShouldApplyThemToThisRequestOnly() {
+        // Given
+        UserProfileStore store = UserProfileStore.inMemory();
+        store.updatePreferences("u1", List.of("cooking"), List.of("cookware"), 80.0);
+        RecommendationRequest whatIf = new RecommendationRequest();
+        whatIf.setUserId("u1");
+        whatIf.setBudget(1000.0);
+        whatIf.setPurchaseHistory(List.of(purchase("p1", "2024-01-01")));
+
+        // When
+        RecommendationRequest hydrated = store.hydrate(whatIf);
+
+        // Then
+        assertEquals(1000.0, hydrated.getBudget());
+        assertEquals(List.of("cooking"), hydrated.getInterests());
+        assertEquals(1, hydrated.getPurchaseHistory().size());
+        assertEquals(80.0, store.get("u1").getBudget());
+        assertTrue(store.get("u1").getPurchases().isEmpty());
+    }
+
+    @Test
+    void recordPurchases_BeyondTheProfileLimit_ShouldDropTheLeastRecentlyUpdated() throws Exception {
+        // Given
+        UserProfileStore store = new UserProfileStore(directory.toString(), 1000, 2, Duration.ZERO);
+        store.recordPurchases("u1", List.of(purchase("p1", "2024-01-01")));
+        store.recordPurchases("u2", List.of(purchase("p2", "2024-01-01")));
+
+        // When
+        store.updatePreferences("u1", List.of("cooking"), null, null);
+        store.recordPurchases("u3", List.of(purchase("p3", "2024-01-01")));
+
+        // Then
+        assertEquals(2, store.size());
+        assertNull(store.get("u2"));
+        assertNotNull(store.get("u1"));
+        assertEquals(1, store.getEvictedCount());
+        store.close();
+        UserProfileStore restarted = new UserProfileStore(directory.toString(), 1000, 2, Duration.ZERO);
+        assertEquals(Set.of("u1", "u3"), restarted.userIds());
+        restarted.close();
+    }
+
+    @Test
+    void hydrate_UnknownUserWithoutDelta_ShouldReturnRequestUnchanged() {
+        // Given
+        UserProfileStore store = UserProfileStore.inMemory();
+        RecommendationRequest request = new RecommendationRequest();
+        request.setUserId("nobody");
+
+        // When
+        RecommendationRequest hydrated = store.hydrate(request);
+
+        // Then
+        assertSame(request, hydrated);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void recordPurchases_RepeatedPurchase_ShouldBeIgnored() {
+        // Given
+        UserProfileStore store = UserProfileStore.inMemory();
+        store.recordPurchases("u1", List.of(purchase("p1", "2024-01-01")));
+
+        // When
+        UserProfile profile = store.recordPurchases("u1", List.of(purchase("p1", "2024-01-01"), purchase("p1", "2024-02-01")));
+
+        // Then
+        assertEquals(2, profile.getPurchases().size());
+    }
+
+    @Test
+    void restart_ShouldReplayTheLog() throws Exception {
+        // Given
+        UserProfileStore store = persistentStore();
+        store.recordPurchases("u1", List.of(purchase("p1", "2024-01-01")));
+        store.updatePreferences("u1", List.of("cooking"), List.of("cookware"), 80.0);
+        store.close();
+
+        // When
+        UserProfileStore restarted = persistentStore();
+
+        // Then
+        UserProfile profile = restarted.get("u1");
+        assertEquals(1, profile.getPurchases().size());
+        assertEquals(List.of("cooking"), profile.getInterests());
+        assertEquals(List.of("cookware"), profile.getPreferredCategories());
+        assertEquals(80.0, profile.getBudget());
+        restarted.close();
+    }
+
+    @Test
+    void restart_AfterSnapshot_ShouldLoadSnapshotAndNewerLogOnly() throws Exception {
+        // Given
+        UserProfileStore store = persistentStore();
+        for (int i = 0; i < 100; i++) {
+            store.recordPurchases("user" + i, List.of(purchase("p" + i, "2024-01-01")));
+        }
+        assertEquals(100, store.snapshot());
+        store.recordPurchases("user7", List.of(purchase("p-late", "2024-06-01")));
+        store.close();
+
+        // When
+        UserProfileStore restarted = persistentStore();
+
+        // Then
+        assertEquals(100, restarted.size());
+        assertEquals(2, restarted.get("user7").getPurchases().size());
+        assertEquals(1, files(".snapshot").size());
+        restarted.close();
+    }
+
+    @Test
+    void restart_WithTornLogTail_ShouldKeepEarlierRecords() throws Exception {
+        // Given
+        UserProfileStore store = persistentStore();
+        store.recordPurchases("u1", List.of(purchase("p1", "2024-01-01")));
+        store.recordPurchases("u1", List.of(purchase("p2", "2024-01-02")));
+        store.close();
+        Path log = files(".log").get(0);
+        byte[] bytes = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(bytes, bytes.length - 5));
+        Files.write(log, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        // When
+        UserProfileStore restarted = persistentStore();
+
+        // Then
+        assertEquals(1, restarted.get("u1").getPurchases().size());
+        restarted.recordPurchases("u1", List.of(purchase("p3", "2024-01-03")));
+        restarted.close();
+        assertEquals(2, persistentStore().get("u1").getPurchases().size());
+    }
+
+    @Test
+    void recordPurchases_BatchWithBlankUserId_ShouldChangeNothing() throws Exception {
+        // Given
+        UserProfileStore store = persistentStore();
+        Map<String, List<PurchaseHistory>> batch = new LinkedHashMap<>();
+        batch.put("u1", List.of(purchase("p1", "2024-01-01")));
+        batch.put(" ", List.of(purchase("p2", "2024-01-01")));
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> store.recordPurchases(batch));
+
+        // Then
+        assertNull(store.get("u1"));
+        store.close();
+        assertNull(persistentStore().get("u1"));
+    }
+
+    @Test
+    void restart_AfterSnapshot_ShouldKeepWhichProfilesAreEvictedFirst() throws Exception {
+        // Given
+        UserProfileStore store = new UserProfileStore(directory.toString(), 1000, 50, Duration.ZERO);
+        for (int i = 0; i < 50; i++) {
+            store.recordPurchases("user" + i, List.of(purchase("p" + i, "2024-01-01")));
+        }
+        store.updatePreferences("user0", List.of("cooking"), null, null);
+        store.snapshot();
+        store.close();
+
+        // When
+        UserProfileStore restarted = new UserProfileStore(directory.toString(), 1000, 50, Duration.ZERO);
+        restarted.recordPurchases("newcomer", List.of(purchase("p-new", "2024-06-01")));
+
+        // Then
+        assertNotNull(restarted.get("user0"));
+        assertNull(restarted.get("user1"));
+        restarted.close();
+    }
+
+    private UserProfileStore persistentStore() {
+        return new UserProfileStore(directory.toString(), 1000, 1_000_000, Duration.ZERO);
+    }
+
+    private List<Path> files(String suffix) throws Exception {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.toString().endsWith(suffix)).sorted().toList();
+        }
+    }
+
+    private static PurchaseHistory purchase(String productId, String date) {
+        return new PurchaseHistory(productId, "Product " + productId, "misc", 10.0, date);
+    }
+}
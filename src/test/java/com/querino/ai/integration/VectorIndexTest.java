@@ -0,0 +1,309 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.model.Product;
+import com.querino.ai.vector.Embedder;
+import com.querino.ai.vector.HashingEmbedder;
+import com.querino.ai.vector.HnswIndex;
+import com.querino.ai.vector.ProductVectorIndex;
+import com.querino.ai.vector.ProductVectorIndex.SimilarProduct;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the HNSW vector index and the similar-product search built on it.
+ */
+public class VectorIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void search_ShouldFindMostOfTheExactNearestNeighbours() {
+        // Given
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100, 1);
+        for (int i = 0; i < 5000; i++) {
+            index.add("v" + i, randomVector(random));
+        }
+
+        // When
+        int found = 0;
+        for (int q = 0; q < 100; q++) {
+            float[] query = randomVector(random);
+            Set<String> exact = keys(index.exactSearch(query, 10));
+            for (HnswIndex.Neighbour neighbour : index.search(query, 10, 64)) {
+                found += exact.contains(neighbour.key()) ? 1 : 0;
+            }
+        }
+
+        // Then
+        double recall = found / 1000.0;
+        assertTrue(recall >= 0.9, "recall@10 was " + recall);
+    }
+
+    @Test
+    void search_ShouldReturnNeighboursMostSimilarFirst() {
+        // Given
+        HnswIndex index = new HnswIndex(3, 4, 20, 1);
+        index.add("x", new float[]{1, 0, 0});
+        index.add("y", new float[]{0, 1, 0});
+        index.add("xy", new float[]{1, 1, 0});
+
+        // When
+        List<HnswIndex.Neighbour> neighbours = index.search(new float[]{2, 0.1f, 0}, 3, 10);
+
+        // Then
+        assertEquals(List.of("x", "xy", "y"), neighbours.stream().map(HnswIndex.Neighbour::key).toList());
+        assertTrue(neighbours.get(0).similarity() > 0.99f);
+    }
+
+    @Test
+    void search_DuringInserts_ShouldAlwaysReturnValidResults() throws Exception {
+        // Given
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 50, 1);
+        index.add("v0", randomVector(random));
+        AtomicBoolean inserting = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> searches = new ArrayList<>();
+
+        // When
+        for (int r = 0; r < 4; r++) {
+            long seed = r;
+            searches.add(readers.submit(() -> {
+                Random queries = new Random(seed);
+                int count = 0;
+                while (inserting.get()) {
+                    List<HnswIndex.Neighbour> neighbours = index.search(randomVector(queries), 5, 20);
+                    assertFalse(neighbours.isEmpty());
+                    for (HnswIndex.Neighbour neighbour : neighbours) {
+                        assertEquals("v" + neighbour.id(), neighbour.key());
+                    }
+                    count++;
+                }
+                return count;
+            }));
+        }
+        for (int i = 1; i < 3000; i++) {
+            index.add("v" + i, randomVector(random));
+        }
+        inserting.set(false);
+
+        // Then
+        for (Future<Integer> search : searches) {
+            assertTrue(search.get(10, TimeUnit.SECONDS) > 0);
+        }
+        readers.shutdown();
+        assertEquals(3000, index.size());
+    }
+
+    @Test
+    void load_ShouldAnswerLikeTheSavedIndexAndAcceptNewVectors() throws Exception {
+        // Given
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 50, 1);
+        for (int i = 0; i < 3000; i++) {
+            index.add("v" + i, randomVector(random));
+        }
+        Path file = directory.resolve("index.hnsw");
+        index.save(file, 1234L);
+
+        // When
+        HnswIndex loaded = HnswIndex.load(file, 1);
+
+        // Then
+        assertEquals(1234L, HnswIndex.readFingerprint(file));
+        assertEquals(index.size(), loaded.size());
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            assertEquals(index.search(query, 10, 40), loaded.search(query, 10, 40));
+        }
+        float[] extra = randomVector(random);
+        loaded.add("extra", extra);
+        assertEquals("extra", loaded.search(extra, 1, 40).get(0).key());
+    }
+
+    @Test
+    void embed_ShouldBeDeterministicAndPlaceRelatedTextsCloser() {
+        // Given
+        HashingEmbedder embedder = new HashingEmbedder(256);
+
+        // When
+        float[] headphones = embedder.embed("Wireless noise cancelling headphones");
+        float[] again = new HashingEmbedder(256).embed("Wireless noise cancelling headphones");
+        float[] earbuds = embedder.embed("Noise cancelling wireless earbuds");
+        float[] pan = embedder.embed("Cast iron skillet");
+
+        // Then
+        assertArrayEquals(headphones, again);
+        assertTrue(dot(headphones, earbuds) > dot(headphones, pan));
+        assertEquals(1.0, dot(headphones, headphones), 1e-5);
+    }
+
+    @Test
+    void similarTo_ShouldRankRelatedCatalogProductsFirst() throws Exception {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+        ProductVectorIndex vectors = new ProductVectorIndex(catalog, new HashingEmbedder(256), 16, 100, 64, null);
+
+        // When
+        awaitTrue(vectors::isReady);
+        List<SimilarProduct> similar = vectors.similarTo("c001", 3, 0);
+        List<SimilarProduct> search = vectors.search("headphones", 1, 0);
+
+        // Then
+        assertEquals(catalog.current().size(), vectors.size());
+        assertEquals(3, similar.size());
+        assertTrue(similar.stream().noneMatch(product -> product.product().getId().equals("c001")));
+        assertEquals("c001", search.get(0).product().getId());
+        assertNull(vectors.similarTo("missing", 3, 0));
+    }
+
+    @Test
+    void search_WhileTheFirstBuildRuns_ShouldAnswerFromAnExactScan() throws Exception {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+        HashingEmbedder hashing = new HashingEmbedder(64);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger built = new AtomicInteger();
+        Embedder blocking = new Embedder() {
+            @Override
+            public int dimensions() {
+                return hashing.dimensions();
+            }
+
+            @Override
+            public float[] embed(String text) {
+                // Let the build insert a few products, then hold it until released
+                if (Thread.currentThread().getName().equals("vector-index-rebuild") && built.incrementAndGet() > 5) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return hashing.embed(text);
+            }
+        };
+
+        // When
+        ProductVectorIndex vectors = new ProductVectorIndex(catalog, blocking, 8, 50, 32, null);
+        awaitTrue(() -> vectors.size() == 5);
+        List<SimilarProduct> whileBuilding = vectors.similarTo("c001", 3, 0);
+        List<SimilarProduct> search = vectors.search("headphones", 1, 0);
+        release.countDown();
+        awaitTrue(vectors::isReady);
+
+        // Then
+        assertEquals(3, whileBuilding.size());
+        assertEquals("c001", search.get(0).product().getId());
+        assertEquals(catalog.current().size(), vectors.size());
+        ProductVectorIndex exact = new ProductVectorIndex(catalog, hashing, 8, 50, 32, null);
+        awaitTrue(exact::isReady);
+        assertEquals(ids(exact.similarTo("c001", 3, 0)), ids(whileBuilding));
+        vectors.close();
+        exact.close();
+    }
+
+    @Test
+    void search_AfterCatalogReplaced_ShouldRebuildInBackground() throws Exception {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+        Path file = directory.resolve("products.hnsw");
+        ProductVectorIndex vectors = new ProductVectorIndex(catalog, new HashingEmbedder(64), 8, 50, 32, file);
+        catalog.replace(List.of(
+            new Product("n1", "Trail Running Shoes", "footwear", "Grippy shoes for trails", 120.0),
+            new Product("n2", "Espresso Machine", "kitchen", "Pump espresso maker", 300.0)));
+
+        // When
+        vectors.search("shoes", 1, 0);
+        awaitTrue(() -> vectors.size() == 2);
+
+        // Then
+        assertEquals("n1", vectors.search("running shoes", 1, 0).get(0).product().getId());
+        ProductVectorIndex reopened = new ProductVectorIndex(catalog, new HashingEmbedder(64), 8, 50, 32, file);
+        assertEquals(2, reopened.size());
+        vectors.close();
+        reopened.close();
+    }
+
+    @Test
+    void open_AfterProductTextChanged_ShouldNotLoadTheStaleIndexFile() throws Exception {
+        // Given
+        Path file = directory.resolve("products.hnsw");
+        ProductCatalog before = new ProductCatalog(false);
+        before.replace(List.of(
+            new Product("n1", "Trail Running Shoes", "misc", "Grippy shoes for trails", 120.0),
+            new Product("n2", "Espresso Machine", "misc", "Pump espresso maker", 300.0)));
+        ProductVectorIndex saved = new ProductVectorIndex(before, new HashingEmbedder(64), 8, 50, 32, file);
+        awaitTrue(() -> saved.size() == 2);
+        saved.close();
+        ProductCatalog after = new ProductCatalog(false);
+        after.replace(List.of(
+            new Product("n1", "Espresso Machine", "misc", "Pump espresso maker", 300.0),
+            new Product("n2", "Trail Running Shoes", "misc", "Grippy shoes for trails", 120.0)));
+
+        // When
+        ProductVectorIndex reopened = new ProductVectorIndex(after, new HashingEmbedder(64), 8, 50, 32, file);
+
+        // Then
+        assertEquals("n2", reopened.search("running shoes", 1, 0).get(0).product().getId());
+        awaitTrue(() -> reopened.size() == 2);
+        assertEquals("n2", reopened.search("running shoes", 1, 0).get(0).product().getId());
+        reopened.close();
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static Set<String> keys(List<HnswIndex.Neighbour> neighbours) {
+        Set<String> keys = new HashSet<>();
+        neighbours.forEach(neighbour -> keys.add(neighbour.key()));
+        return keys;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    private static List<String> ids(List<SimilarProduct> products) {
+        return products.stream().map(product -> product.product().getId()).toList();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5s");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.querino.ai.integration;
+
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.catalog.ProductTable;
+import com.querino.ai.engine.EmbeddingEngine;
+import com.querino.ai.model.Product;
+import com.querino.ai.model.Recommendation;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.model.RecommendationRequest.PurchaseHistory;
+import com.querino.ai.profile.UserProfileStore;
+import com.querino.ai.retrieval.QuantizedEmbeddingIndex;
+import com.querino.ai.vector.HashingEmbedder;
+import com.querino.ai.vector.ProductVectorIndex;
+import com.querino.ai.vector.VectorKernels;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the Vector API kernels agree with the scalar ones, and the embedding engine built on them.
+ */
+public class VectorKernelsTest {
+
+    private static final int[] LENGTHS = {1, 7, 64, 100, 256, 301};
+
+    private final VectorKernels simd = VectorKernels.get();
+    private final VectorKernels scalar = VectorKernels.scalar();
+
+    @Test
+    void get_UnderTests_ShouldUseTheVectorApi() {
+        assertTrue(simd.name().startsWith("simd"), simd.name());
+    }
+
+    @Test
+    void dot_ShouldMatchScalarForAnyLengthAndOffset() {
+        // Given
+        Random random = new Random(11);
+        for (int length : LENGTHS) {
+            float[] a = randomFloats(random, length + 3);
+            float[] b = randomFloats(random, length + 5);
+            byte[] codesA = randomBytes(random, length + 3);
+            byte[] codesB = randomBytes(random, length + 5);
+
+            // When / Then
+            assertEquals(scalar.dot(a, 3, b, 5, length), simd.dot(a, 3, b, 5, length), 1e-3f * length);
+            assertEquals(scalar.dot(codesA, 3, codesB, 5, length), simd.dot(codesA, 3, codesB, 5, length));
+        }
+    }
+
+    @Test
+    void cosine_ShouldBeScaleInvariantAndZeroForZeroVectors() {
+        // Given
+        float[] a = {1, 2, 3};
+        float[] b = {2, 4, 6};
+
+        // When / Then
+        assertEquals(1.0f, simd.cosine(a, b), 1e-6f);
+        assertEquals(0.0f, simd.cosine(a, new float[3]));
+        assertThrows(IllegalArgumentException.class, () -> simd.dot(a, new float[2]));
+    }
+
+    @Test
+    void dotRows_Int8_ShouldMatchScalarExactly() {
+        // Given
+        Random random = new Random(13);
+        for (int dimensions : LENGTHS) {
+            int rows = 601;
+            byte[] matrix = new byte[rows * dimensions];
+            byte[] query = new byte[dimensions];
+            random.nextBytes(matrix);
+            random.nextBytes(query);
+            int[] scores = new int[rows - 3];
+            int[] expected = new int[rows - 3];
+
+            // When
+            simd.dotRows(query, matrix, 3, rows - 3, scores);
+            scalar.dotRows(query, matrix, 3, rows - 3, expected);
+
+            // Then
+            assertArrayEquals(expected, scores);
+            assertEquals(scalar.dot(query, 0, matrix, (rows - 1) * dimensions, dimensions), scores[rows - 4]);
+        }
+    }
+
+    @Test
+    void embeddingEngine_ShouldRecommendClosestUnownedProductsWithinBudget() throws Exception {
+        // Given
+        ProductCatalog catalog = new ProductCatalog(true);
+        ProductVectorIndex vectorIndex = new ProductVectorIndex(catalog, new HashingEmbedder(256), 16, 100, 64, null);
+        QuantizedEmbeddingIndex quantized = new QuantizedEmbeddingIndex(catalog, vectorIndex, UserProfileStore.inMemory(), 4);
+        EmbeddingEngine engine = new EmbeddingEngine(vectorIndex, quantized, 3);
+        RecommendationRequest request = new RecommendationRequest("runner", List.of("running", "trail"),
+            List.of(new PurchaseHistory("c109", "Trail Running Shoes", "athletic wear", 139.99, "2024-02-01")),
+            200.0, List.of("athletic wear"));
+        engine.recommend(request);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!quantized.isReady()) {
+            assertTrue(System.currentTimeMillis() < deadline, "product codes not built within 5s");
+            Thread.sleep(5);
+        }
+
+        // When
+        Recommendation recommendation = engine.recommend(request);
+        Recommendation empty = engine.recommend(new RecommendationRequest("nobody", List.of(), List.of(), null, List.of()));
+
+        // Then
+        assertEquals(EmbeddingEngine.NAME, recommendation.getEngine());
+        assertEquals(3, recommendation.getRecommendedProducts().size());
+        assertTrue(recommendation.getRecommendedProducts().stream()
+            .noneMatch(product -> product.getProductId().equals("c109") || product.getPrice() > 200.0));
+        float[] taste = vectorIndex.embedTaste(request.getInterests(), request.getPreferredCategories(),
+            request.getPurchaseHistory());
+        ProductTable table = catalog.current().getTable();
+        List<String> exact = IntStream.range(0, table.size()).mapToObj(table::getProduct)
+            .filter(product -> !product.getId().equals("c109") && product.getPrice() <= 200.0)
+            .sorted(Comparator.comparingDouble((Product product) -> vectorIndex.similarity(taste, product)).reversed())
+            .limit(3).map(Product::getId).toList();
+        assertEquals(exact, recommendation.getRecommendedProducts().stream()
+            .map(Recommendation.RecommendedProduct::getProductId).toList(), "the re-rank restores the exact order");
+        assertTrue(empty.getRecommendedProducts().isEmpty());
+        quantized.close();
+    }
+
+    private static float[] randomFloats(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] values = new byte[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (byte) (random.nextInt(255) - 127);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,86 @@
+package com.querino.ai.loadtest;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A distribution of response delays for the {@link OpenAiStubServer}.
+ */
+@FunctionalInterface
+public interface LatencyModel {
+
+    LatencyModel NONE = () -> 0;
+
+    /**
+     * @return A delay in milliseconds, drawn from the distribution
+     */
+    long sampleMillis();
+
+    static LatencyModel fixed(Duration delay) {
+        long millis = delay.toMillis();
+        return () -> millis;
+    }
+
+    static LatencyModel uniform(Duration min, Duration max) {
+        long minMillis = min.toMillis();
+        long maxMillis = max.toMillis();
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("Maximum latency below minimum: " + max + " < " + min);
+        }
+        return () -> ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+    }
+
+    /**
+     * Log-normal delays, the usual shape of model latencies: most calls close to the median, with a long tail.
+     *
+     * @param median The median delay
+     * @param sigma The standard deviation of the delay's logarithm; 0.5 puts p99 at about 3.2 times the median
+     */
+    static LatencyModel logNormal(Duration median, double sigma) {
+        double mu = Math.log(Math.max(1, median.toMillis()));
+        return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    /**
+     * Parses {@code none}, {@code fixed:800ms}, {@code uniform:200ms:2s} or {@code lognormal:800ms:0.5}.
+     *
+     * @param spec The distribution and its parameters
+     * @return The latency model
+     * @throws IllegalArgumentException If the spec is malformed
+     */
+    static LatencyModel parse(String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        return switch (parts[0]) {
+            case "none" -> NONE;
+            case "fixed" -> fixed(duration(parts, 1));
+            case "uniform" -> uniform(duration(parts, 1), duration(parts, 2));
+            case "lognormal" -> logNormal(duration(parts, 1), parts.length > 2 ? Double.parseDouble(parts[2]) : 0.5);
+            default -> throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        };
+    }
+
+    /**
+     * Parses {@code 250ms}, {@code 2s} or {@code 1m}; a bare number is milliseconds.
+     */
+    static Duration duration(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        if (text.endsWith("s")) {
+            return Duration.ofMillis(Math.round(Double.parseDouble(text.substring(0, text.length() - 1)) * 1000));
+        }
+        if (text.endsWith("m")) {
+            return Duration.ofSeconds(Math.round(Double.parseDouble(text.substring(0, text.length() - 1)) * 60));
+        }
+        return Duration.ofMillis(Long.parseLong(text));
+    }
+
+    private static Duration duration(String[] parts, int index) {
+        if (parts.length <= index) {
+            throw new IllegalArgumentException("Missing parameter " + index + " in latency spec " + String.join(":", parts));
+        }
+        return duration(parts[index]);
+    }
+}
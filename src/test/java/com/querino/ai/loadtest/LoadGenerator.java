@@ -0,0 +1,205 @@
+package com.querino.ai.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querino.ai.model.RecommendationRequest;
+import com.querino.ai.util.SampleDataProvider;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Closed-loop load generator for {@code POST /api/recommendations}: a fixed number of workers each send a request,
+ * wait for the answer and send the next, until the duration or request count is reached. Latencies are measured
+ * end to end from the client, and reported as percentiles with the throughput and the failures (non-2xx answers
+ * and I/O errors).
+ * <p>
+ * Requests cycle through the sample personas under {@code users} distinct user IDs, so with enough users every
+ * request misses the recommendation cache. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.querino.ai.loadtest.LoadGenerator
+ * -Dexec.args="--url=http://localhost:8080/api/recommendations --concurrency=32 --duration=60s"}.
+ */
+public final class LoadGenerator {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final URI target;
+    private final int concurrency;
+    private final int users;
+    private final Duration requestTimeout;
+    private final HttpClient client;
+    private final List<RecommendationRequest> personas = List.of(
+        SampleDataProvider.createTechEnthusiastRequest(),
+        SampleDataProvider.createFitnessEnthusiastRequest(),
+        SampleDataProvider.createHomeCookRequest());
+
+    /**
+     * @param target The recommendation endpoint
+     * @param concurrency The number of requests in flight
+     * @param users The number of distinct user IDs to spread requests over
+     * @param requestTimeout How long to wait for one answer before counting it as failed
+     */
+    public LoadGenerator(URI target, int concurrency, int users, Duration requestTimeout) {
+        this.target = target;
+        this.concurrency = concurrency;
+        this.users = users;
+        this.requestTimeout = requestTimeout;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }
+
+    /**
+     * Sends requests until either limit is reached.
+     *
+     * @param duration How long to run
+     * @param maxRequests The maximum number of requests, or 0 for no limit
+     * @return The throughput, failures and latency percentiles
+     */
+    public LoadReport run(Duration duration, long maxRequests) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicLong issued = new AtomicLong();
+        LongAdder failures = new LongAdder();
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int w = 0; w < concurrency; w++) {
+            Worker worker = new Worker(() -> {
+                long n = issued.getAndIncrement();
+                return System.nanoTime() < deadline && (maxRequests == 0 || n < maxRequests) ? n : -1;
+            }, failures);
+            Thread thread = new Thread(worker, "load-" + w);
+            thread.start();
+            workers.add(worker);
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - started;
+        List<long[]> latencies = new ArrayList<>();
+        workers.forEach(worker -> latencies.add(Arrays.copyOf(worker.latencies, worker.count)));
+        return LoadReport.of(latencies, failures.sum(), elapsed);
+    }
+
+    private boolean send(long n) {
+        RecommendationRequest persona = personas.get((int) (n % personas.size()));
+        RecommendationRequest request = new RecommendationRequest("load-user-" + (n % users), persona.getInterests(),
+            persona.getPurchaseHistory(), persona.getBudget(), persona.getPreferredCategories());
+        try {
+            HttpRequest httpRequest = HttpRequest.newBuilder(target)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(request)))
+                .build();
+            HttpResponse<Void> response = client.send(httpRequest, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() / 100 == 2;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Sends requests one after the other, recording each latency in nanoseconds.
+     */
+    private final class Worker implements Runnable {
+
+        private final LongSupplier next;
+        private final LongAdder failures;
+        private long[] latencies = new long[1024];
+        private int count;
+
+        Worker(LongSupplier next, LongAdder failures) {
+            this.next = next;
+            this.failures = failures;
+        }
+
+        @Override
+        public void run() {
+            for (long n = next.getAsLong(); n >= 0; n = next.getAsLong()) {
+                long start = System.nanoTime();
+                if (!send(n)) {
+                    failures.increment();
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Parses {@code --key=value} arguments.
+     */
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Options: {@code --url}, {@code --concurrency}, {@code --duration}, {@code --requests} (0: no limit),
+     * {@code --users} and {@code --timeout}.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        LoadGenerator generator = new LoadGenerator(
+            URI.create(options.getOrDefault("url", "http://localhost:8080/api/recommendations")),
+            Integer.parseInt(options.getOrDefault("concurrency", "16")),
+            Integer.parseInt(options.getOrDefault("users", "100000")),
+            LatencyModel.duration(options.getOrDefault("timeout", "30s")));
+        LoadReport report = generator.run(LatencyModel.duration(options.getOrDefault("duration", "30s")),
+            Long.parseLong(options.getOrDefault("requests", "0")));
+        System.out.println(report);
+    }
+
+    /**
+     * The outcome of a load run. Latencies are in milliseconds and include failed requests.
+     */
+    public record LoadReport(long requests, long failures, double seconds, double throughput,
+                             double p50, double p90, double p99, double p999, double max) {
+
+        static LoadReport of(List<long[]> latencies, long failures, long elapsedNanos) {
+            long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            double seconds = elapsedNanos / 1e9;
+            return new LoadReport(all.length, failures, seconds, all.length / seconds,
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999),
+                all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d failed) in %.1f s: %.1f req/s, latency ms p50 %.1f p90 %.1f"
+                + " p99 %.1f p99.9 %.1f max %.1f", requests, failures, seconds, throughput, p50, p90, p99, p999, max);
+        }
+    }
+}
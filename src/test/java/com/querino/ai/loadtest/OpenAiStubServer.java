@@ -0,0 +1,358 @@
+package com.querino.ai.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.querino.ai.catalog.ProductCatalog;
+import com.querino.ai.catalog.ProductTable;
+import com.querino.ai.model.Product;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A stand-in for the OpenAI chat-completions endpoint, for load tests that must not pay for or be throttled by
+ * the real provider. Point the application at it with {@code spring.ai.openai.base-url=http://localhost:<port>}.
+ * <p>
+ * Every call waits for a delay drawn from a {@link LatencyModel} (the time to the first token when streaming),
+ * then answers with the responder's text: whole, or as server-sent events of about one token each, spaced by
+ * the token interval. A share of calls can fail with {@code 500}, and another share can hang without answering
+ * to exercise client timeouts. The default responder generates recommendation JSON from the prompt: the
+ * users' IDs, and for grounded prompts 3-5 of the listed candidates.
+ * <p>
+ * Run standalone with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.querino.ai.loadtest.OpenAiStubServer
+ * -Dexec.args="--port=8089 --latency=lognormal:800ms:0.5 --token-interval=15ms --error-rate=0.01"}.
+ */
+public final class OpenAiStubServer implements AutoCloseable {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final Pattern USER_ID = Pattern.compile("\\{\"u\":\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern CANDIDATE = Pattern.compile(
+        "\\[\"((?:[^\"\\\\]|\\\\.)*)\",\"(?:[^\"\\\\]|\\\\.)*\",\"(?:[^\"\\\\]|\\\\.)*\",-?[0-9.]+]");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyModel latency;
+    private final Duration tokenInterval;
+    private final double errorRate;
+    private final double timeoutRate;
+    private final Duration hang;
+    private final Function<String, String> responder;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicLong completionIds = new AtomicLong();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder streamed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * @param port The port to listen on, or 0 for any free port
+     * @param latency The delay before answering, or before the first token when streaming
+     * @param tokenInterval The delay between streamed tokens
+     * @param errorRate The share of calls answered with {@code 500}
+     * @param timeoutRate The share of calls left unanswered for {@code hang}
+     * @param hang How long unanswered calls are held before the connection is closed
+     * @param responder Produces the assistant's answer from the prompt text
+     */
+    public OpenAiStubServer(int port, LatencyModel latency, Duration tokenInterval, double errorRate,
+                            double timeoutRate, Duration hang, Function<String, String> responder) throws IOException {
+        this.latency = latency;
+        this.tokenInterval = tokenInterval;
+        this.errorRate = errorRate;
+        this.timeoutRate = timeoutRate;
+        this.hang = hang;
+        this.responder = responder;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "openai-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Starts a stub answering instantly with generated recommendations, and never failing.
+     */
+    public static OpenAiStubServer instant() throws IOException {
+        return new OpenAiStubServer(0, LatencyModel.NONE, Duration.ZERO, 0, 0, Duration.ZERO, recommendations());
+    }
+
+    /**
+     * @param response The answer to every prompt
+     * @return A responder always giving the same answer
+     */
+    public static Function<String, String> canned(String response) {
+        return prompt -> response;
+    }
+
+    /**
+     * @return A responder generating recommendation JSON shaped like the prompt asks for
+     */
+    public static Function<String, String> recommendations() {
+        ProductTable products = new ProductCatalog(true).current().getTable();
+        return prompt -> generateRecommendations(prompt, products);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return The value for {@code spring.ai.openai.base-url}
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + getPort();
+    }
+
+    public StubStatistics stats() {
+        return new StubStatistics(requests.sum(), streamed.sum(), errors.sum(), timeouts.sum());
+    }
+
+    @Override
+    public void close() {
+        stopped.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith("/chat/completions")) {
+                send(exchange, 404, error("No such endpoint: " + exchange.getRequestURI().getPath(), "invalid_request_error"));
+                return;
+            }
+            requests.increment();
+            JsonNode request = OBJECT_MAPPER.readTree(exchange.getRequestBody());
+            String model = request.path("model").asText("stub");
+            boolean stream = request.path("stream").asBoolean(false);
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < timeoutRate) {
+                timeouts.increment();
+                stopped.await(hang.toMillis(), TimeUnit.MILLISECONDS);
+                return;
+            }
+            sleep(latency.sampleMillis());
+            if (roll < timeoutRate + errorRate) {
+                errors.increment();
+                send(exchange, 500, error("Injected failure", "server_error"));
+                return;
+            }
+
+            String content = responder.apply(promptOf(request));
+            if (stream) {
+                streamed.increment();
+                stream(exchange, model, content);
+            } else {
+                send(exchange, 200, completion(model, content));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, String content) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        String id = "chatcmpl-stub-" + completionIds.incrementAndGet();
+        OutputStream body = exchange.getResponseBody();
+        for (int i = 0; i < content.length(); i += CHARS_PER_TOKEN) {
+            if (i > 0) {
+                sleep(tokenInterval.toMillis());
+            }
+            String token = content.substring(i, Math.min(i + CHARS_PER_TOKEN, content.length()));
+            event(body, chunk(id, model, token, null));
+        }
+        event(body, chunk(id, model, null, "stop"));
+        body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        body.flush();
+    }
+
+    private static void event(OutputStream body, ObjectNode chunk) throws IOException {
+        body.write(("data: " + OBJECT_MAPPER.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        body.flush();
+    }
+
+    private ObjectNode completion(String model, String content) {
+        ObjectNode completion = header("chatcmpl-stub-" + completionIds.incrementAndGet(), "chat.completion", model);
+        ObjectNode choice = completion.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("message").put("role", "assistant").put("content", content);
+        choice.put("finish_reason", "stop");
+        int completionTokens = (content.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+        completion.putObject("usage")
+            .put("prompt_tokens", 0)
+            .put("completion_tokens", completionTokens)
+            .put("total_tokens", completionTokens);
+        return completion;
+    }
+
+    private static ObjectNode chunk(String id, String model, String token, String finishReason) {
+        ObjectNode chunk = header(id, "chat.completion.chunk", model);
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode delta = choice.putObject("delta");
+        if (token != null) {
+            delta.put("role", "assistant").put("content", token);
+        }
+        choice.put("finish_reason", finishReason);
+        return chunk;
+    }
+
+    private static ObjectNode header(String id, String object, String model) {
+        ObjectNode node = OBJECT_MAPPER.createObjectNode();
+        node.put("id", id);
+        node.put("object", object);
+        node.put("created", System.currentTimeMillis() / 1000);
+        node.put("model", model);
+        return node;
+    }
+
+    private static ObjectNode error(String message, String type) {
+        ObjectNode node = OBJECT_MAPPER.createObjectNode();
+        node.putObject("error").put("message", message).put("type", type);
+        return node;
+    }
+
+    private static void send(HttpExchange exchange, int status, ObjectNode body) throws IOException {
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static String promptOf(JsonNode request) {
+        StringBuilder prompt = new StringBuilder();
+        for (JsonNode message : request.path("messages")) {
+            JsonNode content = message.path("content");
+            if (content.isTextual()) {
+                prompt.append(content.asText()).append('\n');
+            } else {
+                // Content given as parts: [{"type": "text", "text": "..."}]
+                content.forEach(part -> prompt.append(part.path("text").asText()).append('\n'));
+            }
+        }
+        return prompt.toString();
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    /**
+     * One recommendation per user in the prompt: picks among the user's candidates when the prompt lists them,
+     * and otherwise among the sample catalog. Packed prompts get an array, single prompts one object.
+     */
+    static String generateRecommendations(String prompt, ProductTable products) {
+        List<Integer> starts = new ArrayList<>();
+        List<String> userIds = new ArrayList<>();
+        Matcher users = USER_ID.matcher(prompt);
+        while (users.find()) {
+            starts.add(users.start());
+            userIds.add(users.group(1).replace("\\\"", "\"").replace("\\\\", "\\"));
+        }
+        if (userIds.isEmpty()) {
+            starts.add(0);
+            userIds.add("unknown");
+        }
+        ArrayNode recommendations = OBJECT_MAPPER.createArrayNode();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int u = 0; u < userIds.size(); u++) {
+            String section = prompt.substring(starts.get(u), u + 1 < starts.size() ? starts.get(u + 1) : prompt.length());
+            List<String> candidates = new ArrayList<>();
+            Matcher candidate = CANDIDATE.matcher(section);
+            while (candidate.find()) {
+                candidates.add(candidate.group(1));
+            }
+            ObjectNode recommendation = recommendations.addObject();
+            recommendation.put("userId", userIds.get(u));
+            ArrayNode picks = recommendation.putArray("recommendedProducts");
+            int count = 3 + random.nextInt(3);
+            if (!candidates.isEmpty()) {
+                for (int i = 0; i < Math.min(count, candidates.size()); i++) {
+                    picks.addObject()
+                        .put("productId", candidates.get(i))
+                        .put("reasonForRecommendation", "Fits the interests in your profile");
+                }
+            } else {
+                int first = random.nextInt(products.size());
+                for (int i = 0; i < Math.min(count, products.size()); i++) {
+                    Product product = products.getProduct((first + i) % products.size());
+                    picks.addObject()
+                        .put("productId", product.getId())
+                        .put("productName", product.getName())
+                        .put("category", product.getCategory())
+                        .put("price", product.getPrice())
+                        .put("reasonForRecommendation", "Popular with shoppers like you");
+                }
+            }
+            recommendation.put("reasonForRecommendation", "Generated by the stub chat model");
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(prompt.contains("one entry per user") ? recommendations : recommendations.get(0));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Runs the stub until the process is stopped. Options: {@code --port}, {@code --latency} (see
+     * {@link LatencyModel#parse}), {@code --token-interval}, {@code --error-rate}, {@code --timeout-rate},
+     * {@code --hang} and {@code --response} (a file with a canned answer).
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadGenerator.options(args);
+        Function<String, String> responder = options.containsKey("response")
+            ? canned(Files.readString(Path.of(options.get("response"))))
+            : recommendations();
+        OpenAiStubServer stub = new OpenAiStubServer(
+            Integer.parseInt(options.getOrDefault("port", "8089")),
+            LatencyModel.parse(options.getOrDefault("latency", "lognormal:800ms:0.5")),
+            LatencyModel.duration(options.getOrDefault("token-interval", "15ms")),
+            Double.parseDouble(options.getOrDefault("error-rate", "0")),
+            Double.parseDouble(options.getOrDefault("timeout-rate", "0")),
+            LatencyModel.duration(options.getOrDefault("hang", "5m")),
+            responder);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println(stub.stats());
+            stub.close();
+        }));
+        System.out.println("Chat-completions stub listening at " + stub.getBaseUrl());
+        stub.stopped.await();
+    }
+
+    /**
+     * Counts of calls received, answered by streaming, failed on purpose and left hanging on purpose.
+     */
+    public record StubStatistics(long requests, long streamed, long errors, long timeouts) {
+    }
+}